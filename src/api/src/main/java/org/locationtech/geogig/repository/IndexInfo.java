@@ -37,6 +37,13 @@ public final class IndexInfo {
      */
     public static final String MD_QUAD_MAX_BOUNDS = "QUAD_MAX_BOUNDS";
 
+    /**
+     * Key by which the number of level-of-detail trees to build for a quad-tree index is stored in
+     * the index {@link #getMetadata() metadata} as an {@link Integer}. If absent or zero, no
+     * level-of-detail trees are built.
+     */
+    public static final String MD_QUAD_LOD_LEVELS = "QUAD_LOD_LEVELS";
+
     /**
      * Key by which the feature attribute values is stored on {@link Node#getExtraData()} for
      * materialized index {@link RevTree}s.
@@ -117,6 +124,15 @@ public final class IndexInfo {
         return availableAttNames;
     }
 
+    /**
+     * @return the number of level-of-detail trees to maintain for the index, as given by the
+     *         {@link #MD_QUAD_LOD_LEVELS} metadata key, or {@code 0} if not set
+     */
+    public static int getLODLevels(IndexInfo info) {
+        Object levels = info.getMetadata().get(IndexInfo.MD_QUAD_LOD_LEVELS);
+        return levels == null ? 0 : ((Number) levels).intValue();
+    }
+
     @SuppressWarnings("unchecked")
     public static Map<String, Object> getMaterializedAttributes(Node n) {
         Map<String, Object> extraData = n.getExtraData();
@@ -9,14 +9,17 @@
  */
 package org.locationtech.geogig.storage;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.repository.Conflict;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
 
 /**
  * Provides an interface for implementations of conflict databases, which manage GeoGig conflicts.
@@ -72,6 +75,47 @@ public interface ConflictsDatabase {
     public Iterator<Conflict> getByPrefix(@Nullable String namespace,
             @Nullable String prefixFilter);
 
+    /**
+     * Retrieves a page of the conflicts that match the specified path filter, in the order defined
+     * by the storage, so that large sets of conflicts can be traversed in chunks without holding a
+     * cursor open, and without missing or repeating conflicts if others are removed in between.
+     * <p>
+     * The first page is requested with a {@code null} {@code startAfter} argument, and each
+     * following page with the path of the last conflict of the previous one, until a page with
+     * less than {@code limit} conflicts is returned.
+     * <p>
+     * The default implementation scans all the conflicts matching the prefix filter, keeping the
+     * {@code limit} ones with the smallest paths after {@code startAfter} in natural string order.
+     * Implementations are encouraged to provide an indexed lookup instead.
+     * 
+     * @param namespace optional namespace (i.e. transaction id), to filter conflicts by.
+     * @param treePath optional tree path filter, as in {@link #getByPrefix(String, String)}
+     * @param startAfter the path of the last conflict of the previous page, or {@code null} for
+     *        the first page
+     * @param limit the maximum number of conflicts to return
+     * @return the conflicts after {@code startAfter}, at most {@code limit} of them
+     */
+    public default List<Conflict> getByPrefix(@Nullable String namespace,
+            @Nullable String treePath, @Nullable String startAfter, int limit) {
+        Preconditions.checkArgument(limit > 0, "limit must be > 0");
+        TreeMap<String, Conflict> page = new TreeMap<>();
+        Iterator<Conflict> it = getByPrefix(namespace, treePath);
+        while (it.hasNext()) {
+            Conflict c = it.next();
+            String path = c.getPath();
+            if (startAfter != null && path.compareTo(startAfter) <= 0) {
+                continue;
+            }
+            if (page.size() < limit) {
+                page.put(path, c);
+            } else if (path.compareTo(page.lastKey()) < 0) {
+                page.pollLastEntry();
+                page.put(path, c);
+            }
+        }
+        return new ArrayList<>(page.values());
+    }
+
     /**
      * Gets the number of conflicts in the given path.
      * 
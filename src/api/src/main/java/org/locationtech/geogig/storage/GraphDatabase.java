@@ -10,9 +10,12 @@
 package org.locationtech.geogig.storage;
 
 import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 
 import com.google.common.annotations.Beta;
@@ -196,6 +199,27 @@ public interface GraphDatabase extends Closeable {
      */
     public boolean put(final ObjectId commitId, ImmutableList<ObjectId> parentIds);
 
+    /**
+     * Adds commits to the database with their parents, as {@link #put} does for each of them.
+     * <p>
+     * Meant for adding many commits at once, as when cloning or rebuilding the graph, so that
+     * implementations can write them in batches. The default implementation calls {@link #put}
+     * for each commit.
+     * 
+     * @param commits the commits to insert
+     * @return the ids of the commits that were inserted or updated
+     */
+    public default List<ObjectId> putAll(Iterator<RevCommit> commits) {
+        List<ObjectId> updated = new ArrayList<>();
+        while (commits.hasNext()) {
+            RevCommit commit = commits.next();
+            if (put(commit.getId(), commit.getParentIds())) {
+                updated.add(commit.getId());
+            }
+        }
+        return updated;
+    }
+
     /**
      * Maps a commit to another original commit. This is used in sparse repositories.
      * 
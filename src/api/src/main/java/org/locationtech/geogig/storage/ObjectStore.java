@@ -10,8 +10,10 @@
 package org.locationtech.geogig.storage;
 
 import java.io.Closeable;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.NodeRef;
@@ -250,4 +252,64 @@ public interface ObjectStore extends Closeable {
     public <T extends RevObject> AutoCloseableIterator<ObjectInfo<T>> getObjects(
             Iterator<NodeRef> nodes, BulkOpListener listener, Class<T> type);
 
+    /**
+     * Returns the name of the encoding objects are stored with, if this store supports accessing
+     * them in their stored representation through {@link #getRaw(ObjectId)} and
+     * {@link #putAllRaw(Iterator, BulkOpListener)}.
+     * <p>
+     * Objects can be copied between two stores that report the same raw format without decoding
+     * and re-encoding them.
+     * 
+     * @return the name of the stored objects encoding, or {@code null} if raw access is not
+     *         supported
+     */
+    @Beta
+    public default @Nullable String getRawFormat() {
+        return null;
+    }
+
+    /**
+     * @return the stored representation of the object with the given id, in this store's
+     *         {@link #getRawFormat() raw format}, or {@code null} if no such object exists
+     * @throws UnsupportedOperationException if this store doesn't support raw access
+     */
+    @Beta
+    public default @Nullable byte[] getRaw(ObjectId id) {
+        throw new UnsupportedOperationException(
+                getClass().getSimpleName() + " does not support raw object access");
+    }
+
+    /**
+     * Bulk version of {@link #getRaw(ObjectId)}, stores that keep objects remotely should override
+     * it to fetch them with as few round trips as possible.
+     * 
+     * @return the stored representation of the objects with the given ids that exist in this
+     *         store, in this store's {@link #getRawFormat() raw format}
+     * @throws UnsupportedOperationException if this store doesn't support raw access
+     */
+    @Beta
+    public default Map<ObjectId, byte[]> getAllRaw(Iterable<ObjectId> ids) {
+        Map<ObjectId, byte[]> found = new HashMap<>();
+        for (ObjectId id : ids) {
+            byte[] raw = getRaw(id);
+            if (raw != null) {
+                found.put(id, raw);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Inserts objects given in this store's {@link #getRawFormat() raw format}, with the same
+     * semantics as {@link #putAll(Iterator, BulkOpListener)}.
+     * 
+     * @param objects the stored representation of the objects to insert
+     * @param listener a listener to get notifications of actually inserted objects
+     * @throws UnsupportedOperationException if this store doesn't support raw access
+     */
+    @Beta
+    public default void putAllRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        throw new UnsupportedOperationException(
+                getClass().getSimpleName() + " does not support raw object access");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.storage;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevObject.TYPE;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A {@link RevObject} in the stored representation of an {@link ObjectStore}, as returned by
+ * {@link ObjectStore#getRaw(ObjectId)}, along with its id and type, which can't be told from the
+ * encoded bytes without decoding them.
+ */
+@Beta
+public final class RawObject {
+
+    private final ObjectId id;
+
+    private final TYPE type;
+
+    private final byte[] data;
+
+    public RawObject(ObjectId id, TYPE type, byte[] data) {
+        this.id = id;
+        this.type = type;
+        this.data = data;
+    }
+
+    public ObjectId id() {
+        return id;
+    }
+
+    public TYPE type() {
+        return type;
+    }
+
+    /**
+     * @return the encoded object, not a copy
+     */
+    public byte[] data() {
+        return data;
+    }
+
+    public static RawObject of(ObjectId id, TYPE type, byte[] data) {
+        checkNotNull(id, "id");
+        checkNotNull(type, "type");
+        checkNotNull(data, "data");
+        return new RawObject(id, type, data);
+    }
+}
@@ -49,6 +49,9 @@ public class CreateIndex extends AbstractCommand implements CLICommand {
     @Parameter(names = "--bounds", description = "If specified, the max bounds of the spatial index will be set to this parameter. <minx,miny,maxx,maxy>")
     private String bbox;
 
+    @Parameter(names = "--lod-levels", description = "If specified, level-of-detail trees will be maintained for this number of zoom levels to speed up rendering at small scales.")
+    private Integer lodLevels;
+
     @Override
     protected void runInternal(GeogigCLI cli)
             throws InvalidParameterException, CommandFailedException, IOException {
@@ -63,6 +66,7 @@ public class CreateIndex extends AbstractCommand implements CLICommand {
                 .setExtraAttributes(extraAttributes)//
                 .setIndexHistory(indexHistory)//
                 .setBounds(envelope)//
+                .setLODLevels(lodLevels)//
                 .setProgressListener(cli.getProgressListener())//
                 .call();
 
@@ -54,6 +54,9 @@ public class UpdateIndex extends AbstractCommand implements CLICommand {
     @Parameter(names = "--bounds", description = "If specified, the max bounds of the spatial index will be updated to this parameter. <minx,miny,maxx,maxy>")
     private String bbox;
 
+    @Parameter(names = "--lod-levels", description = "If specified, the number of level-of-detail trees maintained by the index will be updated to this parameter. Use 0 to disable them.")
+    private Integer lodLevels;
+
     @Parameter(names = "--index-history", description = "If specified, indexes will be rebuilt for all commits in the history.")
     private boolean indexHistory = false;
 
@@ -73,6 +76,7 @@ public class UpdateIndex extends AbstractCommand implements CLICommand {
                 .setAdd(add)//
                 .setIndexHistory(indexHistory)//
                 .setBounds(envelope)//
+                .setLODLevels(lodLevels)//
                 .setProgressListener(cli.getProgressListener())//
                 .call();
 
@@ -24,6 +24,9 @@ import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.type.Name;
 
 import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 
 /**
@@ -36,14 +39,86 @@ import com.vividsolutions.jts.geom.GeometryFactory;
  *
  * c) getGeoToolsFeatures w/Schema - (high level) this returns SimpleFeatures for the requested
  * NodeRefs. It ignores the FeatureType Metadata and uses the supplied schema to construct features.
+ * <p>
+ * For the high level flavors, building the {@link SimpleFeature}s and decoding their default
+ * geometries is performed by {@link #parallelism(int) several} worker threads, and the resulting
+ * features are returned in the same order as the requested NodeRefs unless
+ * {@link #preserveIterationOrder(boolean) told otherwise}. The default parallelism can be set
+ * through the {@code geogig.retrieve.parallelism} System property, a parallelism of {@code 1}
+ * builds the features on the calling thread.
+ * <p>
+ * If a {@link #simplificationDistance(Double) simplification distance} is given, the default
+ * geometries of the features built for a given {@link RevFeatureType} are simplified as they're
+ * decoded (see {@link SimplifyingGeometryFactory}), and optionally cached in a
+ * {@link #simplifiedGeometryCache(SimplifiedGeometryCache) SimplifiedGeometryCache}.
  */
 public class BulkFeatureRetriever {
+
+    private static final int DEFAULT_PARALLELISM = Integer.getInteger(
+            "geogig.retrieve.parallelism",
+            Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Number of features each worker thread builds at a time
+     */
+    private static final int BATCH_SIZE = 128;
+
     ObjectStore odb;
 
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    private boolean preserveIterationOrder = true;
+
+    private @Nullable Double simplificationDistance;
+
+    private @Nullable SimplifiedGeometryCache simplifiedGeometryCache;
+
     public BulkFeatureRetriever(ObjectStore odb) {
         this.odb = odb;
     }
 
+    /**
+     * @param parallelism the maximum number of threads used to build the features of a single
+     *        request; {@code 1} means features are built on the calling thread
+     */
+    public BulkFeatureRetriever parallelism(int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be > 0: %s",
+                parallelism);
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param preserveIterationOrder whether the returned features shall be in the same order as
+     *        the requested NodeRefs, defaults to {@code true}. Setting it to {@code false} allows
+     *        features to be returned as soon as they're built when the caller doesn't need a
+     *        consistent iteration order.
+     */
+    public BulkFeatureRetriever preserveIterationOrder(boolean preserveIterationOrder) {
+        this.preserveIterationOrder = preserveIterationOrder;
+        return this;
+    }
+
+    /**
+     * @param distance the distance, in the native CRS units, the default geometries can be
+     *        simplified with, or {@code null} (default) for no simplification
+     */
+    public BulkFeatureRetriever simplificationDistance(@Nullable Double distance) {
+        Preconditions.checkArgument(distance == null || distance.doubleValue() > 0,
+                "simplification distance must be > 0: %s", distance);
+        this.simplificationDistance = distance;
+        return this;
+    }
+
+    /**
+     * @param cache where to look up simplified default geometries before decoding them, only used
+     *        if a {@link #simplificationDistance(Double) simplification distance} is set
+     */
+    public BulkFeatureRetriever simplifiedGeometryCache(@Nullable SimplifiedGeometryCache cache) {
+        this.simplifiedGeometryCache = cache;
+        return this;
+    }
+
     /**
      * Given a bunch of NodeRefs, create FeatureInfos for them. FeatureInfo contains the actual GIG
      * feature, and its metadata (i.e. FeatureTypeId + path (including name))
@@ -72,7 +147,7 @@ public class BulkFeatureRetriever {
     public AutoCloseableIterator<SimpleFeature> getGeoToolsFeatures(Iterator<NodeRef> refs) {
         AutoCloseableIterator<ObjectInfo<RevFeature>> fis = getGeoGIGFeatures(refs);
         MultiFeatureTypeBuilder builder = new MultiFeatureTypeBuilder(odb);
-        AutoCloseableIterator<SimpleFeature> result = AutoCloseableIterator.transform(fis, builder);
+        AutoCloseableIterator<SimpleFeature> result = build(fis, builder);
         return result;
     }
 
@@ -100,11 +175,52 @@ public class BulkFeatureRetriever {
         Function<ObjectInfo<RevFeature>, SimpleFeature> funcBuildFeature = (input -> MultiFeatureTypeBuilder
                 .build(featureBuilder, input, geometryFactory));
 
+        final int geometryIndex = nativeType.descriptors()
+                .indexOf(nativeType.type().getGeometryDescriptor());
+        if (simplificationDistance != null && geometryIndex >= 0) {
+            // only the default geometry is decoded with the simplifying factory, it'd decimate
+            // the vertices of any other geometry attribute too
+            final int toleranceBucket = SimplifyingGeometryFactory
+                    .toleranceBucket(simplificationDistance.doubleValue());
+            final GeometryFactory simplifyingFactory = new SimplifyingGeometryFactory(
+                    geometryFactory == null ? new GeometryFactory() : geometryFactory,
+                    SimplifyingGeometryFactory.bucketTolerance(toleranceBucket));
+            final SimplifiedGeometryCache cache = simplifiedGeometryCache;
+            final Function<ObjectInfo<RevFeature>, SimpleFeature> builder = funcBuildFeature;
+            funcBuildFeature = (input) -> {
+                SimpleFeature feature = builder.apply(input);
+                final RevFeature revFeature = input.object();
+                Supplier<Geometry> decoder = () -> revFeature
+                        .get(geometryIndex, simplifyingFactory).orNull();
+                Geometry geometry = cache == null ? decoder.get()
+                        : cache.get(revFeature.getId(), toleranceBucket, decoder);
+                feature.setDefaultGeometry(geometry);
+                return feature;
+            };
+        }
+
         AutoCloseableIterator<ObjectInfo<RevFeature>> fis = getGeoGIGFeatures(refs);
 
-        AutoCloseableIterator<SimpleFeature> result = AutoCloseableIterator.transform(fis,
-                funcBuildFeature);
+        AutoCloseableIterator<SimpleFeature> result = build(fis, funcBuildFeature);
 
         return result;
     }
+
+    private AutoCloseableIterator<SimpleFeature> build(
+            AutoCloseableIterator<ObjectInfo<RevFeature>> fis,
+            Function<ObjectInfo<RevFeature>, SimpleFeature> builder) {
+
+        if (parallelism == 1) {
+            return AutoCloseableIterator.transform(fis, builder);
+        }
+        // decode the default geometry on the worker thread too, since that's where most of the
+        // feature building time is spent and it'll be needed by the caller anyway
+        Function<ObjectInfo<RevFeature>, SimpleFeature> eagerBuilder = (info) -> {
+            SimpleFeature feature = builder.apply(info);
+            feature.getDefaultGeometry();
+            return feature;
+        };
+        return new ParallelTransformIterator<>(fis, eagerBuilder, parallelism, BATCH_SIZE,
+                preserveIterationOrder);
+    }
 }
@@ -0,0 +1,191 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.data.retrieve;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * An iterator that applies a (possibly expensive) function to the elements of a source iterator
+ * using several worker threads.
+ * <p>
+ * The source iterator is consumed on the calling thread in batches of {@code batchSize} elements,
+ * and each batch is handed over to a worker thread, with at most {@code parallelism} batches being
+ * processed at any given time for a single iterator.
+ * <p>
+ * If {@code preserveIterationOrder} is {@code true}, the transformed elements are returned in the
+ * same order as their source elements. Otherwise batches are returned as soon as they're
+ * processed, which avoids waiting on a slow batch when the caller doesn't care about the order.
+ * <p>
+ * If the function throws an exception, it'll be propagated to the caller by {@link #hasNext()}
+ * and the iterator will be closed.
+ *
+ * @param <F> the type of the source elements
+ * @param <T> the type of the transformed elements
+ */
+public class ParallelTransformIterator<F, T> implements AutoCloseableIterator<T> {
+
+    private static final ExecutorService WORKERS;
+
+    static {
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("geogig-parallel-transform-%d").build();
+        WORKERS = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    private final AutoCloseableIterator<? extends F> source;
+
+    private final Function<? super F, ? extends T> function;
+
+    private final int parallelism;
+
+    private final int batchSize;
+
+    private final boolean preserveIterationOrder;
+
+    /**
+     * Batches in flight, in submission (i.e. source) order
+     */
+    private final Deque<Future<List<T>>> pending = new ArrayDeque<>();
+
+    /**
+     * Only used when iteration order doesn't need to be preserved, returns the batches in
+     * completion order
+     */
+    private final @Nullable CompletionService<List<T>> completionService;
+
+    private Iterator<T> currentBatch = Collections.emptyIterator();
+
+    private boolean closed;
+
+    public ParallelTransformIterator(AutoCloseableIterator<? extends F> source,
+            Function<? super F, ? extends T> function, int parallelism, int batchSize,
+            boolean preserveIterationOrder) {
+        checkNotNull(source);
+        checkNotNull(function);
+        checkArgument(parallelism > 0, "parallelism must be > 0: %s", parallelism);
+        checkArgument(batchSize > 0, "batchSize must be > 0: %s", batchSize);
+        this.source = source;
+        this.function = function;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.preserveIterationOrder = preserveIterationOrder;
+        this.completionService = preserveIterationOrder ? null
+                : new ExecutorCompletionService<>(WORKERS);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        currentBatch = Collections.emptyIterator();
+        for (Future<List<T>> f : pending) {
+            f.cancel(true);
+        }
+        pending.clear();
+        source.close();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        while (!currentBatch.hasNext()) {
+            submitBatches();
+            if (pending.isEmpty()) {
+                close();
+                return false;
+            }
+            currentBatch = nextBatch().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentBatch.next();
+    }
+
+    /**
+     * Fills up the work queue with up to {@link #parallelism} batches read from the source
+     * iterator
+     */
+    private void submitBatches() {
+        while (pending.size() < parallelism && source.hasNext()) {
+            final List<F> batch = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize && source.hasNext(); i++) {
+                batch.add(source.next());
+            }
+            Callable<List<T>> task = () -> {
+                List<T> result = new ArrayList<>(batch.size());
+                for (F f : batch) {
+                    result.add(function.apply(f));
+                }
+                return result;
+            };
+            Future<List<T>> future;
+            if (preserveIterationOrder) {
+                future = WORKERS.submit(task);
+            } else {
+                future = completionService.submit(task);
+            }
+            pending.add(future);
+        }
+    }
+
+    private List<T> nextBatch() {
+        try {
+            Future<List<T>> future;
+            if (preserveIterationOrder) {
+                future = pending.removeFirst();
+            } else {
+                future = completionService.take();
+                pending.remove(future);
+            }
+            return future.get();
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        } catch (ExecutionException e) {
+            close();
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.data.retrieve;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.ObjectId;
+
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * A cache of simplified default geometries, keyed by
+ * {@link org.locationtech.geogig.model.RevFeature RevFeature} id and
+ * {@link SimplifyingGeometryFactory#toleranceBucket(double) tolerance bucket}, so that repeated
+ * requests at the same zoom level (e.g. adjacent or overlapping map tiles) don't need to decode
+ * and simplify the same geometries over and over.
+ * <p>
+ * The cache is bounded by the total number of cached coordinates. Since feature ids are content
+ * hashes, the same cache can safely be shared among repositories.
+ * <p>
+ * Cached geometries are never handed out directly, but cloned, since callers (e.g. the renderer,
+ * for "detached" features) may modify them in place.
+ */
+public class SimplifiedGeometryCache {
+
+    private final Cache<Key, Geometry> cache;
+
+    /**
+     * @param maxCoordinates the maximum number of coordinates to hold in the cache
+     */
+    public SimplifiedGeometryCache(long maxCoordinates) {
+        checkArgument(maxCoordinates > 0, "maxCoordinates must be > 0: %s", maxCoordinates);
+        this.cache = CacheBuilder.newBuilder()//
+                .maximumWeight(maxCoordinates)//
+                .weigher((Key k, Geometry g) -> g.getNumPoints())//
+                .build();
+    }
+
+    /**
+     * Returns a copy of the cached geometry for the given feature and tolerance bucket, computing
+     * and caching it using {@code loader} if not present.
+     *
+     * @return a copy of the simplified geometry, or {@code null} if {@code loader} returned
+     *         {@code null}
+     */
+    public @Nullable Geometry get(ObjectId featureId, int toleranceBucket,
+            Supplier<Geometry> loader) {
+        checkNotNull(featureId);
+        checkNotNull(loader);
+        final Key key = new Key(featureId, toleranceBucket);
+        Geometry geometry = cache.getIfPresent(key);
+        if (geometry == null) {
+            geometry = loader.get();
+            if (geometry == null) {
+                return null;
+            }
+            cache.put(key, geometry);
+        }
+        return (Geometry) geometry.clone();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static final class Key {
+
+        private final ObjectId featureId;
+
+        private final int toleranceBucket;
+
+        Key(ObjectId featureId, int toleranceBucket) {
+            this.featureId = featureId;
+            this.toleranceBucket = toleranceBucket;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return toleranceBucket == k.toleranceBucket && featureId.equals(k.featureId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * featureId.hashCode() + toleranceBucket;
+        }
+    }
+}
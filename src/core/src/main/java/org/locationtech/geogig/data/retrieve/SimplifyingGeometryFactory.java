@@ -0,0 +1,154 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.data.retrieve;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.storage.datastream.v2_3.FloatPackedCoordinateSequence;
+
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+
+/**
+ * A {@link GeometryFactory} that simplifies line strings and linear rings as they're created, so
+ * that geometries decoded from a {@link org.locationtech.geogig.model.RevFeature RevFeature} with
+ * this factory never hold more vertices than needed for the given simplification distance.
+ * <p>
+ * Simplification is a per-axis decimation of the vertices, not a distance based simplification
+ * like Douglas-Peucker: a vertex is kept only if it's farther than the simplification distance
+ * from the previously kept one along either axis, regardless of how far it is from the simplified
+ * line. The first and last vertices are always kept, and collapsed sequences keep the minimum
+ * number of (evenly spaced) vertices for the resulting geometry to be valid. This is enough to
+ * drop the vertices that would land on the same pixel when rendering, but it's not suitable for
+ * cartographic generalization. Simplified sequences are 2D and, as long as
+ * float precision is enough for the simplification distance, stored as
+ * {@link FloatPackedCoordinateSequence}s to halve the memory footprint of the geometry.
+ * <p>
+ * Every line string and linear ring created by this factory is simplified, so it should only be
+ * used to decode the geometry attribute being rendered (see {@link BulkFeatureRetriever}), and
+ * never handed over as the geometry factory for all the attributes of a feature.
+ * <p>
+ * Simplification distances are snapped to a power of two "tolerance bucket" (see
+ * {@link #toleranceBucket(double)}), so that geometries simplified for similar distances (e.g.
+ * rendering the same zoom level) are the same and can be cached.
+ */
+public class SimplifyingGeometryFactory extends GeometryFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double distance;
+
+    /**
+     * @param delegate the geometry factory whose precision model, SRID, and coordinate sequence
+     *        factory to use
+     * @param distance the simplification distance, in the geometries' units
+     */
+    public SimplifyingGeometryFactory(GeometryFactory delegate, double distance) {
+        super(delegate.getPrecisionModel(), delegate.getSRID(),
+                delegate.getCoordinateSequenceFactory());
+        checkArgument(distance > 0, "simplification distance must be > 0: %s", distance);
+        this.distance = distance;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    @Override
+    public LineString createLineString(@Nullable CoordinateSequence coordinates) {
+        return super.createLineString(simplify(coordinates, distance, 2));
+    }
+
+    @Override
+    public LinearRing createLinearRing(@Nullable CoordinateSequence coordinates) {
+        return super.createLinearRing(simplify(coordinates, distance, 4));
+    }
+
+    /**
+     * @return the tolerance bucket for the given simplification distance, that is, the exponent of
+     *         the largest power of two not greater than {@code distance}
+     */
+    public static int toleranceBucket(double distance) {
+        checkArgument(distance > 0, "simplification distance must be > 0: %s", distance);
+        return Math.getExponent(distance);
+    }
+
+    /**
+     * @return the simplification distance for the given {@link #toleranceBucket(double) tolerance
+     *         bucket}
+     */
+    public static double bucketTolerance(int toleranceBucket) {
+        return Math.scalb(1d, toleranceBucket);
+    }
+
+    static @Nullable CoordinateSequence simplify(final @Nullable CoordinateSequence seq,
+            final double distance, final int minPoints) {
+        if (seq == null) {
+            return null;
+        }
+        final int size = seq.size();
+        if (size <= minPoints) {
+            return seq;
+        }
+        final double[] coords = new double[2 * size];
+        double lastX = seq.getX(0);
+        double lastY = seq.getY(0);
+        double maxOrdinate = Math.max(Math.abs(lastX), Math.abs(lastY));
+        coords[0] = lastX;
+        coords[1] = lastY;
+        int count = 1;
+        for (int i = 1; i < size - 1; i++) {
+            double x = seq.getX(i);
+            double y = seq.getY(i);
+            if (Math.abs(x - lastX) > distance || Math.abs(y - lastY) > distance) {
+                coords[2 * count] = x;
+                coords[2 * count + 1] = y;
+                count++;
+                lastX = x;
+                lastY = y;
+                maxOrdinate = Math.max(maxOrdinate, Math.max(Math.abs(x), Math.abs(y)));
+            }
+        }
+        coords[2 * count] = seq.getX(size - 1);
+        coords[2 * count + 1] = seq.getY(size - 1);
+        count++;
+        maxOrdinate = Math.max(maxOrdinate,
+                Math.max(Math.abs(seq.getX(size - 1)), Math.abs(seq.getY(size - 1))));
+
+        if (count == size) {
+            return seq;
+        }
+        if (count < minPoints) {
+            // collapsed, keep evenly spaced vertices so that the geometry is still valid
+            count = minPoints;
+            for (int i = 0; i < minPoints; i++) {
+                int index = (int) ((long) i * (size - 1) / (minPoints - 1));
+                coords[2 * i] = seq.getX(index);
+                coords[2 * i + 1] = seq.getY(index);
+            }
+        }
+
+        if (Math.ulp((float) maxOrdinate) > distance) {
+            // float precision would introduce errors larger than the simplification distance
+            return new PackedCoordinateSequence.Double(Arrays.copyOf(coords, 2 * count), 2);
+        }
+        float[] floats = new float[2 * count];
+        for (int i = 0; i < floats.length; i++) {
+            floats[i] = (float) coords[i];
+        }
+        return new FloatPackedCoordinateSequence(2, floats);
+    }
+}
@@ -9,7 +9,9 @@
  */
 package org.locationtech.geogig.di;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevCommit;
@@ -18,10 +20,11 @@ import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.GraphDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.RawObject;
 import org.locationtech.geogig.storage.impl.ForwardingObjectDatabase;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.inject.Provider;
 import com.google.inject.util.Providers;
 
@@ -51,6 +54,8 @@ class ObjectDatabasePutInterceptor implements Decorator {
 
     private static class GraphUpdatingObjectDatabase extends ForwardingObjectDatabase {
 
+        private static final int GRAPH_BATCH_SIZE = 10_000;
+
         private Provider<GraphDatabase> graphDb;
 
         public GraphUpdatingObjectDatabase(Provider<GraphDatabase> graphDb,
@@ -78,33 +83,46 @@ class ObjectDatabasePutInterceptor implements Decorator {
 
         @Override
         public void putAll(Iterator<? extends RevObject> objects, BulkOpListener listener) {
-
-            // final List<RevCommit> addedCommits = Lists.newLinkedList();
-
+            // commits are added to the graph in batches as they go by
+            final List<RevCommit> commits = new ArrayList<>();
             final Iterator<? extends RevObject> collectingIterator = Iterators.transform(objects,
                     (obj) -> {
                         if (obj instanceof RevCommit) {
-                            final GraphDatabase graphDatabase = graphDb.get();
-                            RevCommit commit = (RevCommit) obj;
-                            ObjectId commitId = commit.getId();
-                            ImmutableList<ObjectId> parentIds = commit.getParentIds();
-                            graphDatabase.put(commitId, parentIds);
-
-                            // addedCommits.add((RevCommit) input);
+                            commits.add((RevCommit) obj);
+                            if (commits.size() == GRAPH_BATCH_SIZE) {
+                                putCommits(commits);
+                            }
                         }
                         return obj;
-
                     });
             super.putAll(collectingIterator, listener);
+            putCommits(commits);
+        }
 
-            // if (!addedCommits.isEmpty()) {
-            // GraphDatabase graphDatabase = graphDb.get();
-            // for (RevCommit commit : addedCommits) {
-            // ObjectId commitId = commit.getId();
-            // ImmutableList<ObjectId> parentIds = commit.getParentIds();
-            // graphDatabase.put(commitId, parentIds);
-            // }
-            // }
+        private void putCommits(List<RevCommit> commits) {
+            if (!commits.isEmpty()) {
+                graphDb.get().putAll(commits.iterator());
+                commits.clear();
+            }
+        }
+
+        @Override
+        public void putAllRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+            // the encoded commits can't be inspected, so they're read back once stored
+            final List<ObjectId> commits = new ArrayList<>();
+            final Iterator<RawObject> collectingIterator = Iterators.transform(objects, (obj) -> {
+                if (RevObject.TYPE.COMMIT.equals(obj.type())) {
+                    commits.add(obj.id());
+                }
+                return obj;
+            });
+            super.putAllRaw(collectingIterator, listener);
+
+            for (List<ObjectId> batch : Lists.partition(commits, GRAPH_BATCH_SIZE)) {
+                Iterator<RevCommit> stored = getAll(batch, BulkOpListener.NOOP_LISTENER,
+                        RevCommit.class);
+                graphDb.get().putAll(stored);
+            }
         }
 
     }
@@ -0,0 +1,76 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.hooks.builtin;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.hooks.CannotRunGeogigOperationException;
+import org.locationtech.geogig.hooks.CommandHook;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.plumbing.RefParse;
+import org.locationtech.geogig.plumbing.UpdateRef;
+import org.locationtech.geogig.plumbing.stats.BranchStatistics;
+import org.locationtech.geogig.plumbing.stats.UpdateBranchStatisticsOp;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+
+/**
+ * Hooks into {@link UpdateRef} to bring the {@link BranchStatistics statistics} of a branch up to
+ * date after the branch is updated, if it has any, or to remove them if the branch was deleted.
+ *
+ */
+public class UpdateBranchStatisticsHook implements CommandHook {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(UpdateBranchStatisticsHook.class);
+
+    @Override
+    public boolean appliesTo(Class<? extends AbstractGeoGigOp<?>> clazz) {
+        return UpdateRef.class.equals(clazz);
+    }
+
+    @Override
+    public <C extends AbstractGeoGigOp<?>> C pre(C command)
+            throws CannotRunGeogigOperationException {
+        return command;
+    }
+
+    @Override
+    public <T> T post(AbstractGeoGigOp<T> command, @Nullable Object retVal,
+            @Nullable RuntimeException exception) throws Exception {
+
+        @SuppressWarnings("unchecked")
+        final Optional<Ref> updatedRef = (Optional<Ref>) retVal;
+
+        if (exception == null && updatedRef != null && updatedRef.isPresent()) {
+            final String branch = updatedRef.get().getName();
+            if (branch.startsWith(Ref.HEADS_PREFIX)) {
+                final Context context = command.context();
+                try {
+                    if (!BranchStatistics.get(context.repository(), branch).isPresent()) {
+                        return (T) retVal;
+                    }
+                    // UpdateRef returns the old value of deleted refs
+                    if (context.command(RefParse.class).setName(branch).call().isPresent()) {
+                        context.command(UpdateBranchStatisticsOp.class).setBranch(branch).call();
+                    } else {
+                        BranchStatistics.remove(context.repository(), branch);
+                    }
+                } catch (Exception e) {
+                    LOGGER.warn("Error updating the statistics of {}", branch, e);
+                }
+            }
+        }
+        return (T) retVal;
+    }
+}
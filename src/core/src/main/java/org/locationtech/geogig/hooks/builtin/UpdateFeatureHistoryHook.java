@@ -0,0 +1,70 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.hooks.builtin;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.hooks.CannotRunGeogigOperationException;
+import org.locationtech.geogig.hooks.CommandHook;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.plumbing.UpdateRef;
+import org.locationtech.geogig.plumbing.history.FeatureHistory;
+import org.locationtech.geogig.plumbing.history.UpdateFeatureHistoryOp;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+
+/**
+ * Hooks into {@link UpdateRef} to add the commits of a branch to the {@link FeatureHistory feature
+ * histories} of the repository, if any, after the branch is updated.
+ *
+ */
+public class UpdateFeatureHistoryHook implements CommandHook {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpdateFeatureHistoryHook.class);
+
+    @Override
+    public boolean appliesTo(Class<? extends AbstractGeoGigOp<?>> clazz) {
+        return UpdateRef.class.equals(clazz);
+    }
+
+    @Override
+    public <C extends AbstractGeoGigOp<?>> C pre(C command)
+            throws CannotRunGeogigOperationException {
+        return command;
+    }
+
+    @Override
+    public <T> T post(AbstractGeoGigOp<T> command, @Nullable Object retVal,
+            @Nullable RuntimeException exception) throws Exception {
+
+        @SuppressWarnings("unchecked")
+        final Optional<Ref> updatedRef = (Optional<Ref>) retVal;
+
+        if (exception == null && updatedRef != null && updatedRef.isPresent()) {
+            final Ref ref = updatedRef.get();
+            if (ref.getName().startsWith(Ref.HEADS_PREFIX)) {
+                final Context context = command.context();
+                try {
+                    if (!FeatureHistory.layers(context.repository()).isEmpty()) {
+                        context.command(UpdateFeatureHistoryOp.class).setTip(ref.getObjectId())
+                                .call();
+                    }
+                } catch (Exception e) {
+                    LOGGER.warn("Error updating feature history after {} was updated",
+                            ref.getName(), e);
+                }
+            }
+        }
+        return (T) retVal;
+    }
+}
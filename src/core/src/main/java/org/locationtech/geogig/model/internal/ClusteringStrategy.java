@@ -292,6 +292,8 @@ public abstract class ClusteringStrategy {
 
                 promotions.asMap().forEach((bucketId, childIds) -> {
                     DAG bucketDAG = getOrCreateDAG(bucketId);
+                    // may be left over from shrinking this DAG, and miss later removals
+                    bucketDAG.reset(RevTree.EMPTY_TREE_ID);
                     dag.addBucket(bucketId);
                     for (NodeId childId : childIds) {
                         put(bucketDAG, childId, remove);
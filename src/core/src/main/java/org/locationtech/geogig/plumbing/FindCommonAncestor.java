@@ -18,6 +18,8 @@ import java.util.Set;
 
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.plumbing.graph.CommitGraph;
+import org.locationtech.geogig.plumbing.graph.MergeBaseCache;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.storage.GraphDatabase;
 import org.locationtech.geogig.storage.GraphDatabase.Direction;
@@ -29,6 +31,14 @@ import com.google.common.base.Preconditions;
 
 /**
  * Finds the common {@link RevCommit commit} ancestor of two commits.
+ * <p>
+ * If both commits are in the repository's {@link CommitGraph commit graph}, it's walked using the
+ * commits' generation numbers, otherwise the {@link GraphDatabase} is walked breadth first from
+ * both commits.
+ * <p>
+ * Found ancestors are kept in the repository's {@link MergeBaseCache}, so asking again for the
+ * same two commits doesn't walk their histories. Use {@link FindMergeBases} to find the common
+ * ancestors of a commit and many others at once.
  */
 public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
 
@@ -84,9 +94,17 @@ public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
             return Optional.of(left);
         }
 
+        Optional<ObjectId> ancestor = MergeBaseCache.get(repository(), left, right);
+        if (ancestor.isPresent()) {
+            return ancestor;
+        }
+
         getProgressListener().started();
 
-        Optional<ObjectId> ancestor = findLowestCommonAncestor(left, right);
+        ancestor = findLowestCommonAncestor(left, right);
+        if (ancestor.isPresent()) {
+            MergeBaseCache.put(repository(), left, right, ancestor.get());
+        }
 
         getProgressListener().complete();
 
@@ -102,6 +120,20 @@ public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
      *         {@link Optional#absent()} if a common ancestor could not be found.
      */
     public Optional<ObjectId> findLowestCommonAncestor(ObjectId leftId, ObjectId rightId) {
+        Optional<CommitGraph> commitGraph = CommitGraph.get(repository());
+        if (commitGraph.isPresent()) {
+            CommitGraph graph = commitGraph.get();
+            int leftIndex = graph.indexOf(leftId);
+            int rightIndex = graph.indexOf(rightId);
+            // commits newer than the commit graph are not in it
+            if (leftIndex > -1 && rightIndex > -1) {
+                List<Integer> bases = graph.mergeBases(leftIndex, rightIndex);
+                if (bases.isEmpty()) {
+                    return Optional.absent();
+                }
+                return Optional.of(graph.id(bases.get(0)));
+            }
+        }
         Set<GraphNode> leftSet = new HashSet<GraphNode>();
         Set<GraphNode> rightSet = new HashSet<GraphNode>();
 
@@ -0,0 +1,121 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.plumbing.graph.CommitGraph;
+import org.locationtech.geogig.plumbing.graph.MergeBaseCache;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.Repository;
+
+import com.google.common.base.Optional;
+
+/**
+ * Finds the common ancestor of a commit and each of a number of other commits, like the tips of
+ * all the branches, as {@link FindCommonAncestor} would with the commit on the left and each other
+ * commit on the right.
+ * <p>
+ * Cached ancestors are taken from the {@link MergeBaseCache}. The rest are found with a single
+ * walk of the commit's history if the commits are in the {@link CommitGraph commit graph}, and
+ * with {@link FindCommonAncestor} otherwise, and are added to the cache.
+ */
+public class FindMergeBases extends AbstractGeoGigOp<Map<ObjectId, Optional<ObjectId>>> {
+
+    private ObjectId commit;
+
+    private Set<ObjectId> others = new LinkedHashSet<>();
+
+    /**
+     * @param commit the commit to find the common ancestors with
+     */
+    public FindMergeBases setCommit(ObjectId commit) {
+        this.commit = commit;
+        return this;
+    }
+
+    /**
+     * @param other a commit to find the common ancestor of {@link #setCommit commit} with
+     */
+    public FindMergeBases addCommit(ObjectId other) {
+        this.others.add(other);
+        return this;
+    }
+
+    /**
+     * @param others the commits to find the common ancestor of {@link #setCommit commit} with
+     */
+    public FindMergeBases setCommits(Iterable<ObjectId> others) {
+        this.others.clear();
+        others.forEach((id) -> this.others.add(id));
+        return this;
+    }
+
+    /**
+     * @return the common ancestor of the commit with each of the other commits, in the order they
+     *         were given, or {@code absent} for the ones that have no common history with it
+     */
+    @Override
+    protected Map<ObjectId, Optional<ObjectId>> _call() {
+        checkArgument(commit != null, "commit not provided");
+        final Repository repository = repository();
+        final Map<ObjectId, Optional<ObjectId>> ancestors = new LinkedHashMap<>();
+        final List<ObjectId> pending = new ArrayList<>();
+        for (ObjectId other : others) {
+            Optional<ObjectId> cached = commit.equals(other) ? Optional.of(commit)
+                    : MergeBaseCache.get(repository, commit, other);
+            ancestors.put(other, cached);
+            if (!cached.isPresent()) {
+                pending.add(other);
+            }
+        }
+        if (pending.isEmpty()) {
+            return ancestors;
+        }
+
+        Optional<CommitGraph> commitGraph = CommitGraph.get(repository);
+        if (commitGraph.isPresent() && commitGraph.get().indexOf(commit) > -1) {
+            final CommitGraph graph = commitGraph.get();
+            // commits newer than the commit graph are not in it
+            final List<ObjectId> inGraph = new ArrayList<>();
+            final List<Integer> indexes = new ArrayList<>();
+            for (ObjectId other : pending) {
+                int index = graph.indexOf(other);
+                if (index > -1) {
+                    inGraph.add(other);
+                    indexes.add(index);
+                }
+            }
+            List<List<Integer>> bases = graph.mergeBases(graph.indexOf(commit), indexes);
+            for (int i = 0; i < inGraph.size(); i++) {
+                List<Integer> otherBases = bases.get(i);
+                if (!otherBases.isEmpty()) {
+                    ObjectId ancestor = graph.id(otherBases.get(0));
+                    MergeBaseCache.put(repository, commit, inGraph.get(i), ancestor);
+                    ancestors.put(inGraph.get(i), Optional.of(ancestor));
+                }
+            }
+            pending.removeAll(inGraph);
+        }
+        for (ObjectId other : pending) {
+            ancestors.put(other, command(FindCommonAncestor.class).setLeftId(commit)
+                    .setRightId(other).call());
+        }
+        return ancestors;
+    }
+}
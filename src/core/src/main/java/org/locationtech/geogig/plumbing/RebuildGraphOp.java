@@ -9,28 +9,39 @@
  */
 package org.locationtech.geogig.plumbing;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.Ref;
 import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.plumbing.graph.CommitGraph;
+import org.locationtech.geogig.plumbing.graph.MergeBaseCache;
+import org.locationtech.geogig.plumbing.graph.WriteCommitGraph;
 import org.locationtech.geogig.porcelain.BranchListOp;
-import org.locationtech.geogig.porcelain.LogOp;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.GraphDatabase;
+import org.locationtech.geogig.storage.ObjectDatabase;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 
 /**
  * Rebuilds the {@link GraphDatabase} and returns a list of {@link ObjectId}s that were found to be
- * missing or incomplete.
+ * missing or incomplete. The {@link CommitGraph commit graph} is updated as well, and the
+ * {@link MergeBaseCache cached merge bases} are discarded.
  */
 public class RebuildGraphOp extends AbstractGeoGigOp<ImmutableList<ObjectId>> {
 
+    private static final int BATCH_SIZE = 1000;
+
     /**
      * Executes the {@code RebuildGraphOp} operation.
      * 
@@ -42,22 +53,56 @@ public class RebuildGraphOp extends AbstractGeoGigOp<ImmutableList<ObjectId>> {
         Preconditions.checkState(!repository.isSparse(),
                 "Cannot rebuild the graph of a sparse repository.");
 
-        List<ObjectId> updated = new LinkedList<ObjectId>();
         ImmutableList<Ref> branches = command(BranchListOp.class).setLocal(true).setRemotes(true)
                 .call();
-
-        GraphDatabase graphDb = repository.graphDatabase();
-
+        Set<ObjectId> tips = new HashSet<>();
         for (Ref ref : branches) {
-            Iterator<RevCommit> commits = command(LogOp.class).setUntil(ref.getObjectId()).call();
-            while (commits.hasNext()) {
-                RevCommit next = commits.next();
-                if (graphDb.put(next.getId(), next.getParentIds())) {
-                    updated.add(next.getId());
-                }
+            if (!ref.getObjectId().isNull()) {
+                tips.add(ref.getObjectId());
             }
         }
 
+        GraphDatabase graphDb = repository.graphDatabase();
+        List<ObjectId> updated = graphDb.putAll(reachableCommits(tips));
+        command(WriteCommitGraph.class).setChangedPaths(true).call();
+        MergeBaseCache.clear(repository);
+
         return ImmutableList.copyOf(updated);
     }
+
+    /**
+     * @return the commits reachable from the tips, each one once, read from the object database in
+     *         batches
+     */
+    private Iterator<RevCommit> reachableCommits(Set<ObjectId> tips) {
+        final ObjectDatabase objects = objectDatabase();
+        final Set<ObjectId> visited = new HashSet<>(tips);
+        final List<ObjectId> pending = new ArrayList<>(tips);
+        return new AbstractIterator<RevCommit>() {
+
+            private Iterator<RevCommit> batch = Collections.emptyIterator();
+
+            @Override
+            protected RevCommit computeNext() {
+                while (!batch.hasNext()) {
+                    if (pending.isEmpty()) {
+                        return endOfData();
+                    }
+                    List<ObjectId> last = pending.subList(Math.max(0, pending.size() - BATCH_SIZE),
+                            pending.size());
+                    List<ObjectId> ids = new ArrayList<>(last);
+                    last.clear();
+                    // commits missing in shallow clones are skipped
+                    batch = objects.getAll(ids, BulkOpListener.NOOP_LISTENER, RevCommit.class);
+                }
+                RevCommit commit = batch.next();
+                for (ObjectId parent : commit.getParentIds()) {
+                    if (visited.add(parent)) {
+                        pending.add(parent);
+                    }
+                }
+                return commit;
+            }
+        };
+    }
 }
@@ -0,0 +1,205 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.impl.CanonicalTreeBuilder;
+import org.locationtech.geogig.model.impl.CommitBuilder;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.Platform;
+import org.locationtech.geogig.repository.ProgressListener;
+import org.locationtech.geogig.storage.impl.BufferedObjectStore;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+
+/**
+ * Replays a sequence of commits on top of another one, as rebase, cherry-pick and squash do,
+ * without going through the staging area.
+ * <p>
+ * A commit can be replayed this way if every direct child of its root tree that it changed is the
+ * same in the tree it's replayed onto as in its parent, in which case the replayed tree is built
+ * by taking those children from the commit as they are, reusing all their subtrees. The commits
+ * are replayed in order until the first one that can't, which needs a feature level merge and is
+ * left to the caller along with the commits that follow it. So is a commit whose changes are
+ * already in the tree it's replayed onto.
+ * <p>
+ * All the new trees and commits are written to the object database in a single batch at the end.
+ * No ref is updated, the caller is responsible for pointing its branch to the last replayed
+ * commit.
+ */
+public class ReplayCommitsOp extends AbstractGeoGigOp<List<RevCommit>> {
+
+    private ObjectId onto;
+
+    private Iterator<RevCommit> commits;
+
+    private boolean writeCommits = true;
+
+    /**
+     * @param onto the commit to replay the commits onto
+     */
+    public ReplayCommitsOp setOnto(ObjectId onto) {
+        this.onto = onto;
+        return this;
+    }
+
+    /**
+     * @param commits the commits to replay, oldest first. They're consumed until the first one
+     *        that can't be replayed, included.
+     */
+    public ReplayCommitsOp setCommits(Iterator<RevCommit> commits) {
+        this.commits = commits;
+        return this;
+    }
+
+    /**
+     * @param writeCommits whether to write the replayed commits, or only their trees, defaults to
+     *        {@code true}. The trees of commits that are not written can be committed some other
+     *        way, for example through {@link org.locationtech.geogig.porcelain.CommitOp} so that
+     *        its hooks run.
+     */
+    public ReplayCommitsOp setWriteCommits(boolean writeCommits) {
+        this.writeCommits = writeCommits;
+        return this;
+    }
+
+    /**
+     * @return the replayed commits, in the order they were given, possibly empty
+     */
+    @Override
+    protected List<RevCommit> _call() {
+        checkArgument(onto != null && !onto.isNull(), "onto commit not provided");
+        checkArgument(commits != null, "commits to replay not provided");
+
+        final Platform platform = platform();
+        final ProgressListener progress = getProgressListener();
+        final BufferedObjectStore store = new BufferedObjectStore(objectDatabase());
+        final List<RevCommit> replayed = new ArrayList<>();
+
+        ObjectId head = onto;
+        RevTree headTree = store.getTree(store.getCommit(onto).getTreeId());
+        while (commits.hasNext() && !progress.isCanceled()) {
+            final RevCommit commit = commits.next();
+            final Optional<RevTree> newTree = replay(store, headTree, commit);
+            if (!newTree.isPresent()) {
+                break;
+            }
+            long timestamp = platform.currentTimeMillis();
+            CommitBuilder builder = new CommitBuilder(commit);
+            builder.setParentIds(Collections.singletonList(head));
+            builder.setTreeId(newTree.get().getId());
+            builder.setCommitterTimestamp(timestamp);
+            builder.setCommitterTimeZoneOffset(platform.timeZoneOffset(timestamp));
+            RevCommit newCommit = builder.build();
+            if (writeCommits) {
+                store.put(newCommit);
+            }
+
+            replayed.add(newCommit);
+            head = newCommit.getId();
+            headTree = newTree.get();
+            progress.setProgress(replayed.size());
+        }
+        store.flush();
+        return replayed;
+    }
+
+    /**
+     * @return the result of applying the changes of {@code commit} to {@code base}, or
+     *         {@code absent} if they can't be applied without merging the trees they change
+     */
+    private Optional<RevTree> replay(BufferedObjectStore store, RevTree base, RevCommit commit) {
+        final List<ObjectId> parentIds = commit.getParentIds();
+        if (parentIds.size() > 1) {
+            return Optional.absent();
+        }
+        final RevTree parent;
+        if (parentIds.isEmpty()) {
+            parent = RevTree.EMPTY;
+        } else {
+            RevCommit parentCommit = store.getIfPresent(parentIds.get(0), RevCommit.class);
+            if (parentCommit == null) {
+                return Optional.absent();
+            }
+            parent = store.getTree(parentCommit.getTreeId());
+        }
+        final RevTree tree = store.getTree(commit.getTreeId());
+        if (parent.getId().equals(base.getId())) {
+            return Optional.of(tree);
+        }
+        if (!(base.buckets().isEmpty() && parent.buckets().isEmpty()
+                && tree.buckets().isEmpty())) {
+            return Optional.absent();
+        }
+
+        final Map<String, Node> baseChildren = children(base);
+        final Map<String, Node> parentChildren = children(parent);
+        final Map<String, Node> newChildren = children(tree);
+        final Set<String> names = new TreeSet<>(parentChildren.keySet());
+        names.addAll(newChildren.keySet());
+
+        CanonicalTreeBuilder builder = null;
+        for (String name : names) {
+            final Node parentNode = parentChildren.get(name);
+            final Node newNode = newChildren.get(name);
+            final Node baseNode = baseChildren.get(name);
+            if (same(parentNode, newNode) || same(baseNode, newNode)) {
+                continue;
+            }
+            if (!same(parentNode, baseNode)) {
+                return Optional.absent();
+            }
+            if (builder == null) {
+                builder = CanonicalTreeBuilder.create(store, base);
+            }
+            if (newNode == null) {
+                builder.remove(name);
+            } else {
+                builder.put(newNode);
+            }
+        }
+        if (builder == null) {
+            // either an empty commit, or one whose changes are already there, which is left to
+            // the caller to decide what to do with
+            return tree.getId().equals(parent.getId()) ? Optional.of(base) : Optional.absent();
+        }
+        return Optional.of(builder.build());
+    }
+
+    private static Map<String, Node> children(RevTree tree) {
+        Map<String, Node> children = new HashMap<>();
+        tree.trees().forEach((n) -> children.put(n.getName(), n));
+        tree.features().forEach((n) -> children.put(n.getName(), n));
+        return children;
+    }
+
+    private static boolean same(@Nullable Node n1, @Nullable Node n2) {
+        if (n1 == null || n2 == null) {
+            return n1 == n2;
+        }
+        return n1.equals(n2) && Objects.equal(n1.getMetadataId(), n2.getMetadataId());
+    }
+}
@@ -0,0 +1,135 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.graph;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.locationtech.geogig.model.NodeRef;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+
+/**
+ * A bloom filter of the paths a commit changed with respect to its first parent, which tells for
+ * sure when a commit didn't change a path, without reading its trees.
+ * <p>
+ * A path is considered changed if the object id of the tree or feature at that path differs, so
+ * the parent trees of every changed feature are changed paths too. Paths are added and queried
+ * without leading or trailing slashes.
+ */
+public final class ChangedPathsFilter {
+
+    /**
+     * The maximum number of paths a filter is built for, commits changing more paths get no
+     * filter, and have to be checked by reading their trees
+     */
+    public static final int MAX_PATHS = 512;
+
+    private static final int BITS_PER_PATH = 10;
+
+    private static final int NUM_HASHES = 7;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final byte[] bits;
+
+    private ChangedPathsFilter(byte[] bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * @param paths the changed paths, whose parent paths are added as well
+     */
+    public static ChangedPathsFilter of(Collection<String> paths) {
+        Set<String> changed = new HashSet<>();
+        for (String path : paths) {
+            String p = normalize(path);
+            if (!p.isEmpty()) {
+                changed.addAll(NodeRef.allPathsTo(p));
+            }
+        }
+        final int numBits = Math.max(8, changed.size() * BITS_PER_PATH);
+        ChangedPathsFilter filter = new ChangedPathsFilter(new byte[(numBits + 7) / 8]);
+        for (String path : changed) {
+            filter.add(path);
+        }
+        return filter;
+    }
+
+    /**
+     * @return a filter that might contain any path, for commits whose changes are not tracked,
+     *         like merge commits or commits changing more than {@link #MAX_PATHS} paths
+     */
+    public static ChangedPathsFilter all() {
+        return new ChangedPathsFilter(new byte[] { (byte) 0xFF });
+    }
+
+    /**
+     * @param bits the bits of a filter, as returned by {@link #toByteArray()}
+     */
+    public static ChangedPathsFilter wrap(byte[] bits) {
+        return new ChangedPathsFilter(bits);
+    }
+
+    private static String normalize(String path) {
+        int start = 0, end = path.length();
+        while (start < end && path.charAt(start) == NodeRef.PATH_SEPARATOR) {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == NodeRef.PATH_SEPARATOR) {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+
+    private void add(String path) {
+        for (int bit : bitIndexes(path)) {
+            bits[bit >>> 3] |= (1 << (bit & 7));
+        }
+    }
+
+    /**
+     * @return {@code false} if the path was definitely not changed, {@code true} if it might have
+     *         been
+     */
+    public boolean mightContain(String path) {
+        for (int bit : bitIndexes(normalize(path))) {
+            if ((bits[bit >>> 3] & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the bits a path sets, derived from the two halves of its 128 bits hash
+     */
+    private int[] bitIndexes(String path) {
+        final long numBits = bits.length * 8L;
+        byte[] hash = HASH.hashString(path, StandardCharsets.UTF_8).asBytes();
+        long h1 = Longs.fromBytes(hash[0], hash[1], hash[2], hash[3], hash[4], hash[5], hash[6],
+                hash[7]);
+        long h2 = Longs.fromBytes(hash[8], hash[9], hash[10], hash[11], hash[12], hash[13],
+                hash[14], hash[15]);
+        int[] indexes = new int[NUM_HASHES];
+        for (int i = 0; i < NUM_HASHES; i++) {
+            indexes[i] = (int) (((h1 + i * h2) & Long.MAX_VALUE) % numBits);
+        }
+        return indexes;
+    }
+
+    public byte[] toByteArray() {
+        return bits.clone();
+    }
+}
@@ -0,0 +1,761 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.graph;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.WeakHashMap;
+
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.BlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+
+/**
+ * A compact, read only table of the commits of a repository, their parents, commit timestamps,
+ * root trees, generation numbers, and {@link ChangedPathsFilter changed paths filters}, that
+ * allows walking the history without querying the
+ * {@link org.locationtech.geogig.storage.GraphDatabase graph database} nor reading the commits
+ * from the object database.
+ * <p>
+ * The generation number of a commit is one for root commits, and one more than the highest
+ * generation of its parents otherwise, so a commit can't be an ancestor of another with the same
+ * or a lower generation. Walks use it to stop exploring a branch of the history as soon as it
+ * can't lead to the commits they look for.
+ * <p>
+ * A commit graph is closed under the parent relationship: if it holds a commit, it holds all its
+ * ancestors. Commits created after it was {@link WriteCommitGraph written} are not in it, and
+ * callers should fall back to walking the graph database for them.
+ * <p>
+ * The table is a single buffer, suitable to be memory mapped, with the following layout, all
+ * integers big endian:
+ *
+ * <pre>
+ * <code>
+ * header:   magic, version, commit count, extra edge count, filters size  (5 ints)
+ * fanout:   number of commits whose id's first byte is <= i  (256 ints)
+ * commits:  in ascending id order, each one being
+ *           id (20 bytes), tree id (20 bytes), timestamp (long), generation (int),
+ *           first parent (int), second parent (int)
+ * extra:    the parents of octopus merges (ints)
+ * filters:  the end offset of each commit's changed paths filter (ints), followed by the filters
+ * </code>
+ * </pre>
+ *
+ * Parents are referred to by their position in the table. A missing parent is {@code NO_PARENT},
+ * and if a commit has more than two parents, its second parent has the {@code EXTRA_EDGES} bit set
+ * and points to the first of its remaining parents in the extra edges list, the last of which has
+ * the {@code EXTRA_EDGES} bit set. A commit whose changed paths were not computed has an empty
+ * filter.
+ */
+public final class CommitGraph {
+
+    /**
+     * The name of the blob the commit graph of a repository is stored at
+     */
+    public static final String BLOB_KEY = "commit-graph";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommitGraph.class);
+
+    private static final int MAGIC = 0x43475048;// CGPH
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 5 * Ints.BYTES;
+
+    private static final int FANOUT_SIZE = 256 * Ints.BYTES;
+
+    private static final int RECORD_SIZE = 2 * ObjectId.NUM_BYTES + Longs.BYTES + 3 * Ints.BYTES;
+
+    private static final int TREE_OFFSET = ObjectId.NUM_BYTES;
+
+    private static final int TIMESTAMP_OFFSET = 2 * ObjectId.NUM_BYTES;
+
+    private static final int GENERATION_OFFSET = TIMESTAMP_OFFSET + Longs.BYTES;
+
+    private static final int PARENT1_OFFSET = GENERATION_OFFSET + Ints.BYTES;
+
+    private static final int PARENT2_OFFSET = PARENT1_OFFSET + Ints.BYTES;
+
+    private static final int NO_PARENT = 0x70000000;
+
+    private static final int EXTRA_EDGES = 0x80000000;
+
+    private static final Map<BlobStore, CommitGraph> LOADED = new WeakHashMap<>();
+
+    private final ByteBuffer buffer;
+
+    private final int size;
+
+    private final int recordsOffset;
+
+    private final int extraOffset;
+
+    private final int filtersOffset;
+
+    private final int filtersSize;
+
+    private CommitGraph(ByteBuffer buffer) {
+        this.buffer = buffer;
+        checkArgument(buffer.getInt(0) == MAGIC, "Not a commit graph");
+        checkArgument(buffer.getInt(4) == VERSION, "Unsupported commit graph version: %s",
+                buffer.getInt(4));
+        this.size = buffer.getInt(8);
+        int extraCount = buffer.getInt(12);
+        this.filtersSize = buffer.getInt(16);
+        this.recordsOffset = HEADER_SIZE + FANOUT_SIZE;
+        this.extraOffset = recordsOffset + size * RECORD_SIZE;
+        this.filtersOffset = extraOffset + extraCount * Ints.BYTES;
+        checkArgument(buffer.limit() >= filtersOffset + size * Ints.BYTES + filtersSize,
+                "Truncated commit graph");
+    }
+
+    /**
+     * @param buffer a buffer holding a commit graph as returned by {@link #toByteArray()}
+     */
+    public static CommitGraph wrap(ByteBuffer buffer) {
+        return new CommitGraph(buffer.duplicate());
+    }
+
+    /**
+     * Returns the commit graph of the repository, loading it the first time it's requested.
+     *
+     * @return the commit graph, or {@code absent} if it has never been written
+     */
+    public static Optional<CommitGraph> get(Repository repository) {
+        BlobStore store = repository.blobStore();
+        synchronized (LOADED) {
+            CommitGraph graph = LOADED.get(store);
+            if (graph == null) {
+                Optional<byte[]> blob = store.getBlob(BLOB_KEY);
+                if (blob.isPresent()) {
+                    try {
+                        graph = wrap(ByteBuffer.wrap(blob.get()));
+                    } catch (IllegalArgumentException e) {
+                        LOGGER.info("Ignoring commit graph: {}", e.getMessage());
+                        return Optional.absent();
+                    }
+                    LOADED.put(store, graph);
+                }
+            }
+            return Optional.fromNullable(graph);
+        }
+    }
+
+    /**
+     * Stores the commit graph of the repository, replacing the existing one, if any
+     */
+    static void put(Repository repository, CommitGraph graph) {
+        BlobStore store = repository.blobStore();
+        synchronized (LOADED) {
+            store.putBlob(BLOB_KEY, graph.toByteArray());
+            LOADED.put(store, graph);
+        }
+    }
+
+    /**
+     * Removes the commit graph of the repository, if any
+     */
+    static void remove(Repository repository) {
+        BlobStore store = repository.blobStore();
+        synchronized (LOADED) {
+            store.removeBlob(BLOB_KEY);
+            LOADED.remove(store);
+        }
+    }
+
+    /**
+     * @return the number of commits in the graph
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the position of the commit in the graph, or {@code -1} if it's not in the graph
+     */
+    public int indexOf(ObjectId commitId) {
+        final int first = commitId.byteN(0);
+        int low = first == 0 ? 0 : buffer.getInt(HEADER_SIZE + (first - 1) * Ints.BYTES);
+        int high = buffer.getInt(HEADER_SIZE + first * Ints.BYTES) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(mid, commitId);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compare(int index, ObjectId id) {
+        final int offset = record(index);
+        for (int i = 0; i < ObjectId.NUM_BYTES; i++) {
+            int b = buffer.get(offset + i) & 0xFF;
+            int c = b - id.byteN(i);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private int record(int index) {
+        return recordsOffset + index * RECORD_SIZE;
+    }
+
+    private ObjectId objectId(int offset) {
+        byte[] raw = new byte[ObjectId.NUM_BYTES];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = buffer.get(offset + i);
+        }
+        return ObjectId.createNoClone(raw);
+    }
+
+    /**
+     * @return the id of the commit at the given position
+     */
+    public ObjectId id(int index) {
+        return objectId(record(index));
+    }
+
+    /**
+     * @return the id of the root tree of the commit at the given position
+     */
+    public ObjectId treeId(int index) {
+        return objectId(record(index) + TREE_OFFSET);
+    }
+
+    /**
+     * @return the committer timestamp of the commit at the given position
+     */
+    public long timestamp(int index) {
+        return buffer.getLong(record(index) + TIMESTAMP_OFFSET);
+    }
+
+    /**
+     * @return the generation number of the commit at the given position
+     */
+    public int generation(int index) {
+        return buffer.getInt(record(index) + GENERATION_OFFSET);
+    }
+
+    /**
+     * @return the positions of the parents of the commit at the given position
+     */
+    public int[] parents(int index) {
+        final int offset = record(index);
+        final int parent1 = buffer.getInt(offset + PARENT1_OFFSET);
+        if (parent1 == NO_PARENT) {
+            return new int[0];
+        }
+        final int parent2 = buffer.getInt(offset + PARENT2_OFFSET);
+        if (parent2 == NO_PARENT) {
+            return new int[] { parent1 };
+        }
+        if ((parent2 & EXTRA_EDGES) == 0) {
+            return new int[] { parent1, parent2 };
+        }
+        List<Integer> parents = new ArrayList<>(4);
+        parents.add(parent1);
+        int extra = parent2 & ~EXTRA_EDGES;
+        int edge;
+        do {
+            edge = buffer.getInt(extraOffset + (extra++) * Ints.BYTES);
+            parents.add(edge & ~EXTRA_EDGES);
+        } while ((edge & EXTRA_EDGES) == 0);
+        return Ints.toArray(parents);
+    }
+
+    /**
+     * @return the changed paths filter of the commit at the given position, or {@code absent} if
+     *         it was not computed
+     */
+    public Optional<ChangedPathsFilter> changedPaths(int index) {
+        final int start = index == 0 ? 0 : buffer.getInt(filtersOffset + (index - 1) * Ints.BYTES);
+        final int end = buffer.getInt(filtersOffset + index * Ints.BYTES);
+        if (start == end) {
+            return Optional.absent();
+        }
+        byte[] bits = new byte[end - start];
+        final int dataOffset = filtersOffset + size * Ints.BYTES;
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = buffer.get(dataOffset + start + i);
+        }
+        return Optional.of(ChangedPathsFilter.wrap(bits));
+    }
+
+    /**
+     * @return whether any commit has a {@link #changedPaths changed paths filter}
+     */
+    public boolean hasChangedPaths() {
+        return filtersSize > 0;
+    }
+
+    /**
+     * @return {@code false} if the commit at the given position certainly didn't change the path
+     *         with respect to its first parent, {@code true} if it might have, or if it's unknown
+     */
+    public boolean mightHaveChanged(int index, String path) {
+        Optional<ChangedPathsFilter> filter = changedPaths(index);
+        return !filter.isPresent() || filter.get().mightContain(path);
+    }
+
+    /**
+     * @return whether the commit at position {@code ancestor} is reachable from the one at
+     *         {@code descendant}, including being the same commit
+     */
+    public boolean isAncestor(final int ancestor, final int descendant) {
+        if (ancestor == descendant) {
+            return true;
+        }
+        final int minGeneration = generation(ancestor);
+        if (minGeneration >= generation(descendant)) {
+            return false;
+        }
+        BitSet visited = new BitSet();
+        List<Integer> stack = new ArrayList<>();
+        stack.add(descendant);
+        visited.set(descendant);
+        while (!stack.isEmpty()) {
+            int commit = stack.remove(stack.size() - 1);
+            for (int parent : parents(commit)) {
+                if (parent == ancestor) {
+                    return true;
+                }
+                // no ancestor of a commit with a lower or equal generation can be the one we want
+                if (!visited.get(parent) && generation(parent) > minGeneration) {
+                    visited.set(parent);
+                    stack.add(parent);
+                }
+            }
+        }
+        return false;
+    }
+
+    private final Comparator<Integer> newestFirst = new Comparator<Integer>() {
+        @Override
+        public int compare(Integer c1, Integer c2) {
+            int c = Ints.compare(generation(c2), generation(c1));
+            if (c == 0) {
+                c = Longs.compare(timestamp(c2), timestamp(c1));
+            }
+            return c == 0 ? Ints.compare(c1, c2) : c;
+        }
+    };
+
+    /**
+     * Finds the best common ancestors of two commits, that is, the common ancestors that are not
+     * ancestors of other common ancestors.
+     * <p>
+     * Both histories are walked at once, highest generation first, marking each commit with the
+     * sides it's reachable from. A commit reachable from both sides is a common ancestor, and its
+     * ancestors, which can't be best common ancestors, are marked as such, so that the walk stops
+     * as soon as all the commits left to visit are ancestors of a common ancestor.
+     *
+     * @return the positions of the best common ancestors, highest generation and most recent first,
+     *         or an empty list if the commits have no common history
+     */
+    public List<Integer> mergeBases(final int left, final int right) {
+        if (left == right) {
+            return Collections.singletonList(left);
+        }
+        final BitSet leftSide = new BitSet();
+        final BitSet rightSide = new BitSet();
+        final BitSet stale = new BitSet();
+        final List<Integer> candidates = new ArrayList<>();
+
+        PriorityQueue<Integer> queue = new PriorityQueue<>(16, newestFirst);
+        leftSide.set(left);
+        rightSide.set(right);
+        queue.add(left);
+        queue.add(right);
+
+        while (hasNonStale(queue, stale)) {
+            final int commit = queue.poll();
+            final boolean reachedLeft = leftSide.get(commit);
+            final boolean reachedRight = rightSide.get(commit);
+            final boolean isStale = stale.get(commit);
+            if (reachedLeft && reachedRight && !isStale) {
+                candidates.add(commit);
+                stale.set(commit);
+            }
+            final boolean propagateStale = stale.get(commit);
+            for (int parent : parents(commit)) {
+                boolean changed = false;
+                if (reachedLeft && !leftSide.get(parent)) {
+                    leftSide.set(parent);
+                    changed = true;
+                }
+                if (reachedRight && !rightSide.get(parent)) {
+                    rightSide.set(parent);
+                    changed = true;
+                }
+                if (propagateStale && !stale.get(parent)) {
+                    stale.set(parent);
+                    changed = true;
+                }
+                if (changed) {
+                    queue.add(parent);
+                }
+            }
+        }
+
+        return best(candidates);
+    }
+
+    /**
+     * Finds the best common ancestors of a commit and each of a number of other commits, as
+     * {@link #mergeBases(int, int)} does for each pair, sharing the walk of the commit's history.
+     * <p>
+     * The ancestors of {@code commit} are marked once, then the history of each other commit is
+     * walked highest generation first until every commit left to visit is an ancestor of a marked
+     * commit found on the way.
+     *
+     * @return the positions of the best common ancestors of {@code commit} and each of
+     *         {@code others}, in the same order as {@code others}
+     */
+    public List<List<Integer>> mergeBases(final int commit, final List<Integer> others) {
+        final BitSet ancestors = new BitSet();
+        List<Integer> stack = new ArrayList<>();
+        stack.add(commit);
+        ancestors.set(commit);
+        while (!stack.isEmpty()) {
+            for (int parent : parents(stack.remove(stack.size() - 1))) {
+                if (!ancestors.get(parent)) {
+                    ancestors.set(parent);
+                    stack.add(parent);
+                }
+            }
+        }
+
+        List<List<Integer>> result = new ArrayList<>(others.size());
+        for (int other : others) {
+            final BitSet visited = new BitSet();
+            final BitSet stale = new BitSet();
+            final List<Integer> candidates = new ArrayList<>();
+            PriorityQueue<Integer> queue = new PriorityQueue<>(16, newestFirst);
+            visited.set(other);
+            queue.add(other);
+            while (hasNonStale(queue, stale)) {
+                final int next = queue.poll();
+                if (ancestors.get(next) && !stale.get(next)) {
+                    candidates.add(next);
+                    stale.set(next);
+                }
+                final boolean propagateStale = stale.get(next);
+                for (int parent : parents(next)) {
+                    boolean changed = false;
+                    if (!visited.get(parent)) {
+                        visited.set(parent);
+                        changed = true;
+                    }
+                    if (propagateStale && !stale.get(parent)) {
+                        stale.set(parent);
+                        changed = true;
+                    }
+                    if (changed) {
+                        queue.add(parent);
+                    }
+                }
+            }
+            result.add(best(candidates));
+        }
+        return result;
+    }
+
+    /**
+     * @return the common ancestors that are not ancestors of other ones, highest generation and
+     *         most recent first
+     */
+    private List<Integer> best(List<Integer> candidates) {
+        // a candidate found before one of its descendants got to it is not a best common ancestor
+        List<Integer> bases = new ArrayList<>(candidates.size());
+        for (int candidate : candidates) {
+            boolean redundant = false;
+            for (int other : candidates) {
+                if (other != candidate && isAncestor(candidate, other)) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (!redundant) {
+                bases.add(candidate);
+            }
+        }
+        Collections.sort(bases, newestFirst);
+        return bases;
+    }
+
+    private static boolean hasNonStale(PriorityQueue<Integer> queue, BitSet stale) {
+        for (int commit : queue) {
+            if (!stale.get(commit)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the commit graph as a byte array, the format {@link #wrap} expects
+     */
+    public byte[] toByteArray() {
+        ByteBuffer copy = buffer.duplicate();
+        copy.clear();
+        byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Collects commits to build a {@link CommitGraph} with
+     */
+    public static class Builder {
+
+        private static class Entry {
+
+            final ObjectId treeId;
+
+            final long timestamp;
+
+            final List<ObjectId> parents;
+
+            int generation;
+
+            byte[] changedPaths;
+
+            Entry(ObjectId treeId, long timestamp, List<ObjectId> parents) {
+                this.treeId = treeId;
+                this.timestamp = timestamp;
+                this.parents = parents;
+            }
+        }
+
+        private final Map<ObjectId, Entry> entries = new HashMap<>();
+
+        /**
+         * @return whether the commit was already added
+         */
+        public boolean contains(ObjectId commitId) {
+            return entries.containsKey(commitId);
+        }
+
+        /**
+         * Adds a commit. Its parents shall be added too before {@link #build() building} the
+         * graph.
+         */
+        public Builder add(ObjectId commitId, ObjectId treeId, long timestamp,
+                List<ObjectId> parents) {
+            entries.put(commitId, new Entry(treeId, timestamp, new ArrayList<>(parents)));
+            return this;
+        }
+
+        /**
+         * Sets the {@link ChangedPathsFilter changed paths filter} of an added commit
+         */
+        public Builder setChangedPaths(ObjectId commitId, ChangedPathsFilter filter) {
+            Entry entry = entries.get(commitId);
+            checkArgument(entry != null, "Commit %s was not added", commitId);
+            entry.changedPaths = filter.toByteArray();
+            return this;
+        }
+
+        /**
+         * @return the added commits whose changed paths filter was not set
+         */
+        public List<ObjectId> withoutChangedPaths() {
+            List<ObjectId> ids = new ArrayList<>();
+            for (Map.Entry<ObjectId, Entry> e : entries.entrySet()) {
+                if (e.getValue().changedPaths == null) {
+                    ids.add(e.getKey());
+                }
+            }
+            return ids;
+        }
+
+        /**
+         * @return the root tree id of an added commit
+         */
+        public ObjectId treeId(ObjectId commitId) {
+            return entries.get(commitId).treeId;
+        }
+
+        /**
+         * @return the parents of an added commit
+         */
+        public List<ObjectId> parents(ObjectId commitId) {
+            return Collections.unmodifiableList(entries.get(commitId).parents);
+        }
+
+        /**
+         * Adds all the commits in an existing graph
+         */
+        public Builder addAll(CommitGraph graph) {
+            final int size = graph.size();
+            ObjectId[] ids = new ObjectId[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = graph.id(i);
+            }
+            for (int i = 0; i < size; i++) {
+                int[] parentIndexes = graph.parents(i);
+                List<ObjectId> parents = new ArrayList<>(parentIndexes.length);
+                for (int p : parentIndexes) {
+                    parents.add(ids[p]);
+                }
+                add(ids[i], graph.treeId(i), graph.timestamp(i), parents);
+                Optional<ChangedPathsFilter> filter = graph.changedPaths(i);
+                if (filter.isPresent()) {
+                    setChangedPaths(ids[i], filter.get());
+                }
+            }
+            return this;
+        }
+
+        public CommitGraph build() {
+            final List<ObjectId> ids = new ArrayList<>(entries.keySet());
+            Collections.sort(ids);
+            final Map<ObjectId, Integer> positions = new HashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                positions.put(ids.get(i), i);
+            }
+            computeGenerations(ids);
+
+            List<Integer> extraEdges = new ArrayList<>();
+            for (ObjectId id : ids) {
+                List<ObjectId> parents = entries.get(id).parents;
+                if (parents.size() > 2) {
+                    extraEdges.add(parents.size() - 1);
+                }
+            }
+            int extraCount = 0;
+            for (int count : extraEdges) {
+                extraCount += count;
+            }
+            int filtersSize = 0;
+            for (Entry entry : entries.values()) {
+                filtersSize += entry.changedPaths == null ? 0 : entry.changedPaths.length;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + FANOUT_SIZE
+                    + ids.size() * RECORD_SIZE + extraCount * Ints.BYTES
+                    + ids.size() * Ints.BYTES + filtersSize);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(ids.size()).putInt(extraCount)
+                    .putInt(filtersSize);
+            int[] fanout = new int[256];
+            for (ObjectId id : ids) {
+                fanout[id.byteN(0)]++;
+            }
+            int cumulative = 0;
+            for (int i = 0; i < 256; i++) {
+                cumulative += fanout[i];
+                buffer.putInt(cumulative);
+            }
+            final int extraStart = HEADER_SIZE + FANOUT_SIZE + ids.size() * RECORD_SIZE;
+            int extraIndex = 0;
+            for (ObjectId id : ids) {
+                Entry entry = entries.get(id);
+                buffer.put(id.getRawValue());
+                buffer.put(entry.treeId.getRawValue());
+                buffer.putLong(entry.timestamp);
+                buffer.putInt(entry.generation);
+                List<ObjectId> parents = entry.parents;
+                buffer.putInt(parents.isEmpty() ? NO_PARENT : position(positions, parents.get(0)));
+                if (parents.size() < 2) {
+                    buffer.putInt(NO_PARENT);
+                } else if (parents.size() == 2) {
+                    buffer.putInt(position(positions, parents.get(1)));
+                } else {
+                    buffer.putInt(EXTRA_EDGES | extraIndex);
+                    for (int p = 1; p < parents.size(); p++) {
+                        int edge = position(positions, parents.get(p));
+                        if (p == parents.size() - 1) {
+                            edge |= EXTRA_EDGES;
+                        }
+                        buffer.putInt(extraStart + (extraIndex++) * Ints.BYTES, edge);
+                    }
+                }
+            }
+            buffer.position(extraStart + extraCount * Ints.BYTES);
+            int filtersEnd = 0;
+            for (ObjectId id : ids) {
+                byte[] filter = entries.get(id).changedPaths;
+                filtersEnd += filter == null ? 0 : filter.length;
+                buffer.putInt(filtersEnd);
+            }
+            for (ObjectId id : ids) {
+                byte[] filter = entries.get(id).changedPaths;
+                if (filter != null) {
+                    buffer.put(filter);
+                }
+            }
+            buffer.clear();
+            return new CommitGraph(buffer);
+        }
+
+        private static int position(Map<ObjectId, Integer> positions, ObjectId parent) {
+            Integer position = positions.get(parent);
+            checkState(position != null, "Parent commit %s was not added", parent);
+            return position.intValue();
+        }
+
+        /**
+         * Computes the generation numbers with an iterative depth first traversal, so that long
+         * histories don't overflow the stack
+         */
+        private void computeGenerations(List<ObjectId> ids) {
+            List<ObjectId> stack = new ArrayList<>();
+            for (ObjectId id : ids) {
+                if (entries.get(id).generation > 0) {
+                    continue;
+                }
+                stack.add(id);
+                while (!stack.isEmpty()) {
+                    ObjectId top = stack.get(stack.size() - 1);
+                    Entry entry = entries.get(top);
+                    int generation = 0;
+                    boolean ready = true;
+                    for (ObjectId parent : entry.parents) {
+                        Entry parentEntry = entries.get(parent);
+                        checkState(parentEntry != null, "Parent commit %s was not added", parent);
+                        if (parentEntry.generation == 0) {
+                            ready = false;
+                            stack.add(parent);
+                        } else {
+                            generation = Math.max(generation, parentEntry.generation);
+                        }
+                    }
+                    if (ready) {
+                        entry.generation = generation + 1;
+                        stack.remove(stack.size() - 1);
+                    }
+                }
+            }
+        }
+    }
+}
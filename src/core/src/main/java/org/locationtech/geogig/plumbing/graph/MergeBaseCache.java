@@ -0,0 +1,178 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.BlobStore;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A persistent cache of the common ancestors found by
+ * {@link org.locationtech.geogig.plumbing.FindCommonAncestor}, keyed by the ordered pair of
+ * commits they were found for.
+ * <p>
+ * Since commits are immutable, so is the common ancestor of two of them, and entries only need to
+ * be invalidated when the commit graph is rebuilt (see {@link #clear(Repository)}). They are
+ * stored in the blob store of the {@link Repository}, which is the repository's own and not the
+ * one of a transaction, so entries found inside a transaction outlive it. The pairs are spread
+ * over {@value #SHARDS} blobs under {@code merge-base/<shard>} holding at most
+ * {@value #MAX_SHARD_ENTRIES} entries each, evicting the oldest ones, and the most recently used
+ * ones are also kept in memory. Only found ancestors are cached, as commits with no common
+ * ancestor in a shallow clone may get one when it's deepened.
+ */
+public final class MergeBaseCache {
+
+    private static final String BLOB_PREFIX = "merge-base/";
+
+    private static final int SHARDS = 256;
+
+    private static final int MAX_SHARD_ENTRIES = 64;
+
+    private static final int ENTRY_SIZE = 3 * ObjectId.NUM_BYTES;
+
+    private static final int MAX_IN_MEMORY = 10_000;
+
+    private static final Map<BlobStore, Cache<String, ObjectId>> LOADED = Collections
+            .synchronizedMap(new WeakHashMap<>());
+
+    private MergeBaseCache() {
+        //
+    }
+
+    /**
+     * @return the cached common ancestor of the two commits, or {@code absent} if it's not cached
+     */
+    public static Optional<ObjectId> get(Repository repository, ObjectId left, ObjectId right) {
+        final BlobStore store = repository.blobStore();
+        final String key = left + "/" + right;
+        final Cache<String, ObjectId> cache = cache(store);
+        ObjectId ancestor = cache.getIfPresent(key);
+        if (ancestor == null) {
+            byte[] entries = read(store, shard(left, right));
+            int index = indexOf(entries, left, right);
+            if (index >= 0) {
+                ancestor = ObjectId.createNoClone(Arrays.copyOfRange(entries,
+                        index + 2 * ObjectId.NUM_BYTES, index + ENTRY_SIZE));
+                cache.put(key, ancestor);
+            }
+        }
+        return Optional.fromNullable(ancestor);
+    }
+
+    /**
+     * Caches the common ancestor of two commits
+     */
+    public static void put(Repository repository, ObjectId left, ObjectId right,
+            ObjectId ancestor) {
+        final BlobStore store = repository.blobStore();
+        final String key = left + "/" + right;
+        final Cache<String, ObjectId> cache = cache(store);
+        if (ancestor.equals(cache.getIfPresent(key))) {
+            return;
+        }
+        final int shard = shard(left, right);
+        synchronized (cache) {
+            byte[] entries = read(store, shard);
+            int index = indexOf(entries, left, right);
+            if (index >= 0) {
+                // drop the previous entry, the new one is appended
+                byte[] remaining = new byte[entries.length - ENTRY_SIZE];
+                System.arraycopy(entries, 0, remaining, 0, index);
+                System.arraycopy(entries, index + ENTRY_SIZE, remaining, index,
+                        remaining.length - index);
+                entries = remaining;
+            }
+            final int kept = Math.min(entries.length, (MAX_SHARD_ENTRIES - 1) * ENTRY_SIZE);
+            byte[] updated = new byte[kept + ENTRY_SIZE];
+            System.arraycopy(entries, entries.length - kept, updated, 0, kept);
+            copy(left, updated, kept);
+            copy(right, updated, kept + ObjectId.NUM_BYTES);
+            copy(ancestor, updated, kept + 2 * ObjectId.NUM_BYTES);
+            store.putBlob(shardKey(shard), updated);
+        }
+        cache.put(key, ancestor);
+    }
+
+    /**
+     * Discards all the cached common ancestors of the repository
+     */
+    public static void clear(Repository repository) {
+        final BlobStore store = repository.blobStore();
+        final Cache<String, ObjectId> cache = cache(store);
+        synchronized (cache) {
+            for (int shard = 0; shard < SHARDS; shard++) {
+                store.removeBlob(shardKey(shard));
+            }
+            cache.invalidateAll();
+        }
+    }
+
+    private static int shard(ObjectId left, ObjectId right) {
+        return (left.byteN(0) ^ right.byteN(1)) & (SHARDS - 1);
+    }
+
+    private static String shardKey(int shard) {
+        return String.format("%s%02x", BLOB_PREFIX, shard);
+    }
+
+    private static byte[] read(BlobStore store, int shard) {
+        Optional<byte[]> blob = store.getBlob(shardKey(shard));
+        if (blob.isPresent() && blob.get().length % ENTRY_SIZE == 0) {
+            return blob.get();
+        }
+        return new byte[0];
+    }
+
+    private static int indexOf(byte[] entries, ObjectId left, ObjectId right) {
+        final byte[] pair = new byte[2 * ObjectId.NUM_BYTES];
+        copy(left, pair, 0);
+        copy(right, pair, ObjectId.NUM_BYTES);
+        // newest entries are last
+        for (int index = entries.length - ENTRY_SIZE; index >= 0; index -= ENTRY_SIZE) {
+            if (startsWith(entries, index, pair)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static void copy(ObjectId id, byte[] target, int offset) {
+        System.arraycopy(id.getRawValue(), 0, target, offset, ObjectId.NUM_BYTES);
+    }
+
+    private static boolean startsWith(byte[] entries, int offset, byte[] pair) {
+        for (int i = 0; i < pair.length; i++) {
+            if (entries[offset + i] != pair[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Cache<String, ObjectId> cache(BlobStore store) {
+        synchronized (LOADED) {
+            Cache<String, ObjectId> cache = LOADED.get(store);
+            if (cache == null) {
+                cache = CacheBuilder.newBuilder().maximumSize(MAX_IN_MEMORY).build();
+                LOADED.put(store, cache);
+            }
+            return cache;
+        }
+    }
+}
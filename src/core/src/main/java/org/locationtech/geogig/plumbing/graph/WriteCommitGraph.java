@@ -0,0 +1,167 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.graph;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.DiffTree;
+import org.locationtech.geogig.plumbing.ForEachRef;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.DiffEntry;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Stopwatch;
+
+/**
+ * Writes the {@link CommitGraph} of the repository, holding all the commits reachable from its
+ * refs, plus the ones in the existing commit graph, if any, which are not read again.
+ * <p>
+ * The commit graph is not written, and the existing one is removed, for shallow repositories and
+ * repositories missing any commit of their history, as their generation numbers would be wrong
+ * once the missing commits are fetched.
+ * <p>
+ * {@link ChangedPathsFilter Changed paths filters} are computed for all the commits lacking one if
+ * {@link #setChangedPaths(boolean) requested}, and for the new commits if the existing commit
+ * graph has them.
+ */
+public class WriteCommitGraph extends AbstractGeoGigOp<Optional<CommitGraph>> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteCommitGraph.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    private boolean changedPaths;
+
+    /**
+     * @param changedPaths whether to compute the changed paths filters of the commits lacking
+     *        one, defaults to {@code false}
+     */
+    public WriteCommitGraph setChangedPaths(boolean changedPaths) {
+        this.changedPaths = changedPaths;
+        return this;
+    }
+
+    /**
+     * @return the commit graph written, or {@code absent} if the repository's history is
+     *         incomplete
+     */
+    @Override
+    protected Optional<CommitGraph> _call() {
+        final Repository repository = repository();
+        if (repository.getDepth().isPresent()) {
+            CommitGraph.remove(repository);
+            return Optional.absent();
+        }
+        final Stopwatch sw = Stopwatch.createStarted();
+        final ObjectDatabase objects = repository.objectDatabase();
+        final CommitGraph.Builder builder = new CommitGraph.Builder();
+        final Optional<CommitGraph> previous = CommitGraph.get(repository);
+        if (previous.isPresent()) {
+            builder.addAll(previous.get());
+        }
+
+        final Set<ObjectId> tips = new HashSet<>();
+        for (Ref ref : command(ForEachRef.class).call()) {
+            tips.add(ref.getObjectId());
+        }
+        List<ObjectId> pending = new ArrayList<>();
+        for (ObjectId tip : tips) {
+            if (!tip.isNull() && !builder.contains(tip)) {
+                pending.add(tip);
+            }
+        }
+        int added = 0;
+        while (!pending.isEmpty()) {
+            final Set<ObjectId> batch = new HashSet<>();
+            while (!pending.isEmpty() && batch.size() < BATCH_SIZE) {
+                ObjectId id = pending.remove(pending.size() - 1);
+                if (!builder.contains(id)) {
+                    batch.add(id);
+                }
+            }
+            Iterator<RevCommit> commits = objects.getAll(batch, BulkOpListener.NOOP_LISTENER,
+                    RevCommit.class);
+            int found = 0;
+            while (commits.hasNext()) {
+                RevCommit commit = commits.next();
+                found++;
+                builder.add(commit.getId(), commit.getTreeId(),
+                        commit.getCommitter().getTimestamp(), commit.getParentIds());
+                for (ObjectId parent : commit.getParentIds()) {
+                    if (!builder.contains(parent) && !batch.contains(parent)) {
+                        pending.add(parent);
+                    }
+                }
+            }
+            if (found < batch.size()) {
+                // refs pointing to tags or missing commits are fine, missing ancestors are not
+                for (ObjectId id : batch) {
+                    if (!builder.contains(id) && !tips.contains(id)) {
+                        LOGGER.info("Commit {} is missing, commit graph not written", id);
+                        CommitGraph.remove(repository);
+                        return Optional.absent();
+                    }
+                }
+            }
+            added += found;
+        }
+        int filters = 0;
+        if (changedPaths || (previous.isPresent() && previous.get().hasChangedPaths())) {
+            for (ObjectId id : builder.withoutChangedPaths()) {
+                builder.setChangedPaths(id, changedPaths(builder, id));
+                filters++;
+            }
+        }
+        if (previous.isPresent() && added == 0 && filters == 0) {
+            return previous;
+        }
+        CommitGraph graph = builder.build();
+        CommitGraph.put(repository, graph);
+        LOGGER.debug("Commit graph written with {} commits, {} new, {} filters computed, in {}",
+                graph.size(), added, filters, sw.stop());
+        return Optional.of(graph);
+    }
+
+    private ChangedPathsFilter changedPaths(CommitGraph.Builder builder, ObjectId commitId) {
+        final List<ObjectId> parents = builder.parents(commitId);
+        if (parents.size() > 1) {
+            return ChangedPathsFilter.all();
+        }
+        final ObjectId oldTree = parents.isEmpty() ? RevTree.EMPTY_TREE_ID
+                : builder.treeId(parents.get(0));
+        final ObjectId newTree = builder.treeId(commitId);
+        List<String> paths = new ArrayList<>();
+        try (AutoCloseableIterator<DiffEntry> diffs = command(DiffTree.class).setOldTree(oldTree)
+                .setNewTree(newTree).setReportTrees(true)
+                .setMaxDiffs(Long.valueOf(ChangedPathsFilter.MAX_PATHS + 1)).call()) {
+            while (diffs.hasNext()) {
+                paths.add(diffs.next().path());
+            }
+        }
+        if (paths.size() > ChangedPathsFilter.MAX_PATHS) {
+            return ChangedPathsFilter.all();
+        }
+        return ChangedPathsFilter.of(paths);
+    }
+}
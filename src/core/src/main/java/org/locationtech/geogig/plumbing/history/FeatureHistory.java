@@ -0,0 +1,745 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.history;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.BlobStore;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+
+/**
+ * An index of the versions of each feature of a layer, telling which commits changed each feature
+ * and what it was changed to, so that per feature history queries like
+ * {@link org.locationtech.geogig.porcelain.BlameOp blame} or a path filtered
+ * {@link org.locationtech.geogig.porcelain.LogOp log} only visit the commits that changed the
+ * feature instead of diffing every commit of the layer's history.
+ * <p>
+ * A commit is said to change a feature if the feature differs from its first parent's version,
+ * or, for merge commits, from the version in every parent, so the versions a merge brings from
+ * the merged branches are attributed to the commits that created them.
+ * <p>
+ * Feature histories are optional, created on demand for a layer by
+ * {@link UpdateFeatureHistoryOp}, and stored in the repository's {@link BlobStore} as a list of
+ * segments, each update appending the commits and versions it adds as a new one, so updates don't
+ * rewrite the whole history. The versions of a segment are spread over {@value #SHARDS} blobs by
+ * feature id, and loaded lazily, so looking up the versions of a feature only reads the blob its
+ * id falls in from each segment, and updates only read the indexed commits. Segments are never
+ * modified once written, and the parts read are kept in memory for the next lookups.
+ *
+ * @see UpdateFeatureHistoryOp
+ */
+public final class FeatureHistory {
+
+    private static final String BLOB_PREFIX = "feature-history/";
+
+    /**
+     * The name of the blob holding the paths of the layers that have a feature history
+     */
+    public static final String LAYERS_BLOB_KEY = BLOB_PREFIX + "layers";
+
+    private static final int MAGIC = 0x46484958;// FHIX
+
+    private static final int SEGMENT_MAGIC = 0x46484953;// FHIS
+
+    private static final int VERSION = 2;
+
+    /**
+     * Number of blobs the versions of a segment are spread over, the head records which ones
+     * exist as a bit mask
+     */
+    private static final int SHARDS = Long.SIZE;
+
+    /**
+     * Maximum number of commits and versions of the loaded segments kept in memory per blob store
+     */
+    private static final long MAX_CACHED_ENTRIES = 1_000_000;
+
+    private static final Map<BlobStore, Cache<String, Object>> LOADED = Collections
+            .synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * A version of a feature, as set by a commit
+     */
+    public static final class Version {
+
+        private final ObjectId commitId;
+
+        private final ObjectId objectId;
+
+        private final ObjectId metadataId;
+
+        private final long timestamp;
+
+        public Version(ObjectId commitId, ObjectId objectId, ObjectId metadataId,
+                long timestamp) {
+            this.commitId = commitId;
+            this.objectId = objectId;
+            this.metadataId = metadataId;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * @return the id of the commit that changed the feature
+         */
+        public ObjectId getCommitId() {
+            return commitId;
+        }
+
+        /**
+         * @return the id of the feature as set by the commit, or {@link ObjectId#NULL} if the
+         *         commit deleted it
+         */
+        public ObjectId getObjectId() {
+            return objectId;
+        }
+
+        /**
+         * @return the id of the feature type of the feature, or {@link ObjectId#NULL} if the
+         *         commit deleted it
+         */
+        public ObjectId getMetadataId() {
+            return metadataId;
+        }
+
+        /**
+         * @return the committer timestamp of the commit
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public boolean isDelete() {
+            return objectId.isNull();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[commit: %s, feature: %s]", getClass().getSimpleName(),
+                    commitId, objectId);
+        }
+    }
+
+    /**
+     * Orders versions from the most recent to the oldest one
+     */
+    private static final Comparator<Version> MOST_RECENT_FIRST = (v1, v2) -> Longs
+            .compare(v2.timestamp, v1.timestamp);
+
+    private final String layer;
+
+    /**
+     * Tells the segments of this history apart from the ones of a removed history of the same
+     * layer in the loaded segments cache
+     */
+    private long generation;
+
+    /**
+     * Where the segments are read from, {@code null} until the history is stored
+     */
+    private @Nullable BlobStore store;
+
+    /**
+     * The stored segments, oldest first
+     */
+    private final List<SegmentRef> segments = new ArrayList<>();
+
+    private int nextSegment;
+
+    /**
+     * The commits and versions added since the history was loaded
+     */
+    private Segment pending = new Segment();
+
+    /**
+     * The versions of the features looked up so far, oldest first
+     */
+    private final Map<String, List<Version>> resolved = new HashMap<>();
+
+    FeatureHistory(String layer) {
+        checkNotNull(layer);
+        checkArgument(!layer.isEmpty(), "layer path can't be empty");
+        this.layer = layer;
+        this.generation = ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * @return the path of the layer whose features history this is
+     */
+    public String getLayer() {
+        return layer;
+    }
+
+    /**
+     * @return whether the changes of the given commit to the layer are in this history
+     */
+    public boolean isIndexed(ObjectId commitId) {
+        if (pending.commits.contains(commitId)) {
+            return true;
+        }
+        for (SegmentRef segment : segments) {
+            if (commits(segment).contains(commitId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of indexed commits
+     */
+    public int commitCount() {
+        int count = pending.commits.size();
+        for (SegmentRef segment : segments) {
+            count += commits(segment).size();
+        }
+        return count;
+    }
+
+    /**
+     * @param featureId the id of a feature of the layer
+     * @return the versions of the feature, most recent first
+     */
+    public List<Version> versions(String featureId) {
+        // versions are added oldest first, reverse them so the sort keeps the most recent one
+        // first when timestamps are equal
+        List<Version> sorted = new ArrayList<>(resolve(featureId));
+        Collections.reverse(sorted);
+        Collections.sort(sorted, MOST_RECENT_FIRST);
+        return sorted;
+    }
+
+    /**
+     * @return whether the feature has any version in this history
+     */
+    public boolean contains(String featureId) {
+        return !resolve(featureId).isEmpty();
+    }
+
+    /**
+     * @return whether the given indexed commit changed the feature
+     */
+    public boolean isChanged(String featureId, ObjectId commitId) {
+        for (Version v : resolve(featureId)) {
+            if (v.commitId.equals(commitId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void addCommit(ObjectId commitId) {
+        if (!isIndexed(commitId)) {
+            pending.commits.add(commitId);
+        }
+    }
+
+    void add(String featureId, Version version) {
+        pending.add(featureId, version);
+        resolved.remove(featureId);
+    }
+
+    /**
+     * @return the stored and pending versions of the feature, oldest first
+     */
+    private List<Version> resolve(String featureId) {
+        List<Version> list = resolved.get(featureId);
+        if (list == null) {
+            list = new ArrayList<>(2);
+            final int shard = shard(featureId);
+            for (SegmentRef segment : segments) {
+                if (segment.hasShard(shard)) {
+                    List<Version> stored = versions(segment, shard).get(featureId);
+                    if (stored != null) {
+                        list.addAll(stored);
+                    }
+                }
+            }
+            List<Version> added = pending.versions.get(featureId);
+            if (added != null) {
+                list.addAll(added);
+            }
+            resolved.put(featureId, list);
+        }
+        return list;
+    }
+
+    private Set<ObjectId> commits(SegmentRef segment) {
+        return load(commitsKey(layer, segment.id), Segment::readCommits);
+    }
+
+    private Map<String, List<Version>> versions(SegmentRef segment, int shard) {
+        return load(shardKey(layer, segment.id, shard), Segment::readVersions);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T load(String key, Function<byte[], T> decoder) {
+        checkState(store != null, "Feature history of %s is not stored", layer);
+        final Cache<String, Object> cache = cache(store);
+        final String cacheKey = key + "@" + generation;
+        Object loaded = cache.getIfPresent(cacheKey);
+        if (loaded == null) {
+            Optional<byte[]> blob = store.getBlob(key);
+            checkState(blob.isPresent(), "Blob %s of the feature history of %s is missing", key,
+                    layer);
+            loaded = decoder.apply(blob.get());
+            cache.put(cacheKey, loaded);
+        }
+        return (T) loaded;
+    }
+
+    private static Cache<String, Object> cache(BlobStore store) {
+        synchronized (LOADED) {
+            Cache<String, Object> cache = LOADED.get(store);
+            if (cache == null) {
+                cache = CacheBuilder.newBuilder().maximumWeight(MAX_CACHED_ENTRIES)
+                        .weigher(FeatureHistory::weight).build();
+                LOADED.put(store, cache);
+            }
+            return cache;
+        }
+    }
+
+    private static int weight(String key, Object loaded) {
+        if (loaded instanceof Set) {
+            return Math.max(1, ((Set<?>) loaded).size());
+        }
+        int weight = 1;
+        for (List<?> list : ((Map<?, ? extends List<?>>) loaded).values()) {
+            weight += list.size();
+        }
+        return weight;
+    }
+
+    /**
+     * @return the paths of the layers that have a feature history
+     */
+    public static List<String> layers(Repository repository) {
+        return layers(repository.blobStore());
+    }
+
+    static List<String> layers(BlobStore store) {
+        Optional<byte[]> blob = store.getBlob(LAYERS_BLOB_KEY);
+        if (!blob.isPresent()) {
+            return Collections.emptyList();
+        }
+        return Splitter.on('\n').omitEmptyStrings()
+                .splitToList(new String(blob.get(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the feature history of the given layer, or {@code absent} if it has none
+     */
+    public static Optional<FeatureHistory> get(Repository repository, String layer) {
+        return get(repository.blobStore(), layer);
+    }
+
+    /**
+     * Reads the head of the feature history of the layer, its segments are read as needed
+     */
+    static Optional<FeatureHistory> get(BlobStore store, String layer) {
+        Optional<byte[]> head = store.getBlob(headKey(layer));
+        if (!head.isPresent()) {
+            return Optional.absent();
+        }
+        FeatureHistory history = new FeatureHistory(layer);
+        history.readHead(head.get());
+        history.store = store;
+        return Optional.of(history);
+    }
+
+    /**
+     * @return the feature history of the layer the feature at the given path belongs to, or
+     *         {@code absent} if it has none
+     */
+    public static Optional<FeatureHistory> forFeature(Repository repository, String featurePath) {
+        String layer = NodeRef.parentPath(featurePath);
+        if (layer == null || layer.isEmpty()) {
+            return Optional.absent();
+        }
+        return get(repository, layer);
+    }
+
+    /**
+     * Stores the commits and versions added to the feature history of a layer since it was
+     * loaded, registering the layer if it had none
+     */
+    static void put(Repository repository, FeatureHistory history) {
+        put(repository.blobStore(), history);
+    }
+
+    /**
+     * Appends the pending changes as a new segment, then merges the last segments while the last
+     * one is at least as big as the one before it, so there are at most a logarithmic number of
+     * segments and each entry is rewritten a logarithmic number of times.
+     */
+    static void put(BlobStore store, FeatureHistory history) {
+        final String layer = history.layer;
+        final List<SegmentRef> obsolete = new ArrayList<>();
+        history.store = store;
+        if (!history.pending.isEmpty() || history.segments.isEmpty()) {
+            history.segments.add(history.pending.write(store, layer, history.nextSegment++));
+            history.pending = new Segment();
+        }
+        while (history.segments.size() > 1) {
+            final SegmentRef last = history.segments.get(history.segments.size() - 1);
+            final SegmentRef previous = history.segments.get(history.segments.size() - 2);
+            if (last.size < previous.size) {
+                break;
+            }
+            Segment merged = Segment.read(store, layer, previous);
+            merged.addAll(Segment.read(store, layer, last));
+            SegmentRef ref = merged.write(store, layer, history.nextSegment++);
+            history.segments.remove(history.segments.size() - 1);
+            history.segments.set(history.segments.size() - 1, ref);
+            obsolete.add(previous);
+            obsolete.add(last);
+        }
+        store.putBlob(headKey(layer), history.headToByteArray());
+        for (SegmentRef segment : obsolete) {
+            segment.remove(store, layer);
+        }
+        Set<String> layers = new LinkedHashSet<>(layers(store));
+        if (layers.add(layer)) {
+            store.putBlob(LAYERS_BLOB_KEY,
+                    Joiner.on('\n').join(layers).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Removes the feature history of a layer, if any
+     */
+    public static void remove(Repository repository, String layer) {
+        remove(repository.blobStore(), layer);
+    }
+
+    static void remove(BlobStore store, String layer) {
+        Optional<byte[]> head = store.getBlob(headKey(layer));
+        if (head.isPresent()) {
+            FeatureHistory history = new FeatureHistory(layer);
+            history.readHead(head.get());
+            store.removeBlob(headKey(layer));
+            for (SegmentRef segment : history.segments) {
+                segment.remove(store, layer);
+            }
+        }
+        Set<String> layers = new LinkedHashSet<>(layers(store));
+        if (layers.remove(layer)) {
+            store.putBlob(LAYERS_BLOB_KEY,
+                    Joiner.on('\n').join(layers).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return the number of segments the history is stored in
+     */
+    int segmentCount() {
+        return segments.size();
+    }
+
+    private static int shard(String featureId) {
+        return (featureId.hashCode() & Integer.MAX_VALUE) % SHARDS;
+    }
+
+    /**
+     * Layer paths may be nested, so blobs are keyed by a hash of the path instead of the path
+     * itself, which would make a blob key a prefix of another one
+     */
+    private static String layerKey(String layer) {
+        return BLOB_PREFIX + Hashing.sha1().hashString(layer, Charsets.UTF_8).toString();
+    }
+
+    private static String headKey(String layer) {
+        return layerKey(layer) + "/head";
+    }
+
+    private static String commitsKey(String layer, int segment) {
+        return layerKey(layer) + "/" + segment + ".commits";
+    }
+
+    private static String shardKey(String layer, int segment, int shard) {
+        return layerKey(layer) + "/" + segment + "." + shard;
+    }
+
+    private byte[] headToByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(layer);
+            out.writeLong(generation);
+            out.writeInt(nextSegment);
+            out.writeInt(segments.size());
+            for (SegmentRef segment : segments) {
+                out.writeInt(segment.id);
+                out.writeInt(segment.size);
+                out.writeLong(segment.shards);
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void readHead(byte[] blob) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(blob))) {
+            checkArgument(in.readInt() == MAGIC, "Not a feature history");
+            final int version = in.readInt();
+            checkArgument(version == VERSION, "Unsupported feature history version: %s",
+                    version);
+            checkArgument(layer.equals(in.readUTF()), "Not the feature history of %s", layer);
+            generation = in.readLong();
+            nextSegment = in.readInt();
+            final int segmentCount = in.readInt();
+            for (int i = 0; i < segmentCount; i++) {
+                segments.add(new SegmentRef(in.readInt(), in.readInt(), in.readLong()));
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * A stored segment, as listed in the head
+     */
+    private static final class SegmentRef {
+
+        final int id;
+
+        /**
+         * The number of commits and versions in the segment
+         */
+        final int size;
+
+        /**
+         * The shards the segment has versions in, as a bit mask
+         */
+        final long shards;
+
+        SegmentRef(int id, int size, long shards) {
+            this.id = id;
+            this.size = size;
+            this.shards = shards;
+        }
+
+        boolean hasShard(int shard) {
+            return (shards & (1L << shard)) != 0;
+        }
+
+        void remove(BlobStore store, String layer) {
+            store.removeBlob(commitsKey(layer, id));
+            for (int shard = 0; shard < SHARDS; shard++) {
+                if (hasShard(shard)) {
+                    store.removeBlob(shardKey(layer, id, shard));
+                }
+            }
+        }
+    }
+
+    /**
+     * The commits and versions added to a feature history by one or more updates, stored as a
+     * blob with the commits and a blob per shard with the versions of the features in it
+     */
+    private static final class Segment {
+
+        final Set<ObjectId> commits = new LinkedHashSet<>();
+
+        final Map<String, List<Version>> versions = new HashMap<>();
+
+        int versionCount;
+
+        boolean isEmpty() {
+            return commits.isEmpty() && versions.isEmpty();
+        }
+
+        int size() {
+            return commits.size() + versionCount;
+        }
+
+        void add(String featureId, Version version) {
+            List<Version> list = versions.get(featureId);
+            if (list == null) {
+                list = new ArrayList<>(2);
+                versions.put(featureId, list);
+            }
+            list.add(version);
+            versionCount++;
+        }
+
+        /**
+         * Adds the contents of a newer segment to this one
+         */
+        void addAll(Segment newer) {
+            commits.addAll(newer.commits);
+            newer.versions.forEach((featureId, list) -> list.forEach((v) -> add(featureId, v)));
+        }
+
+        SegmentRef write(BlobStore store, String layer, int id) {
+            final List<Map<String, List<Version>>> shards = new ArrayList<>(SHARDS);
+            for (int shard = 0; shard < SHARDS; shard++) {
+                shards.add(new HashMap<>());
+            }
+            versions.forEach((featureId, list) -> shards.get(shard(featureId)).put(featureId,
+                    list));
+            store.putBlob(commitsKey(layer, id), commitsToByteArray(layer));
+            long mask = 0L;
+            for (int shard = 0; shard < SHARDS; shard++) {
+                if (!shards.get(shard).isEmpty()) {
+                    store.putBlob(shardKey(layer, id, shard),
+                            versionsToByteArray(layer, shards.get(shard)));
+                    mask |= 1L << shard;
+                }
+            }
+            return new SegmentRef(id, size(), mask);
+        }
+
+        static Segment read(BlobStore store, String layer, SegmentRef ref) {
+            Segment segment = new Segment();
+            segment.commits.addAll(readCommits(read(store, layer, commitsKey(layer, ref.id))));
+            for (int shard = 0; shard < SHARDS; shard++) {
+                if (ref.hasShard(shard)) {
+                    readVersions(read(store, layer, shardKey(layer, ref.id, shard)))
+                            .forEach((featureId, list) -> list
+                                    .forEach((v) -> segment.add(featureId, v)));
+                }
+            }
+            return segment;
+        }
+
+        private static byte[] read(BlobStore store, String layer, String key) {
+            Optional<byte[]> blob = store.getBlob(key);
+            checkState(blob.isPresent(), "Blob %s of the feature history of %s is missing", key,
+                    layer);
+            return blob.get();
+        }
+
+        private byte[] commitsToByteArray(String layer) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                writeHeader(out, layer);
+                out.writeInt(commits.size());
+                for (ObjectId id : commits) {
+                    out.write(id.getRawValue());
+                }
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private static byte[] versionsToByteArray(String layer,
+                Map<String, List<Version>> versions) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                writeHeader(out, layer);
+                out.writeInt(versions.size());
+                for (Map.Entry<String, List<Version>> e : versions.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeInt(e.getValue().size());
+                    for (Version v : e.getValue()) {
+                        out.write(v.commitId.getRawValue());
+                        out.write(v.objectId.getRawValue());
+                        out.write(v.metadataId.getRawValue());
+                        out.writeLong(v.timestamp);
+                    }
+                }
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private static void writeHeader(DataOutputStream out, String layer) throws IOException {
+            out.writeInt(SEGMENT_MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(layer);
+        }
+
+        private static void readHeader(DataInputStream in) throws IOException {
+            checkArgument(in.readInt() == SEGMENT_MAGIC, "Not a feature history segment");
+            final int version = in.readInt();
+            checkArgument(version == VERSION, "Unsupported feature history version: %s",
+                    version);
+            in.readUTF();
+        }
+
+        static Set<ObjectId> readCommits(byte[] blob) {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(blob))) {
+                readHeader(in);
+                final int commitCount = in.readInt();
+                Set<ObjectId> commits = new LinkedHashSet<>();
+                for (int i = 0; i < commitCount; i++) {
+                    commits.add(readId(in));
+                }
+                return Collections.unmodifiableSet(commits);
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        static Map<String, List<Version>> readVersions(byte[] blob) {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(blob))) {
+                readHeader(in);
+                final int featureCount = in.readInt();
+                Map<String, List<Version>> versions = new HashMap<>();
+                for (int i = 0; i < featureCount; i++) {
+                    String featureId = in.readUTF();
+                    int versionCount = in.readInt();
+                    List<Version> list = new ArrayList<>(versionCount);
+                    for (int j = 0; j < versionCount; j++) {
+                        list.add(new Version(readId(in), readId(in), readId(in), in.readLong()));
+                    }
+                    versions.put(featureId, Collections.unmodifiableList(list));
+                }
+                return Collections.unmodifiableMap(versions);
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+    }
+
+    private static ObjectId readId(DataInputStream in) throws IOException {
+        byte[] raw = new byte[ObjectId.NUM_BYTES];
+        in.readFully(raw);
+        return ObjectId.createNoClone(raw);
+    }
+}
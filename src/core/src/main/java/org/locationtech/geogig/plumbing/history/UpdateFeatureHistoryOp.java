@@ -0,0 +1,253 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.history;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.DiffTree;
+import org.locationtech.geogig.plumbing.ForEachRef;
+import org.locationtech.geogig.plumbing.history.FeatureHistory.Version;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.DiffEntry;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.primitives.Longs;
+
+/**
+ * Updates the {@link FeatureHistory feature histories} of the repository with the changes of the
+ * commits they don't have yet.
+ * <p>
+ * By default, all the layers that have a feature history are updated with the commits reachable
+ * from any ref. A {@link #setLayer(String) layer} can be given to update or create the feature
+ * history of a single layer, and a {@link #setTip(ObjectId) tip} to only index the commits
+ * reachable from it, as the
+ * {@link org.locationtech.geogig.hooks.builtin.UpdateFeatureHistoryHook} does after each branch
+ * update.
+ */
+public class UpdateFeatureHistoryOp extends AbstractGeoGigOp<List<FeatureHistory>> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpdateFeatureHistoryOp.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    private String layer;
+
+    private ObjectId tip;
+
+    /**
+     * @param layer the path of the layer to update the feature history of, creating it if it
+     *        doesn't exist, defaults to all the layers that have a feature history
+     */
+    public UpdateFeatureHistoryOp setLayer(@Nullable String layer) {
+        this.layer = layer;
+        return this;
+    }
+
+    /**
+     * @param tip the commit whose history to index, defaults to all the refs
+     */
+    public UpdateFeatureHistoryOp setTip(@Nullable ObjectId tip) {
+        this.tip = tip;
+        return this;
+    }
+
+    /**
+     * @return the updated feature histories
+     */
+    @Override
+    protected List<FeatureHistory> _call() {
+        final Repository repository = repository();
+        final List<String> layers = layer == null ? FeatureHistory.layers(repository)
+                : Collections.singletonList(layer);
+        final List<FeatureHistory> updated = new ArrayList<>();
+        if (layers.isEmpty()) {
+            return updated;
+        }
+        final Set<ObjectId> tips = new HashSet<>();
+        if (tip == null) {
+            for (Ref ref : command(ForEachRef.class).call()) {
+                tips.add(ref.getObjectId());
+            }
+        } else {
+            tips.add(tip);
+        }
+        for (String layerPath : layers) {
+            Stopwatch sw = Stopwatch.createStarted();
+            FeatureHistory history = FeatureHistory.get(repository, layerPath)
+                    .or(new FeatureHistory(layerPath));
+            List<RevCommit> commits = newCommits(history, tips);
+            for (RevCommit commit : commits) {
+                index(history, commit);
+            }
+            if (!commits.isEmpty() || layer != null) {
+                FeatureHistory.put(repository, history);
+                LOGGER.debug("Feature history of {} updated with {} commits in {}", layerPath,
+                        commits.size(), sw.stop());
+            }
+            updated.add(history);
+        }
+        return updated;
+    }
+
+    /**
+     * @return the commits reachable from the tips that are not in the history
+     */
+    private List<RevCommit> newCommits(FeatureHistory history, Set<ObjectId> tips) {
+        final ObjectDatabase objects = objectDatabase();
+        final List<RevCommit> commits = new ArrayList<>();
+        final Set<ObjectId> visited = new HashSet<>();
+        List<ObjectId> pending = new ArrayList<>();
+        for (ObjectId id : tips) {
+            if (!id.isNull() && !history.isIndexed(id) && visited.add(id)) {
+                pending.add(id);
+            }
+        }
+        while (!pending.isEmpty()) {
+            final List<ObjectId> batch = new ArrayList<>();
+            while (!pending.isEmpty() && batch.size() < BATCH_SIZE) {
+                batch.add(pending.remove(pending.size() - 1));
+            }
+            // refs pointing to tags and commits missing in shallow clones are skipped
+            Iterator<RevCommit> it = objects.getAll(batch, BulkOpListener.NOOP_LISTENER,
+                    RevCommit.class);
+            while (it.hasNext()) {
+                RevCommit commit = it.next();
+                commits.add(commit);
+                for (ObjectId parent : commit.getParentIds()) {
+                    if (!history.isIndexed(parent) && visited.add(parent)) {
+                        pending.add(parent);
+                    }
+                }
+            }
+        }
+        return ancestorsFirst(commits);
+    }
+
+    /**
+     * Sorts the commits topologically, so every commit comes after its parents and versions with
+     * the same timestamp keep their commit order, taking the oldest commit first among the ones
+     * whose parents are all sorted
+     */
+    private static List<RevCommit> ancestorsFirst(List<RevCommit> commits) {
+        final Map<ObjectId, Integer> pendingParents = new HashMap<>();
+        final Map<ObjectId, List<RevCommit>> children = new HashMap<>();
+        for (RevCommit commit : commits) {
+            pendingParents.put(commit.getId(), 0);
+        }
+        final PriorityQueue<RevCommit> ready = new PriorityQueue<>(
+                Math.max(1, commits.size()), (c1, c2) -> Longs.compare(
+                        c1.getCommitter().getTimestamp(), c2.getCommitter().getTimestamp()));
+        for (RevCommit commit : commits) {
+            int count = 0;
+            for (ObjectId parent : new HashSet<>(commit.getParentIds())) {
+                if (pendingParents.containsKey(parent)) {
+                    count++;
+                    List<RevCommit> list = children.get(parent);
+                    if (list == null) {
+                        list = new ArrayList<>(2);
+                        children.put(parent, list);
+                    }
+                    list.add(commit);
+                }
+            }
+            pendingParents.put(commit.getId(), count);
+            if (count == 0) {
+                ready.add(commit);
+            }
+        }
+        final List<RevCommit> sorted = new ArrayList<>(commits.size());
+        while (!ready.isEmpty()) {
+            RevCommit commit = ready.poll();
+            sorted.add(commit);
+            List<RevCommit> list = children.get(commit.getId());
+            if (list != null) {
+                for (RevCommit child : list) {
+                    int count = pendingParents.get(child.getId()) - 1;
+                    pendingParents.put(child.getId(), count);
+                    if (count == 0) {
+                        ready.add(child);
+                    }
+                }
+            }
+        }
+        return sorted;
+    }
+
+    private void index(FeatureHistory history, RevCommit commit) {
+        final String layerPath = history.getLayer();
+        final List<ObjectId> parents = commit.getParentIds();
+        Map<String, DiffEntry> changes = changes(layerPath,
+                parentTree(parents.isEmpty() ? null : parents.get(0)), commit.getTreeId());
+        for (int i = 1; i < parents.size() && !changes.isEmpty(); i++) {
+            changes.keySet().retainAll(
+                    changes(layerPath, parentTree(parents.get(i)), commit.getTreeId()).keySet());
+        }
+        final long timestamp = commit.getCommitter().getTimestamp();
+        for (Map.Entry<String, DiffEntry> e : changes.entrySet()) {
+            DiffEntry diff = e.getValue();
+            Version version = diff.isDelete()
+                    ? new Version(commit.getId(), ObjectId.NULL, ObjectId.NULL, timestamp)
+                    : new Version(commit.getId(), diff.newObjectId(), diff.newMetadataId(),
+                            timestamp);
+            history.add(e.getKey(), version);
+        }
+        history.addCommit(commit.getId());
+    }
+
+    private ObjectId parentTree(@Nullable ObjectId parentId) {
+        RevCommit parent = parentId == null ? null
+                : objectDatabase().getIfPresent(parentId, RevCommit.class);
+        // the bottom of a shallow clone is treated as a root commit
+        return parent == null ? RevTree.EMPTY_TREE_ID : parent.getTreeId();
+    }
+
+    /**
+     * @return the changed features of the layer, keyed by feature id
+     */
+    private Map<String, DiffEntry> changes(String layerPath, ObjectId oldTree,
+            ObjectId newTree) {
+        Map<String, DiffEntry> changes = new HashMap<>();
+        if (oldTree.equals(newTree)) {
+            return changes;
+        }
+        try (AutoCloseableIterator<DiffEntry> diffs = command(DiffTree.class).setOldTree(oldTree)
+                .setNewTree(newTree).setPathFilter(layerPath).setReportTrees(false).call()) {
+            while (diffs.hasNext()) {
+                DiffEntry diff = diffs.next();
+                TYPE type = diff.isDelete() ? diff.oldObjectType() : diff.newObjectType();
+                if (TYPE.FEATURE.equals(type)) {
+                    changes.put(NodeRef.removeParent(layerPath, diff.path()), diff);
+                }
+            }
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,268 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.DiffTree;
+import org.locationtech.geogig.plumbing.LsTreeOp;
+import org.locationtech.geogig.plumbing.LsTreeOp.Strategy;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.DiffEntry;
+import org.locationtech.geogig.repository.IndexInfo;
+import org.locationtech.geogig.repository.IndexInfo.IndexType;
+import org.locationtech.geogig.repository.impl.RepositoryFilter;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.geogig.storage.IndexDatabase;
+import org.locationtech.geogig.storage.ObjectStore;
+
+import com.google.common.base.Optional;
+
+/**
+ * Computes the differences between two root trees that are relevant to a sparse clone whose
+ * {@link RepositoryFilter} has {@link RepositoryFilter#BBOX_FILTER bounds filters}.
+ * <p>
+ * Each changed feature tree is compared on its own, pruning the buckets and features whose bounds
+ * don't intersect the tree's bounds filter before they're read. When both versions of a feature
+ * tree have a {@link IndexType#QUADTREE quad-tree} index, the indexed trees are compared instead
+ * of the canonical ones: their buckets are spatially partitioned, so everything outside the bounds
+ * filter is skipped at the top levels of the trees, instead of having to reach the features.
+ * <p>
+ * The returned entries are the ones {@link DiffTree} reports with {@link DiffTree#setReportTrees
+ * reportTrees} set, for each changed tree the tree entry followed by the entries of its changed
+ * features, though only the features with a bounds filter intersecting either version are
+ * reported. Further filtering, for example by {@link RepositoryFilter#filterObject feature
+ * attributes}, is up to the caller.
+ */
+public class BoundsFilteredDiffOp extends AbstractGeoGigOp<AutoCloseableIterator<DiffEntry>> {
+
+    private ObjectId oldTreeId;
+
+    private ObjectId newTreeId;
+
+    private RepositoryFilter filter;
+
+    /**
+     * @param oldTreeId the id of the "old" root tree, {@link RevTree#EMPTY_TREE_ID} to report all
+     *        the contents of the new tree as additions
+     * @return {@code this}
+     */
+    public BoundsFilteredDiffOp setOldTree(ObjectId oldTreeId) {
+        this.oldTreeId = oldTreeId;
+        return this;
+    }
+
+    /**
+     * @param newTreeId the id of the "new" root tree
+     * @return {@code this}
+     */
+    public BoundsFilteredDiffOp setNewTree(ObjectId newTreeId) {
+        this.newTreeId = newTreeId;
+        return this;
+    }
+
+    /**
+     * @param filter the filter whose {@link RepositoryFilter#getBoundsFilter bounds filters} to
+     *        apply, feature trees without one are compared in full
+     * @return {@code this}
+     */
+    public BoundsFilteredDiffOp setFilter(RepositoryFilter filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    @Override
+    protected AutoCloseableIterator<DiffEntry> _call() {
+        checkArgument(oldTreeId != null, "old tree not specified");
+        checkArgument(newTreeId != null, "new tree not specified");
+        checkArgument(filter != null, "filter not specified");
+
+        final Map<String, NodeRef> oldTrees = trees(oldTreeId);
+        final Map<String, NodeRef> newTrees = trees(newTreeId);
+
+        final List<DiffEntry> changedTrees = new ArrayList<>();
+        for (String path : unionKeys(oldTrees, newTrees)) {
+            NodeRef left = oldTrees.get(path);
+            NodeRef right = newTrees.get(path);
+            if (left != null && right != null && left.getObjectId().equals(right.getObjectId())
+                    && left.getMetadataId().equals(right.getMetadataId())) {
+                continue;
+            }
+            changedTrees.add(new DiffEntry(left, right));
+        }
+        return new ChangedTreesIterator(changedTrees.iterator());
+    }
+
+    private static TreeSet<String> unionKeys(Map<String, NodeRef> m1, Map<String, NodeRef> m2) {
+        TreeSet<String> keys = new TreeSet<>(m1.keySet());
+        keys.addAll(m2.keySet());
+        return keys;
+    }
+
+    private Map<String, NodeRef> trees(ObjectId rootTreeId) {
+        Map<String, NodeRef> trees = new TreeMap<>();
+        if (RevTree.EMPTY_TREE_ID.equals(rootTreeId) || rootTreeId.isNull()) {
+            return trees;
+        }
+        Iterator<NodeRef> refs = command(LsTreeOp.class).setReference(rootTreeId.toString())
+                .setStrategy(Strategy.DEPTHFIRST_ONLY_TREES).call();
+        while (refs.hasNext()) {
+            NodeRef ref = refs.next();
+            trees.put(ref.path(), ref);
+        }
+        return trees;
+    }
+
+    /**
+     * Compares the direct feature children of both versions of a feature tree
+     */
+    private AutoCloseableIterator<DiffEntry> diffFeatures(@Nullable NodeRef left,
+            @Nullable NodeRef right) {
+
+        final NodeRef treeRef = right == null ? left : right;
+        final String path = treeRef.path();
+        final ObjectId metadataId = treeRef.getMetadataId();
+        final ObjectId leftTree = left == null ? RevTree.EMPTY_TREE_ID : left.getObjectId();
+        final ObjectId rightTree = right == null ? RevTree.EMPTY_TREE_ID : right.getObjectId();
+        final Optional<ReferencedEnvelope> bounds = filter.getBoundsFilter(path);
+
+        ObjectId leftDiffTree = leftTree;
+        ObjectId rightDiffTree = rightTree;
+        ObjectStore source = objectDatabase();
+        boolean indexed = false;
+        if (bounds.isPresent()) {
+            Optional<IndexInfo> index = quadTreeIndex(path);
+            if (index.isPresent()) {
+                Optional<ObjectId> leftIndexTree = indexedTree(index.get(), leftTree);
+                Optional<ObjectId> rightIndexTree = indexedTree(index.get(), rightTree);
+                if (leftIndexTree.isPresent() && rightIndexTree.isPresent()) {
+                    leftDiffTree = leftIndexTree.get();
+                    rightDiffTree = rightIndexTree.get();
+                    source = indexDatabase();
+                    indexed = true;
+                }
+            }
+        }
+
+        AutoCloseableIterator<DiffEntry> features = command(DiffTree.class)//
+                .setOldTree(leftDiffTree)//
+                .setNewTree(rightDiffTree)//
+                .setLeftSource(source)//
+                .setRightSource(source)//
+                .setDefaultMetadataId(metadataId)//
+                .setBoundsFilter(bounds.orNull())//
+                .setRecursive(false)//
+                .setReportTrees(false)//
+                .call();
+
+        final boolean fromIndex = indexed;
+        return AutoCloseableIterator.transform(features,
+                (e) -> new DiffEntry(reparent(e.getOldObject(), path, fromIndex),
+                        reparent(e.getNewObject(), path, fromIndex)));
+    }
+
+    /**
+     * Sets the feature tree path as the parent path of the feature nodes, which are reported
+     * relative to the compared tree, and strips any attribute the index materialized in the nodes
+     * so that they match the canonical ones
+     */
+    private static @Nullable NodeRef reparent(@Nullable NodeRef ref, String path,
+            boolean fromIndex) {
+        if (ref == null) {
+            return null;
+        }
+        Node node = ref.getNode();
+        if (fromIndex) {
+            node = Node.create(node.getName(), node.getObjectId(),
+                    node.getMetadataId().or(ObjectId.NULL), node.getType(),
+                    node.bounds().orNull());
+        }
+        return new NodeRef(node, path, ref.getMetadataId());
+    }
+
+    private Optional<IndexInfo> quadTreeIndex(String treeName) {
+        for (IndexInfo info : indexDatabase().getIndexInfos(treeName)) {
+            if (IndexType.QUADTREE.equals(info.getIndexType())) {
+                return Optional.of(info);
+            }
+        }
+        return Optional.absent();
+    }
+
+    private Optional<ObjectId> indexedTree(IndexInfo index, ObjectId canonicalTreeId) {
+        if (RevTree.EMPTY_TREE_ID.equals(canonicalTreeId)) {
+            return Optional.of(RevTree.EMPTY_TREE_ID);
+        }
+        IndexDatabase indexDatabase = indexDatabase();
+        return indexDatabase.resolveIndexedTree(index, canonicalTreeId);
+    }
+
+    /**
+     * Reports each changed tree followed by its changed features, comparing the features of a tree
+     * only once its entry has been consumed
+     */
+    private class ChangedTreesIterator implements AutoCloseableIterator<DiffEntry> {
+
+        private final Iterator<DiffEntry> trees;
+
+        private AutoCloseableIterator<DiffEntry> features = AutoCloseableIterator.emptyIterator();
+
+        private DiffEntry next;
+
+        ChangedTreesIterator(Iterator<DiffEntry> trees) {
+            this.trees = trees;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                if (features.hasNext()) {
+                    next = features.next();
+                } else if (trees.hasNext()) {
+                    features.close();
+                    DiffEntry tree = trees.next();
+                    features = diffFeatures(tree.getOldObject(), tree.getNewObject());
+                    next = tree;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public DiffEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            DiffEntry current = Objects.requireNonNull(next);
+            next = null;
+            return current;
+        }
+
+        @Override
+        public void close() {
+            features.close();
+        }
+    }
+}
@@ -42,6 +42,12 @@ import com.vividsolutions.jts.geom.Envelope;
  */
 public class BuildIndexOp extends AbstractGeoGigOp<RevTree> {
 
+    /**
+     * Maximum number of changed nodes to update the LOD trees with, beyond which they're built
+     * from scratch, as are they when more than {@code 1/16th} of the index tree changed
+     */
+    private static final int MAX_LOD_CHANGES = 100_000;
+
     private IndexInfo index;
 
     private RevTree oldCanonicalTree;
@@ -99,7 +105,18 @@ public class BuildIndexOp extends AbstractGeoGigOp<RevTree> {
         checkState(newCanonicalTree != null, "new canonical version of the tree was not provided");
         checkState(revFeatureTypeId != null, "FeatureType id was not provided");
 
-        final RevTreeBuilder builder = resolveTreeBuilder();
+        final RevTree oldIndexTree = resolveOldIndexTree();
+        final ChangeRecordingTreeBuilder lodChanges;
+        final RevTreeBuilder builder;
+        if (IndexInfo.getLODLevels(index) > 0 && !oldIndexTree.isEmpty()) {
+            final int maxChanges = (int) Math.min(MAX_LOD_CHANGES, oldIndexTree.size() / 16);
+            lodChanges = new ChangeRecordingTreeBuilder(resolveTreeBuilder(oldIndexTree),
+                    maxChanges);
+            builder = lodChanges;
+        } else {
+            lodChanges = null;
+            builder = resolveTreeBuilder(oldIndexTree);
+        }
         final PreOrderDiffWalk.Consumer builderConsumer = resolveConsumer(builder);
 
         boolean preserveIterationOrder = true;
@@ -140,6 +157,16 @@ public class BuildIndexOp extends AbstractGeoGigOp<RevTree> {
         progress.setDescription(String.format("QuadTree created. Size: %,d, time: %s",
                 indexTree.size(), revTreeTime));
 
+        if (IndexInfo.getLODLevels(index) > 0) {
+            BuildLODTreesOp buildLODTrees = command(BuildLODTreesOp.class)//
+                    .setIndex(index)//
+                    .setIndexTree(indexTree);
+            if (lodChanges != null && !lodChanges.isOverflown()) {
+                buildLODTrees.setChanges(oldIndexTree, lodChanges.removed(), lodChanges.added());
+            }
+            buildLODTrees.setProgressListener(progress).call();
+        }
+
         progress.complete();
 
         return indexTree;
@@ -189,7 +216,7 @@ public class BuildIndexOp extends AbstractGeoGigOp<RevTree> {
                 featureType.getName().getLocalPart(), attName));
     }
 
-    private RevTreeBuilder resolveTreeBuilder() {
+    private RevTree resolveOldIndexTree() {
         final IndexDatabase indexDatabase = indexDatabase();
 
         final RevTree oldIndexTree;
@@ -204,7 +231,10 @@ public class BuildIndexOp extends AbstractGeoGigOp<RevTree> {
                 oldIndexTree = RevTree.EMPTY;
             }
         }
+        return oldIndexTree;
+    }
 
+    private RevTreeBuilder resolveTreeBuilder(final RevTree oldIndexTree) {
         final IndexType indexType = index.getIndexType();
         final RevTreeBuilder builder;
         switch (indexType) {
@@ -0,0 +1,506 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.impl.QuadTreeBuilder;
+import org.locationtech.geogig.plumbing.diff.DepthTreeIterator;
+import org.locationtech.geogig.plumbing.diff.DepthTreeIterator.Strategy;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.IndexInfo;
+import org.locationtech.geogig.repository.IndexInfo.IndexType;
+import org.locationtech.geogig.repository.ProgressListener;
+import org.locationtech.geogig.storage.IndexDatabase;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Builds the level-of-detail (LOD) trees for a quad-tree index tree.
+ * <p>
+ * The LOD tree at level {@code L} divides the index max bounds in square cells whose side is
+ * {@code 1/2^L} of the largest side of the max bounds, starting at their lower-left corner. For
+ * each cell, it contains a single representative node out of all the nodes whose bounds fit in a
+ * cell and touch it (the one with the largest bounds), plus all the nodes whose bounds are larger
+ * than a cell. A node touching several cells competes in each of them, so every cell touched by
+ * some node is touched by its representative too. Hence, when each cell falls within a single
+ * pixel, rendering the LOD tree produces the same image than rendering the full index tree, while
+ * touching a bounded number of nodes.
+ * <p>
+ * Cells are square because pixels are, and laid out on the power-of-two grid of the index max
+ * bounds, which default to the bounds of the CRS, as are the tile grids anchored at those bounds
+ * (e.g. the usual {@code EPSG:4326} and {@code EPSG:3857} tile matrix sets, the former being two
+ * tiles wide at its top level). So the cells of a level finer than a pixel of such tiles line up
+ * with its pixels.
+ * <p>
+ * All the levels are built out of a single traversal of the index tree. When the index tree was
+ * updated from a previous one whose LOD trees exist, and the changes are given through
+ * {@link #setChanges}, the previous LOD trees are updated instead, looking up only the cells
+ * touched by the changed nodes.
+ * <p>
+ * LOD trees are stored in the {@link IndexDatabase} as quad-trees themselves, and are associated
+ * to the index tree they were built from through
+ * {@link IndexDatabase#addIndexedTree(IndexInfo, ObjectId, ObjectId)} using the
+ * {@link #lodTreeKey(ObjectId, int) LOD key} of the index tree id and level, so they're versioned
+ * alongside the index trees and dropped together with the index.
+ *
+ * @see IndexInfo#MD_QUAD_LOD_LEVELS
+ */
+public class BuildLODTreesOp extends AbstractGeoGigOp<List<ObjectId>> {
+
+    /**
+     * Maximum number of LOD levels, at which a cell is {@code 1/65536th} of the index max bounds
+     * largest side
+     */
+    public static final int MAX_LOD_LEVELS = 16;
+
+    private IndexInfo index;
+
+    private RevTree indexTree;
+
+    private @Nullable RevTree oldIndexTree;
+
+    private @Nullable Collection<Node> removed;
+
+    private @Nullable Collection<Node> added;
+
+    /**
+     * @param index the {@link IndexInfo} of the index tree
+     * @return {@code this}
+     */
+    public BuildLODTreesOp setIndex(IndexInfo index) {
+        this.index = index;
+        return this;
+    }
+
+    /**
+     * @param indexTree the index tree to build the LOD trees for
+     * @return {@code this}
+     */
+    public BuildLODTreesOp setIndexTree(RevTree indexTree) {
+        this.indexTree = indexTree;
+        return this;
+    }
+
+    /**
+     * Provides the changes the index tree was built with out of a previous index tree, in order to
+     * update the LOD trees of the previous index tree instead of building them from scratch.
+     *
+     * @param oldIndexTree the index tree the one to build the LOD trees for was updated from
+     * @param removed the nodes removed from {@code oldIndexTree}, including the old version of
+     *        the updated ones
+     * @param added the nodes added to {@code oldIndexTree}, including the new version of the
+     *        updated ones
+     * @return {@code this}
+     */
+    public BuildLODTreesOp setChanges(RevTree oldIndexTree, Collection<Node> removed,
+            Collection<Node> added) {
+        this.oldIndexTree = oldIndexTree;
+        this.removed = removed;
+        this.added = added;
+        return this;
+    }
+
+    /**
+     * Performs the operation.
+     *
+     * @return the list of LOD tree ids, where the list index is the LOD level
+     */
+    @Override
+    protected List<ObjectId> _call() {
+        checkState(index != null, "index was not provided");
+        checkState(indexTree != null, "index tree was not provided");
+        checkArgument(IndexType.QUADTREE.equals(index.getIndexType()),
+                "LOD trees are only supported by quad-tree indexes");
+
+        final int levels = IndexInfo.getLODLevels(index);
+        checkArgument(levels >= 0 && levels <= MAX_LOD_LEVELS,
+                "LOD levels shall be between 0 and %s: %s", MAX_LOD_LEVELS, levels);
+
+        final Envelope maxBounds = (Envelope) index.getMetadata()
+                .get(IndexInfo.MD_QUAD_MAX_BOUNDS);
+        checkState(null != maxBounds, "QuadTree index does not contain max bounds");
+
+        final IndexDatabase indexDatabase = indexDatabase();
+        final ProgressListener progress = getProgressListener();
+        final Stopwatch sw = Stopwatch.createStarted();
+
+        final List<RevTree> oldLodTrees = resolveOldLODTrees(levels);
+        final List<Level> lods = new ArrayList<>(levels);
+        for (int level = 0; level < levels; level++) {
+            RevTree original = oldLodTrees == null ? RevTree.EMPTY : oldLodTrees.get(level);
+            lods.add(new Level(level, maxBounds,
+                    QuadTreeBuilder.create(indexDatabase, indexDatabase, original, maxBounds)));
+        }
+
+        if (oldLodTrees == null) {
+            progress.setDescription(String.format("Building %d LOD trees...", levels));
+            build(lods);
+        } else {
+            progress.setDescription(String.format("Updating %d LOD trees...", levels));
+            // a node both removed and added is unchanged, or was an intermediate version
+            final Set<Node> removedNodes = new HashSet<>(removed);
+            final Set<Node> addedNodes = new HashSet<>(added);
+            final Set<Node> both = ImmutableSet.copyOf(Sets.intersection(removedNodes, addedNodes));
+            removedNodes.removeAll(both);
+            addedNodes.removeAll(both);
+            for (int level = 0; level < levels && !progress.isCanceled(); level++) {
+                update(lods.get(level), oldLodTrees.get(level), removedNodes, addedNodes);
+            }
+        }
+        if (progress.isCanceled()) {
+            return new ArrayList<>();
+        }
+
+        List<ObjectId> lodTrees = new ArrayList<>(levels);
+        for (Level lod : lods) {
+            RevTree lodTree = lod.builder.build();
+            indexDatabase.addIndexedTree(index, lodTreeKey(indexTree.getId(), lod.level),
+                    lodTree.getId());
+            lodTrees.add(lodTree.getId());
+        }
+        progress.setDescription(String.format("%d LOD trees built in %s", levels, sw.stop()));
+        return lodTrees;
+    }
+
+    /**
+     * @return the LOD trees of the old index tree if the changes to update them were provided and
+     *         all of them exist, {@code null} otherwise
+     */
+    private @Nullable List<RevTree> resolveOldLODTrees(final int levels) {
+        if (oldIndexTree == null || removed == null || added == null) {
+            return null;
+        }
+        final IndexDatabase indexDatabase = indexDatabase();
+        List<RevTree> oldLodTrees = new ArrayList<>(levels);
+        for (int level = 0; level < levels; level++) {
+            Optional<ObjectId> lodTreeId = indexDatabase.resolveIndexedTree(index,
+                    lodTreeKey(oldIndexTree.getId(), level));
+            if (!lodTreeId.isPresent()) {
+                return null;
+            }
+            oldLodTrees.add(indexDatabase.getTree(lodTreeId.get()));
+        }
+        return oldLodTrees;
+    }
+
+    /**
+     * Builds all the LOD levels from scratch in a single traversal of the index tree
+     */
+    private void build(final List<Level> lods) {
+        final List<Map<Long, Node>> representatives = new ArrayList<>(lods.size());
+        for (int i = 0; i < lods.size(); i++) {
+            representatives.add(new HashMap<>());
+        }
+        final ProgressListener progress = getProgressListener();
+        Iterator<NodeRef> nodes = new DepthTreeIterator(NodeRef.ROOT, ObjectId.NULL, indexTree,
+                indexDatabase(), Strategy.RECURSIVE_FEATURES_ONLY);
+
+        while (nodes.hasNext() && !progress.isCanceled()) {
+            final Node node = nodes.next().getNode();
+            final Envelope bounds = bounds(node);
+            if (bounds == null) {
+                continue;
+            }
+            for (Level lod : lods) {
+                if (!lod.fits(bounds)) {
+                    // larger than a cell, would be visible on its own
+                    lod.builder.put(node);
+                    continue;
+                }
+                Map<Long, Node> levelRepresentatives = representatives.get(lod.level);
+                for (Long cell : lod.cells(bounds)) {
+                    Node current = levelRepresentatives.get(cell);
+                    if (current == null || isBetterRepresentative(node, current)) {
+                        levelRepresentatives.put(cell, node);
+                    }
+                }
+            }
+        }
+
+        for (Level lod : lods) {
+            for (Node node : new HashSet<>(representatives.get(lod.level).values())) {
+                lod.builder.put(node);
+            }
+        }
+    }
+
+    /**
+     * Updates a LOD level with the changes to the index tree, looking for the new representatives
+     * only of the cells touched by the changed nodes
+     */
+    private void update(final Level lod, final RevTree oldLodTree,
+            final Set<Node> removedNodes, final Set<Node> addedNodes) {
+        final List<Node> toRemove = new ArrayList<>();
+        final List<Node> toPut = new ArrayList<>();
+
+        // best added node per touched cell, or null for cells only touched by removed nodes
+        final Map<Long, Node> changedCells = new HashMap<>();
+        for (Node node : removedNodes) {
+            Envelope bounds = bounds(node);
+            if (bounds == null) {
+                continue;
+            }
+            if (lod.fits(bounds)) {
+                for (Long cell : lod.cells(bounds)) {
+                    if (!changedCells.containsKey(cell)) {
+                        changedCells.put(cell, null);
+                    }
+                }
+            } else {
+                toRemove.add(node);
+            }
+        }
+        for (Node node : addedNodes) {
+            Envelope bounds = bounds(node);
+            if (bounds == null) {
+                continue;
+            }
+            if (lod.fits(bounds)) {
+                for (Long cell : lod.cells(bounds)) {
+                    Node current = changedCells.get(cell);
+                    if (current == null || isBetterRepresentative(node, current)) {
+                        changedCells.put(cell, node);
+                    }
+                }
+            } else {
+                toPut.add(node);
+            }
+        }
+
+        final Map<Long, Node> oldRepresentatives = new HashMap<>();
+        final Map<Long, Node> newRepresentatives = new HashMap<>();
+        for (Map.Entry<Long, Node> e : changedCells.entrySet()) {
+            final Long cell = e.getKey();
+            final Node oldRepresentative = representative(oldLodTree, lod, cell);
+            Node newRepresentative;
+            if (oldRepresentative == null || removedNodes.contains(oldRepresentative)) {
+                newRepresentative = representative(indexTree, lod, cell);
+            } else {
+                newRepresentative = oldRepresentative;
+                Node bestAdded = e.getValue();
+                if (bestAdded != null && isBetterRepresentative(bestAdded, oldRepresentative)) {
+                    newRepresentative = bestAdded;
+                }
+            }
+            if (oldRepresentative != null) {
+                oldRepresentatives.put(cell, oldRepresentative);
+            }
+            if (newRepresentative != null) {
+                newRepresentatives.put(cell, newRepresentative);
+            }
+        }
+
+        final Set<Long> changed = changedCells.keySet();
+        final Set<Node> kept = new HashSet<>(newRepresentatives.values());
+        for (Node oldRepresentative : new HashSet<>(oldRepresentatives.values())) {
+            if (!kept.contains(oldRepresentative)
+                    && !isRepresentative(oldRepresentative, lod, oldLodTree, changed)) {
+                toRemove.add(oldRepresentative);
+            }
+        }
+        for (Node newRepresentative : kept) {
+            if (!oldRepresentatives.containsValue(newRepresentative)) {
+                toPut.add(newRepresentative);
+            }
+        }
+
+        // removals go first, the new version of an updated node may be put back
+        for (Node node : toRemove) {
+            lod.builder.remove(node);
+        }
+        for (Node node : toPut) {
+            lod.builder.put(node);
+        }
+    }
+
+    /**
+     * @return whether the node is still the representative of any of the unchanged cells it
+     *         touches
+     */
+    private boolean isRepresentative(Node node, Level lod, RevTree oldLodTree,
+            Set<Long> changedCells) {
+        for (Long cell : lod.cells(bounds(node))) {
+            if (!changedCells.contains(cell)
+                    && node.equals(representative(oldLodTree, lod, cell))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the best representative for the cell out of the nodes in the given tree that fit in a
+     *         cell and touch it, or {@code null} if there are none
+     */
+    private @Nullable Node representative(RevTree tree, Level lod, Long cell) {
+        final Envelope cellBounds = lod.cellBounds(cell);
+        DepthTreeIterator nodes = new DepthTreeIterator(NodeRef.ROOT, ObjectId.NULL, tree,
+                indexDatabase(), Strategy.RECURSIVE_FEATURES_ONLY);
+        nodes.setBoundsFilter((b) -> b.intersects(cellBounds));
+
+        Node best = null;
+        while (nodes.hasNext()) {
+            final Node node = nodes.next().getNode();
+            final Envelope bounds = bounds(node);
+            if (bounds != null && lod.fits(bounds) && lod.cells(bounds).contains(cell)
+                    && (best == null || isBetterRepresentative(node, best))) {
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    private static @Nullable Envelope bounds(Node node) {
+        final Optional<Envelope> bounds = node.bounds();
+        if (!bounds.isPresent() || bounds.get().isNull()) {
+            return null;
+        }
+        return bounds.get();
+    }
+
+    /**
+     * A node is a better representative for a cell than another if its bounds are larger, using
+     * the node names to break ties in order to produce the same LOD trees on every run
+     */
+    private static boolean isBetterRepresentative(Node candidate, Node current) {
+        Envelope c = candidate.bounds().get();
+        Envelope o = current.bounds().get();
+        double candidateSize = c.getWidth() + c.getHeight();
+        double currentSize = o.getWidth() + o.getHeight();
+        if (candidateSize == currentSize) {
+            return candidate.getName().compareTo(current.getName()) < 0;
+        }
+        return candidateSize > currentSize;
+    }
+
+    /**
+     * @return the side of the square cells at the given LOD level
+     */
+    private static double cellSize(Envelope maxBounds, int level) {
+        return Math.max(maxBounds.getWidth(), maxBounds.getHeight()) / (1 << level);
+    }
+
+    /**
+     * @return the bounds of the lower-left cell at the given LOD level
+     */
+    public static Envelope cellBounds(Envelope maxBounds, int level) {
+        final double size = cellSize(maxBounds, level);
+        final double minx = maxBounds.getMinX();
+        final double miny = maxBounds.getMinY();
+        return new Envelope(minx, minx + size, miny, miny + size);
+    }
+
+    /**
+     * @return the key under which the LOD tree for the given index tree and level is registered
+     *         in the {@link IndexDatabase}
+     */
+    public static ObjectId lodTreeKey(ObjectId indexTreeId, int level) {
+        final Hasher hasher = ObjectId.HASH_FUNCTION.newHasher();
+        hasher.putBytes("LOD".getBytes(Charsets.UTF_8));
+        hasher.putBytes(indexTreeId.getRawValue());
+        hasher.putInt(level);
+        return ObjectId.createNoClone(hasher.hash().asBytes());
+    }
+
+    /**
+     * The cell grid of a LOD level and the builder of its tree. Cells are half-open, so a point on
+     * the edge shared by two cells belongs to the right or upper one, and the cells on the border
+     * of the grid also take the nodes outside the max bounds.
+     */
+    private static class Level {
+
+        final int level;
+
+        final QuadTreeBuilder builder;
+
+        private final double minx, miny, size;
+
+        private final int cols, rows;
+
+        Level(int level, Envelope maxBounds, QuadTreeBuilder builder) {
+            this.level = level;
+            this.builder = builder;
+            this.minx = maxBounds.getMinX();
+            this.miny = maxBounds.getMinY();
+            this.size = cellSize(maxBounds, level);
+            this.cols = numCells(maxBounds.getWidth(), size, level);
+            this.rows = numCells(maxBounds.getHeight(), size, level);
+        }
+
+        private static int numCells(double extent, double size, int level) {
+            int numCells = (int) Math.ceil(extent / size);
+            return Math.max(1, Math.min(1 << level, numCells));
+        }
+
+        /**
+         * @return whether the bounds are not larger than a cell, hence touch at most two cells
+         *         per axis
+         */
+        boolean fits(Envelope bounds) {
+            return bounds.getWidth() <= size && bounds.getHeight() <= size;
+        }
+
+        /**
+         * @return the keys of the cells the bounds touch
+         */
+        List<Long> cells(Envelope bounds) {
+            final int mincol = index(bounds.getMinX(), minx, cols);
+            final int maxcol = index(bounds.getMaxX(), minx, cols);
+            final int minrow = index(bounds.getMinY(), miny, rows);
+            final int maxrow = index(bounds.getMaxY(), miny, rows);
+            List<Long> cells = new ArrayList<>(4);
+            for (int row = minrow; row <= maxrow; row++) {
+                for (int col = mincol; col <= maxcol; col++) {
+                    cells.add(Long.valueOf(((long) row << 32) | col));
+                }
+            }
+            return cells;
+        }
+
+        Envelope cellBounds(Long cell) {
+            final int row = (int) (cell.longValue() >>> 32);
+            final int col = (int) cell.longValue();
+            final double x = minx + col * size;
+            final double y = miny + row * size;
+            return new Envelope(//
+                    col == 0 ? Double.NEGATIVE_INFINITY : x, //
+                    col == cols - 1 ? Double.POSITIVE_INFINITY : x + size, //
+                    row == 0 ? Double.NEGATIVE_INFINITY : y, //
+                    row == rows - 1 ? Double.POSITIVE_INFINITY : y + size);
+        }
+
+        private int index(double ordinate, double min, int numCells) {
+            int index = (int) Math.floor((ordinate - min) / size);
+            return Math.max(0, Math.min(numCells - 1, index));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.impl.RevTreeBuilder;
+
+/**
+ * A {@link RevTreeBuilder} decorator that records the nodes removed from and added to the
+ * decorated builder, as long as they don't exceed a given number of changes.
+ * <p>
+ * Used by {@link BuildIndexOp} to update the LOD trees with the same changes applied to the index
+ * tree, see {@link BuildLODTreesOp#setChanges}.
+ */
+class ChangeRecordingTreeBuilder implements RevTreeBuilder {
+
+    private final RevTreeBuilder builder;
+
+    private final int maxChanges;
+
+    private List<Node> removed = new ArrayList<>();
+
+    private List<Node> added = new ArrayList<>();
+
+    ChangeRecordingTreeBuilder(RevTreeBuilder builder, int maxChanges) {
+        this.builder = builder;
+        this.maxChanges = maxChanges;
+    }
+
+    @Override
+    public boolean put(Node node) {
+        record(null, node);
+        return builder.put(node);
+    }
+
+    @Override
+    public boolean remove(Node node) {
+        record(node, null);
+        return builder.remove(node);
+    }
+
+    @Override
+    public boolean update(Node oldNode, Node newNode) {
+        record(oldNode, newNode);
+        return builder.update(oldNode, newNode);
+    }
+
+    @Override
+    public RevTree build() {
+        return builder.build();
+    }
+
+    @Override
+    public int getDepth() {
+        return builder.getDepth();
+    }
+
+    /**
+     * @return whether the changes exceeded the maximum and hence were not recorded
+     */
+    public synchronized boolean isOverflown() {
+        return removed == null;
+    }
+
+    /**
+     * @return the removed nodes, including the old version of the updated ones
+     */
+    public synchronized List<Node> removed() {
+        return removed;
+    }
+
+    /**
+     * @return the added nodes, including the new version of the updated ones
+     */
+    public synchronized List<Node> added() {
+        return added;
+    }
+
+    private synchronized void record(Node oldNode, Node newNode) {
+        if (removed == null) {
+            return;
+        }
+        if (removed.size() + added.size() >= maxChanges) {
+            removed = null;
+            added = null;
+            return;
+        }
+        if (oldNode != null) {
+            removed.add(oldNode);
+        }
+        if (newNode != null) {
+            added.add(newNode);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.merge;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.plumbing.DiffTree;
+import org.locationtech.geogig.plumbing.ResolveTreeish;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.Conflict;
+import org.locationtech.geogig.repository.DiffEntry;
+import org.locationtech.geogig.repository.ProgressListener;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.geogig.storage.ConflictsDatabase;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Iterators;
+
+/**
+ * Resolves all the conflicts under a path, or all the conflicts if no path is given, taking
+ * either our or their version of every conflicted feature.
+ * <p>
+ * Our versions are already in the staging area, so resolving with {@link Strategy#OURS ours}
+ * only removes the conflicts, which the {@link ConflictsDatabase} does in a single
+ * {@link ConflictsDatabase#removeByPrefix removeByPrefix} call. Resolving with
+ * {@link Strategy#THEIRS theirs} pages through the conflicts and stages their versions from
+ * {@code MERGE_HEAD} (or {@code CHERRY_PICK_HEAD}) one page at a time, which also clears their
+ * conflicts.
+ * <p>
+ * If the working tree matched the staging area, it's updated to the resolved state.
+ */
+public class ConflictsResolveOp extends AbstractGeoGigOp<Long> {
+
+    private static final int PAGE_SIZE = 1000;
+
+    public static enum Strategy {
+        OURS, THEIRS
+    }
+
+    private String pathPrefix;
+
+    private Strategy strategy;
+
+    /**
+     * @param pathPrefix the path of the tree or feature whose conflicts to resolve, or
+     *        {@code null} to resolve all conflicts
+     */
+    public ConflictsResolveOp setPathPrefix(@Nullable String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+        return this;
+    }
+
+    public ConflictsResolveOp setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+        return this;
+    }
+
+    /**
+     * @return the number of resolved conflicts
+     */
+    @Override
+    protected Long _call() {
+        checkArgument(strategy != null, "strategy not provided");
+        final ConflictsDatabase conflicts = conflictsDatabase();
+        final long count = conflicts.getCountByPrefix(null, pathPrefix);
+        if (count == 0) {
+            return 0L;
+        }
+        final ProgressListener progress = getProgressListener();
+        progress.started();
+        progress.setDescription(String.format("Resolving %,d conflicts using %s version", count,
+                strategy.name().toLowerCase()));
+
+        final boolean updateWorkTree = workingTree().getTree().getId()
+                .equals(stagingArea().getTree().getId());
+
+        if (Strategy.THEIRS.equals(strategy)) {
+            stageTheirs(conflicts, progress);
+        }
+        // ours are already staged, and so are theirs by now, unless they were the same
+        conflicts.removeByPrefix(null, pathPrefix);
+
+        if (updateWorkTree) {
+            workingTree().updateWorkHead(stagingArea().getTree().getId());
+        }
+        progress.complete();
+        return count;
+    }
+
+    private void stageTheirs(ConflictsDatabase conflicts, ProgressListener progress) {
+        Optional<ObjectId> theirs = command(ResolveTreeish.class).setTreeish(Ref.MERGE_HEAD)
+                .call();
+        if (!theirs.isPresent()) {
+            theirs = command(ResolveTreeish.class).setTreeish(Ref.CHERRY_PICK_HEAD).call();
+        }
+        checkState(theirs.isPresent(), "There's no %s or %s to take their versions from",
+                Ref.MERGE_HEAD, Ref.CHERRY_PICK_HEAD);
+        final ObjectId theirsTree = theirs.get();
+
+        String startAfter = null;
+        List<Conflict> page;
+        do {
+            page = conflicts.getByPrefix(null, pathPrefix, startAfter, PAGE_SIZE);
+            if (page.isEmpty()) {
+                break;
+            }
+            startAfter = page.get(page.size() - 1).getPath();
+            final Set<String> paths = new HashSet<>();
+            page.forEach((c) -> paths.add(c.getPath()));
+
+            try (AutoCloseableIterator<DiffEntry> diffs = command(DiffTree.class)
+                    .setOldTree(stagingArea().getTree().getId()).setNewTree(theirsTree)
+                    .setPathFilter(new ArrayList<>(paths)).setReportTrees(true).call()) {
+                // a tree conflict is resolved for the tree itself, not its children
+                Iterator<DiffEntry> conflicted = Iterators.filter(diffs,
+                        (d) -> paths.contains(d.path()));
+                stagingArea().stage(progress, conflicted, -1);
+            }
+        } while (page.size() == PAGE_SIZE && !progress.isCanceled());
+    }
+}
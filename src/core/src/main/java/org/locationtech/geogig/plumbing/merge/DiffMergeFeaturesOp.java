@@ -15,6 +15,7 @@ import static com.google.common.base.Preconditions.checkState;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -40,8 +41,6 @@ import org.opengis.feature.type.PropertyDescriptor;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.vividsolutions.jts.geom.Geometry;
 
@@ -127,6 +126,8 @@ public class DiffMergeFeaturesOp extends AbstractGeoGigOp<DiffMergeFeatureResult
 
     private NodeRef toMerge;
 
+    private Map<ObjectId, RevFeatureType> featureTypeCache;
+
     public DiffMergeFeaturesOp setCommonAncestor(NodeRef commonAncestor) {
         this.commonAncestor = commonAncestor;
         return this;
@@ -150,6 +151,18 @@ public class DiffMergeFeaturesOp extends AbstractGeoGigOp<DiffMergeFeatureResult
         return this;
     }
 
+    /**
+     * @param featureTypeCache a map to look up feature types in before querying the object
+     *        database, and to add the ones read to, so that they are read only once when comparing
+     *        many features, must be thread safe if shared by concurrent calls
+     * @return {@code this}
+     */
+    public DiffMergeFeaturesOp setFeatureTypeCache(
+            @Nullable Map<ObjectId, RevFeatureType> featureTypeCache) {
+        this.featureTypeCache = featureTypeCache;
+        return this;
+    }
+
     @Override
     protected DiffMergeFeatureResult _call() {
         checkPreconditions(commonAncestor, mergeInto, toMerge);
@@ -183,11 +196,28 @@ public class DiffMergeFeaturesOp extends AbstractGeoGigOp<DiffMergeFeatureResult
         Set<ObjectId> ids = Sets.newHashSet(ancestorMetadataId, mergetIntoMetadataId,
                 toMergeMetadataId, ancestorFeatureId, featureAId, featureBId);
 
-        Iterator<RevObject> objsit = objectDatabase().getAll(ids, BulkOpListener.NOOP_LISTENER);
+        final Map<ObjectId, RevObject> map = new HashMap<>();
+        if (featureTypeCache != null) {
+            for (ObjectId id : new ObjectId[] { ancestorMetadataId, mergetIntoMetadataId,
+                    toMergeMetadataId }) {
+                RevFeatureType type = featureTypeCache.get(id);
+                if (type != null) {
+                    map.put(id, type);
+                    ids.remove(id);
+                }
+            }
+        }
 
-        ImmutableMap<ObjectId, RevObject> map = Maps.uniqueIndex(objsit, (o) -> o.getId());
+        Iterator<RevObject> objsit = objectDatabase().getAll(ids, BulkOpListener.NOOP_LISTENER);
+        while (objsit.hasNext()) {
+            RevObject o = objsit.next();
+            map.put(o.getId(), o);
+            if (featureTypeCache != null && o instanceof RevFeatureType) {
+                featureTypeCache.put(o.getId(), (RevFeatureType) o);
+            }
+        }
 
-        if (ids.size() != map.size()) {
+        if (!map.keySet().containsAll(ids)) {
             ids.forEach((id) -> checkState(map.containsKey(id), "Invalid reference: %s", id));
         }
         return map;
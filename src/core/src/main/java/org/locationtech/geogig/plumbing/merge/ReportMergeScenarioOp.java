@@ -11,15 +11,18 @@ package org.locationtech.geogig.plumbing.merge;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.data.retrieve.ParallelTransformIterator;
 import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevFeatureType;
 import org.locationtech.geogig.model.RevObject.TYPE;
-import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.plumbing.DiffTree;
 import org.locationtech.geogig.plumbing.FindCommonAncestor;
 import org.locationtech.geogig.plumbing.merge.DiffMergeFeaturesOp.DiffMergeFeatureResult;
@@ -40,6 +43,12 @@ import com.google.common.collect.PeekingIterator;
  * another reference commit, it returns the set of changes from the common ancestor to the first
  * commit, classified according to whether they can or not be safely applied onto the reference
  * commit. Changes that will have no effect on the target commit are not included as unconflicted.
+ * <p>
+ * The subtrees of the root tree are compared three ways first: the ones changed only by the
+ * commit to merge are reported as unconflicted without diffing the other side, and the ones that
+ * are unchanged by it, or changed in the same way on both sides, are skipped. The changes to the
+ * same paths on both sides are compared in parallel, and reported to the
+ * {@link #setConsumer(MergeScenarioConsumer) consumer} in order as soon as they're resolved.
  */
 public class ReportMergeScenarioOp extends AbstractGeoGigOp<MergeScenarioReport> {
 
@@ -49,6 +58,16 @@ public class ReportMergeScenarioOp extends AbstractGeoGigOp<MergeScenarioReport>
 
     private MergeScenarioConsumer consumer = null;
 
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * Feature types read while comparing features changed on both sides, shared by all the
+     * comparisons as they're usually the same few ones
+     */
+    private final Map<ObjectId, RevFeatureType> featureTypes = new ConcurrentHashMap<>();
+
     /**
      * @param toMerge the commit with the changes to apply {@link RevCommit}
      */
@@ -79,31 +98,79 @@ public class ReportMergeScenarioOp extends AbstractGeoGigOp<MergeScenarioReport>
                 .setRight(mergeInto).call();
         Preconditions.checkState(ancestorOpt.isPresent(), "No ancestor commit could be found.");
 
-        final ObjectId ancestor = ancestorOpt.get();
-
-        MergeScenarioReport report = null;
-
-        try (AutoCloseableIterator<DiffEntry> mergeIntoDiffs = command(DiffTree.class)
-                .setOldTree(ancestor).setReportTrees(true).setNewTree(mergeInto.getId())
-                .setPreserveIterationOrder(true).call();
-                AutoCloseableIterator<DiffEntry> toMergeDiffs = command(DiffTree.class)
-                        .setOldTree(ancestor).setReportTrees(true).setNewTree(toMerge.getId())
-                        .setPreserveIterationOrder(true).call();) {
+        final ObjectId ancestorTree = objectDatabase().getCommit(ancestorOpt.get()).getTreeId();
+        final ObjectId oursTree = mergeInto.getTreeId();
+        final ObjectId theirsTree = toMerge.getTreeId();
 
-            Iterator<MergeDiffRef> tupleIterator = new MergeDiffIterator(mergeIntoDiffs,
-                    toMergeDiffs);
+        MergeScenarioReport report = new MergeScenarioReport();
+        boolean exhausted = true;
+        if (!theirsTree.equals(ancestorTree) && !theirsTree.equals(oursTree)) {
+            // only the direct children of the root tree are compared on both sides up front, to
+            // find out which subtrees changed on one side only
+            final Map<String, DiffEntry> oursChildren = new HashMap<>();
+            try (AutoCloseableIterator<DiffEntry> diffs = diff(ancestorTree, oursTree, null,
+                    false)) {
+                diffs.forEachRemaining((d) -> oursChildren.put(d.path(), d));
+            }
+            try (AutoCloseableIterator<DiffEntry> theirsChildren = diff(ancestorTree, theirsTree,
+                    null, false)) {
+                while (theirsChildren.hasNext() && !consumer.isCancelled()) {
+                    DiffEntry theirs = theirsChildren.next();
+                    DiffEntry ours = oursChildren.get(theirs.path());
+                    exhausted = process(mergeDiffs(ancestorTree, oursTree, theirsTree, ours, theirs),
+                            report) && !theirsChildren.hasNext();
+                }
+            }
+        }
+        if (!consumer.isCancelled() || exhausted) {
+            consumer.finished();
+        }
+        return report;
+    }
 
-            final RevCommit ancestorCommit = objectDatabase().getCommit(ancestor);
-            final RevTree ancestorTree = objectDatabase().getTree(ancestorCommit.getTreeId());
+    private AutoCloseableIterator<DiffEntry> diff(ObjectId oldTree, ObjectId newTree,
+            @Nullable String path, boolean recursive) {
+        DiffTree diff = command(DiffTree.class).setOldTree(oldTree).setNewTree(newTree)
+                .setReportTrees(true).setRecursive(recursive).setPreserveIterationOrder(true);
+        if (path != null) {
+            diff.setPathFilter(path);
+        }
+        return diff.call();
+    }
 
-            report = process(tupleIterator, ancestorTree);
+    /**
+     * Returns the pairs of changes to compare for a direct child of the root tree, pruning the
+     * subtrees changed by "theirs" only, whose changes don't need to be compared, and the ones
+     * changed the same way by both sides, which have nothing to merge
+     */
+    private AutoCloseableIterator<MergeDiffRef> mergeDiffs(ObjectId ancestorTree,
+            ObjectId oursTree, ObjectId theirsTree, @Nullable DiffEntry ours, DiffEntry theirs) {
+
+        final boolean isTree = TYPE.TREE == (theirs.isDelete() ? theirs.oldObjectType()
+                : theirs.newObjectType());
+        if (!isTree) {
+            return AutoCloseableIterator
+                    .fromIterator(Iterators.singletonIterator(new MergeDiffRef(ours, theirs)));
+        }
+        final String path = theirs.path();
+        if (ours == null) {
+            return AutoCloseableIterator.transform(diff(ancestorTree, theirsTree, path, true),
+                    (d) -> new MergeDiffRef(null, d));
         }
+        if (ours.newObjectId().equals(theirs.newObjectId())
+                && ours.newMetadataId().equals(theirs.newMetadataId())) {
+            return AutoCloseableIterator.emptyIterator();
+        }
+        return new MergeDiffIterator(diff(ancestorTree, oursTree, path, true),
+                diff(ancestorTree, theirsTree, path, true));
+    }
 
-        return report;
+    private static class MergeDiffIterator extends AbstractIterator<MergeDiffRef>
+            implements AutoCloseableIterator<MergeDiffRef> {
 
-    }
+        private final AutoCloseableIterator<DiffEntry> oursSource;
 
-    private static class MergeDiffIterator extends AbstractIterator<MergeDiffRef> {
+        private final AutoCloseableIterator<DiffEntry> theirsSource;
 
         private PeekingIterator<DiffEntry> ours;
 
@@ -111,10 +178,18 @@ public class ReportMergeScenarioOp extends AbstractGeoGigOp<MergeScenarioReport>
 
         MergeDiffIterator(AutoCloseableIterator<DiffEntry> ours,
                 AutoCloseableIterator<DiffEntry> theirs) {
+            this.oursSource = ours;
+            this.theirsSource = theirs;
             this.ours = Iterators.peekingIterator(ours);
             this.theirs = Iterators.peekingIterator(theirs);
         }
 
+        @Override
+        public void close() {
+            oursSource.close();
+            theirsSource.close();
+        }
+
         @Override
         protected MergeDiffRef computeNext() {
             DiffEntry left = ours.hasNext() ? ours.peek() : null;
@@ -175,42 +250,89 @@ public class ReportMergeScenarioOp extends AbstractGeoGigOp<MergeScenarioReport>
         }
     }
 
-    private MergeScenarioReport process(Iterator<MergeDiffRef> tupleIterator,
-            RevTree ancestorTree) {
+    /**
+     * The outcome of comparing a pair of changes, only one of its fields is set, or none if the
+     * change has no effect on "ours"
+     */
+    private static class Resolution {
 
-        MergeScenarioReport report = new MergeScenarioReport();
-        while (tupleIterator.hasNext()) {
-            MergeDiffRef mr = tupleIterator.next();
-
-            DiffEntry ours = mr.ours();
-            DiffEntry theirs = mr.theirs();
-            if (ours == null) {
-                // Only "their" branch modified the path
-                consumer.unconflicted(theirs);
-                report.addUnconflicted();
-            } else if (theirs == null) {
-                // Only "our" branch modified the path
-                // nothing else to do
-            } else {
-                // both branches modifies the same path
-                processPossibleConflict(ours, theirs, ancestorTree, report);
-            }
+        static final Resolution NONE = new Resolution();
 
-            if (consumer.isCancelled()) {
-                break;
-            }
+        Conflict conflict;
+
+        DiffEntry unconflicted;
+
+        FeatureInfo merged;
+
+        static Resolution conflict(Conflict conflict) {
+            Resolution r = new Resolution();
+            r.conflict = conflict;
+            return r;
         }
 
-        if (!consumer.isCancelled() || !tupleIterator.hasNext()) {
-            consumer.finished();
+        static Resolution unconflicted(DiffEntry diff) {
+            Resolution r = new Resolution();
+            r.unconflicted = diff;
+            return r;
         }
 
-        return report;
+        static Resolution merged(FeatureInfo merged) {
+            Resolution r = new Resolution();
+            r.merged = merged;
+            return r;
+        }
+    }
+
+    /**
+     * Resolves the pairs of changes in parallel, as comparing the features changed on both sides
+     * is the expensive part, and reports them to the consumer in order.
+     *
+     * @return {@code true} if all the pairs were processed, {@code false} if the consumer was
+     *         cancelled before
+     */
+    private boolean process(AutoCloseableIterator<MergeDiffRef> tuples,
+            MergeScenarioReport report) {
+
+        final Map<ObjectId, RevFeatureType> featureTypes = this.featureTypes;
+        try (AutoCloseableIterator<Resolution> resolutions = new ParallelTransformIterator<>(
+                tuples, (mr) -> resolve(mr, featureTypes), PARALLELISM, BATCH_SIZE, true)) {
+            while (resolutions.hasNext()) {
+                Resolution r = resolutions.next();
+                if (r.conflict != null) {
+                    consumer.conflicted(r.conflict);
+                    report.addConflict();
+                } else if (r.unconflicted != null) {
+                    consumer.unconflicted(r.unconflicted);
+                    report.addUnconflicted();
+                } else if (r.merged != null) {
+                    consumer.merged(r.merged);
+                    report.addMerged();
+                }
+                if (consumer.isCancelled()) {
+                    return !resolutions.hasNext();
+                }
+            }
+        }
+        return true;
+    }
 
+    private Resolution resolve(MergeDiffRef mr, Map<ObjectId, RevFeatureType> featureTypes) {
+        DiffEntry ours = mr.ours();
+        DiffEntry theirs = mr.theirs();
+        if (ours == null) {
+            // Only "their" branch modified the path
+            return Resolution.unconflicted(theirs);
+        } else if (theirs == null) {
+            // Only "our" branch modified the path
+            // nothing else to do
+            return Resolution.NONE;
+        }
+        // both branches modifies the same path
+        return resolvePossibleConflict(ours, theirs, featureTypes);
     }
 
-    private void processPossibleConflict(DiffEntry oursDiff, DiffEntry theirsDiff,
-            RevTree ancestorTree, MergeScenarioReport report) {
+    private Resolution resolvePossibleConflict(DiffEntry oursDiff, DiffEntry theirsDiff,
+            Map<ObjectId, RevFeatureType> featureTypes) {
 
         Preconditions.checkArgument(oursDiff.oldObject().equals(theirsDiff.oldObject()));
 
@@ -223,9 +345,7 @@ public class ReportMergeScenarioOp extends AbstractGeoGigOp<MergeScenarioReport>
         final ObjectId theirs = theirsDiff.newObjectId();
 
         if (!oursDiff.changeType().equals(theirsDiff.changeType())) {
-            consumer.conflicted(new Conflict(path, ancestorVersionId, ours, theirs));
-            report.addConflict();
-            return;
+            return Resolution.conflict(new Conflict(path, ancestorVersionId, ours, theirs));
         }
         switch (theirsDiff.changeType()) {
         case ADDED:
@@ -233,10 +353,9 @@ public class ReportMergeScenarioOp extends AbstractGeoGigOp<MergeScenarioReport>
                 // already added in current branch, no need to do anything
             } else {
                 if (TYPE.TREE == theirsDiff.newObjectType()) {
-                    checkForFeatureTypeConflict(ancestorVersion, oursDiff, theirsDiff, report);
+                    return checkForFeatureTypeConflict(ancestorVersion, oursDiff, theirsDiff);
                 } else {
-                    consumer.conflicted(new Conflict(path, ancestorVersionId, ours, theirs));
-                    report.addConflict();
+                    return Resolution.conflict(new Conflict(path, ancestorVersionId, ours, theirs));
                 }
             }
             break;
@@ -245,40 +364,38 @@ public class ReportMergeScenarioOp extends AbstractGeoGigOp<MergeScenarioReport>
             break;
         case MODIFIED:
             if (TYPE.TREE == theirsDiff.newObjectType()) {
-                checkForFeatureTypeConflict(ancestorVersion, oursDiff, theirsDiff, report);
-                break;
+                return checkForFeatureTypeConflict(ancestorVersion, oursDiff, theirsDiff);
             }
 
             DiffMergeFeatureResult result = command(DiffMergeFeaturesOp.class)//
                     .setCommonAncestor(theirsDiff.getOldObject())//
                     .setMergeInto(oursDiff.getNewObject())//
                     .setToMerge(theirsDiff.getNewObject())//
+                    .setFeatureTypeCache(featureTypes)//
                     .call();
 
             if (result.isConflict()) {
-                consumer.conflicted(new Conflict(path, ancestorVersionId, ours, theirs));
-                report.addConflict();
+                return Resolution.conflict(new Conflict(path, ancestorVersionId, ours, theirs));
             } else if (result.isMerge()) {
                 RevFeature mergedFeature = result.mergedFeature();
                 if (mergedFeature.getId().equals(theirsDiff.newObjectId())) {
                     // the resulting merged feature equals the feature to merge from
                     // the branch, which means that it exists in the merge into tree and there
                     // is no need to report the to merge change as merged.
-                    consumer.unconflicted(theirsDiff);
-                    report.addUnconflicted();
+                    return Resolution.unconflicted(theirsDiff);
                 } else {
                     ObjectId featureTypeId = oursDiff.getNewObject().getMetadataId();
                     FeatureInfo merged = FeatureInfo.insert(mergedFeature, featureTypeId, path);
-                    consumer.merged(merged);
-                    report.addMerged();
+                    return Resolution.merged(merged);
                 }
             }
             // else do nothing, 'ours' has changed in the same way as 'theirs'
         }
+        return Resolution.NONE;
     }
 
-    private void checkForFeatureTypeConflict(Optional<NodeRef> ancestorVersion, DiffEntry oursDiff,
-            DiffEntry theirsDiff, MergeScenarioReport report) {
+    private Resolution checkForFeatureTypeConflict(Optional<NodeRef> ancestorVersion,
+            DiffEntry oursDiff, DiffEntry theirsDiff) {
 
         final String path = oursDiff.path();
 
@@ -290,8 +407,8 @@ public class ReportMergeScenarioOp extends AbstractGeoGigOp<MergeScenarioReport>
                     ? ancestorVersion.get().getMetadataId() : ObjectId.NULL;
             ObjectId ours = oursDiff.getNewObject().getMetadataId();
             ObjectId theirs = theirsDiff.getNewObject().getMetadataId();
-            consumer.conflicted(new Conflict(path, ancestorVersionId, ours, theirs));
-            report.addConflict();
+            return Resolution.conflict(new Conflict(path, ancestorVersionId, ours, theirs));
         }
+        return Resolution.NONE;
     }
 }
@@ -0,0 +1,260 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.stats;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevPerson;
+import org.locationtech.geogig.model.impl.RevPersonBuilder;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.BlobStore;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+
+/**
+ * Summary statistics of the first parent history of a branch: the number of commits, the first
+ * commit, the distinct authors, and the number of features of each top level tree at the tip of
+ * the branch.
+ * <p>
+ * Statistics are computed for a branch the first time they're asked for by
+ * {@link UpdateBranchStatisticsOp}, stored in the repository's {@link BlobStore}, and kept up to
+ * date incrementally as the branch moves by the
+ * {@link org.locationtech.geogig.hooks.builtin.UpdateBranchStatisticsHook}.
+ *
+ * @see UpdateBranchStatisticsOp
+ */
+public final class BranchStatistics {
+
+    private static final String BLOB_PREFIX = "statistics/";
+
+    private static final int MAGIC = 0x42535441;// BSTA
+
+    private static final int VERSION = 1;
+
+    /**
+     * The number of features of a top level tree, and the tree id they were counted for
+     */
+    static final class Layer {
+
+        final ObjectId treeId;
+
+        final long size;
+
+        Layer(ObjectId treeId, long size) {
+            this.treeId = treeId;
+            this.size = size;
+        }
+    }
+
+    private final String branch;
+
+    private final ObjectId tip;
+
+    private long commitCount;
+
+    private ObjectId firstCommit = ObjectId.NULL;
+
+    private final List<RevPerson> authors = new ArrayList<>();
+
+    private final Set<List<String>> authorKeys = new HashSet<>();
+
+    private final Map<String, Layer> layers = new LinkedHashMap<>();
+
+    BranchStatistics(String branch, ObjectId tip) {
+        checkNotNull(branch);
+        checkNotNull(tip);
+        this.branch = branch;
+        this.tip = tip;
+    }
+
+    /**
+     * @return the full name of the branch
+     */
+    public String getBranch() {
+        return branch;
+    }
+
+    /**
+     * @return the commit the branch pointed to when these statistics were computed
+     */
+    public ObjectId getTip() {
+        return tip;
+    }
+
+    /**
+     * @return the number of commits in the first parent history of the branch
+     */
+    public long getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * @return the oldest commit in the first parent history of the branch, or
+     *         {@link ObjectId#NULL} if it has no commits
+     */
+    public ObjectId getFirstCommit() {
+        return firstCommit;
+    }
+
+    /**
+     * @return the distinct authors of the commits, in the order they're first found walking the
+     *         history back from the tip. The timestamps of the returned persons are meaningless.
+     */
+    public List<RevPerson> getAuthors() {
+        return Collections.unmodifiableList(authors);
+    }
+
+    /**
+     * @return the number of features of each top level tree at the tip, in tree order
+     */
+    public Map<String, Long> getFeatureCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        layers.forEach((path, layer) -> counts.put(path, layer.size));
+        return counts;
+    }
+
+    void setCommitCount(long commitCount) {
+        this.commitCount = commitCount;
+    }
+
+    void setFirstCommit(ObjectId firstCommit) {
+        this.firstCommit = firstCommit;
+    }
+
+    /**
+     * Adds an author if it's not already there and has either a name or an email
+     */
+    void addAuthor(RevPerson author) {
+        addAuthor(author.getName().orNull(), author.getEmail().orNull());
+    }
+
+    private void addAuthor(@Nullable String name, @Nullable String email) {
+        if ((name != null || email != null) && authorKeys.add(key(name, email))) {
+            authors.add(RevPersonBuilder.build(name, email, 0L, 0));
+        }
+    }
+
+    private static List<String> key(@Nullable String name, @Nullable String email) {
+        List<String> key = new ArrayList<>(2);
+        key.add(name);
+        key.add(email);
+        return key;
+    }
+
+    Map<String, Layer> layers() {
+        return layers;
+    }
+
+    /**
+     * @return the stored statistics of the given branch, or {@code absent} if there are none
+     */
+    public static Optional<BranchStatistics> get(Repository repository, String branch) {
+        Optional<byte[]> blob = repository.blobStore().getBlob(BLOB_PREFIX + branch);
+        if (!blob.isPresent()) {
+            return Optional.absent();
+        }
+        return Optional.of(read(blob.get()));
+    }
+
+    static void put(Repository repository, BranchStatistics stats) {
+        repository.blobStore().putBlob(BLOB_PREFIX + stats.branch, stats.toByteArray());
+    }
+
+    /**
+     * Removes the stored statistics of a branch, if any
+     */
+    public static void remove(Repository repository, String branch) {
+        repository.blobStore().removeBlob(BLOB_PREFIX + branch);
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(branch);
+            out.write(tip.getRawValue());
+            out.writeLong(commitCount);
+            out.write(firstCommit.getRawValue());
+            out.writeInt(authors.size());
+            for (RevPerson author : authors) {
+                writeOptional(out, author.getName().orNull());
+                writeOptional(out, author.getEmail().orNull());
+            }
+            out.writeInt(layers.size());
+            for (Map.Entry<String, Layer> e : layers.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.write(e.getValue().treeId.getRawValue());
+                out.writeLong(e.getValue().size);
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static BranchStatistics read(byte[] blob) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(blob))) {
+            checkArgument(in.readInt() == MAGIC, "Not a branch statistics blob");
+            final int version = in.readInt();
+            checkArgument(version == VERSION, "Unsupported branch statistics version: %s",
+                    version);
+            BranchStatistics stats = new BranchStatistics(in.readUTF(), readId(in));
+            stats.commitCount = in.readLong();
+            stats.firstCommit = readId(in);
+            final int authorCount = in.readInt();
+            for (int i = 0; i < authorCount; i++) {
+                stats.addAuthor(readOptional(in), readOptional(in));
+            }
+            final int layerCount = in.readInt();
+            for (int i = 0; i < layerCount; i++) {
+                stats.layers.put(in.readUTF(), new Layer(readId(in), in.readLong()));
+            }
+            return stats;
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private static void writeOptional(DataOutputStream out, @Nullable String value)
+            throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static @Nullable String readOptional(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static ObjectId readId(DataInputStream in) throws IOException {
+        byte[] raw = new byte[ObjectId.NUM_BYTES];
+        in.readFully(raw);
+        return ObjectId.createNoClone(raw);
+    }
+}
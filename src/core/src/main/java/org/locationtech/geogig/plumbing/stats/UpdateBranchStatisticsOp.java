@@ -0,0 +1,154 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.stats;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevPerson;
+import org.locationtech.geogig.plumbing.LsTreeOp;
+import org.locationtech.geogig.plumbing.RefParse;
+import org.locationtech.geogig.plumbing.stats.BranchStatistics.Layer;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Stopwatch;
+
+/**
+ * Brings the {@link BranchStatistics statistics} of a branch up to date with its current tip,
+ * computing them if the branch has none yet, and stores them.
+ * <p>
+ * If the tip the statistics were computed for is in the first parent history of the current one,
+ * only the commits after it are visited, and only the top level trees whose ids changed are
+ * loaded to count their features. Otherwise, as after a reset or a forced update, the whole first
+ * parent history is walked.
+ */
+public class UpdateBranchStatisticsOp extends AbstractGeoGigOp<BranchStatistics> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpdateBranchStatisticsOp.class);
+
+    private String branch;
+
+    /**
+     * @param branch the name of the branch, either its full ref name or its simple name
+     */
+    public UpdateBranchStatisticsOp setBranch(String branch) {
+        this.branch = branch;
+        return this;
+    }
+
+    /**
+     * @return the up to date statistics of the branch
+     */
+    @Override
+    protected BranchStatistics _call() {
+        checkArgument(branch != null, "branch not provided");
+        final Optional<Ref> ref = command(RefParse.class).setName(branch).call();
+        checkArgument(ref.isPresent() && ref.get().getName().startsWith(Ref.HEADS_PREFIX),
+                "%s is not a branch", branch);
+        final String refName = ref.get().getName();
+        final ObjectId tip = ref.get().getObjectId();
+
+        final Repository repository = repository();
+        final BranchStatistics stored = BranchStatistics.get(repository, refName).orNull();
+        if (stored != null && stored.getTip().equals(tip)) {
+            return stored;
+        }
+        Stopwatch sw = Stopwatch.createStarted();
+        final BranchStatistics stats = new BranchStatistics(refName, tip);
+        final boolean incremental = addCommits(stats, stored);
+        updateLayers(stats, stored);
+        BranchStatistics.put(repository, stats);
+        LOGGER.debug("{} statistics of {} updated to {} in {}",
+                incremental ? "Incremental" : "Full", refName, tip, sw.stop());
+        return stats;
+    }
+
+    /**
+     * Walks the first parent history back from the tip until the previous tip is found, if ever,
+     * adding the commits to the new statistics, then the previous statistics if it was found.
+     *
+     * @return whether the previous tip was found
+     */
+    private boolean addCommits(BranchStatistics stats, @Nullable BranchStatistics previous) {
+        final ObjectDatabase objects = objectDatabase();
+        final ObjectId previousTip = previous == null ? null : previous.getTip();
+        long count = 0;
+        ObjectId first = ObjectId.NULL;
+        ObjectId id = stats.getTip();
+        boolean found = false;
+        while (!id.isNull()) {
+            if (id.equals(previousTip)) {
+                found = true;
+                break;
+            }
+            // the bottom of a shallow clone is treated as a root commit
+            RevCommit commit = objects.getIfPresent(id, RevCommit.class);
+            if (commit == null) {
+                break;
+            }
+            count++;
+            first = id;
+            stats.addAuthor(author(commit));
+            id = commit.getParentIds().isEmpty() ? ObjectId.NULL : commit.getParentIds().get(0);
+        }
+        if (found) {
+            count += previous.getCommitCount();
+            first = previous.getFirstCommit();
+            for (RevPerson author : previous.getAuthors()) {
+                stats.addAuthor(author);
+            }
+        }
+        stats.setCommitCount(count);
+        stats.setFirstCommit(first);
+        return found;
+    }
+
+    /**
+     * @return the author of the commit, or its committer if the author is undefined
+     */
+    private static RevPerson author(RevCommit commit) {
+        RevPerson author = commit.getAuthor();
+        if (!author.getName().isPresent() && !author.getEmail().isPresent()) {
+            author = commit.getCommitter();
+        }
+        return author;
+    }
+
+    private void updateLayers(BranchStatistics stats, @Nullable BranchStatistics previous) {
+        if (stats.getTip().isNull()) {
+            return;
+        }
+        final ObjectDatabase objects = objectDatabase();
+        final Map<String, Layer> previousLayers = previous == null ? null : previous.layers();
+        Iterator<NodeRef> trees = command(LsTreeOp.class).setReference(stats.getTip().toString())
+                .setStrategy(LsTreeOp.Strategy.TREES_ONLY).call();
+        while (trees.hasNext()) {
+            NodeRef tree = trees.next();
+            Layer layer = previousLayers == null ? null : previousLayers.get(tree.path());
+            if (layer == null || !layer.treeId.equals(tree.getObjectId())) {
+                long size = objects.getTree(tree.getObjectId()).size();
+                layer = new Layer(tree.getObjectId(), size);
+            }
+            stats.layers().put(tree.path(), layer);
+        }
+    }
+}
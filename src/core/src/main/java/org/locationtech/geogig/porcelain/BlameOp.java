@@ -9,10 +9,19 @@
  */
 package org.locationtech.geogig.porcelain;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.di.CanRunDuringConflict;
+import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.Ref;
 import org.locationtech.geogig.model.RevCommit;
@@ -26,18 +35,27 @@ import org.locationtech.geogig.plumbing.RevObjectParse;
 import org.locationtech.geogig.plumbing.RevParse;
 import org.locationtech.geogig.plumbing.diff.AttributeDiff;
 import org.locationtech.geogig.plumbing.diff.FeatureDiff;
+import org.locationtech.geogig.plumbing.graph.CommitGraph;
+import org.locationtech.geogig.plumbing.history.FeatureHistory;
+import org.locationtech.geogig.plumbing.history.FeatureHistory.Version;
 import org.locationtech.geogig.porcelain.BlameException.StatusCode;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.repository.DiffEntry;
 import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.geogig.storage.GraphDatabase;
+import org.locationtech.geogig.storage.ObjectDatabase;
 import org.opengis.feature.type.PropertyDescriptor;
 
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Suppliers;
 
 /**
  * Creates a report that contains information about who was the last to change each attribute in a
  * feature
+ * <p>
+ * If the feature's layer has a {@link FeatureHistory}, only the versions of the feature in it are
+ * compared, otherwise every commit in the feature's history is diffed against the previous one.
  * 
  */
 @CanRunDuringConflict
@@ -85,6 +103,15 @@ public class BlameOp extends AbstractGeoGigOp<BlameReport> {
 
         BlameReport report = new BlameReport(featureType.get());
 
+        Optional<FeatureHistory> history = FeatureHistory.forFeature(repository(), path);
+        if (history.isPresent()) {
+            ObjectId tip = command(RevParse.class)
+                    .setRefSpec(commit != null ? commit.toString() : Ref.HEAD).call().get();
+            if (history.get().isIndexed(tip) && blame(history.get(), tip, id.get(), report)) {
+                return report;
+            }
+        }
+
         Iterator<RevCommit> log = command(LogOp.class).addPath(path).setUntil(commit).call();
         RevCommit commit = log.next();
         RevObjectParse revObjectParse = command(RevObjectParse.class);
@@ -132,4 +159,106 @@ public class BlameOp extends AbstractGeoGigOp<BlameReport> {
         }
         return report;
     }
+
+    /**
+     * Fills the report from the versions of the feature in its layer's feature history, comparing
+     * only the versions that changed it instead of diffing every commit in its history.
+     * <p>
+     * Starting with the version of the feature at the tip, the version each one replaced is the
+     * one at its commit's first parent, and the commit that set it is found walking the commit
+     * graph back from the parent until a commit that changed the feature is found.
+     *
+     * @return {@code false} if the commit that set the feature at the tip is not in the history
+     */
+    private boolean blame(FeatureHistory history, ObjectId tip, ObjectId featureObjectId,
+            BlameReport report) {
+        final Map<ObjectId, Version> changes = new HashMap<>();
+        for (Version v : history.versions(NodeRef.nodeFromPath(path))) {
+            changes.put(v.getCommitId(), v);
+        }
+        final Function<ObjectId, List<ObjectId>> parents = parents();
+        Version version = setBy(tip, featureObjectId, changes, parents);
+        if (version == null) {
+            return false;
+        }
+        final ObjectDatabase objects = objectDatabase();
+        while (version != null && !report.isComplete()) {
+            final RevCommit commit = objects.getCommit(version.getCommitId());
+            final RevFeature feature = objects.getFeature(version.getObjectId());
+            Version previous = null;
+            if (!commit.getParentIds().isEmpty()) {
+                ObjectId parent = commit.getParentIds().get(0);
+                Optional<ObjectId> previousObjectId = command(RevParse.class)
+                        .setRefSpec(parent + ":" + path).call();
+                if (previousObjectId.isPresent()) {
+                    previous = setBy(parent, previousObjectId.get(), changes, parents);
+                }
+            }
+            if (previous == null) {
+                report.setFirstVersion(feature, commit);
+                break;
+            }
+            FeatureDiff featureDiff = new FeatureDiff(path, feature,
+                    objects.getFeature(previous.getObjectId()),
+                    objects.getFeatureType(version.getMetadataId()),
+                    objects.getFeatureType(previous.getMetadataId()), false);
+            for (Map.Entry<PropertyDescriptor, AttributeDiff> e : featureDiff.getDiffs()
+                    .entrySet()) {
+                Optional<?> value = Optional.fromNullable(e.getValue().getNewValue());
+                report.addDiff(e.getKey().getName().toString(), value, commit);
+            }
+            version = previous;
+        }
+        return true;
+    }
+
+    /**
+     * Walks the commit graph back from {@code start} until a commit that changed the feature is
+     * found on each path, stopping at the ones that set it to {@code featureObjectId}. Paths
+     * reaching a commit that deleted the feature or set it to another version are not followed
+     * any further.
+     *
+     * @return the version set by the closest commit that set the feature to
+     *         {@code featureObjectId}, or {@code null} if there's none
+     */
+    @Nullable
+    private static Version setBy(ObjectId start, ObjectId featureObjectId,
+            Map<ObjectId, Version> changes, Function<ObjectId, List<ObjectId>> parents) {
+        final Set<ObjectId> visited = new HashSet<>();
+        final Deque<ObjectId> pending = new ArrayDeque<>();
+        pending.add(start);
+        while (!pending.isEmpty()) {
+            final ObjectId id = pending.removeFirst();
+            if (!visited.add(id)) {
+                continue;
+            }
+            final Version version = changes.get(id);
+            if (version == null) {
+                pending.addAll(parents.apply(id));
+            } else if (!version.isDelete() && version.getObjectId().equals(featureObjectId)) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return a function returning the parents of a commit, from the commit graph if it has the
+     *         commit, or from the graph database otherwise
+     */
+    private Function<ObjectId, List<ObjectId>> parents() {
+        final CommitGraph commitGraph = CommitGraph.get(repository()).orNull();
+        final GraphDatabase graphDatabase = graphDatabase();
+        return (id) -> {
+            int index = commitGraph == null ? -1 : commitGraph.indexOf(id);
+            if (index == -1) {
+                return graphDatabase.getParents(id);
+            }
+            List<ObjectId> parentIds = new ArrayList<>(2);
+            for (int parent : commitGraph.parents(index)) {
+                parentIds.add(commitGraph.id(parent));
+            }
+            return parentIds;
+        };
+    }
 }
@@ -17,6 +17,7 @@ import org.locationtech.geogig.model.Ref;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.SymRef;
 import org.locationtech.geogig.plumbing.RefParse;
+import org.locationtech.geogig.plumbing.ReplayCommitsOp;
 import org.locationtech.geogig.plumbing.UpdateRef;
 import org.locationtech.geogig.plumbing.WriteTree2;
 import org.locationtech.geogig.plumbing.merge.ConflictsWriteOp;
@@ -33,6 +34,7 @@ import org.locationtech.geogig.storage.AutoCloseableIterator;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 
 /**
@@ -86,6 +88,23 @@ public class CherryPickOp extends AbstractGeoGigOp<RevCommit> {
 
         ObjectId headId = headRef.getObjectId();
 
+        if (!headId.isNull()) {
+            // try to apply the commit without diffing and staging its changes, then commit the
+            // resulting tree through CommitOp as below, so its hooks run and it cleans up after
+            // itself
+            List<RevCommit> replayed = command(ReplayCommitsOp.class).setOnto(headId)
+                    .setWriteCommits(false)
+                    .setCommits(Iterators.singletonIterator(commitToApply)).call();
+            if (!replayed.isEmpty()) {
+                ObjectId newTreeId = replayed.get(0).getTreeId();
+                stagingArea().updateStageHead(newTreeId);
+                RevCommit newCommit = command(CommitOp.class).setCommit(commitToApply).call();
+                workingTree().updateWorkHead(newTreeId);
+                getProgressListener().complete();
+                return newCommit;
+            }
+        }
+
         // In case there are conflicts
         StringBuilder conflictMsg = new StringBuilder();
         final int maxReportedConflicts = 25;
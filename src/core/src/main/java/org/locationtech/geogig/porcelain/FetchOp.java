@@ -19,6 +19,7 @@ import org.locationtech.geogig.plumbing.LsRemote;
 import org.locationtech.geogig.plumbing.RefParse;
 import org.locationtech.geogig.plumbing.UpdateRef;
 import org.locationtech.geogig.plumbing.UpdateSymRef;
+import org.locationtech.geogig.plumbing.graph.WriteCommitGraph;
 import org.locationtech.geogig.porcelain.ConfigOp.ConfigAction;
 import org.locationtech.geogig.porcelain.ConfigOp.ConfigScope;
 import org.locationtech.geogig.porcelain.TransferSummary.ChangedRef;
@@ -303,6 +304,11 @@ public class FetchOp extends AbstractGeoGigOp<TransferSummary> {
                     .setName(Repository.DEPTH_CONFIG_KEY).call();
         }
 
+        if (!result.getChangedRefs().isEmpty()) {
+            // add the fetched history to the commit graph
+            command(WriteCommitGraph.class).call();
+        }
+
         progressListener.complete();
 
         return result;
@@ -9,15 +9,20 @@
  */
 package org.locationtech.geogig.porcelain;
 
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.geotools.util.Range;
 import org.locationtech.geogig.di.CanRunDuringConflict;
 import org.locationtech.geogig.model.NodeRef;
@@ -27,6 +32,8 @@ import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.plumbing.FindTreeChild;
 import org.locationtech.geogig.plumbing.RevParse;
+import org.locationtech.geogig.plumbing.graph.CommitGraph;
+import org.locationtech.geogig.plumbing.history.FeatureHistory;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.storage.GraphDatabase;
@@ -39,6 +46,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Longs;
 
 /**
  * Operation to query the commits logs.
@@ -280,14 +288,20 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
 
     /**
      * Iterator that traverses the commit history backwards starting from the provided commit, in
-     * chronological order. It performs a reverse breadth-first search
+     * chronological order. It performs a reverse breadth-first search, visiting the most recent
+     * commit of the ones reached so far first
      * 
      */
     private static class ChronologicalHistoryIterator extends AbstractIterator<RevCommit> {
 
         private final Repository repo;
 
-        private Set<RevCommit> parents;
+        private final PriorityQueue<RevCommit> parents;
+
+        /**
+         * The commits already queued, as several paths lead to the same commit in merge histories
+         */
+        private final Set<ObjectId> queued;
 
         /**
          * Constructs a new {@code LinearHistoryIterator} with the given parameters.
@@ -296,14 +310,15 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
          * @param repo the repository where the commits are stored.
          */
         public ChronologicalHistoryIterator(final List<ObjectId> tips, final Repository repo) {
-            parents = Sets.newHashSet();
+            parents = new PriorityQueue<RevCommit>(16, MOST_RECENT_FIRST);
+            queued = Sets.newHashSet();
+            this.repo = repo;
             for (ObjectId tip : tips) {
-                if (!tip.isNull()) {
+                if (!tip.isNull() && queued.add(tip)) {
                     final RevCommit commit = repo.getCommit(tip);
                     parents.add(commit);
                 }
             }
-            this.repo = repo;
         }
 
         /**
@@ -313,33 +328,28 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
          */
         @Override
         protected RevCommit computeNext() {
-            if (parents.isEmpty()) {
+            RevCommit mostRecent = parents.poll();
+            if (mostRecent == null) {
                 return endOfData();
-            } else {
-                Iterator<RevCommit> iter = parents.iterator();
-                // TODO: Maybe we should make RevCommit implement Comparable?
-                RevCommit mostRecent = iter.next();
-                while (iter.hasNext()) {
-                    RevCommit commit = iter.next();
-                    if (mostRecent.getCommitter().getTimestamp() < commit.getCommitter()
-                            .getTimestamp()) {
-                        mostRecent = commit;
-                    }
-                }
-                parents.remove(mostRecent);
-                RevCommit commit;
-                for (ObjectId parent : mostRecent.getParentIds()) {
-                    if (repo.commitExists(parent)) {
-                        commit = repo.getCommit(parent);
-                        parents.add(commit);
-                    }
+            }
+            for (ObjectId parent : mostRecent.getParentIds()) {
+                if (!queued.contains(parent) && repo.commitExists(parent)) {
+                    queued.add(parent);
+                    parents.add(repo.getCommit(parent));
                 }
-                return mostRecent;
             }
-
+            return mostRecent;
         }
     }
 
+    private static final Comparator<RevCommit> MOST_RECENT_FIRST = new Comparator<RevCommit>() {
+        @Override
+        public int compare(RevCommit c1, RevCommit c2) {
+            return Longs.compare(c2.getCommitter().getTimestamp(),
+                    c1.getCommitter().getTimestamp());
+        }
+    };
+
     /**
      * Iterator that traverses the commit history backwards starting from the provided commit, in
      * topological order. It performs a reverse depth-first search
@@ -490,6 +500,15 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
 
         private FindTreeChild findTreeChild;
 
+        @Nullable
+        private final CommitGraph commitGraph;
+
+        /**
+         * The feature histories of the paths, if they are all features of layers that have one
+         */
+        @Nullable
+        private final Map<String, FeatureHistory> featureHistories;
+
         /**
          * Constructs a new {@code LogFilter} with the given parameters.
          * 
@@ -510,6 +529,62 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
             this.committer = commiter;
             this.paths = paths;
             findTreeChild = command(FindTreeChild.class);
+            this.commitGraph = paths == null ? null : CommitGraph.get(repository()).orNull();
+            this.featureHistories = paths == null ? null : featureHistories(paths);
+        }
+
+        @Nullable
+        private Map<String, FeatureHistory> featureHistories(Set<String> paths) {
+            Map<String, FeatureHistory> histories = new HashMap<>();
+            for (String path : paths) {
+                Optional<FeatureHistory> history = FeatureHistory.forFeature(repository(), path);
+                if (!history.isPresent()
+                        || !history.get().contains(NodeRef.nodeFromPath(path))) {
+                    return null;
+                }
+                histories.put(path, history.get());
+            }
+            return histories;
+        }
+
+        /**
+         * @return whether the commit changed any of the paths according to their feature
+         *         histories, or {@code absent} if they don't tell
+         */
+        private Optional<Boolean> changedFeature(final RevCommit commit) {
+            // feature histories don't record the merged changes of merge commits
+            if (featureHistories == null || commit.getParentIds().size() > 1) {
+                return Optional.absent();
+            }
+            boolean changed = false;
+            for (Map.Entry<String, FeatureHistory> e : featureHistories.entrySet()) {
+                FeatureHistory history = e.getValue();
+                if (!history.isIndexed(commit.getId())) {
+                    return Optional.absent();
+                }
+                changed |= history.isChanged(NodeRef.nodeFromPath(e.getKey()), commit.getId());
+            }
+            return Optional.of(Boolean.valueOf(changed));
+        }
+
+        /**
+         * @return {@code false} if the commit's changed paths filter tells none of the paths were
+         *         changed, {@code true} if they might have or the commit has no filter
+         */
+        private boolean mightHaveChanged(final RevCommit commit) {
+            if (commitGraph == null) {
+                return true;
+            }
+            final int index = commitGraph.indexOf(commit.getId());
+            if (index == -1) {
+                return true;
+            }
+            for (String path : paths) {
+                if (commitGraph.mightHaveChanged(index, path)) {
+                    return true;
+                }
+            }
+            return false;
         }
 
         /**
@@ -545,6 +620,13 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
                 return false;
             }
             if (paths != null) {
+                if (!mightHaveChanged(commit)) {
+                    return false;
+                }
+                Optional<Boolean> changedFeature = changedFeature(commit);
+                if (changedFeature.isPresent()) {
+                    return changedFeature.get().booleanValue();
+                }
                 applies = false;
                 final Repository repository = repository();
                 // did this commit touch any of the paths?
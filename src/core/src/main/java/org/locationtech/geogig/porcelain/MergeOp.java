@@ -14,13 +14,17 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.geotools.util.SubProgressListener;
+import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.Ref;
 import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevObject.TYPE;
 import org.locationtech.geogig.model.SymRef;
 import org.locationtech.geogig.plumbing.DiffTree;
 import org.locationtech.geogig.plumbing.FindCommonAncestor;
@@ -28,6 +32,7 @@ import org.locationtech.geogig.plumbing.RefParse;
 import org.locationtech.geogig.plumbing.ResolveBranchId;
 import org.locationtech.geogig.plumbing.UpdateRef;
 import org.locationtech.geogig.plumbing.UpdateSymRef;
+import org.locationtech.geogig.plumbing.UpdateTree;
 import org.locationtech.geogig.plumbing.merge.CheckMergeScenarioOp;
 import org.locationtech.geogig.plumbing.merge.MergeScenarioReport;
 import org.locationtech.geogig.plumbing.merge.MergeStatusBuilder;
@@ -323,16 +328,11 @@ public class MergeOp extends AbstractGeoGigOp<MergeOp.MergeReport> {
 
                 // get changes
                 progress.setDescription("Staging changes...");
-                try (AutoCloseableIterator<DiffEntry> diff = command(DiffTree.class)
-                        .setOldTree(ancestorCommit.get()).setNewTree(targetCommit.getId())
-                        .setReportTrees(true).call()) {
-                    // stage changes
-                    progress.setProgress(0);
-                    stagingArea().stage(progress, diff, -1);
-                    mergeStatusBuilder.setChanged(true);
-                    mergeStatusBuilder.setFastFoward(false);
-                    workingTree().updateWorkHead(stagingArea().getTree().getId());
-                }
+                progress.setProgress(0);
+                stageChanges(ancestorCommit.get(), targetCommit, progress);
+                mergeStatusBuilder.setChanged(true);
+                mergeStatusBuilder.setFastFoward(false);
+                workingTree().updateWorkHead(stagingArea().getTree().getId());
             }
 
             progress.complete();
@@ -353,6 +353,63 @@ public class MergeOp extends AbstractGeoGigOp<MergeOp.MergeReport> {
 
     }
 
+    /**
+     * Stages the changes from the common ancestor to the commit to merge.
+     * <p>
+     * The direct children of the root tree are merged structurally: a tree the staging area
+     * didn't change since the common ancestor is replaced as a whole by the merged commit's
+     * version, and only the changes to trees modified on both sides are staged feature by
+     * feature.
+     */
+    private void stageChanges(ObjectId ancestorCommit, RevCommit targetCommit,
+            ProgressListener progress) {
+        final ObjectId ancestorTree = repository().getCommit(ancestorCommit).getTreeId();
+        final ObjectId oursTree = stagingArea().getTree().getId();
+        final ObjectId theirsTree = targetCommit.getTreeId();
+
+        final Set<String> oursChanged = new HashSet<>();
+        try (AutoCloseableIterator<DiffEntry> diffs = command(DiffTree.class)
+                .setOldTree(ancestorTree).setNewTree(oursTree).setReportTrees(true)
+                .setRecursive(false).call()) {
+            diffs.forEachRemaining((d) -> oursChanged.add(d.path()));
+        }
+
+        final List<NodeRef> replaced = new ArrayList<>();
+        final List<String> removed = new ArrayList<>();
+        final List<String> changedOnBothSides = new ArrayList<>();
+        try (AutoCloseableIterator<DiffEntry> diffs = command(DiffTree.class)
+                .setOldTree(ancestorTree).setNewTree(theirsTree).setReportTrees(true)
+                .setRecursive(false).call()) {
+            while (diffs.hasNext()) {
+                DiffEntry diff = diffs.next();
+                TYPE type = diff.isDelete() ? diff.oldObjectType() : diff.newObjectType();
+                if (TYPE.TREE == type && !oursChanged.contains(diff.path())) {
+                    if (diff.isDelete()) {
+                        removed.add(diff.path());
+                    } else {
+                        replaced.add(diff.getNewObject());
+                    }
+                } else {
+                    changedOnBothSides.add(diff.path());
+                }
+            }
+        }
+
+        if (!changedOnBothSides.isEmpty()) {
+            try (AutoCloseableIterator<DiffEntry> diff = command(DiffTree.class)
+                    .setOldTree(ancestorTree).setNewTree(theirsTree)
+                    .setPathFilter(changedOnBothSides).setReportTrees(true).call()) {
+                stagingArea().stage(progress, diff, -1);
+            }
+        }
+        if (!replaced.isEmpty() || !removed.isEmpty()) {
+            UpdateTree updateTree = command(UpdateTree.class).setRoot(stagingArea().getTree());
+            replaced.forEach((tree) -> updateTree.setChild(tree));
+            removed.forEach((path) -> updateTree.removeChildTree(path));
+            stagingArea().updateStageHead(updateTree.call().getId());
+        }
+    }
+
     private Ref doFastForwardMerge(Ref headRef, ObjectId commitId,
             MergeStatusBuilder mergeStatusBuilder) {
         if (headRef instanceof SymRef) {
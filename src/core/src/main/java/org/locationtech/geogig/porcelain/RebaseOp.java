@@ -28,6 +28,7 @@ import org.locationtech.geogig.model.impl.CommitBuilder;
 import org.locationtech.geogig.plumbing.CatObject;
 import org.locationtech.geogig.plumbing.FindCommonAncestor;
 import org.locationtech.geogig.plumbing.RefParse;
+import org.locationtech.geogig.plumbing.ReplayCommitsOp;
 import org.locationtech.geogig.plumbing.UpdateRef;
 import org.locationtech.geogig.plumbing.UpdateSymRef;
 import org.locationtech.geogig.plumbing.WriteTree2;
@@ -53,6 +54,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Lists;
 
 /**
@@ -67,7 +69,9 @@ import com.google.common.collect.Lists;
  * 
  * -HEAD is rewinded to starting point
  * 
- * -Commits are applied. For each commit applied, the corresponding blob is deleted
+ * -Commits are applied. For each commit applied, the corresponding blob is deleted. Runs of commits
+ * that don't need their changes merged are replayed in a single batch by {@link ReplayCommitsOp},
+ * which updates the branch only once
  * 
  * -A blob named 'next' keeps track of the next commit to apply between executions of the rebase
  * command, in case of conflicts
@@ -338,6 +342,7 @@ public class RebaseOp extends AbstractGeoGigOp<Boolean> {
         if (squashCommit == null) {
             boolean ret;
             do {
+                replayNextCommits();
                 ret = applyNextCommit(true);
             } while (ret);
         }
@@ -388,6 +393,55 @@ public class RebaseOp extends AbstractGeoGigOp<Boolean> {
 
     }
 
+    /**
+     * Replays as many of the pending commits as possible with {@link ReplayCommitsOp}, which
+     * doesn't need to stage their changes, and updates the current branch once for all of them.
+     * The first commit that can't be replayed that way is left as the next one to apply.
+     */
+    private void replayNextCommits() {
+        final BlobStore blobStore = context().blobStore();
+        List<String> nextFile = Blobs.readLines(blobStore, REBASE_NEXT_BLOB);
+        if (nextFile.isEmpty()) {
+            return;
+        }
+        final int next = Integer.parseInt(nextFile.get(0));
+        Iterator<RevCommit> pending = new AbstractIterator<RevCommit>() {
+            private int idx = next;
+
+            @Override
+            protected RevCommit computeNext() {
+                List<String> commitFile = Blobs.readLines(blobStore, REBASE_BLOB_PREFIX + idx);
+                if (commitFile.isEmpty()) {
+                    return endOfData();
+                }
+                idx++;
+                return objectDatabase().getCommit(ObjectId.valueOf(commitFile.get(0)));
+            }
+        };
+        List<RevCommit> replayed = command(ReplayCommitsOp.class).setOnto(rebaseHead)
+                .setCommits(pending).call();
+        if (replayed.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < replayed.size(); i++) {
+            blobStore.removeBlob(REBASE_BLOB_PREFIX + (next + i));
+        }
+        try {
+            Blobs.putBlob(blobStore, REBASE_NEXT_BLOB, String.valueOf(next + replayed.size()));
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot read/write rebase commits index", e);
+        }
+
+        final RevCommit last = replayed.get(replayed.size() - 1);
+        rebaseHead = last.getId();
+
+        command(UpdateRef.class).setName(currentBranch).setNewValue(rebaseHead).call();
+        command(UpdateSymRef.class).setName(Ref.HEAD).setNewValue(currentBranch).call();
+
+        workingTree().updateWorkHead(last.getTreeId());
+        stagingArea().updateStageHead(last.getTreeId());
+    }
+
     private boolean applyNextCommit(boolean useCommitChanges) {
         List<String> nextFile = Blobs.readLines(context().blobStore(), REBASE_NEXT_BLOB);
         if (nextFile.isEmpty()) {
@@ -246,6 +246,7 @@ public class SquashOp extends AbstractGeoGigOp<ObjectId> {
         final Platform platform = platform();
         final Map<ObjectId, ObjectId> replacedCommits = Maps.newHashMap();
         replacedCommits.put(until.getId(), squashedId);
+        final List<RevCommit> newCommits = Lists.newArrayListWithCapacity(commits.size());
         ObjectId head = squashedId;
         for (RevCommit commit : commits) {
             CommitBuilder builder = new CommitBuilder(commit);
@@ -264,16 +265,23 @@ public class SquashOp extends AbstractGeoGigOp<ObjectId> {
 
             RevCommit newCommit = builder.build();
             replacedCommits.put(commit.getId(), newCommit.getId());
-            objectDatabase().put(newCommit);
+            newCommits.add(newCommit);
             head = newCommit.getId();
-            ObjectId newTreeId = newCommit.getTreeId();
+        }
+        if (newCommits.isEmpty()) {
+            return head;
+        }
 
-            command(UpdateRef.class).setName(currentBranch).setNewValue(head).call();
-            command(UpdateSymRef.class).setName(Ref.HEAD).setNewValue(currentBranch).call();
+        // the trees are reused as they are, so only the commits need to be written, and the branch
+        // is updated once they all are
+        objectDatabase().putAll(newCommits.iterator());
+        ObjectId newTreeId = newCommits.get(newCommits.size() - 1).getTreeId();
 
-            workingTree().updateWorkHead(newTreeId);
-            stagingArea().updateStageHead(newTreeId);
-        }
+        command(UpdateRef.class).setName(currentBranch).setNewValue(head).call();
+        command(UpdateSymRef.class).setName(Ref.HEAD).setNewValue(currentBranch).call();
+
+        workingTree().updateWorkHead(newTreeId);
+        stagingArea().updateStageHead(newTreeId);
 
         return head;
     }
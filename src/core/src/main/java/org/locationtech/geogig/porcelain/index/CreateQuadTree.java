@@ -51,6 +51,8 @@ public class CreateQuadTree extends AbstractGeoGigOp<Index> {
 
     private @Nullable Envelope bounds;
 
+    private @Nullable Integer lodLevels;
+
     /**
      * @param typeTreeRef the {@link NodeRef} of the canonical tree to build a quadtree from
      * @return {@code this}
@@ -112,6 +114,18 @@ public class CreateQuadTree extends AbstractGeoGigOp<Index> {
         return this;
     }
 
+    /**
+     * Sets the number of level-of-detail trees to maintain for the quad tree.
+     * 
+     * @param lodLevels the number of LOD levels, {@code null} or {@code 0} means no LOD trees
+     * @return {@code this}
+     * @see IndexInfo#MD_QUAD_LOD_LEVELS
+     */
+    public CreateQuadTree setLODLevels(@Nullable Integer lodLevels) {
+        this.lodLevels = lodLevels;
+        return this;
+    }
+
     /**
      * Performs the operation.
      * 
@@ -145,6 +159,9 @@ public class CreateQuadTree extends AbstractGeoGigOp<Index> {
         if (extraAttributes != null) {
             metadata.put(IndexInfo.FEATURE_ATTRIBUTES_EXTRA_DATA, extraAttributes);
         }
+        if (lodLevels != null && lodLevels.intValue() > 0) {
+            metadata.put(IndexInfo.MD_QUAD_LOD_LEVELS, lodLevels);
+        }
 
         Index index = command(CreateIndexOp.class)//
                 .setTreeName(treeName)//
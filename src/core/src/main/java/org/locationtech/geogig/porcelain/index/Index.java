@@ -5,9 +5,12 @@ import java.util.Objects;
 
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.index.BuildLODTreesOp;
 import org.locationtech.geogig.repository.IndexInfo;
 import org.locationtech.geogig.storage.IndexDatabase;
 
+import com.google.common.base.Optional;
+
 /**
  * A value object resulting of creating or updating an index, that provides access to the
  * {@link IndexInfo index information} and the {@link RevTree} the index points to.
@@ -57,6 +60,29 @@ public final class Index {
         return indexdb.getTree(indexTree);
     }
 
+    /**
+     * @return the number of level-of-detail trees maintained for this index
+     * @see IndexInfo#MD_QUAD_LOD_LEVELS
+     */
+    public int lodLevels() {
+        return IndexInfo.getLODLevels(indexInfo);
+    }
+
+    /**
+     * @param level the level-of-detail, between {@code 0} and {@link #lodLevels()} - 1
+     * @return the {@link ObjectId} of the level-of-detail tree for the given level, or absent if
+     *         it hasn't been built
+     * @see BuildLODTreesOp
+     */
+    public Optional<ObjectId> lodTreeId(int level) {
+        checkArgument(level >= 0 && level < lodLevels(), "Invalid LOD level: %s", level);
+        if (RevTree.EMPTY_TREE_ID.equals(indexTree)) {
+            return Optional.of(RevTree.EMPTY_TREE_ID);
+        }
+        return indexdb.resolveIndexedTree(indexInfo,
+                BuildLODTreesOp.lodTreeKey(indexTree, level));
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o instanceof Index) {
@@ -53,6 +53,8 @@ public class UpdateIndexOp extends AbstractGeoGigOp<Index> {
 
     private Envelope bounds = null;
 
+    private @Nullable Integer lodLevels = null;
+
     /**
      * @param treeRefSpec the tree refspec of the index to be updated
      * @return {@code this}
@@ -127,6 +129,18 @@ public class UpdateIndexOp extends AbstractGeoGigOp<Index> {
         return this;
     }
 
+    /**
+     * Sets the number of level-of-detail trees to maintain for the spatial index.
+     * 
+     * @param lodLevels the number of LOD levels, {@code 0} disables LOD trees
+     * @return {@code this}
+     * @see IndexInfo#MD_QUAD_LOD_LEVELS
+     */
+    public UpdateIndexOp setLODLevels(@Nullable Integer lodLevels) {
+        this.lodLevels = lodLevels;
+        return this;
+    }
+
     /**
      * Performs the operation.
      * 
@@ -196,6 +210,15 @@ public class UpdateIndexOp extends AbstractGeoGigOp<Index> {
             updated = true;
         }
 
+        if (lodLevels != null) {
+            if (lodLevels.intValue() > 0) {
+                newMetadata.put(IndexInfo.MD_QUAD_LOD_LEVELS, lodLevels);
+            } else {
+                newMetadata.remove(IndexInfo.MD_QUAD_LOD_LEVELS);
+            }
+            updated = true;
+        }
+
         checkState(updated, "Nothing to update...");
 
         final RevTree canonicalTree = objectDatabase.getTree(typeTreeRef.getObjectId());
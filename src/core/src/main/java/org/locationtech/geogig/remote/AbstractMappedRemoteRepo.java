@@ -145,13 +145,20 @@ public abstract class AbstractMappedRemoteRepo implements IRemoteRepo {
 
     /**
      * Fetch all new objects from the specified {@link Ref} from the remote.
+     * <p>
+     * The remote is first given the chance to {@link #fetchSparsePack send all the commits at
+     * once}, otherwise the changes of each commit are requested separately.
      * 
      * @param ref the remote ref that points to new commit data
-     * @param fetchLimit the maximum depth to fetch, note, a sparse clone cannot be a shallow clone
+     * @param fetchLimit the maximum depth to fetch, note, a sparse clone can only be a shallow
+     *        clone if the remote supports {@link #fetchSparsePack sparse packs}
      */
     @Override
     public final void fetchNewData(Ref ref, Optional<Integer> fetchLimit,
             ProgressListener progress) {
+        if (fetchSparsePack(ref, fetchLimit, progress)) {
+            return;
+        }
         Preconditions.checkState(!fetchLimit.isPresent(), "A sparse clone cannot be shallow.");
         FetchCommitGatherer gatherer = new FetchCommitGatherer(getRemoteWrapper(), localRepository);
 
@@ -172,9 +179,25 @@ public abstract class AbstractMappedRemoteRepo implements IRemoteRepo {
     }
 
     /**
-     * This function takes all of the changes introduced by the specified commit and filters them
-     * based on the repository filter. It then uses the filtered results to construct a new commit
-     * that is the descendant of commits that the original's parents are mapped to.
+     * Fetches the commits of the specified {@link Ref} and their filtered changes in a single
+     * {@link BinaryPackedSparseCommits pack}, {@link #applySparseCommit applying} each one in
+     * order.
+     * <p>
+     * This default implementation does nothing, remotes able to produce such packs override it.
+     * 
+     * @param ref the remote ref that points to new commit data
+     * @param fetchLimit the maximum depth to fetch
+     * @return {@code true} if the commits were fetched, {@code false} if they need to be fetched
+     *         one by one
+     */
+    protected boolean fetchSparsePack(Ref ref, Optional<Integer> fetchLimit,
+            ProgressListener progress) {
+        return false;
+    }
+
+    /**
+     * Fetches the specified commit and its filtered changes from the remote and
+     * {@link #applySparseCommit applies} them.
      * 
      * @param commitId the commit id of the original, non-sparse commit
      * @param allowEmpty allow the function to create an empty sparse commit
@@ -186,86 +209,122 @@ public abstract class AbstractMappedRemoteRepo implements IRemoteRepo {
             RevCommit commit = (RevCommit) object.get();
 
             try (FilteredDiffIterator changes = getFilteredChanges(commit)) {
-                GraphDatabase graphDatabase = localRepository.graphDatabase();
-                ObjectStore objectDatabase = localRepository.objectDatabase();
-                graphDatabase.put(commit.getId(), commit.getParentIds());
-
-                RevTree rootTree = RevTree.EMPTY;
-
-                if (commit.getParentIds().size() > 0) {
-                    // Map this commit to the last "sparse" commit in my ancestry
-                    ObjectId mappedCommit = graphDatabase.getMapping(commit.getParentIds().get(0));
-                    graphDatabase.map(commit.getId(), mappedCommit);
-                    Optional<ObjectId> treeId = localRepository.command(ResolveTreeish.class)
-                            .setTreeish(mappedCommit).call();
-                    if (treeId.isPresent()) {
-                        rootTree = localRepository.getTree(treeId.get());
-                    }
+                applySparseCommit(commit, changes, allowEmpty);
+            }
+        }
+    }
 
-                } else {
-                    graphDatabase.map(commit.getId(), ObjectId.NULL);
+    /**
+     * This function takes all of the changes introduced by the specified commit and filters them
+     * based on the repository filter. It then uses the filtered results to construct a new commit
+     * that is the descendant of commits that the original's parents are mapped to.
+     * <p>
+     * Parents that were not fetched, as the ones past the depth of a shallow clone, are not mapped
+     * and hence left out of the new commit, whose changes are then expected to be relative to an
+     * empty tree.
+     * 
+     * @param commit the original, non-sparse commit
+     * @param changes the filtered changes introduced by the commit
+     * @param allowEmpty allow the function to create an empty sparse commit
+     */
+    protected final void applySparseCommit(RevCommit commit, FilteredDiffIterator changes,
+            boolean allowEmpty) {
+
+        GraphDatabase graphDatabase = localRepository.graphDatabase();
+        ObjectStore objectDatabase = localRepository.objectDatabase();
+        graphDatabase.put(commit.getId(), commit.getParentIds());
+
+        RevTree rootTree = RevTree.EMPTY;
+
+        if (commit.getParentIds().size() > 0) {
+            // Map this commit to the last "sparse" commit in my ancestry
+            ObjectId mappedCommit = getMapping(commit.getParentIds().get(0));
+            graphDatabase.map(commit.getId(), mappedCommit);
+            if (!mappedCommit.isNull()) {
+                Optional<ObjectId> treeId = localRepository.command(ResolveTreeish.class)
+                        .setTreeish(mappedCommit).call();
+                if (treeId.isPresent()) {
+                    rootTree = localRepository.getTree(treeId.get());
                 }
+            }
+
+        } else {
+            graphDatabase.map(commit.getId(), ObjectId.NULL);
+        }
 
-                AutoCloseableIterator<DiffEntry> it = AutoCloseableIterator.filter(changes,
-                        new Predicate<DiffEntry>() {
-                            @Override
-                            public boolean apply(DiffEntry e) {
-                                return true;
-                            }
-                        });
-
-                if (it.hasNext()) {
-                    // Create new commit
-                    WriteTree writeTree = localRepository.command(WriteTree.class)
-                            .setOldRoot(Suppliers.ofInstance(rootTree)).setDiffSupplier(
-                                    Suppliers.ofInstance((AutoCloseableIterator<DiffEntry>) it));
-
-                    ObjectId newTreeId = writeTree.call();
-
-                    CommitBuilder builder = new CommitBuilder(commit);
-                    List<ObjectId> newParents = new LinkedList<ObjectId>();
-                    for (ObjectId parentCommitId : commit.getParentIds()) {
-                        newParents.add(graphDatabase.getMapping(parentCommitId));
+        AutoCloseableIterator<DiffEntry> it = AutoCloseableIterator.filter(changes,
+                new Predicate<DiffEntry>() {
+                    @Override
+                    public boolean apply(DiffEntry e) {
+                        return true;
                     }
-                    builder.setParentIds(newParents);
-                    builder.setTreeId(newTreeId);
+                });
 
-                    RevCommit mapped = builder.build();
-                    objectDatabase.put(mapped);
+        if (it.hasNext()) {
+            // Create new commit
+            WriteTree writeTree = localRepository.command(WriteTree.class)
+                    .setOldRoot(Suppliers.ofInstance(rootTree)).setDiffSupplier(
+                            Suppliers.ofInstance((AutoCloseableIterator<DiffEntry>) it));
 
-                    if (changes.wasFiltered()) {
-                        graphDatabase.setProperty(mapped.getId(), GraphDatabase.SPARSE_FLAG,
-                                "true");
-                    }
+            ObjectId newTreeId = writeTree.call();
 
-                    graphDatabase.map(mapped.getId(), commit.getId());
-                    // Replace the old mapping with the new commit Id.
-                    graphDatabase.map(commit.getId(), mapped.getId());
-                } else if (allowEmpty) {
-                    CommitBuilder builder = new CommitBuilder(commit);
-                    List<ObjectId> newParents = new LinkedList<ObjectId>();
-                    for (ObjectId parentCommitId : commit.getParentIds()) {
-                        newParents.add(graphDatabase.getMapping(parentCommitId));
-                    }
-                    builder.setParentIds(newParents);
-                    builder.setTreeId(rootTree.getId());
-                    builder.setMessage(PLACEHOLDER_COMMIT_MESSAGE);
-
-                    RevCommit mapped = builder.build();
-                    objectDatabase.put(mapped);
-
-                    graphDatabase.setProperty(mapped.getId(), GraphDatabase.SPARSE_FLAG, "true");
-
-                    graphDatabase.map(mapped.getId(), commit.getId());
-                    // Replace the old mapping with the new commit Id.
-                    graphDatabase.map(commit.getId(), mapped.getId());
-                } else {
-                    // Mark the mapped commit as sparse, since it wont have these changes
-                    graphDatabase.setProperty(graphDatabase.getMapping(commit.getId()),
-                            GraphDatabase.SPARSE_FLAG, "true");
-                }
+            CommitBuilder builder = new CommitBuilder(commit);
+            builder.setParentIds(mappedParents(commit));
+            builder.setTreeId(newTreeId);
+
+            RevCommit mapped = builder.build();
+            objectDatabase.put(mapped);
+
+            if (changes.wasFiltered()) {
+                graphDatabase.setProperty(mapped.getId(), GraphDatabase.SPARSE_FLAG, "true");
             }
+
+            graphDatabase.map(mapped.getId(), commit.getId());
+            // Replace the old mapping with the new commit Id.
+            graphDatabase.map(commit.getId(), mapped.getId());
+        } else if (allowEmpty) {
+            CommitBuilder builder = new CommitBuilder(commit);
+            builder.setParentIds(mappedParents(commit));
+            builder.setTreeId(rootTree.getId());
+            builder.setMessage(PLACEHOLDER_COMMIT_MESSAGE);
+
+            RevCommit mapped = builder.build();
+            objectDatabase.put(mapped);
+
+            graphDatabase.setProperty(mapped.getId(), GraphDatabase.SPARSE_FLAG, "true");
+
+            graphDatabase.map(mapped.getId(), commit.getId());
+            // Replace the old mapping with the new commit Id.
+            graphDatabase.map(commit.getId(), mapped.getId());
+        } else if (!graphDatabase.getMapping(commit.getId()).isNull()) {
+            // Mark the mapped commit as sparse, since it wont have these changes
+            graphDatabase.setProperty(graphDatabase.getMapping(commit.getId()),
+                    GraphDatabase.SPARSE_FLAG, "true");
+        }
+    }
+
+    private List<ObjectId> mappedParents(RevCommit commit) {
+        List<ObjectId> newParents = new LinkedList<ObjectId>();
+        for (ObjectId parentCommitId : commit.getParentIds()) {
+            ObjectId mappedParent = getMapping(parentCommitId);
+            if (!mappedParent.isNull()) {
+                newParents.add(mappedParent);
+            }
+        }
+        return newParents;
+    }
+
+    /**
+     * @return the commit the given original commit is mapped to, or {@link ObjectId#NULL} if it's
+     *         not mapped
+     */
+    protected final ObjectId getMapping(ObjectId originalCommitId) {
+        GraphDatabase graphDatabase = localRepository.graphDatabase();
+        if (!graphDatabase.exists(originalCommitId)) {
+            return ObjectId.NULL;
         }
+        ObjectId mapping = graphDatabase.getMapping(originalCommitId);
+        return mapping == null ? ObjectId.NULL : mapping;
     }
 
     /**
@@ -208,9 +208,21 @@ abstract class AbstractRemoteRepo implements IRemoteRepo {
      */
     protected CommitTraverser getPushTraverser(Optional<Ref> remoteRef)
             throws SynchronizationException {
+        return getPushTraverser(remoteRef, getRemoteWrapper());
+    }
+
+    /**
+     * Returns the appropriate commit traverser to use for the push operation, querying the remote
+     * through the given wrapper.
+     * 
+     * @param remoteRef the remote ref to push to
+     * @param remoteWrapper the {@link RepositoryWrapper} for this remote
+     * @return the {@link CommitTraverser} to use.
+     */
+    protected CommitTraverser getPushTraverser(Optional<Ref> remoteRef,
+            RepositoryWrapper remoteWrapper) throws SynchronizationException {
 
         RepositoryWrapper localWrapper = new LocalRepositoryWrapper(localRepository);
-        RepositoryWrapper remoteWrapper = getRemoteWrapper();
 
         CommitTraverser traverser;
         if (remoteWrapper.getRepoDepth().isPresent()) {
@@ -9,28 +9,42 @@
  */
 package org.locationtech.geogig.remote;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
 
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.data.retrieve.BackgroundingIterator;
 import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevFeature;
 import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk;
+import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.AbstractConsumer;
 import org.locationtech.geogig.repository.impl.Deduplicator;
 import org.locationtech.geogig.repository.impl.PostOrderIterator;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
 import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.RawObject;
 import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
+import org.locationtech.geogig.storage.datastream.SerializationFactoryProxy;
+import org.locationtech.geogig.storage.datastream.v2_3.DataStreamSerializationFactoryV2_3;
 import org.locationtech.geogig.storage.impl.ObjectSerializingFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +58,10 @@ import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 public final class BinaryPackedObjects {
 
@@ -53,9 +71,179 @@ public final class BinaryPackedObjects {
 
     private final ObjectStore database;
 
+    /**
+     * Name of the legacy serialization format, assumed when a client or server doesn't state one
+     */
+    public static final String FORMAT_V1 = "1";
+
+    /**
+     * Name of the {@link DataStreamSerializationFactoryV2_3 2.3} serialization format
+     */
+    public static final String FORMAT_V2_3 = "2.3";
+
+    /**
+     * Name of the format that transfers objects in the {@link SerializationFactoryProxy encoding}
+     * object stores keep them in, so that stores with the same {@link ObjectStore#getRawFormat()
+     * raw format} at both ends exchange them as is
+     */
+    public static final String FORMAT_RAW = "raw-" + SerializationFactoryProxy.FORMAT_NAME;
+
+    /**
+     * Content type of the {@code batchobjects} responses sent in the {@link #FORMAT_RAW raw
+     * format}, older servers always respond in the {@link #FORMAT_V1 legacy format}
+     */
+    public static final String RAW_CONTENT_TYPE = "application/x-geogig-raw-pack";
+
+    /**
+     * Suffix of the names of formats that send {@link RevFeature features} as deltas to a previous
+     * version the receiving end already has, when smaller
+     */
+    public static final String DELTA_SUFFIX = "-delta";
+
+    /**
+     * Prefix of the content type of the {@code batchobjects} responses sent in formats other than
+     * the {@link #FORMAT_V1 legacy} and the {@link #FORMAT_RAW raw} ones, followed by the format
+     * name
+     */
+    public static final String PACK_CONTENT_TYPE_PREFIX = "application/x-geogig-pack-";
+
+    /**
+     * The names of the serialization formats this version can read, in order of preference
+     */
+    public static final ImmutableList<String> SUPPORTED_FORMATS = ImmutableList.of(FORMAT_V2_3,
+            FORMAT_V1);
+
+    /**
+     * Prefix of the {@code beginpush} response line listing the serialization formats accepted by
+     * {@code sendobject}
+     */
+    public static final String SENDOBJECT_FORMATS_PREFIX = "sendobject-formats:";
+
+    /**
+     * Prefix of the {@code beginpush} response line listing the content encodings accepted by
+     * {@code sendobject}, besides gzip which is always accepted
+     */
+    public static final String SENDOBJECT_ENCODINGS_PREFIX = "sendobject-encodings:";
+
+    /**
+     * Prefix of the {@code beginpush} response line with the id of the push, to be sent as the
+     * {@code pushId} parameter of the {@code sendobject} and {@code endpush} requests so that the
+     * objects are staged until the push ends
+     */
+    public static final String PUSH_ID_PREFIX = "push-id:";
+
+    /**
+     * Maximum number of objects read ahead of the object store by {@link #ingest}
+     */
+    private static final int INGEST_QUEUE_SIZE = 5_000;
+
+    /**
+     * Maximum number of features a single {@link #write} looks for delta bases for
+     */
+    private static final int MAX_DELTA_BASES = 500_000;
+
+    /**
+     * Number of objects whose {@link #FORMAT_RAW raw} encoding {@link #write} reads at once
+     */
+    private static final int RAW_PREFETCH_SIZE = 1_000;
+
     public BinaryPackedObjects(ObjectStore database) {
+        this(database, DataStreamSerializationFactoryV1.INSTANCE);
+    }
+
+    /**
+     * @param marshaller the serializer used to read ingested objects
+     */
+    public BinaryPackedObjects(ObjectStore database, ObjectSerializingFactory marshaller) {
         this.database = database;
-        this.marshaller = DataStreamSerializationFactoryV1.INSTANCE;
+        this.marshaller = marshaller;
+    }
+
+    /**
+     * @return whether objects can be transferred to and from the given store in the
+     *         {@link #FORMAT_RAW raw format} without decoding them
+     */
+    public static boolean supportsRawFormat(ObjectStore store) {
+        return SerializationFactoryProxy.FORMAT_NAME.equals(store.getRawFormat());
+    }
+
+    /**
+     * @return the names of the formats objects can be transferred to the given store in, in order
+     *         of preference
+     */
+    public static ImmutableList<String> supportedFormats(ObjectStore store) {
+        ImmutableList.Builder<String> formats = ImmutableList.builder();
+        if (supportsRawFormat(store)) {
+            formats.add(FORMAT_RAW + DELTA_SUFFIX, FORMAT_RAW);
+        }
+        formats.add(FORMAT_V2_3 + DELTA_SUFFIX);
+        return formats.addAll(SUPPORTED_FORMATS).build();
+    }
+
+    /**
+     * @return the content type of a {@code batchobjects} response in the given format
+     * @see #formatOf(String)
+     */
+    public static String contentType(String format) {
+        if (FORMAT_V1.equals(format)) {
+            return "application/octet-stream";
+        }
+        if (FORMAT_RAW.equals(format)) {
+            return RAW_CONTENT_TYPE;
+        }
+        return PACK_CONTENT_TYPE_PREFIX + format;
+    }
+
+    /**
+     * @return the format of a {@code batchobjects} response with the given content type
+     * @see #contentType(String)
+     */
+    public static String formatOf(@Nullable String contentType) {
+        if (contentType == null) {
+            return FORMAT_V1;
+        }
+        final int params = contentType.indexOf(';');
+        final String type = (params < 0 ? contentType : contentType.substring(0, params)).trim();
+        if (RAW_CONTENT_TYPE.equals(type)) {
+            return FORMAT_RAW;
+        }
+        if (type.startsWith(PACK_CONTENT_TYPE_PREFIX)) {
+            return type.substring(PACK_CONTENT_TYPE_PREFIX.length());
+        }
+        return FORMAT_V1;
+    }
+
+    /**
+     * Like {@link #serializer(String)}, but also supports the {@link #FORMAT_RAW raw format}, in
+     * which objects are read from or written to {@code store} without decoding them if it
+     * {@link #supportsRawFormat supports it}, and the {@link #DELTA_SUFFIX delta} variants of the
+     * formats, for which base features are read from {@code store}.
+     */
+    public static ObjectSerializingFactory serializer(String format, ObjectStore store) {
+        if (format.endsWith(DELTA_SUFFIX)) {
+            String baseFormat = format.substring(0, format.length() - DELTA_SUFFIX.length());
+            return new FeatureDeltaSerializer(serializer(baseFormat, store), store);
+        }
+        if (FORMAT_RAW.equals(format)) {
+            return new RawObjectSerializer(supportsRawFormat(store) ? store : null);
+        }
+        return serializer(format);
+    }
+
+    /**
+     * @param format one of the {@link #SUPPORTED_FORMATS supported format} names
+     * @return the serializer for the given format
+     * @throws IllegalArgumentException if the format is not supported
+     */
+    public static ObjectSerializingFactory serializer(String format) {
+        switch (format) {
+        case FORMAT_V1:
+            return DataStreamSerializationFactoryV1.INSTANCE;
+        case FORMAT_V2_3:
+            return DataStreamSerializationFactoryV2_3.INSTANCE;
+        default:
+            throw new IllegalArgumentException("Unsupported serialization format: " + format);
+        }
     }
 
     /**
@@ -63,8 +251,17 @@ public final class BinaryPackedObjects {
      */
     public long write(ObjectFunnel funnel, List<ObjectId> want, List<ObjectId> have,
             boolean traverseCommits, Deduplicator deduplicator) throws IOException {
+        return write(funnel, want, have, traverseCommits, deduplicator, 0L);
+    }
+
+    /**
+     * @return the number of objects written
+     * @see #write(ObjectFunnel, List, List, Set, Callback, boolean, Deduplicator, long)
+     */
+    public long write(ObjectFunnel funnel, List<ObjectId> want, List<ObjectId> have,
+            boolean traverseCommits, Deduplicator deduplicator, long skip) throws IOException {
         return write(funnel, want, have, new HashSet<ObjectId>(), DEFAULT_CALLBACK, traverseCommits,
-                deduplicator);
+                deduplicator, skip);
     }
 
     /**
@@ -73,6 +270,21 @@ public final class BinaryPackedObjects {
     public long write(ObjectFunnel funnel, List<ObjectId> want, List<ObjectId> have,
             Set<ObjectId> sent, Callback callback, boolean traverseCommits,
             Deduplicator deduplicator) throws IOException {
+        return write(funnel, want, have, sent, callback, traverseCommits, deduplicator, 0L);
+    }
+
+    /**
+     * Writes the objects needed to go from {@code have} to {@code want}, skipping the first
+     * {@code skip} ones. Since the order objects are written in only depends on {@code want},
+     * {@code have} and the repository contents, this allows to resume a transfer that was
+     * interrupted after the receiving end stored {@code skip} objects.
+     * 
+     * @return the number of objects written
+     * @see #resumeToken(List, List, long)
+     */
+    public long write(ObjectFunnel funnel, List<ObjectId> want, List<ObjectId> have,
+            Set<ObjectId> sent, Callback callback, boolean traverseCommits,
+            Deduplicator deduplicator, final long skip) throws IOException {
 
         for (ObjectId i : want) {
             if (!database.exists(i)) {
@@ -80,10 +292,15 @@ public final class BinaryPackedObjects {
             }
         }
 
+        final FeatureDeltaSerializer deltas = funnel.serializer() instanceof FeatureDeltaSerializer
+                ? (FeatureDeltaSerializer) funnel.serializer() : null;
+        final List<RevCommit> commits = new ArrayList<>();
+
         LOGGER.info("scanning for previsit list...");
         Stopwatch sw = Stopwatch.createStarted();
         ImmutableList<ObjectId> needsPrevisit = traverseCommits
-                ? scanForPrevisitList(want, have, deduplicator) : ImmutableList.copyOf(have);
+                ? scanForPrevisitList(want, have, deduplicator, deltas == null ? null : commits)
+                : ImmutableList.copyOf(have);
         LOGGER.info(String.format(
                 "Previsit list built in %s for %,d ids: %s. Calculating reachable content ids...",
                 sw.stop(), needsPrevisit.size(), needsPrevisit));
@@ -97,6 +314,21 @@ public final class BinaryPackedObjects {
 
         deduplicator.reset();
 
+        if (deltas != null) {
+            if (!traverseCommits) {
+                for (ObjectId id : want) {
+                    RevObject commit = database.getIfPresent(id);
+                    if (commit instanceof RevCommit) {
+                        commits.add((RevCommit) commit);
+                    }
+                }
+            }
+            sw.reset().start();
+            Map<ObjectId, ObjectId> bases = deltaBases(commits, previsitResults);
+            deltas.setBases(bases);
+            LOGGER.info(String.format("Found %,d delta bases in %s", bases.size(), sw.stop()));
+        }
+
         LOGGER.info("obtaining post order iterator on range...");
         sw.reset().start();
 
@@ -105,13 +337,28 @@ public final class BinaryPackedObjects {
         long objectCount = 0;
         LOGGER.info("PostOrderIterator.range took {}", sw.stop());
 
+        if (skip > 0) {
+            LOGGER.info(String.format("skipping %,d objects already sent...", skip));
+            for (long skipped = 0; skipped < skip && objects.hasNext(); skipped++) {
+                objects.next();
+            }
+        }
+
+        final RawObjectSerializer raw = rawSerializer(funnel.serializer());
         try {
             LOGGER.info("writing objects to remote...");
-            while (objects.hasNext()) {
-                RevObject object = objects.next();
-                funnel.funnel(object);
-                objectCount++;
-                callback.callback(Suppliers.ofInstance(object));
+            Iterator<List<RevObject>> batches = Iterators.partition(objects, RAW_PREFETCH_SIZE);
+            while (batches.hasNext()) {
+                List<RevObject> batch = batches.next();
+                if (raw != null) {
+                    // read the encoded objects in bulk rather than one by one as they're written
+                    raw.prefetch(Lists.transform(batch, (o) -> o.getId()));
+                }
+                for (RevObject object : batch) {
+                    funnel.funnel(object);
+                    objectCount++;
+                    callback.callback(Suppliers.ofInstance(object));
+                }
             }
         } catch (IOException e) {
             String causeMessage = Throwables.getRootCause(e).getMessage();
@@ -132,7 +379,7 @@ public final class BinaryPackedObjects {
      * 
      */
     private ImmutableList<ObjectId> scanForPrevisitList(List<ObjectId> want, List<ObjectId> have,
-            Deduplicator deduplicator) {
+            Deduplicator deduplicator, @Nullable List<RevCommit> visited) {
         /*
          * @note Implementation note: To find the previsit list, we just iterate over all the
          * commits that will be visited according to our want and have lists. Any parents of commits
@@ -145,6 +392,9 @@ public final class BinaryPackedObjects {
 
         while (willBeVisited.hasNext()) {
             RevCommit next = willBeVisited.next();
+            if (visited != null) {
+                visited.add(next);
+            }
             List<ObjectId> parents = new ArrayList<ObjectId>(next.getParentIds());
             parents.retainAll(have);
             builder.addAll(parents);
@@ -153,6 +403,52 @@ public final class BinaryPackedObjects {
         return ImmutableList.copyOf(builder.build());
     }
 
+    /**
+     * Maps the features changed by the given commits with respect to their first parents to the
+     * version they replace, as long as the receiving end has it, i.e. it's one of the
+     * {@code receiverHas} ids.
+     */
+    private Map<ObjectId, ObjectId> deltaBases(List<RevCommit> commits,
+            List<ObjectId> receiverHas) {
+        final Map<ObjectId, ObjectId> bases = new ConcurrentHashMap<>();
+        for (RevCommit commit : commits) {
+            if (commit.getParentIds().isEmpty() || bases.size() >= MAX_DELTA_BASES) {
+                continue;
+            }
+            RevObject parent = database.getIfPresent(commit.getParentIds().get(0));
+            if (!(parent instanceof RevCommit)) {
+                continue;
+            }
+            RevTree oldTree = database.getIfPresent(((RevCommit) parent).getTreeId(),
+                    RevTree.class);
+            RevTree newTree = database.getIfPresent(commit.getTreeId(), RevTree.class);
+            if (oldTree == null || newTree == null) {
+                continue;
+            }
+            new PreOrderDiffWalk(oldTree, newTree, database, database).walk(new AbstractConsumer() {
+                @Override
+                public boolean feature(@Nullable NodeRef left, @Nullable NodeRef right) {
+                    if (left != null && right != null) {
+                        bases.putIfAbsent(right.getObjectId(), left.getObjectId());
+                    }
+                    return bases.size() < MAX_DELTA_BASES;
+                }
+            });
+        }
+        if (bases.isEmpty()) {
+            return bases;
+        }
+        final Set<ObjectId> candidates = new HashSet<>(bases.values());
+        final Set<ObjectId> known = new HashSet<>();
+        for (ObjectId id : receiverHas) {
+            if (candidates.contains(id)) {
+                known.add(id);
+            }
+        }
+        bases.values().retainAll(known);
+        return bases;
+    }
+
     private ImmutableList<ObjectId> reachableContentIds(ImmutableList<ObjectId> needsPrevisit,
             Deduplicator deduplicator) {
 
@@ -205,7 +501,32 @@ public final class BinaryPackedObjects {
      * @return the number of objects parsed from the input stream
      */
     public IngestResults ingest(final InputStream in, final Callback callback) {
-        Iterator<RevObject> objects = streamToObjects(in);
+        return ingest(in, callback, BulkOpListener.NOOP_LISTENER);
+    }
+
+    /**
+     * @param storeListener notified of each object stored or found to already exist, in the order
+     *        of the stream, for example to keep track of how many objects of an interrupted
+     *        transfer can be {@link #resumeToken(List, List, long) skipped} when resuming it.
+     *        Objects the store reports before the ones preceding them in the stream are held back
+     *        until those are reported too, so the notified objects are always a prefix of the
+     *        stream even if the store writes batches concurrently and one of them fails.
+     * @return the number of objects parsed from the input stream
+     */
+    public IngestResults ingest(final InputStream in, final Callback callback,
+            final BulkOpListener storeListener) {
+        if (readsRaw(marshaller) && supportsRawFormat(database)) {
+            return ingestRaw(in, (RawObjectReader) marshaller, callback, storeListener);
+        }
+        // read and decode the stream on a background thread, so that the network and the object
+        // store are kept busy at the same time instead of taking turns
+        BackgroundingIterator<RevObject> objects = new BackgroundingIterator<>(
+                streamToObjects(in), INGEST_QUEUE_SIZE);
+        final InStreamOrder inStreamOrder = new InStreamOrder(storeListener);
+        Iterator<RevObject> tracked = Iterators.transform(objects, (o) -> {
+            inStreamOrder.read(o.getId());
+            return o;
+        });
 
         BulkOpListener listener = new BulkOpListener() {
             @Override
@@ -221,10 +542,163 @@ public final class BinaryPackedObjects {
 
         CountingListener countingListener = BulkOpListener.newCountingListener();
         listener = BulkOpListener.composite(countingListener, listener);
-        database.putAll(objects, listener);
+        listener = BulkOpListener.composite(listener, inStreamOrder);
+        try {
+            database.putAll(tracked, listener);
+        } finally {
+            objects.close();
+        }
         return new IngestResults(countingListener.inserted(), countingListener.found());
     }
 
+    private static @Nullable RawObjectSerializer rawSerializer(
+            ObjectSerializingFactory marshaller) {
+        if (marshaller instanceof FeatureDeltaSerializer) {
+            return rawSerializer(((FeatureDeltaSerializer) marshaller).format());
+        }
+        return marshaller instanceof RawObjectSerializer ? (RawObjectSerializer) marshaller
+                : null;
+    }
+
+    private static boolean readsRaw(ObjectSerializingFactory marshaller) {
+        return rawSerializer(marshaller) != null;
+    }
+
+    /**
+     * Stores the objects of a {@link #FORMAT_RAW raw format} stream as they come, without decoding
+     * them
+     */
+    private IngestResults ingestRaw(final InputStream in, final RawObjectReader raw,
+            final Callback callback, final BulkOpListener storeListener) {
+
+        // the types of the objects handed to the store until it reports them as inserted or found
+        final Map<ObjectId, TYPE> pending = new ConcurrentHashMap<>();
+
+        BackgroundingIterator<RawObject> objects = new BackgroundingIterator<>(
+                streamToRawObjects(in, raw), INGEST_QUEUE_SIZE);
+        final InStreamOrder inStreamOrder = new InStreamOrder(storeListener);
+        Iterator<RawObject> tracked = Iterators.transform(objects, (o) -> {
+            pending.put(o.id(), o.type());
+            inStreamOrder.read(o.id());
+            return o;
+        });
+
+        BulkOpListener listener = new BulkOpListener() {
+            @Override
+            public void inserted(final ObjectId objectId, @Nullable Integer storageSizeBytes) {
+                final TYPE type = pending.remove(objectId);
+                callback.callback(type, new Supplier<RevObject>() {
+                    @Override
+                    public RevObject get() {
+                        return database.get(objectId);
+                    }
+                });
+            }
+
+            @Override
+            public void found(ObjectId objectId, @Nullable Integer storageSizeBytes) {
+                pending.remove(objectId);
+            }
+        };
+
+        CountingListener countingListener = BulkOpListener.newCountingListener();
+        listener = BulkOpListener.composite(countingListener, listener);
+        listener = BulkOpListener.composite(listener, inStreamOrder);
+        try {
+            database.putAllRaw(tracked, listener);
+        } finally {
+            objects.close();
+        }
+        return new IngestResults(countingListener.inserted(), countingListener.found());
+    }
+
+    /**
+     * Relays the objects reported by a store to a listener in the order they were read from the
+     * stream, holding back the ones reported before an object that precedes them in the stream
+     */
+    private static class InStreamOrder extends BulkOpListener {
+
+        private final BulkOpListener target;
+
+        /**
+         * The position in the stream of the objects handed to the store and not reported yet
+         */
+        private final Map<ObjectId, Long> positions = new HashMap<>();
+
+        /**
+         * The objects reported out of order, by position, and whether they were inserted
+         */
+        private final Map<Long, Map.Entry<ObjectId, Boolean>> reported = new HashMap<>();
+
+        private long read;
+
+        private long next;
+
+        InStreamOrder(BulkOpListener target) {
+            this.target = target;
+        }
+
+        synchronized void read(ObjectId id) {
+            final Long previous = positions.put(id, Long.valueOf(read++));
+            if (previous != null) {
+                // the later copy is reported in its place, and resent if skipped
+                report(previous, id, false);
+            }
+        }
+
+        @Override
+        public synchronized void inserted(ObjectId id, @Nullable Integer storageSizeBytes) {
+            reported(id, true);
+        }
+
+        @Override
+        public synchronized void found(ObjectId id, @Nullable Integer storageSizeBytes) {
+            reported(id, false);
+        }
+
+        private void reported(ObjectId id, boolean inserted) {
+            final Long position = positions.remove(id);
+            if (position != null) {
+                report(position, id, inserted);
+            }
+        }
+
+        private void report(Long position, ObjectId id, boolean inserted) {
+            reported.put(position, Maps.immutableEntry(id, Boolean.valueOf(inserted)));
+            Map.Entry<ObjectId, Boolean> e;
+            while ((e = reported.remove(Long.valueOf(next))) != null) {
+                next++;
+                if (e.getValue().booleanValue()) {
+                    target.inserted(e.getKey(), null);
+                } else {
+                    target.found(e.getKey(), null);
+                }
+            }
+        }
+    }
+
+    private Iterator<RawObject> streamToRawObjects(final InputStream in,
+            final RawObjectReader raw) {
+        return new AbstractIterator<RawObject>() {
+            @Override
+            protected RawObject computeNext() {
+                final ObjectId id;
+                try {
+                    id = readObjectId(in);
+                } catch (EOFException eof) {
+                    return endOfData();
+                } catch (IOException e) {
+                    throw Throwables.propagate(e);
+                }
+                try {
+                    return raw.readRaw(id, in);
+                } catch (IOException e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+        };
+    }
+
     private Iterator<RevObject> streamToObjects(final InputStream in) {
         return new AbstractIterator<RevObject>() {
             @Override
@@ -259,8 +733,64 @@ public final class BinaryPackedObjects {
         return id;
     }
 
+    /**
+     * Creates a token that identifies a transfer from {@code have} to {@code want} that was
+     * interrupted after {@code offset} objects were received, to be sent back to the server in
+     * order to resume it.
+     * 
+     * @see #resumeOffset(String, List, List)
+     */
+    public static String resumeToken(List<ObjectId> want, List<ObjectId> have, long offset) {
+        checkArgument(offset >= 0, "offset must be >= 0: %s", offset);
+        return transferDigest(want, have) + ":" + offset;
+    }
+
+    /**
+     * @return the number of objects to skip for the given resume token, or zero if the token is
+     *         invalid or was not created for the same {@code want} and {@code have} lists
+     * @see #resumeToken(List, List, long)
+     */
+    public static long resumeOffset(@Nullable String token, List<ObjectId> want,
+            List<ObjectId> have) {
+        if (token == null) {
+            return 0L;
+        }
+        final int sep = token.lastIndexOf(':');
+        if (sep < 0 || !token.substring(0, sep).equals(transferDigest(want, have))) {
+            LOGGER.info("Ignoring resume token {}, it doesn't match the requested objects", token);
+            return 0L;
+        }
+        try {
+            return Math.max(0L, Long.parseLong(token.substring(sep + 1)));
+        } catch (NumberFormatException e) {
+            LOGGER.info("Ignoring invalid resume token {}", token);
+            return 0L;
+        }
+    }
+
+    private static String transferDigest(List<ObjectId> want, List<ObjectId> have) {
+        Hasher hasher = Hashing.sha1().newHasher();
+        for (ObjectId id : want) {
+            hasher.putBytes(id.getRawValue());
+        }
+        hasher.putByte((byte) 0);
+        for (ObjectId id : have) {
+            hasher.putBytes(id.getRawValue());
+        }
+        return hasher.hash().toString();
+    }
+
     public static interface Callback {
         public abstract void callback(Supplier<RevObject> object);
+
+        /**
+         * Called instead of {@link #callback(Supplier)} when the type of the object is known
+         * without decoding it, so that callbacks interested in some types only can avoid decoding
+         * the others.
+         */
+        public default void callback(TYPE type, Supplier<RevObject> object) {
+            callback(object);
+        }
     }
 
     private static final Callback DEFAULT_CALLBACK = new Callback() {
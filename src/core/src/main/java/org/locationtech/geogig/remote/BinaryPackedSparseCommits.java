@@ -0,0 +1,230 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Stack;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.index.BoundsFilteredDiffOp;
+import org.locationtech.geogig.porcelain.DiffOp;
+import org.locationtech.geogig.repository.DiffEntry;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.repository.impl.RepositoryFilter;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Packs the history of a branch for a sparse clone in a single stream, as opposed to requesting
+ * the {@link BinaryPackedChanges filtered changes} of each commit separately.
+ * <p>
+ * For each commit, oldest first, the stream holds the commit followed by the changes it introduces
+ * that pass the {@link RepositoryFilter}, as written by {@link BinaryPackedChanges}. The changes
+ * of the oldest commits of a shallow pack are the whole contents of their trees that pass the
+ * filter. Since all the history the receiving end gets is in the pack, the writing end keeps
+ * track of the features it already sent, which keep being sent when they change even if they no
+ * longer pass the filter, as {@link FilteredDiffIterator} does.
+ * <p>
+ * Changes are {@link BoundsFilteredDiffOp computed} using the spatial indexes of the feature trees
+ * when the filter has bounds, so that only the parts of the trees within the bounds are visited.
+ */
+public final class BinaryPackedSparseCommits {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinaryPackedSparseCommits.class);
+
+    private static final DataStreamSerializationFactoryV1 serializer = DataStreamSerializationFactoryV1.INSTANCE;
+
+    private static final int END = 0;
+
+    private static final int COMMIT = 1;
+
+    private final Repository repository;
+
+    /**
+     * @param repository the repository to read the commits and changes from, or to save the
+     *        changed objects to, depending on the operation
+     */
+    public BinaryPackedSparseCommits(Repository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Writes the commits reachable from {@code want} and their filtered changes.
+     *
+     * @param out the stream to write to
+     * @param want the most recent commit to send
+     * @param depth the maximum number of commits to send from {@code want} to any of its
+     *        ancestors, or {@code null} to send the whole history
+     * @param filter the filter the changes must pass
+     * @return the number of commits written
+     */
+    public int write(OutputStream out, ObjectId want, @Nullable Integer depth,
+            RepositoryFilter filter) throws IOException {
+
+        final List<ObjectId> commits = commits(want, depth);
+        final Set<ObjectId> sent = new HashSet<>();
+        final Set<ObjectId> tracked = new HashSet<>();
+        final BinaryPackedChanges changesPacker = new BinaryPackedChanges(repository);
+        byte[] oidbuffer = new byte[ObjectId.NUM_BYTES];
+        long objectCount = 0;
+
+        for (ObjectId commitId : commits) {
+            final RevCommit commit = repository.getCommit(commitId);
+            ObjectId oldTree = RevTree.EMPTY_TREE_ID;
+            ImmutableList<ObjectId> parentIds = commit.getParentIds();
+            if (!parentIds.isEmpty() && sent.contains(parentIds.get(0))) {
+                oldTree = repository.getCommit(parentIds.get(0)).getTreeId();
+            }
+            out.write(COMMIT);
+            commitId.getRawValue(oidbuffer);
+            out.write(oidbuffer);
+            serializer.write(commit, out);
+            try (FilteredDiffIterator changes = filteredChanges(repository, oldTree,
+                    commit.getTreeId(), filter, tracked)) {
+                objectCount += changesPacker.write(out, changes);
+            }
+            sent.add(commitId);
+        }
+        out.write(END);
+        LOGGER.info(String.format("Written %,d sparse commits accounting for %,d objects.",
+                commits.size(), objectCount));
+        return commits.size();
+    }
+
+    /**
+     * @return the commits to send, each one after its parents
+     */
+    private List<ObjectId> commits(ObjectId want, @Nullable final Integer depth) {
+        CommitTraverser traverser = new CommitTraverser() {
+            @Override
+            protected Evaluation evaluate(CommitNode commitNode) {
+                if ((depth != null && commitNode.getDepth() > depth.intValue())
+                        || !repository.commitExists(commitNode.getObjectId())) {
+                    return Evaluation.EXCLUDE_AND_PRUNE;
+                }
+                return Evaluation.INCLUDE_AND_CONTINUE;
+            }
+
+            @Override
+            protected ImmutableList<ObjectId> getParentsInternal(ObjectId commitId) {
+                return repository.graphDatabase().getParents(commitId);
+            }
+
+            @Override
+            protected boolean existsInDestination(ObjectId commitId) {
+                return false;
+            }
+        };
+        traverser.traverse(want);
+        Stack<ObjectId> stack = traverser.commits;
+        List<ObjectId> commits = new ArrayList<>(stack.size());
+        while (!stack.isEmpty()) {
+            commits.add(stack.pop());
+        }
+        return commits;
+    }
+
+    /**
+     * Returns the changes between two root trees that pass the filter, computed with the
+     * {@link BoundsFilteredDiffOp spatial indexes} if the filter has bounds.
+     *
+     * @param repository the repository the trees belong to
+     * @param oldTree the "old" root tree
+     * @param newTree the "new" root tree
+     * @param filter the filter the changes must pass
+     * @param tracked the features the receiving end has, that are sent when changed even if they
+     *        don't pass the filter, to which the sent features are added
+     */
+    public static FilteredDiffIterator filteredChanges(Repository repository, ObjectId oldTree,
+            ObjectId newTree, RepositoryFilter filter, final Set<ObjectId> tracked) {
+        final AutoCloseableIterator<DiffEntry> changes;
+        if (filter.hasBoundsFilters()) {
+            changes = repository.command(BoundsFilteredDiffOp.class).setOldTree(oldTree)
+                    .setNewTree(newTree).setFilter(filter).call();
+        } else {
+            changes = repository.command(DiffOp.class).setOldVersion(oldTree)
+                    .setNewVersion(newTree).setReportTrees(true).call();
+        }
+        return new FilteredDiffIterator(changes, repository, filter) {
+            @Override
+            protected boolean trackingObject(ObjectId objectId) {
+                return tracked.contains(objectId);
+            }
+
+            @Override
+            protected void processObject(RevObject object) {
+                if (object != null && TYPE.FEATURE.equals(object.getType())) {
+                    tracked.add(object.getId());
+                }
+            }
+        };
+    }
+
+    /**
+     * Reads the commits and their changes written by another {@code BinaryPackedSparseCommits},
+     * saving the changed objects to the repository and calling the callback for each commit once
+     * its changes are read.
+     *
+     * @param in the stream to read from
+     * @param callback the callback to call for each commit
+     * @return the number of commits read
+     */
+    public int ingest(InputStream in, Callback callback) throws IOException {
+        final DataInputStream data = new DataInputStream(in);
+        int count = 0;
+        int marker = data.read();
+        while (marker == COMMIT) {
+            ObjectId commitId = ObjectId.readFrom(data);
+            RevObject commit = serializer.read(commitId, data);
+            if (!TYPE.COMMIT.equals(commit.getType())) {
+                throw new IOException("Expected a commit, got " + commit.getType());
+            }
+            FilteredDiffIterator changes = new HttpFilteredDiffIterator(data,
+                    new BinaryPackedChanges(repository));
+            marker = data.read();
+            callback.callback((RevCommit) commit, changes, marker != COMMIT);
+            count++;
+        }
+        if (marker != END) {
+            throw new IOException("Unexpected end of sparse commits pack");
+        }
+        return count;
+    }
+
+    /**
+     * Interface for the callback called for each commit read.
+     */
+    public static interface Callback {
+
+        /**
+         * @param commit the commit read
+         * @param changes the changes it introduces, whose objects are already saved
+         * @param last whether it's the last commit in the pack
+         */
+        public abstract void callback(RevCommit commit, FilteredDiffIterator changes,
+                boolean last);
+    }
+}
@@ -0,0 +1,230 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.RawObject;
+import org.locationtech.geogig.storage.datastream.Varint;
+import org.locationtech.geogig.storage.datastream.v2_3.DataStreamSerializationFactoryV2_3;
+import org.locationtech.geogig.storage.impl.ObjectSerializingFactory;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Adds the {@link BinaryPackedObjects#DELTA_SUFFIX delta} capability to a pack format, sending
+ * {@link RevFeature features} as the difference to a previous version of them the receiving end
+ * already has, when that is smaller than the feature itself.
+ * <p>
+ * Each object is preceded by a marker byte telling whether it's written in full, in the wrapped
+ * format, or as a delta, in which case the marker is followed by the id of the base feature and the
+ * lengths of the prefix and suffix the {@link DataStreamSerializationFactoryV2_3 2.3 encodings} of
+ * the base and the delta'ed features have in common, followed by the bytes in between. A vertex
+ * moved in a large polygon, or an attribute changed, is thus sent in a few bytes.
+ * <p>
+ * The writing end needs to be told which feature is a new version of which through
+ * {@link #setBases(Map)}, and is responsible for only using bases the receiving end is known to
+ * have, since they are read from the receiving {@link ObjectStore}.
+ */
+final class FeatureDeltaSerializer implements ObjectSerializingFactory, RawObjectReader {
+
+    private static final int FULL = 0;
+
+    private static final int DELTA = 1;
+
+    /**
+     * Encoding deltas are computed on, independent of the wrapped format since it may be
+     * compressed, like the {@link RawObjectSerializer raw} one
+     */
+    private static final DataStreamSerializationFactoryV2_3 DELTA_ENCODING = DataStreamSerializationFactoryV2_3.INSTANCE;
+
+    private final ObjectSerializingFactory format;
+
+    private final ObjectStore store;
+
+    private Map<ObjectId, ObjectId> bases = ImmutableMap.of();
+
+    /**
+     * @param format the format objects not sent as deltas are written in
+     * @param store the store base features are read from, at the writing end the source of the
+     *        objects, at the receiving end the target
+     */
+    FeatureDeltaSerializer(ObjectSerializingFactory format, ObjectStore store) {
+        this.format = checkNotNull(format);
+        this.store = checkNotNull(store);
+    }
+
+    ObjectSerializingFactory format() {
+        return format;
+    }
+
+    /**
+     * @param bases the ids of the base features the receiving end has for the ids of the features
+     *        to send as deltas
+     */
+    void setBases(Map<ObjectId, ObjectId> bases) {
+        this.bases = checkNotNull(bases);
+    }
+
+    @Override
+    public void write(RevObject o, OutputStream out) throws IOException {
+        final ObjectId baseId = TYPE.FEATURE.equals(o.getType()) ? bases.get(o.getId()) : null;
+        final RevObject base = baseId == null ? null : store.getIfPresent(baseId);
+        if (base instanceof RevFeature) {
+            ByteArrayOutputStream full = new ByteArrayOutputStream();
+            format.write(o, full);
+            byte[] delta = delta(encode(base), encode(o));
+            if (ObjectId.NUM_BYTES + delta.length < full.size()) {
+                out.write(DELTA);
+                out.write(baseId.getRawValue());
+                out.write(delta);
+            } else {
+                out.write(FULL);
+                full.writeTo(out);
+            }
+            return;
+        }
+        out.write(FULL);
+        format.write(o, out);
+    }
+
+    @Override
+    public RevObject read(@Nullable ObjectId id, InputStream in) throws IOException {
+        final int marker = readMarker(id, in);
+        if (marker == FULL) {
+            return format.read(id, in);
+        }
+        return readDelta(id, in);
+    }
+
+    @Override
+    public RevObject read(@Nullable ObjectId id, byte[] data, int offset, int length)
+            throws IOException {
+        return read(id, new ByteArrayInputStream(data, offset, length));
+    }
+
+    /**
+     * Only supported when wrapping the {@link RawObjectSerializer raw format}, features sent as
+     * deltas are re-encoded in the stored representation
+     */
+    @Override
+    public RawObject readRaw(ObjectId id, InputStream in) throws IOException {
+        checkState(format instanceof RawObjectSerializer, "%s is not a raw format",
+                getDisplayName());
+        final int marker = readMarker(id, in);
+        if (marker == FULL) {
+            return ((RawObjectSerializer) format).readRaw(id, in);
+        }
+        RevFeature feature = readDelta(id, in);
+        return RawObject.of(id, TYPE.FEATURE, RawObjectSerializer.encode(feature));
+    }
+
+    @Override
+    public String getDisplayName() {
+        return format.getDisplayName() + " with feature deltas";
+    }
+
+    private int readMarker(@Nullable ObjectId id, InputStream in) throws IOException {
+        final int marker = in.read();
+        if (marker < 0) {
+            throw new EOFException("Unexpected end of stream reading object " + id);
+        }
+        if (marker != FULL && marker != DELTA) {
+            throw new IOException("Invalid object marker " + marker + " for object " + id);
+        }
+        return marker;
+    }
+
+    private RevFeature readDelta(@Nullable ObjectId id, InputStream in) throws IOException {
+        checkNotNull(id, "features sent as deltas need an id");
+        final DataInputStream data = new DataInputStream(in);
+        final ObjectId baseId = ObjectId.readFrom(data);
+        final RevObject base = store.getIfPresent(baseId);
+        if (!(base instanceof RevFeature)) {
+            throw new IOException(String.format("Base feature %s of feature %s not found", baseId,
+                    id));
+        }
+        byte[] encoded = patch(encode(base), data);
+        // decoded without an id so that it is computed out of the patched contents
+        RevFeature feature = (RevFeature) DELTA_ENCODING.read(null, encoded, 0, encoded.length);
+        if (!id.equals(feature.getId())) {
+            throw new IOException(String.format(
+                    "Feature %s doesn't match its id after applying its delta to %s", id, baseId));
+        }
+        return feature;
+    }
+
+    private static byte[] encode(RevObject object) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DELTA_ENCODING.write(object, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the length of the common prefix, the length of the common suffix, and the bytes of
+     *         {@code target} in between
+     */
+    static byte[] delta(byte[] base, byte[] target) throws IOException {
+        final int max = Math.min(base.length, target.length);
+        int prefix = 0;
+        while (prefix < max && base[prefix] == target[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && base[base.length - 1 - suffix] == target[target.length - 1 - suffix]) {
+            suffix++;
+        }
+        final int length = target.length - prefix - suffix;
+        ByteArrayOutputStream delta = new ByteArrayOutputStream(length + 12);
+        DataOutputStream out = new DataOutputStream(delta);
+        Varint.writeUnsignedVarInt(prefix, out);
+        Varint.writeUnsignedVarInt(suffix, out);
+        Varint.writeUnsignedVarInt(length, out);
+        out.write(target, prefix, length);
+        out.flush();
+        return delta.toByteArray();
+    }
+
+    /**
+     * Applies a {@link #delta(byte[], byte[]) delta} read from {@code in} to {@code base}
+     */
+    static byte[] patch(byte[] base, DataInputStream in) throws IOException {
+        final int prefix = Varint.readUnsignedVarInt(in);
+        final int suffix = Varint.readUnsignedVarInt(in);
+        final int length = Varint.readUnsignedVarInt(in);
+        if (prefix < 0 || suffix < 0 || length < 0 || prefix + suffix > base.length) {
+            throw new IOException("Invalid feature delta");
+        }
+        byte[] target = new byte[prefix + length + suffix];
+        System.arraycopy(base, 0, target, 0, prefix);
+        ByteStreams.readFully(in, target, prefix, length);
+        System.arraycopy(base, base.length - suffix, target, prefix + length, suffix);
+        return target;
+    }
+}
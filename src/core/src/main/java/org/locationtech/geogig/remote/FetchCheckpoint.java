@@ -0,0 +1,175 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.storage.BlobStore;
+import org.locationtech.geogig.storage.impl.Blobs;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * The state of an interrupted fetch from a remote repository, kept in the local repository's
+ * {@link BlobStore} so that the next fetch of the same remote ref can continue where it stopped
+ * instead of negotiating and transferring everything again.
+ * <p>
+ * Holds the commits still wanted and the commits in common with the remote after the last fully
+ * ingested commit, plus the {@code want} and {@code have} lists of the request that was in
+ * progress and the number of objects of its response that were stored, which allows to resume that
+ * same response through a {@link BinaryPackedObjects#resumeToken resume token}.
+ * <p>
+ * Checkpoints are keyed by the remote and the commit and depth fetched, which determine the
+ * {@code want} and {@code have} lists of the fetch, so fetches of different refs from the same
+ * remote keep their own checkpoints and never resume each other's transfers.
+ */
+final class FetchCheckpoint {
+
+    private static final String BLOB_PREFIX = "FETCH_CHECKPOINT_";
+
+    final ObjectId target;
+
+    /**
+     * The maximum depth fetched, or zero if unlimited
+     */
+    final int depth;
+
+    final List<ObjectId> want;
+
+    final Set<ObjectId> have;
+
+    final List<ObjectId> requestWant;
+
+    final List<ObjectId> requestHave;
+
+    long requestOffset;
+
+    @Nullable
+    ObjectId lastCommit;
+
+    FetchCheckpoint(ObjectId target, int depth, List<ObjectId> want, Set<ObjectId> have) {
+        this.target = checkNotNull(target);
+        this.depth = depth;
+        this.want = want;
+        this.have = have;
+        this.requestWant = new ArrayList<>();
+        this.requestHave = new ArrayList<>();
+    }
+
+    /**
+     * Records the start of a new request for the current {@link #want} and {@link #have} lists
+     */
+    void startRequest() {
+        requestWant.clear();
+        requestWant.addAll(want);
+        requestHave.clear();
+        requestHave.addAll(have);
+        requestOffset = 0;
+    }
+
+    /**
+     * @return the resume token for the request in progress, or {@code null} if no object of its
+     *         response has been stored yet
+     */
+    @Nullable
+    String resumeToken() {
+        if (requestOffset == 0) {
+            return null;
+        }
+        return BinaryPackedObjects.resumeToken(requestWant, requestHave, requestOffset);
+    }
+
+    static String blobName(String remoteURL, ObjectId target, int depth) {
+        Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putString(remoteURL, Charsets.UTF_8).putByte((byte) 0);
+        hasher.putBytes(target.getRawValue());
+        hasher.putInt(depth);
+        return BLOB_PREFIX + hasher.hash().toString();
+    }
+
+    void save(BlobStore blobStore, String remoteURL) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("target ").append(target).append('\n');
+        sb.append("offset ").append(requestOffset).append('\n');
+        if (lastCommit != null) {
+            sb.append("last ").append(lastCommit).append('\n');
+        }
+        append(sb, "want", want);
+        append(sb, "have", have);
+        append(sb, "request.want", requestWant);
+        append(sb, "request.have", requestHave);
+        Blobs.putBlob(blobStore, blobName(remoteURL, target, depth), sb);
+    }
+
+    private static void append(StringBuilder sb, String key, Iterable<ObjectId> ids) {
+        for (ObjectId id : ids) {
+            sb.append(key).append(' ').append(id).append('\n');
+        }
+    }
+
+    static void clear(BlobStore blobStore, String remoteURL, ObjectId target, int depth) {
+        blobStore.removeBlob(blobName(remoteURL, target, depth));
+    }
+
+    /**
+     * @return the checkpoint saved for a fetch of {@code target} up to {@code depth} from the
+     *         given remote, if any
+     */
+    static Optional<FetchCheckpoint> load(BlobStore blobStore, String remoteURL,
+            ObjectId target, int depth) {
+        List<String> lines = Blobs.readLines(blobStore, blobName(remoteURL, target, depth));
+        if (lines.isEmpty() || !lines.get(0).equals("target " + target)) {
+            return Optional.absent();
+        }
+        FetchCheckpoint checkpoint = new FetchCheckpoint(target, depth,
+                new ArrayList<ObjectId>(), new LinkedHashSet<ObjectId>());
+        for (String line : lines.subList(1, lines.size())) {
+            final int sep = line.indexOf(' ');
+            if (sep < 0) {
+                continue;
+            }
+            final String key = line.substring(0, sep);
+            final String value = line.substring(sep + 1);
+            switch (key) {
+            case "offset":
+                checkpoint.requestOffset = Long.parseLong(value);
+                break;
+            case "last":
+                checkpoint.lastCommit = ObjectId.valueOf(value);
+                break;
+            case "want":
+                checkpoint.want.add(ObjectId.valueOf(value));
+                break;
+            case "have":
+                checkpoint.have.add(ObjectId.valueOf(value));
+                break;
+            case "request.want":
+                checkpoint.requestWant.add(ObjectId.valueOf(value));
+                break;
+            case "request.have":
+                checkpoint.requestHave.add(ObjectId.valueOf(value));
+                break;
+            default:
+                break;
+            }
+        }
+        return Optional.of(checkpoint);
+    }
+}
@@ -0,0 +1,100 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * The content encodings requests to and responses from http remotes can be streamed with.
+ * <p>
+ * {@link #GZIP} is understood by any server, {@link #LZ4} only by servers that advertise it, and
+ * trades compression ratio for a much lower CPU cost at both ends.
+ */
+public enum HttpCompression {
+
+    NONE("identity"), GZIP("gzip"), LZ4("x-lz4");
+
+    private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+
+    private static final int LZ4_BLOCK_SIZE = 1 << 16;
+
+    private final String contentEncoding;
+
+    private HttpCompression(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * @return the value of the {@code Content-Encoding} and {@code Accept-Encoding} http headers
+     *         for this compression
+     */
+    public String contentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * @return the compression for the given {@code Content-Encoding} header value
+     * @throws IllegalArgumentException if the encoding is not supported
+     */
+    public static HttpCompression ofContentEncoding(@Nullable String contentEncoding) {
+        if (contentEncoding == null || contentEncoding.trim().isEmpty()) {
+            return NONE;
+        }
+        final String encoding = contentEncoding.trim();
+        for (HttpCompression c : values()) {
+            if (c.contentEncoding.equalsIgnoreCase(encoding)) {
+                return c;
+            }
+        }
+        if ("x-gzip".equalsIgnoreCase(encoding)) {
+            return GZIP;
+        }
+        throw new IllegalArgumentException("Unsupported content encoding: " + contentEncoding);
+    }
+
+    /**
+     * @return a stream that decompresses the contents of {@code in}
+     */
+    public InputStream decode(InputStream in) throws IOException {
+        switch (this) {
+        case GZIP:
+            return new GZIPInputStream(in, 8192);
+        case LZ4:
+            return new LZ4BlockInputStream(in, LZ4_FACTORY.fastDecompressor());
+        default:
+            return in;
+        }
+    }
+
+    /**
+     * @return a stream that compresses what's written to it into {@code out}, that needs to be
+     *         closed for the compressed stream to be complete
+     */
+    public OutputStream encode(OutputStream out) throws IOException {
+        switch (this) {
+        case GZIP:
+            return new GZIPOutputStream(out, 8192);
+        case LZ4:
+            return new LZ4BlockOutputStream(out, LZ4_BLOCK_SIZE, LZ4_FACTORY.fastCompressor());
+        default:
+            return out;
+        }
+    }
+}
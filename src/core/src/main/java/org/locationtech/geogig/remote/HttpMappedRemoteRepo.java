@@ -33,9 +33,11 @@ import org.locationtech.geogig.plumbing.FindCommonAncestor;
 import org.locationtech.geogig.plumbing.RevObjectParse;
 import org.locationtech.geogig.porcelain.DiffOp;
 import org.locationtech.geogig.repository.DiffEntry;
+import org.locationtech.geogig.repository.ProgressListener;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.repository.impl.RepositoryFilter.FilterDescription;
 import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.geogig.storage.GraphDatabase;
 import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
 import org.locationtech.geogig.storage.impl.ObjectSerializingFactory;
 
@@ -104,15 +106,10 @@ class HttpMappedRemoteRepo extends AbstractMappedRemoteRepo {
         ImmutableSet.Builder<Ref> builder = new ImmutableSet.Builder<Ref>();
         try {
             String expanded = repositoryURL.toString() + "/repo/manifest";
-
-            connection = (HttpURLConnection) new URL(expanded).openConnection();
-            connection.setRequestMethod("GET");
-
-            connection.setUseCaches(false);
-            connection.setDoOutput(true);
+            connection = HttpUtils.connect(expanded);
 
             // Get Response
-            InputStream is = connection.getInputStream();
+            InputStream is = HttpUtils.getResponseStream(connection);
             BufferedReader rd = new BufferedReader(new InputStreamReader(is));
             String line;
             try {
@@ -153,15 +150,10 @@ class HttpMappedRemoteRepo extends AbstractMappedRemoteRepo {
         Ref headRef = null;
         try {
             String expanded = repositoryURL.toString() + "/repo/manifest";
-
-            connection = (HttpURLConnection) new URL(expanded).openConnection();
-            connection.setRequestMethod("GET");
-
-            connection.setUseCaches(false);
-            connection.setDoOutput(true);
+            connection = HttpUtils.connect(expanded);
 
             // Get Response
-            InputStream is = connection.getInputStream();
+            InputStream is = HttpUtils.getResponseStream(connection);
             try {
                 BufferedReader rd = new BufferedReader(new InputStreamReader(is));
                 String line;
@@ -259,6 +251,65 @@ class HttpMappedRemoteRepo extends AbstractMappedRemoteRepo {
         return new HttpFilteredDiffIterator(in, unpacker);
     }
 
+    /**
+     * Fetches the whole history of the ref, or the part of it within the fetch limit, in a single
+     * request. Since the remote can't tell which commits and features are already here, it's only
+     * done when fetching into an empty repository or a shallow one.
+     * 
+     * @return {@code false} if the remote doesn't support sparse packs or the repository already
+     *         has commits from the remote
+     */
+    @Override
+    protected boolean fetchSparsePack(Ref ref, Optional<Integer> fetchLimit,
+            final ProgressListener progress) {
+        if (!fetchLimit.isPresent()
+                && !localRepository.refDatabase().getAll(Ref.REMOTES_PREFIX).isEmpty()) {
+            return false;
+        }
+        final JsonObject message = new JsonObject();
+        message.add("want", new JsonPrimitive(ref.getObjectId().toString()));
+        if (fetchLimit.isPresent()) {
+            message.add("depth", new JsonPrimitive(fetchLimit.get()));
+        }
+        message.add("filter", createFilterMessage());
+
+        HttpURLConnection connection = null;
+        try {
+            final URL resourceURL = new URL(repositoryURL.toString() + "/repo/sparsepack");
+            connection = HttpTransport.DEFAULT.post(resourceURL, "application/json",
+                    HttpCompression.GZIP);
+            try (Writer writer = new OutputStreamWriter(connection.getOutputStream())) {
+                new Gson().toJson(message, writer);
+            }
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                // the remote predates sparse packs
+                HttpTransport.DEFAULT.release(connection);
+                return false;
+            }
+            try (InputStream in = HttpTransport.DEFAULT.responseStream(connection)) {
+                final GraphDatabase graphDatabase = localRepository.graphDatabase();
+                BinaryPackedSparseCommits unpacker = new BinaryPackedSparseCommits(
+                        localRepository);
+                unpacker.ingest(in, new BinaryPackedSparseCommits.Callback() {
+                    @Override
+                    public void callback(RevCommit commit, FilteredDiffIterator changes,
+                            boolean last) {
+                        if (graphDatabase.exists(commit.getId())
+                                && !getMapping(commit.getId()).isNull()) {
+                            return;
+                        }
+                        applySparseCommit(commit, changes, last);
+                        progress.setProgress(progress.getProgress() + 1);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            HttpTransport.DEFAULT.release(connection);
+            throw Throwables.propagate(e);
+        }
+        return true;
+    }
+
     private JsonObject createFetchMessage(ObjectId commitId, List<ObjectId> tracked) {
         JsonObject message = new JsonObject();
         JsonArray trackedArray = new JsonArray();
@@ -267,6 +318,11 @@ class HttpMappedRemoteRepo extends AbstractMappedRemoteRepo {
         }
         message.add("commitId", new JsonPrimitive(commitId.toString()));
         message.add("tracked", trackedArray);
+        message.add("filter", createFilterMessage());
+        return message;
+    }
+
+    private JsonArray createFilterMessage() {
         JsonArray filterArray = new JsonArray();
         ImmutableList<FilterDescription> repoFilters = filter.getFilterDescriptions();
         for (FilterDescription description : repoFilters) {
@@ -276,8 +332,7 @@ class HttpMappedRemoteRepo extends AbstractMappedRemoteRepo {
             typeFilter.add("filter", new JsonPrimitive(description.getFilter()));
             filterArray.add(typeFilter);
         }
-        message.add("filter", filterArray);
-        return message;
+        return filterArray;
     }
 
     /**
@@ -20,37 +20,51 @@ import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.Ref;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevObject.TYPE;
 import org.locationtech.geogig.model.RevTag;
 import org.locationtech.geogig.porcelain.ConfigGet;
 import org.locationtech.geogig.porcelain.SynchronizationException;
 import org.locationtech.geogig.remote.BinaryPackedObjects.IngestResults;
+import org.locationtech.geogig.remote.HttpUtils.PushCapabilities;
 import org.locationtech.geogig.remote.HttpUtils.ReportingOutputStream;
 import org.locationtech.geogig.repository.ProgressListener;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.repository.impl.DeduplicationService;
 import org.locationtech.geogig.repository.impl.Deduplicator;
+import org.locationtech.geogig.storage.BlobStore;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectStore;
-import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
 import org.locationtech.geogig.storage.impl.ObjectSerializingFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -69,6 +83,18 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
     /** Default limit in bytes for push to split the sent objects */
     private static final int DEFAULT_PUSH_BATCH_LIMIT = 4 * 1024 * 1024;
 
+    private static final int DEFAULT_PUSH_UPLOAD_THREADS = 4;
+
+    private static final HttpCompression DEFAULT_COMPRESSION = HttpCompression.GZIP;
+
+    /**
+     * Number of objects fetched between checkpoints of the transfer state
+     */
+    private static final int FETCH_CHECKPOINT_INTERVAL = 50_000;
+
+    private static final ThreadFactory UPLOAD_THREAD_FACTORY = new ThreadFactoryBuilder()
+            .setDaemon(true).setNameFormat("geogig-push-upload-%d").build();
+
     private URL repositoryURL;
 
     final private DeduplicationService deduplicationService;
@@ -186,6 +212,10 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
 
     /**
      * Fetch all new objects from the specified {@link Ref} from the remote.
+     * <p>
+     * The progress of the transfer is checkpointed to the local repository's {@link BlobStore}, so
+     * if it's interrupted the next fetch of the same remote ref, at the same depth, skips the
+     * negotiation and continues where this one stopped.
      * 
      * @param ref the remote ref that points to new commit data
      * @param fetchLimit the maximum depth to fetch
@@ -193,25 +223,73 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
     @Override
     public void fetchNewData(Ref ref, Optional<Integer> fetchLimit, ProgressListener progress) {
 
-        CommitTraverser traverser = getFetchTraverser(fetchLimit);
-
+        final BlobStore blobStore = localRepository.blobStore();
+        final String remote = repositoryURL.toString();
+        final int depth = fetchLimit.or(0).intValue();
         try {
             progress.setDescription("Fetching objects from " + ref.getName());
-            traverser.traverse(ref.getObjectId());
-            List<ObjectId> want = new LinkedList<ObjectId>();
-            want.addAll(traverser.commits);
-            Collections.reverse(want);
-            Set<ObjectId> have = new HashSet<ObjectId>();
-            have.addAll(traverser.have);
-            while (!want.isEmpty()) {
+            final FetchCheckpoint checkpoint;
+            Optional<FetchCheckpoint> saved = FetchCheckpoint.load(blobStore, remote,
+                    ref.getObjectId(), depth);
+            if (saved.isPresent()) {
+                checkpoint = saved.get();
+                reconcile(checkpoint);
+                LOGGER.info("Resuming fetch of {} from {}, {} commits left", ref.getName(),
+                        remote, checkpoint.want.size());
+            } else {
+                CommitTraverser traverser = getFetchTraverser(fetchLimit);
+                traverser.traverse(ref.getObjectId());
+                List<ObjectId> want = new LinkedList<ObjectId>();
+                want.addAll(traverser.commits);
+                Collections.reverse(want);
+                Set<ObjectId> have = new LinkedHashSet<ObjectId>();
+                have.addAll(traverser.have);
+                checkpoint = new FetchCheckpoint(ref.getObjectId(), depth, want, have);
+            }
+            while (!checkpoint.want.isEmpty()) {
                 progress.setProgress(0);
-                fetchMoreData(want, have, progress);
+                fetchMoreData(checkpoint, progress);
             }
+            FetchCheckpoint.clear(blobStore, remote, ref.getObjectId(), depth);
         } catch (Exception e) {
             Throwables.propagate(e);
         }
     }
 
+    /**
+     * Brings a checkpoint loaded from the blob store up to date with the objects that made it to
+     * the local repository after it was saved, and discards the resume token of the interrupted
+     * request if its last ingested commit didn't.
+     */
+    private void reconcile(FetchCheckpoint checkpoint) {
+        final ObjectDatabase db = localRepository.objectDatabase();
+        if (checkpoint.lastCommit != null && !db.exists(checkpoint.lastCommit)) {
+            checkpoint.requestOffset = 0;
+        }
+        for (ObjectId id : new ArrayList<>(checkpoint.want)) {
+            if (db.exists(id)) {
+                ingested(db.get(id), checkpoint.want, checkpoint.have);
+            }
+        }
+    }
+
+    /**
+     * Updates the want and have lists once a commit or tag was fetched
+     */
+    private static void ingested(RevObject object, List<ObjectId> want, Set<ObjectId> have) {
+        if (object instanceof RevCommit) {
+            RevCommit commit = (RevCommit) object;
+            want.remove(commit.getId());
+            have.removeAll(commit.getParentIds());
+            have.add(commit.getId());
+        } else if (object instanceof RevTag) {
+            RevTag tag = (RevTag) object;
+            want.remove(tag.getId());
+            have.remove(tag.getCommitId());
+            have.add(tag.getId());
+        }
+    }
+
     /**
      * Push all new objects from the specified {@link Ref} to the remote.
      * 
@@ -223,12 +301,20 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
             throws SynchronizationException {
         Optional<Ref> remoteRef = HttpUtils.getRemoteRef(repositoryURL, refspec);
         checkPush(ref, remoteRef);
-        beginPush();
+        final PushCapabilities capabilities = HttpUtils.beginPush(repositoryURL);
+        final String format = pushFormat(capabilities);
+        final HttpCompression encoding = pushEncoding(capabilities);
 
         progress.setDescription("Uploading objects to " + refspec);
         progress.setProgress(0);
 
-        CommitTraverser traverser = getPushTraverser(remoteRef);
+        HttpRepositoryWrapper remoteWrapper = new HttpRepositoryWrapper(repositoryURL);
+        int roundTrips = remoteWrapper.negotiate(new LocalRepositoryWrapper(localRepository),
+                ref.getObjectId());
+        LOGGER.debug("Negotiated common commits with {} in {} round trips", repositoryURL,
+                roundTrips);
+
+        CommitTraverser traverser = getPushTraverser(remoteRef, remoteWrapper);
 
         traverser.traverse(ref.getObjectId());
 
@@ -238,7 +324,8 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
 
         Deduplicator deduplicator = deduplicationService.createDeduplicator();
         try {
-            sendPackedObjects(toSend, have, deduplicator, progress);
+            sendPackedObjects(toSend, have, deduplicator, format, encoding,
+                    capabilities.pushId().orNull(), progress);
         } finally {
             deduplicator.release();
         }
@@ -251,56 +338,113 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
         String nameToSet = remoteRef.isPresent() ? remoteRef.get().getName()
                 : Ref.HEADS_PREFIX + refspec;
 
-        endPush(nameToSet, ref.getObjectId(), originalRemoteRefValue.toString());
+        endPush(nameToSet, ref.getObjectId(), originalRemoteRefValue.toString(),
+                capabilities.pushId().orNull());
     }
 
     private void sendPackedObjects(final List<ObjectId> toSend, final Set<ObjectId> roots,
-            Deduplicator deduplicator, final ProgressListener progress) {
+            Deduplicator deduplicator, final String format, final HttpCompression encoding,
+            final @Nullable String pushId, final ProgressListener progress) {
         Set<ObjectId> sent = new HashSet<ObjectId>();
-        while (!toSend.isEmpty()) {
-            try {
-                BinaryPackedObjects.Callback callback = new BinaryPackedObjects.Callback() {
-                    @Override
-                    public void callback(Supplier<RevObject> supplier) {
-                        RevObject object = supplier.get();
-                        progress.setProgress(progress.getProgress() + 1);
-                        if (object instanceof RevCommit) {
-                            RevCommit commit = (RevCommit) object;
-                            toSend.remove(commit.getId());
-                            roots.removeAll(commit.getParentIds());
-                            roots.add(commit.getId());
+        final ObjectSerializingFactory serializer = BinaryPackedObjects.serializer(format,
+                localRepository.objectDatabase());
+        final int pushBytesLimit = parsePushLimit();
+        final int uploadThreads = parseUploadThreads();
+        // enough to keep all upload threads busy while the next chunk is serialized
+        final int maxInFlightBytes = (int) Math.min(Integer.MAX_VALUE,
+                (uploadThreads + 1L) * pushBytesLimit);
+        final ExecutorService executor = Executors.newFixedThreadPool(uploadThreads,
+                UPLOAD_THREAD_FACTORY);
+        try {
+            while (!toSend.isEmpty()) {
+                try {
+                    BinaryPackedObjects.Callback callback = new BinaryPackedObjects.Callback() {
+                        @Override
+                        public void callback(Supplier<RevObject> supplier) {
+                            RevObject object = supplier.get();
+                            progress.setProgress(progress.getProgress() + 1);
+                            if (object instanceof RevCommit) {
+                                RevCommit commit = (RevCommit) object;
+                                toSend.remove(commit.getId());
+                                roots.removeAll(commit.getParentIds());
+                                roots.add(commit.getId());
+                            }
                         }
+                    };
+                    ObjectStore database = localRepository.objectDatabase();
+                    BinaryPackedObjects packer = new BinaryPackedObjects(database);
+
+                    ImmutableList<ObjectId> have = ImmutableList.copyOf(roots);
+                    final boolean traverseCommits = false;
+
+                    Stopwatch sw = Stopwatch.createStarted();
+                    SendObjectsConnectionFactory outFactory;
+                    ObjectFunnel objectFunnel;
+
+                    outFactory = new SendObjectsConnectionFactory(repositoryURL, format,
+                            encoding, pushId);
+                    objectFunnel = ObjectFunnels.newPipelinedFunnel(outFactory, serializer,
+                            pushBytesLimit, executor, maxInFlightBytes);
+                    final long writtenObjectsCount;
+                    try {
+                        writtenObjectsCount = packer.write(objectFunnel, toSend, have, sent,
+                                callback, traverseCommits, deduplicator);
+                    } finally {
+                        objectFunnel.close();
                     }
-                };
-                ObjectStore database = localRepository.objectDatabase();
-                BinaryPackedObjects packer = new BinaryPackedObjects(database);
-
-                ImmutableList<ObjectId> have = ImmutableList.copyOf(roots);
-                final boolean traverseCommits = false;
-
-                Stopwatch sw = Stopwatch.createStarted();
-                ObjectSerializingFactory serializer = DataStreamSerializationFactoryV1.INSTANCE;
-                SendObjectsConnectionFactory outFactory;
-                ObjectFunnel objectFunnel;
-
-                outFactory = new SendObjectsConnectionFactory(repositoryURL);
-                int pushBytesLimit = parsePushLimit();
-                objectFunnel = ObjectFunnels.newFunnel(outFactory, serializer, pushBytesLimit);
-                final long writtenObjectsCount = packer.write(objectFunnel, toSend, have, sent,
-                        callback, traverseCommits, deduplicator);
-                objectFunnel.close();
-                sw.stop();
-
-                long compressedSize = outFactory.compressedSize;
-                long uncompressedSize = outFactory.uncompressedSize;
-                LOGGER.info(String.format(
-                        "HttpRemoteRepo: Written %,d objects." + " Time to process: %s."
-                                + " Compressed size: %,d bytes. Uncompressed size: %,d bytes.",
-                        writtenObjectsCount, sw, compressedSize, uncompressedSize));
-            } catch (IOException e) {
-                Throwables.propagate(e);
+                    sw.stop();
+
+                    long compressedSize = outFactory.compressedSize.get();
+                    long uncompressedSize = outFactory.uncompressedSize.get();
+                    LOGGER.info(String.format(
+                            "HttpRemoteRepo: Written %,d objects in format %s, encoded as %s,"
+                                    + " using %d upload threads. Time to process: %s."
+                                    + " Compressed size: %,d bytes. Uncompressed size: %,d bytes.",
+                            writtenObjectsCount, format, encoding.contentEncoding(),
+                            uploadThreads, sw, compressedSize, uncompressedSize));
+                } catch (IOException e) {
+                    Throwables.propagate(e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int parseUploadThreads() {
+        final String confKey = "push.upload.threads";
+        Optional<String> configThreads = localRepository.command(ConfigGet.class)
+                .setName(confKey).call();
+        int threads = DEFAULT_PUSH_UPLOAD_THREADS;
+        if (configThreads.isPresent()) {
+            try {
+                threads = Math.max(1, Integer.parseInt(configThreads.get()));
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid config value for {}, using the default of {} threads",
+                        confKey, threads);
+            }
+        }
+        return threads;
+    }
+
+    /**
+     * @return the compression to use for requests and responses, as configured by
+     *         {@code http.compression} ({@code gzip}, {@code lz4} or {@code none})
+     */
+    private HttpCompression parseCompression() {
+        final String confKey = "http.compression";
+        Optional<String> configCompression = localRepository.command(ConfigGet.class)
+                .setName(confKey).call();
+        HttpCompression compression = DEFAULT_COMPRESSION;
+        if (configCompression.isPresent()) {
+            try {
+                compression = HttpCompression.valueOf(configCompression.get().trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Invalid config value for {}, using {} compression", confKey,
+                        compression.contentEncoding());
             }
         }
+        return compression;
     }
 
     private int parsePushLimit() {
@@ -333,37 +477,59 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
         return limit;
     }
 
+    /**
+     * Opens a new {@code sendobject} POST request for each output stream requested, possibly from
+     * several threads concurrently.
+     */
     private static class SendObjectsConnectionFactory implements Supplier<OutputStream> {
         private URL repositoryURL;
 
-        public SendObjectsConnectionFactory(URL repositoryURL) {
+        private String format;
+
+        private HttpCompression encoding;
+
+        private @Nullable String pushId;
+
+        public SendObjectsConnectionFactory(URL repositoryURL, String format,
+                HttpCompression encoding, @Nullable String pushId) {
             this.repositoryURL = repositoryURL;
+            this.format = format;
+            this.encoding = encoding;
+            this.pushId = pushId;
         }
 
-        private long compressedSize, uncompressedSize;
+        private final AtomicLong compressedSize = new AtomicLong(),
+                uncompressedSize = new AtomicLong();
 
         @Override
         public OutputStream get() {
+            List<String> params = new ArrayList<>(2);
+            if (!BinaryPackedObjects.FORMAT_V1.equals(format)) {
+                params.add("format=" + format);
+            }
+            if (pushId != null) {
+                params.add("pushId=" + pushId);
+            }
             String expanded = repositoryURL.toString() + "/repo/sendobject";
+            if (!params.isEmpty()) {
+                expanded += "?" + Joiner.on('&').join(params);
+            }
             try {
-                HttpURLConnection connection = (HttpURLConnection) new URL(expanded)
-                        .openConnection();
-                connection.setDoOutput(true);
-                connection.setDoInput(true);
-                connection.setUseCaches(false);
-                connection.setRequestMethod("POST");
-                connection.setChunkedStreamingMode(4096);
-                connection.setRequestProperty("content-length", "-1");
-                connection.setRequestProperty("content-encoding", "gzip");
-                OutputStream out = connection.getOutputStream();
-                final ReportingOutputStream rout = HttpUtils.newReportingOutputStream(connection,
-                        out, true);
+                HttpURLConnection connection = HttpTransport.DEFAULT.post(new URL(expanded),
+                        null, HttpCompression.NONE);
+                final ReportingOutputStream rout = HttpTransport.DEFAULT.requestStream(connection,
+                        encoding);
                 return new FilterOutputStream(rout) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                    }
+
                     @Override
                     public void close() throws IOException {
                         super.close();
-                        compressedSize += ((ReportingOutputStream) super.out).compressedSize();
-                        uncompressedSize += ((ReportingOutputStream) super.out).unCompressedSize();
+                        compressedSize.addAndGet(rout.compressedSize());
+                        uncompressedSize.addAndGet(rout.unCompressedSize());
                     }
                 };
             } catch (Exception e) {
@@ -383,12 +549,36 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
         return HttpUtils.updateRemoteRef(repositoryURL, refspec, null, true);
     }
 
-    private void beginPush() {
-        HttpUtils.beginPush(repositoryURL);
+    /**
+     * @return the preferred serialization format to send objects in, out of the ones supported by
+     *         both ends
+     */
+    private String pushFormat(PushCapabilities remote) {
+        ImmutableSet<String> remoteFormats = remote.formats();
+        for (String format : BinaryPackedObjects
+                .supportedFormats(localRepository.objectDatabase())) {
+            if (remoteFormats.contains(format)) {
+                return format;
+            }
+        }
+        return BinaryPackedObjects.FORMAT_V1;
     }
 
-    private void endPush(String refspec, ObjectId newCommitId, String originalRefValue) {
-        HttpUtils.endPush(repositoryURL, refspec, newCommitId, originalRefValue);
+    /**
+     * @return the configured compression if the remote accepts it, gzip otherwise
+     */
+    private HttpCompression pushEncoding(PushCapabilities remote) {
+        HttpCompression compression = parseCompression();
+        if (HttpCompression.NONE.equals(compression)
+                || remote.encodings().contains(compression)) {
+            return compression;
+        }
+        return HttpCompression.GZIP;
+    }
+
+    private void endPush(String refspec, ObjectId newCommitId, String originalRefValue,
+            @Nullable String pushId) {
+        HttpUtils.endPush(repositoryURL, refspec, newCommitId, originalRefValue, pushId);
     }
 
     /**
@@ -396,15 +586,24 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
      * Specifically, any retrieved commits are removed from the want list and added to the have
      * list, and any parents of those commits are removed from the have list (it only represents the
      * most recent common commits.) Retrieved objects are added to the local repository, and the
-     * want/have lists are updated in-place.
+     * want/have lists of the checkpoint are updated in-place.
+     * <p>
+     * If the checkpoint holds a request that was interrupted, that request is resumed instead of
+     * starting a new one. The checkpoint is saved every {@link #FETCH_CHECKPOINT_INTERVAL} objects,
+     * and when the transfer fails.
      * 
-     * @param want a list of ObjectIds that need to be fetched
-     * @param have a list of ObjectIds that are in common with the remote repository
+     * @param checkpoint the state of the transfer
      * @param progress
      */
-    private void fetchMoreData(final List<ObjectId> want, final Set<ObjectId> have,
-            final ProgressListener progress) {
-        final JsonObject message = createFetchMessage(want, have);
+    private void fetchMoreData(final FetchCheckpoint checkpoint, final ProgressListener progress) {
+        final List<ObjectId> want = checkpoint.want;
+        final Set<ObjectId> have = checkpoint.have;
+        final String resumeToken = checkpoint.resumeToken();
+        if (resumeToken == null) {
+            checkpoint.startRequest();
+        }
+        final JsonObject message = createFetchMessage(checkpoint.requestWant,
+                checkpoint.requestHave, resumeToken);
         final URL resourceURL;
         try {
             resourceURL = new URL(repositoryURL.toString() + "/repo/batchobjects");
@@ -412,49 +611,87 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
             throw Throwables.propagate(e);
         }
 
+        final BlobStore blobStore = localRepository.blobStore();
+        final String remote = repositoryURL.toString();
         final HttpURLConnection connection;
+        final HttpUtils.ReportingInputStream in;
         try {
             final Gson gson = new Gson();
             OutputStream out;
             final Writer writer;
-            connection = (HttpURLConnection) resourceURL.openConnection();
-            connection.setDoOutput(true);
-            connection.setDoInput(true);
-            connection.addRequestProperty("Accept-Encoding", "gzip");
+            connection = HttpTransport.DEFAULT.post(resourceURL, "application/json",
+                    parseCompression());
             out = connection.getOutputStream();
             writer = new OutputStreamWriter(out);
             gson.toJson(message, writer);
-            writer.flush();
-            out.flush();
-        } catch (IOException e) {
+            writer.close();
+            in = HttpTransport.DEFAULT.responseStream(connection);
+        } catch (IOException | RuntimeException e) {
+            checkpoint.save(blobStore, remote);
             throw Throwables.propagate(e);
         }
 
-        final HttpUtils.ReportingInputStream in = HttpUtils.getResponseStream(connection);
-
-        BinaryPackedObjects unpacker = new BinaryPackedObjects(localRepository.objectDatabase());
+        final ObjectDatabase objectDatabase = localRepository.objectDatabase();
+        final String format = BinaryPackedObjects.formatOf(connection.getContentType());
+        final BinaryPackedObjects unpacker = new BinaryPackedObjects(objectDatabase,
+                BinaryPackedObjects.serializer(format, objectDatabase));
         BinaryPackedObjects.Callback callback = new BinaryPackedObjects.Callback() {
             @Override
             public void callback(Supplier<RevObject> supplier) {
                 RevObject object = supplier.get();
                 progress.setProgress(progress.getProgress() + 1);
+                ingested(object, want, have);
                 if (object instanceof RevCommit) {
-                    RevCommit commit = (RevCommit) object;
-                    want.remove(commit.getId());
-                    have.removeAll(commit.getParentIds());
-                    have.add(commit.getId());
-                } else if (object instanceof RevTag) {
-                    RevTag tag = (RevTag) object;
-                    want.remove(tag.getId());
-                    have.remove(tag.getCommitId());
-                    have.add(tag.getId());
+                    checkpoint.lastCommit = object.getId();
+                }
+            }
+
+            @Override
+            public void callback(TYPE type, Supplier<RevObject> supplier) {
+                // only commits and tags affect the want and have lists
+                if (TYPE.COMMIT.equals(type) || TYPE.TAG.equals(type)) {
+                    callback(supplier);
+                } else {
+                    progress.setProgress(progress.getProgress() + 1);
+                }
+            }
+        };
+        // the unpacker reports objects in stream order, and only up to the first one that's not
+        // stored yet, even if the store writes batches concurrently, so the offset never gets
+        // past an object that wasn't stored. Only objects actually inserted count towards it.
+        // Objects found to already exist may not be part of the resumed response (e.g. if the
+        // server ignored the resume token), and resending a few objects is harmless while
+        // skipping them is not
+        BulkOpListener storeListener = new BulkOpListener() {
+            @Override
+            public void inserted(ObjectId object, @Nullable Integer storageSizeBytes) {
+                synchronized (checkpoint) {
+                    checkpoint.requestOffset++;
+                    if (checkpoint.requestOffset % FETCH_CHECKPOINT_INTERVAL == 0) {
+                        checkpoint.save(blobStore, remote);
+                    }
                 }
             }
         };
 
         Stopwatch sw = Stopwatch.createStarted();
-        IngestResults ingestResults = unpacker.ingest(in, callback);
+        IngestResults ingestResults;
+        try {
+            ingestResults = unpacker.ingest(in, callback, storeListener);
+        } catch (RuntimeException e) {
+            synchronized (checkpoint) {
+                checkpoint.save(blobStore, remote);
+            }
+            LOGGER.warn("Fetch from {} interrupted after {} objects, it will be resumed by the"
+                    + " next fetch", remote, checkpoint.requestOffset);
+            HttpTransport.DEFAULT.release(connection);
+            throw e;
+        } finally {
+            Closeables.closeQuietly(in);
+        }
         sw.stop();
+        // the request is complete, the next one starts from the updated want/have lists
+        checkpoint.requestOffset = 0;
 
         String msg = String.format(
                 "Processed %,d objects. Inserted: %,d. Existing: %,d. Time: %s. Compressed size: %,d bytes. Uncompressed size: %,d bytes.",
@@ -464,7 +701,8 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
         progress.setDescription(msg);
     }
 
-    private JsonObject createFetchMessage(List<ObjectId> want, Set<ObjectId> have) {
+    private JsonObject createFetchMessage(List<ObjectId> want, List<ObjectId> have,
+            @Nullable String resumeToken) {
         JsonObject message = new JsonObject();
         JsonArray wantArray = new JsonArray();
         for (ObjectId id : want) {
@@ -476,6 +714,17 @@ class HttpRemoteRepo extends AbstractRemoteRepo {
         }
         message.add("want", wantArray);
         message.add("have", haveArray);
+        if (resumeToken != null) {
+            message.add("resume", new JsonPrimitive(resumeToken));
+        }
+        // the formats the objects can be sent in, in order of preference, older servers only
+        // look for the raw format and otherwise respond in the legacy one
+        JsonArray formats = new JsonArray();
+        for (String format : BinaryPackedObjects
+                .supportedFormats(localRepository.objectDatabase())) {
+            formats.add(new JsonPrimitive(format));
+        }
+        message.add("formats", formats);
         return message;
     }
 
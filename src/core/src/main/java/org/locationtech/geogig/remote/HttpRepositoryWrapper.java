@@ -10,19 +10,41 @@
 package org.locationtech.geogig.remote;
 
 import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.locationtech.geogig.model.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 
 /**
  * Provides an interface to make basic queries to a remote repository over http.
+ * <p>
+ * Existence checks are answered from the results of a previous
+ * {@link #negotiate(RepositoryWrapper, ObjectId) negotiation} when available, falling back to one
+ * request per object otherwise.
  */
 class HttpRepositoryWrapper implements RepositoryWrapper {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpRepositoryWrapper.class);
+
+    static final int INITIAL_NEGOTIATION_BATCH = 64;
+
+    static final int MAX_NEGOTIATION_BATCH = 4096;
+
     private URL repositoryURL;
 
+    private final Map<ObjectId, Boolean> knownObjects = new HashMap<>();
+
     /**
      * Constructs a new {@code HttpRepositoryWrapper} with the provided URL.
      * 
@@ -40,7 +62,86 @@ class HttpRepositoryWrapper implements RepositoryWrapper {
      */
     @Override
     public boolean objectExists(ObjectId objectId) {
-        return objectId.isNull() || HttpUtils.networkObjectExists(repositoryURL, objectId);
+        if (objectId.isNull()) {
+            return true;
+        }
+        Boolean known = knownObjects.get(objectId);
+        if (known == null) {
+            known = HttpUtils.networkObjectExists(repositoryURL, objectId);
+            knownObjects.put(objectId, known);
+        }
+        return known.booleanValue();
+    }
+
+    /**
+     * Finds out which commits reachable from {@code tip} in the {@code local} repository this
+     * remote already has, exchanging batches of candidate commits instead of asking for each commit
+     * individually.
+     * <p>
+     * The local history is walked breadth first, and each round sends the next batch of commits to
+     * the remote without waiting to know whether their children exist on it. The batch size doubles
+     * on every round, and the walk doesn't go past the commits the remote reports to have (their
+     * ancestors are common too), so the common ancestors frontier is found in a handful of round
+     * trips even for long histories. The results are kept to answer
+     * {@link #objectExists(ObjectId)} afterwards.
+     * <p>
+     * If the remote doesn't support negotiation the results are discarded and existence checks fall
+     * back to one request per object.
+     * 
+     * @param local the repository whose history to walk
+     * @param tip the commit to start walking the history from
+     * @return the number of round trips made
+     */
+    public int negotiate(RepositoryWrapper local, ObjectId tip) {
+        Set<ObjectId> visited = new HashSet<>();
+        Set<ObjectId> commonAncestors = new HashSet<>();
+        Deque<ObjectId> frontier = new ArrayDeque<>();
+        frontier.add(tip);
+        int batchSize = INITIAL_NEGOTIATION_BATCH;
+        int roundTrips = 0;
+        try {
+            while (!frontier.isEmpty()) {
+                List<ObjectId> candidates = new ArrayList<>(batchSize);
+                while (!frontier.isEmpty() && candidates.size() < batchSize) {
+                    ObjectId id = frontier.remove();
+                    if (id.isNull() || !visited.add(id)) {
+                        continue;
+                    }
+                    ImmutableList<ObjectId> parents = local.getParents(id);
+                    if (commonAncestors.contains(id)) {
+                        commonAncestors.addAll(parents);
+                    } else {
+                        candidates.add(id);
+                        frontier.addAll(parents);
+                    }
+                }
+                if (candidates.isEmpty()) {
+                    continue;
+                }
+                Set<ObjectId> common = objectsExist(candidates);
+                roundTrips++;
+                for (ObjectId id : candidates) {
+                    boolean exists = common.contains(id);
+                    knownObjects.put(id, Boolean.valueOf(exists));
+                    if (exists) {
+                        commonAncestors.addAll(local.getParents(id));
+                    }
+                }
+                batchSize = Math.min(MAX_NEGOTIATION_BATCH, 2 * batchSize);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.info("Unable to negotiate common commits with {}, falling back to per commit"
+                    + " requests: {}", repositoryURL, e.getMessage());
+            knownObjects.clear();
+        }
+        return roundTrips;
+    }
+
+    /**
+     * @return the subset of {@code objectIds} that exist in the repository
+     */
+    Set<ObjectId> objectsExist(List<ObjectId> objectIds) {
+        return HttpUtils.networkObjectsExist(repositoryURL, objectIds);
     }
 
     /**
@@ -0,0 +1,196 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.remote.HttpUtils.ReportingInputStream;
+import org.locationtech.geogig.remote.HttpUtils.ReportingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens the http connections to remote repositories, and keeps count of the requests made and the
+ * bytes sent and received through them.
+ * <p>
+ * Connections are pooled by the JDK's keep-alive cache, as long as they're handed back in a
+ * reusable state: response streams are read to the end and closed, error streams are consumed,
+ * and connections are never {@link HttpURLConnection#disconnect() disconnected}, which would close
+ * the underlying socket. The number of idle connections kept per server is controlled by the
+ * {@code http.maxConnections} system property.
+ * <p>
+ * Request bodies are streamed with chunked transfer encoding, and both request and response bodies
+ * can be compressed as given by a {@link HttpCompression}.
+ */
+class HttpTransport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpTransport.class);
+
+    /**
+     * The transport used by all http remotes
+     */
+    static final HttpTransport DEFAULT = new HttpTransport();
+
+    /**
+     * Size of the chunks request bodies are streamed in
+     */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    /**
+     * Connects to the given URL using the HTTP GET method, accepting a {@link HttpCompression#GZIP
+     * gzip} encoded response
+     */
+    public HttpURLConnection get(String url) throws IOException {
+        return get(url, HttpCompression.GZIP);
+    }
+
+    /**
+     * Connects to the given URL using the HTTP GET method
+     *
+     * @param accept the preferred encoding of the response, the server may respond with any other
+     *        one the {@link #responseStream response stream} can decode
+     */
+    public HttpURLConnection get(String url, HttpCompression accept) throws IOException {
+        HttpURLConnection connection = open(new URL(url), "GET", accept);
+        LOGGER.debug("Connecting to '{}'...", url);
+        connection.connect();
+        int responseCode = connection.getResponseCode();
+        LOGGER.debug(" connected ({}).", responseCode);
+        return connection;
+    }
+
+    /**
+     * Opens a HTTP POST request to the given URL whose body is to be written to the
+     * {@link #requestStream request stream}, streamed in chunks of {@link #CHUNK_SIZE} bytes
+     * instead of buffered to compute its length
+     *
+     * @param contentType the content type of the request body, or {@code null}
+     * @param accept the preferred encoding of the response
+     */
+    public HttpURLConnection post(URL url, @Nullable String contentType, HttpCompression accept)
+            throws IOException {
+        HttpURLConnection connection = open(url, "POST", accept);
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(CHUNK_SIZE);
+        if (contentType != null) {
+            connection.setRequestProperty("Content-Type", contentType);
+        }
+        return connection;
+    }
+
+    private HttpURLConnection open(URL url, String method, HttpCompression accept)
+            throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setDoInput(true);
+        connection.setUseCaches(false);
+        connection.setRequestProperty("Accept-Encoding", acceptEncoding(accept));
+        requests.incrementAndGet();
+        return connection;
+    }
+
+    static String acceptEncoding(HttpCompression preferred) {
+        switch (preferred) {
+        case LZ4:
+            return HttpCompression.LZ4.contentEncoding() + ", "
+                    + HttpCompression.GZIP.contentEncoding() + ";q=0.5";
+        case GZIP:
+            return HttpCompression.GZIP.contentEncoding();
+        default:
+            return HttpCompression.NONE.contentEncoding();
+        }
+    }
+
+    /**
+     * @return the stream to write the body of a {@link #post POST} request to, compressed with the
+     *         given encoding, whose {@link ReportingOutputStream#close() close} method checks the
+     *         response is successful and hands back the connection for reuse
+     */
+    public ReportingOutputStream requestStream(HttpURLConnection connection,
+            HttpCompression encoding) throws IOException {
+        if (encoding != HttpCompression.NONE) {
+            connection.setRequestProperty("Content-Encoding", encoding.contentEncoding());
+        }
+        return new ReportingOutputStream(this, connection, connection.getOutputStream(), encoding);
+    }
+
+    /**
+     * @return the body of the response, decompressed as told by its {@code Content-Encoding}
+     *         header
+     */
+    public ReportingInputStream responseStream(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getInputStream();
+        String contentEncoding = connection.getHeaderField("Content-Encoding");
+        final HttpCompression compression;
+        try {
+            compression = HttpCompression.ofContentEncoding(contentEncoding);
+        } catch (IllegalArgumentException e) {
+            HttpUtils.consumeAndCloseStream(in);
+            throw new IOException(e.getMessage(), e);
+        }
+        return new ReportingInputStream(this, in, compression);
+    }
+
+    /**
+     * Hands back the connection to the keep-alive cache, consuming the error stream of failed
+     * requests. The response stream of successful ones is expected to be closed by the caller.
+     */
+    public void release(@Nullable HttpURLConnection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            HttpUtils.consumeAndCloseStream(connection.getErrorStream());
+        } catch (IOException e) {
+            // the connection can't be reused
+            connection.disconnect();
+        }
+    }
+
+    void sent(long bytes) {
+        bytesSent.addAndGet(bytes);
+    }
+
+    void received(long bytes) {
+        bytesReceived.addAndGet(bytes);
+    }
+
+    /**
+     * @return the number of requests made through this transport
+     */
+    public long requests() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of request body bytes sent through this transport, as compressed
+     */
+    public long bytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * @return the number of response body bytes received through this transport, as compressed
+     */
+    public long bytesReceived() {
+        return bytesReceived.get();
+    }
+}
@@ -10,17 +10,20 @@
 package org.locationtech.geogig.remote;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FilterInputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.InetAddress;
 import java.net.URL;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
@@ -37,11 +40,14 @@ import org.locationtech.geogig.storage.impl.ObjectSerializingFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Closeables;
 import com.google.common.io.CountingInputStream;
 import com.google.common.io.CountingOutputStream;
@@ -87,22 +93,14 @@ class HttpUtils {
     }
 
     /**
-     * Consumes the error stream of the provided connection and then closes it.
+     * Consumes the error stream of the provided connection and hands it back to the keep-alive
+     * cache for reuse.
      * 
-     * @param connection the connection to close
+     * @param connection the connection to release
+     * @see HttpTransport#release(HttpURLConnection)
      */
     public static void consumeErrStreamAndCloseConnection(@Nullable HttpURLConnection connection) {
-        if (connection == null) {
-            return;
-        }
-        try {
-            InputStream es = ((HttpURLConnection) connection).getErrorStream();
-            consumeAndCloseStream(es);
-        } catch (IOException ex) {
-            throw Throwables.propagate(ex);
-        } finally {
-            connection.disconnect();
-        }
+        HttpTransport.DEFAULT.release(connection);
     }
 
     /**
@@ -220,6 +218,57 @@ class HttpUtils {
         return exists;
     }
 
+    /**
+     * Determines which of the given objects exist in the remote repository, using a single request
+     * to the {@code negotiate} endpoint.
+     * 
+     * @param repositoryURL the URL of the repository
+     * @param objectIds the ids to check for
+     * @return the subset of {@code objectIds} that exist in the remote repository
+     */
+    public static Set<ObjectId> networkObjectsExist(URL repositoryURL,
+            Iterable<ObjectId> objectIds) {
+        HttpURLConnection connection = null;
+        Set<ObjectId> existing = new HashSet<ObjectId>();
+        try {
+            String expanded = repositoryURL.toString() + "/repo/negotiate";
+
+            connection = HttpTransport.DEFAULT.post(new URL(expanded), "text/plain",
+                    HttpCompression.GZIP);
+
+            OutputStream out = connection.getOutputStream();
+            try {
+                Writer w = new BufferedWriter(new OutputStreamWriter(out, Charsets.US_ASCII));
+                for (ObjectId id : objectIds) {
+                    w.write(id.toString());
+                    w.write('\n');
+                }
+                w.flush();
+            } finally {
+                out.close();
+            }
+
+            // Get Response
+            InputStream is = HttpUtils.getResponseStream(connection);
+            try {
+                BufferedReader rd = new BufferedReader(new InputStreamReader(is));
+                String line;
+                while ((line = rd.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        existing.add(ObjectId.valueOf(line));
+                    }
+                }
+            } finally {
+                consumeAndCloseStream(is);
+            }
+        } catch (Exception e) {
+            Throwables.propagate(e);
+        } finally {
+            consumeErrStreamAndCloseConnection(connection);
+        }
+        return existing;
+    }
+
     /**
      * Updates the ref on the remote repository that matches the provided refspec to the new value.
      * 
@@ -456,42 +505,110 @@ class HttpUtils {
         return listBuilder.build();
     }
 
+    /**
+     * What a repository accepts {@code sendobject} requests in, as advertised by its
+     * {@code beginpush} response
+     */
+    public static class PushCapabilities {
+
+        private final ImmutableSet<String> formats;
+
+        private final ImmutableSet<HttpCompression> encodings;
+
+        private final Optional<String> pushId;
+
+        PushCapabilities(ImmutableSet<String> formats, ImmutableSet<HttpCompression> encodings,
+                Optional<String> pushId) {
+            this.formats = formats;
+            this.encodings = encodings;
+            this.pushId = pushId;
+        }
+
+        /**
+         * @return the names of the serialization formats objects can be sent in; only
+         *         {@link BinaryPackedObjects#FORMAT_V1} for repositories that don't advertise them
+         */
+        public ImmutableSet<String> formats() {
+            return formats;
+        }
+
+        /**
+         * @return the encodings objects can be compressed with; only {@link HttpCompression#GZIP}
+         *         for repositories that don't advertise them
+         */
+        public ImmutableSet<HttpCompression> encodings() {
+            return encodings;
+        }
+
+        /**
+         * @return the id of the push, to be sent with the objects and at the end of the push;
+         *         absent for repositories that ingest objects as they're sent
+         */
+        public Optional<String> pushId() {
+            return pushId;
+        }
+    }
+
     /**
      * Begins a push operation to the target repository.
      * 
      * @param repositoryURL the URL of the repository
+     * @return the formats and encodings the repository accepts objects in
      */
-    public static void beginPush(URL repositoryURL) {
+    public static PushCapabilities beginPush(URL repositoryURL) {
         HttpURLConnection connection = null;
+        ImmutableSet<String> formats = ImmutableSet.of(BinaryPackedObjects.FORMAT_V1);
+        ImmutableSet<HttpCompression> encodings = ImmutableSet.of(HttpCompression.GZIP);
+        Optional<String> pushId = Optional.absent();
         try {
             String internalIp = InetAddress.getLocalHost().getHostName();
             String expanded = repositoryURL.toString() + "/repo/beginpush?internalIp=" + internalIp;
 
             connection = connect(expanded);
             InputStream stream = HttpUtils.getResponseStream(connection);
-            HttpUtils.consumeAndCloseStream(stream);
-
+            try {
+                BufferedReader rd = new BufferedReader(new InputStreamReader(stream));
+                final String prefix = BinaryPackedObjects.SENDOBJECT_FORMATS_PREFIX;
+                final String encodingsPrefix = BinaryPackedObjects.SENDOBJECT_ENCODINGS_PREFIX;
+                String line;
+                while ((line = rd.readLine()) != null) {
+                    if (line.startsWith(prefix)) {
+                        formats = ImmutableSet.copyOf(Splitter.on(',').trimResults()
+                                .omitEmptyStrings().split(line.substring(prefix.length())));
+                    } else if (line.startsWith(encodingsPrefix)) {
+                        ImmutableSet.Builder<HttpCompression> builder = ImmutableSet.builder();
+                        for (String encoding : Splitter.on(',').trimResults().omitEmptyStrings()
+                                .split(line.substring(encodingsPrefix.length()))) {
+                            try {
+                                builder.add(HttpCompression.ofContentEncoding(encoding));
+                            } catch (IllegalArgumentException unknown) {
+                                // supported by a newer server only
+                            }
+                        }
+                        encodings = builder.build();
+                    } else if (line.startsWith(BinaryPackedObjects.PUSH_ID_PREFIX)) {
+                        pushId = Optional.of(
+                                line.substring(BinaryPackedObjects.PUSH_ID_PREFIX.length()).trim());
+                    }
+                }
+            } finally {
+                HttpUtils.consumeAndCloseStream(stream);
+            }
         } catch (Exception e) {
             Throwables.propagate(e);
         } finally {
             HttpUtils.consumeErrStreamAndCloseConnection(connection);
         }
+        return new PushCapabilities(formats, encodings, pushId);
     }
 
     /**
      * Connects to the given URL using HTTP GET method
+     * 
+     * @see HttpTransport#get(String)
      */
     public static HttpURLConnection connect(String url) throws IOException {
-        HttpURLConnection connection;
-        connection = (HttpURLConnection) new URL(url).openConnection();
-        connection.setRequestMethod("GET");
-        connection.setUseCaches(false);
-        // connection.addRequestProperty("Accept-Encoding", "gzip");
-        LOGGER.debug("Connecting to '{}'...", url);
-        connection.connect();
-        int responseCode = connection.getResponseCode();
-        LOGGER.debug(" connected ({}).", responseCode);
-        return connection;
+        return HttpTransport.DEFAULT.get(url);
     }
 
     /**
@@ -505,12 +622,27 @@ class HttpUtils {
      */
     public static void endPush(URL repositoryURL, String refspec, ObjectId newCommitId,
             String originalRefValue) {
+        endPush(repositoryURL, refspec, newCommitId, originalRefValue, null);
+    }
+
+    /**
+     * Finalizes a push operation to the target repository, like
+     * {@link #endPush(URL, String, ObjectId, String)}, storing the objects staged for the push
+     * with the given id.
+     * 
+     * @param pushId the {@link PushCapabilities#pushId() id} of the push, or {@code null}
+     */
+    public static void endPush(URL repositoryURL, String refspec, ObjectId newCommitId,
+            String originalRefValue, @Nullable String pushId) {
         HttpURLConnection connection = null;
         try {
             String internalIp = InetAddress.getLocalHost().getHostName();
             String expanded = repositoryURL.toString() + "/repo/endpush?refspec=" + refspec
                     + "&objectId=" + newCommitId.toString() + "&internalIp=" + internalIp
                     + "&originalRefValue=" + originalRefValue;
+            if (pushId != null) {
+                expanded += "&pushId=" + pushId;
+            }
 
             connection = connect(expanded);
 
@@ -526,57 +658,54 @@ class HttpUtils {
 
     public static HttpUtils.ReportingInputStream getResponseStream(
             final HttpURLConnection connection) {
-
-        HttpUtils.ReportingInputStream reportingStream;
         try {
-            InputStream in = connection.getInputStream();
-            String contentEncoding = connection.getHeaderField("Content-Encoding");
-            boolean gzip = "gzip".equalsIgnoreCase(contentEncoding);
-            reportingStream = HttpUtils.newReportingInputStream(in, gzip);
+            return HttpTransport.DEFAULT.responseStream(connection);
         } catch (IOException e) {
             throw Throwables.propagate(e);
         }
-        return reportingStream;
     }
 
     public static ReportingInputStream newReportingInputStream(InputStream in, boolean gzip) {
-        return new ReportingInputStream(in, gzip);
-    }
-
-    public static ReportingOutputStream newReportingOutputStream(HttpURLConnection connection,
-            OutputStream out, boolean gzipEncode) {
-        return new ReportingOutputStream(connection, out, gzipEncode);
+        return new ReportingInputStream(null, in,
+                gzip ? HttpCompression.GZIP : HttpCompression.NONE);
     }
 
     public static class ReportingInputStream extends FilterInputStream {
 
-        private boolean isGzipEncoded;
+        private final HttpCompression compression;
+
+        private final @Nullable HttpTransport transport;
 
         private CountingInputStream uncompressed;
 
         private CountingInputStream compressed;
 
-        private ReportingInputStream(InputStream in, boolean isGzipEncoded) {
+        private boolean closed;
+
+        ReportingInputStream(@Nullable HttpTransport transport, InputStream in,
+                HttpCompression compression) {
             super(new CountingInputStream(in));
-            this.isGzipEncoded = isGzipEncoded;
-            if (isGzipEncoded) {
-                compressed = (CountingInputStream) super.in;
-                GZIPInputStream gzipIn;
+            this.transport = transport;
+            this.compression = compression;
+            compressed = (CountingInputStream) super.in;
+            if (HttpCompression.NONE.equals(compression)) {
+                uncompressed = compressed;
+            } else {
                 try {
-                    gzipIn = new GZIPInputStream(compressed);
+                    uncompressed = new CountingInputStream(compression.decode(compressed));
                 } catch (IOException e) {
                     throw Throwables.propagate(e);
                 }
-                uncompressed = new CountingInputStream(gzipIn);
                 super.in = uncompressed;
-            } else {
-                uncompressed = ((CountingInputStream) super.in);
-                compressed = uncompressed;
             }
         }
 
         public boolean isCompressed() {
-            return isGzipEncoded;
+            return !HttpCompression.NONE.equals(compression);
+        }
+
+        public HttpCompression compression() {
+            return compression;
         }
 
         public long compressedSize() {
@@ -586,11 +715,24 @@ class HttpUtils {
         public long unCompressedSize() {
             return uncompressed.getCount();
         }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (!closed) {
+                closed = true;
+                if (transport != null) {
+                    transport.received(compressedSize());
+                }
+            }
+        }
     }
 
     public static class ReportingOutputStream extends FilterOutputStream {
 
-        private boolean gzipEncode;
+        private final HttpCompression compression;
+
+        private final HttpTransport transport;
 
         private HttpURLConnection connection;
 
@@ -598,28 +740,23 @@ class HttpUtils {
 
         private final CountingOutputStream compressed;
 
-        private ReportingOutputStream(HttpURLConnection connection, OutputStream out,
-                boolean gzipEncode) {
+        ReportingOutputStream(HttpTransport transport, HttpURLConnection connection,
+                OutputStream out, HttpCompression compression) throws IOException {
             super(new CountingOutputStream(out));
-            this.gzipEncode = gzipEncode;
+            this.transport = transport;
+            this.compression = compression;
             this.connection = connection;
             compressed = (CountingOutputStream) super.out;
-            if (gzipEncode) {
-                GZIPOutputStream gzipOut;
-                try {
-                    gzipOut = new GZIPOutputStream(compressed);
-                } catch (IOException e) {
-                    throw Throwables.propagate(e);
-                }
-                uncompressed = new CountingOutputStream(gzipOut);
-                super.out = uncompressed;
-            } else {
+            if (HttpCompression.NONE.equals(compression)) {
                 uncompressed = compressed;
+            } else {
+                uncompressed = new CountingOutputStream(compression.encode(compressed));
+                super.out = uncompressed;
             }
         }
 
         public boolean isCompressed() {
-            return gzipEncode;
+            return !HttpCompression.NONE.equals(compression);
         }
 
         public long compressedSize() {
@@ -630,15 +767,29 @@ class HttpUtils {
             return uncompressed.getCount();
         }
 
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        /**
+         * Completes the request and waits for the response, which is consumed so that the
+         * connection can be reused
+         * 
+         * @throws IOException if the response is not successful
+         */
         @Override
         public void close() throws IOException {
             super.close();
+            transport.sent(compressedSize());
             // make sure we wait for the connection's ack before closing
             int responseCode = connection.getResponseCode();
             if (responseCode < 200 || responseCode > 299) {
+                transport.release(connection);
                 throw new IOException("Error closing " + connection.getURL() + ": response code: "
                         + responseCode);
             }
+            consumeAndCloseStream(transport.responseStream(connection));
         }
     }
 }
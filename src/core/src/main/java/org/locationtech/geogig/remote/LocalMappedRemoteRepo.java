@@ -30,6 +30,7 @@ import org.locationtech.geogig.plumbing.RevObjectParse;
 import org.locationtech.geogig.plumbing.UpdateRef;
 import org.locationtech.geogig.plumbing.UpdateSymRef;
 import org.locationtech.geogig.plumbing.WriteTree;
+import org.locationtech.geogig.plumbing.index.BoundsFilteredDiffOp;
 import org.locationtech.geogig.porcelain.DiffOp;
 import org.locationtech.geogig.repository.DiffEntry;
 import org.locationtech.geogig.repository.Repository;
@@ -300,8 +301,16 @@ public class LocalMappedRemoteRepo extends AbstractMappedRemoteRepo {
             parent = commit.getParentIds().get(0);
         }
 
-        AutoCloseableIterator<DiffEntry> changes = remoteRepo.command(DiffOp.class)
-                .setNewVersion(commit.getId()).setOldVersion(parent).setReportTrees(true).call();
+        AutoCloseableIterator<DiffEntry> changes;
+        if (filter.hasBoundsFilters()) {
+            ObjectId parentTree = parent.isNull() ? RevTree.EMPTY_TREE_ID
+                    : remoteRepo.getCommit(parent).getTreeId();
+            changes = remoteRepo.command(BoundsFilteredDiffOp.class).setOldTree(parentTree)
+                    .setNewTree(commit.getTreeId()).setFilter(filter).call();
+        } else {
+            changes = remoteRepo.command(DiffOp.class).setNewVersion(commit.getId())
+                    .setOldVersion(parent).setReportTrees(true).call();
+        }
 
         return new LocalFilteredDiffIterator(changes, remoteRepo, localRepository, filter);
     }
@@ -12,7 +12,9 @@ package org.locationtech.geogig.remote;
 import java.io.Closeable;
 import java.io.IOException;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.storage.impl.ObjectSerializingFactory;
 
 /**
  * A closeable funnel used to transparently send objects to a remote resource.
@@ -20,4 +22,11 @@ import org.locationtech.geogig.model.RevObject;
 public interface ObjectFunnel extends Closeable {
 
     public void funnel(RevObject object) throws IOException;
+
+    /**
+     * @return the serializer objects are written with, or {@code null} if unknown
+     */
+    public default @Nullable ObjectSerializingFactory serializer() {
+        return null;
+    }
 }
@@ -9,8 +9,17 @@
  */
 package org.locationtech.geogig.remote;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import org.locationtech.geogig.model.RevObject;
 import org.locationtech.geogig.storage.impl.ObjectSerializingFactory;
@@ -18,6 +27,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
 import com.google.common.io.CountingOutputStream;
 
 public class ObjectFunnels {
@@ -34,6 +44,27 @@ public class ObjectFunnels {
         return new SizeLimitingFunnel(outputFactory, serializer, byteSoftLimit);
     }
 
+    /**
+     * Creates a funnel that, like {@link #newFunnel(Supplier, ObjectSerializingFactory, int)},
+     * splits the objects in chunks of about {@code byteSoftLimit} bytes, each one written to a new
+     * stream obtained from {@code outputFactory}, but does so asynchronously: chunks are serialized
+     * in memory by the calling thread, and written to their target streams by the {@code executor}
+     * threads, so that serialization overlaps with the (possibly several concurrent) network
+     * transfers.
+     * <p>
+     * The calling thread blocks when the chunks not yet fully written add up to
+     * {@code maxInFlightBytes}. Write errors are reported by the next call to
+     * {@link ObjectFunnel#funnel funnel} or {@link ObjectFunnel#close close}, the later waiting for
+     * all pending writes to finish.
+     */
+    public static ObjectFunnel newPipelinedFunnel(final Supplier<OutputStream> outputFactory,
+            final ObjectSerializingFactory serializer, final int byteSoftLimit,
+            final ExecutorService executor, final int maxInFlightBytes) {
+
+        return new PipelinedFunnel(outputFactory, serializer, byteSoftLimit, executor,
+                maxInFlightBytes);
+    }
+
     private static class DirectFunnel implements ObjectFunnel {
 
         private OutputStream out;
@@ -51,6 +82,11 @@ public class ObjectFunnels {
             serializer.write(object, out);
         }
 
+        @Override
+        public ObjectSerializingFactory serializer() {
+            return serializer;
+        }
+
         @Override
         public void close() throws IOException {
             OutputStream out = this.out;
@@ -100,6 +136,11 @@ public class ObjectFunnels {
             return currentTarget;
         }
 
+        @Override
+        public ObjectSerializingFactory serializer() {
+            return serializer;
+        }
+
         @Override
         public void close() throws IOException {
             OutputStream currentTarget = this.currentTarget;
@@ -111,4 +152,127 @@ public class ObjectFunnels {
         }
 
     }
+
+    private static class PipelinedFunnel implements ObjectFunnel {
+
+        private final Supplier<OutputStream> outputFactory;
+
+        private final ObjectSerializingFactory serializer;
+
+        private final int byteSoftLimit;
+
+        private final ExecutorService executor;
+
+        private final int maxInFlightBytes;
+
+        private final Semaphore inFlightBytes;
+
+        private final List<Future<?>> pending = new LinkedList<>();
+
+        private ByteArrayOutputStream currentChunk;
+
+        public PipelinedFunnel(Supplier<OutputStream> outputFactory,
+                ObjectSerializingFactory serializer, int byteSoftLimit, ExecutorService executor,
+                int maxInFlightBytes) {
+            this.outputFactory = outputFactory;
+            this.serializer = serializer;
+            this.byteSoftLimit = byteSoftLimit;
+            this.executor = executor;
+            this.maxInFlightBytes = Math.max(byteSoftLimit, maxInFlightBytes);
+            this.inFlightBytes = new Semaphore(this.maxInFlightBytes);
+        }
+
+        @Override
+        public void funnel(RevObject object) throws IOException {
+            checkPending(false);
+            if (currentChunk == null) {
+                currentChunk = new ByteArrayOutputStream(Math.min(byteSoftLimit, 64 * 1024));
+            }
+            currentChunk.write(object.getId().getRawValue());
+            serializer.write(object, currentChunk);
+            if (currentChunk.size() >= byteSoftLimit) {
+                submitCurrentChunk();
+            }
+        }
+
+        private void submitCurrentChunk() throws IOException {
+            final byte[] chunk = currentChunk.toByteArray();
+            currentChunk = null;
+            // a chunk can be larger than the soft limit, don't wait for more permits than exist
+            final int permits = Math.min(chunk.length, maxInFlightBytes);
+            try {
+                inFlightBytes.acquire(permits);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for pending writes");
+            }
+            Future<?> future;
+            try {
+                future = executor.submit(() -> {
+                    try (OutputStream out = outputFactory.get()) {
+                        out.write(chunk);
+                    } finally {
+                        inFlightBytes.release(permits);
+                    }
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                inFlightBytes.release(permits);
+                throw e;
+            }
+            pending.add(future);
+        }
+
+        /**
+         * Removes the finished writes from the pending list, propagating the first write error
+         * found, if any.
+         * 
+         * @param wait whether to wait for all pending writes to finish
+         */
+        private void checkPending(boolean wait) throws IOException {
+            for (Iterator<Future<?>> it = pending.iterator(); it.hasNext();) {
+                Future<?> future = it.next();
+                if (!wait && !future.isDone()) {
+                    continue;
+                }
+                it.remove();
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for pending writes");
+                } catch (ExecutionException e) {
+                    cancelPending();
+                    Throwable cause = e.getCause();
+                    Throwables.propagateIfInstanceOf(cause, IOException.class);
+                    throw Throwables.propagate(cause);
+                }
+            }
+        }
+
+        private void cancelPending() {
+            for (Future<?> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+        }
+
+        @Override
+        public ObjectSerializingFactory serializer() {
+            return serializer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (currentChunk != null && currentChunk.size() > 0) {
+                    submitCurrentChunk();
+                }
+                checkPending(true);
+            } finally {
+                currentChunk = null;
+                cancelPending();
+            }
+        }
+    }
 }
@@ -0,0 +1,29 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.storage.RawObject;
+
+/**
+ * Reads the objects of a {@link BinaryPackedObjects#FORMAT_RAW raw format} pack in the encoding
+ * object stores keep them in, so that they can be {@link BinaryPackedObjects#ingest ingested}
+ * without decoding them.
+ */
+interface RawObjectReader {
+
+    /**
+     * Reads the encoded form of the object with the given id
+     */
+    RawObject readRaw(ObjectId id, InputStream in) throws IOException;
+}
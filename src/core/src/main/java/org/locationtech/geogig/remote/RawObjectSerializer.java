@@ -0,0 +1,131 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.RawObject;
+import org.locationtech.geogig.storage.datastream.SerializationFactoryProxy;
+import org.locationtech.geogig.storage.impl.ObjectSerializingFactory;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+
+/**
+ * Packs objects in the {@link SerializationFactoryProxy} encoding object stores keep them in, as
+ * returned by {@link ObjectStore#getRaw(ObjectId)}, so that they don't need to be encoded for the
+ * transfer, nor decoded and encoded again by a receiving store with the same
+ * {@link ObjectStore#getRawFormat() raw format}.
+ * <p>
+ * Each object is written as its type, the length of its encoded form as a four byte integer, and
+ * its encoded form. Writers should {@link #prefetch(Collection) prefetch} the encoded form of the
+ * objects about to be written in batches, otherwise each object is read from the source store on
+ * its own.
+ */
+final class RawObjectSerializer implements ObjectSerializingFactory, RawObjectReader {
+
+    private static final SerializationFactoryProxy ENCODER = new SerializationFactoryProxy();
+
+    private final @Nullable ObjectStore source;
+
+    private Set<ObjectId> prefetchedIds = new HashSet<>();
+
+    private Map<ObjectId, byte[]> prefetched = new HashMap<>();
+
+    /**
+     * @param source the store to read the encoded objects to write from, may be {@code null} if
+     *        this serializer is only used to read
+     */
+    RawObjectSerializer(@Nullable ObjectStore source) {
+        this.source = source;
+    }
+
+    /**
+     * Reads the encoded form of the objects with the given ids from the source store at once, for
+     * the following calls to {@link #write(RevObject, OutputStream)}, replacing the previously
+     * prefetched ones
+     */
+    void prefetch(Collection<ObjectId> ids) {
+        if (source != null) {
+            prefetchedIds = new HashSet<>(ids);
+            prefetched = source.getAllRaw(ids);
+        }
+    }
+
+    @Override
+    public void write(RevObject o, OutputStream out) throws IOException {
+        final ObjectId id = o.getId();
+        byte[] raw = prefetched.get(id);
+        if (raw == null && source != null && !prefetchedIds.contains(id)) {
+            raw = source.getRaw(id);
+        }
+        if (raw == null) {
+            // objects that are not stored, like the empty tree
+            raw = encode(o);
+        }
+        out.write(o.getType().value());
+        out.write(Ints.toByteArray(raw.length));
+        out.write(raw);
+    }
+
+    /**
+     * Reads the encoded form of the object with the given id without decoding it
+     */
+    @Override
+    public RawObject readRaw(ObjectId id, InputStream in) throws IOException {
+        final int type = in.read();
+        if (type < 0) {
+            throw new EOFException("Unexpected end of stream reading object " + id);
+        }
+        byte[] length = new byte[Integer.BYTES];
+        ByteStreams.readFully(in, length);
+        byte[] data = new byte[Ints.fromByteArray(length)];
+        ByteStreams.readFully(in, data);
+        return RawObject.of(id, TYPE.valueOf(type), data);
+    }
+
+    static byte[] encode(RevObject object) {
+        return ENCODER.encode(object);
+    }
+
+    static RevObject decode(RawObject raw) {
+        return ENCODER.decode(raw.id(), raw.data());
+    }
+
+    @Override
+    public RevObject read(@Nullable ObjectId id, InputStream in) throws IOException {
+        return decode(readRaw(id, in));
+    }
+
+    @Override
+    public RevObject read(@Nullable ObjectId id, byte[] data, int offset, int length)
+            throws IOException {
+        return read(id, new ByteArrayInputStream(data, offset, length));
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Raw " + SerializationFactoryProxy.FORMAT_NAME;
+    }
+}
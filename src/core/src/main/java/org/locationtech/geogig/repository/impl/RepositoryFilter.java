@@ -13,9 +13,13 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.geotools.filter.text.cql2.CQL;
 import org.geotools.filter.text.cql2.CQLException;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultEngineeringCRS;
 import org.locationtech.geogig.data.FeatureBuilder;
 import org.locationtech.geogig.model.RevFeature;
 import org.locationtech.geogig.model.RevFeatureType;
@@ -23,19 +27,48 @@ import org.locationtech.geogig.model.RevObject;
 import org.locationtech.geogig.model.RevObject.TYPE;
 import org.opengis.feature.Feature;
 import org.opengis.filter.Filter;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.TransformException;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.vividsolutions.jts.geom.Envelope;
 
 /**
  * Provides a filter for sparse repositories. A default filter can be applied to all feature types,
  * and specific filters can be applied to individual feature types.
+ * <p>
+ * Besides {@code CQL} filters on the feature attributes, features can be filtered by the
+ * intersection of their bounds with a bounding box given as a {@code BBOX} filter in the
+ * {@code minx,miny,maxx,maxy,EPSG:<code>} format, which the remote can evaluate against the bounds
+ * of the tree nodes and spatial index buckets without reading the features that fall outside it.
+ * A feature needs to pass both the {@code CQL} and the {@code BBOX} filters that apply to it.
  */
 public class RepositoryFilter {
 
+    /**
+     * Filter type for attribute filters in CQL syntax
+     */
+    public static final String CQL_FILTER = "CQL";
+
+    /**
+     * Filter type for bounding box filters
+     */
+    public static final String BBOX_FILTER = "BBOX";
+
     private Map<String, Filter> repositoryFilters;
 
+    private Map<String, ReferencedEnvelope> boundsFilters;
+
+    /**
+     * Bounds filters in the CRS of the feature types they're evaluated against, keyed by feature
+     * type id and feature path
+     */
+    private ConcurrentMap<String, ReferencedEnvelope> projectedBoundsFilters = new ConcurrentHashMap<>();
+
     private List<FilterDescription> filterDescriptions;
 
     /**
@@ -89,6 +122,7 @@ public class RepositoryFilter {
      */
     public RepositoryFilter() {
         repositoryFilters = new HashMap<String, Filter>();
+        boundsFilters = new HashMap<String, ReferencedEnvelope>();
         filterDescriptions = new LinkedList<FilterDescription>();
     }
 
@@ -103,13 +137,14 @@ public class RepositoryFilter {
      * Adds a new filter to the repository.
      * 
      * @param featurePath the path of the features to filter, "default" for a fall back filter
-     * @param filterType the format of the filter text, for example "CQL"
+     * @param filterType the format of the filter text, {@link #CQL_FILTER "CQL"} or
+     *        {@link #BBOX_FILTER "BBOX"}
      * @param filterText the filter text
      */
     public void addFilter(String featurePath, String filterType, String filterText) {
         Preconditions.checkState(featurePath != null && filterType != null && filterText != null,
                 "Missing filter parameter.");
-        if (filterType.equals("CQL")) {
+        if (filterType.equals(CQL_FILTER)) {
             try {
                 Filter newFilter = CQL.toFilter(filterText);
                 repositoryFilters.put(featurePath, newFilter);
@@ -117,7 +152,31 @@ public class RepositoryFilter {
             } catch (CQLException e) {
                 Throwables.propagate(e);
             }
+        } else if (filterType.equals(BBOX_FILTER)) {
+            ReferencedEnvelope bounds = SpatialOps.parseBBOX(filterText);
+            boundsFilters.put(featurePath, bounds);
+            filterDescriptions.add(new FilterDescription(featurePath, filterType, filterText));
+        }
+    }
+
+    /**
+     * @return {@code true} if any {@link #BBOX_FILTER bounds filter} was added
+     */
+    public boolean hasBoundsFilters() {
+        return !boundsFilters.isEmpty();
+    }
+
+    /**
+     * @param featurePath the path of the features (without the feature ID)
+     * @return the bounds the features at the given path are filtered by, falling back to the
+     *         "default" filter, if any
+     */
+    public Optional<ReferencedEnvelope> getBoundsFilter(String featurePath) {
+        ReferencedEnvelope bounds = boundsFilters.get(featurePath);
+        if (bounds == null) {
+            bounds = boundsFilters.get("default");
         }
+        return Optional.fromNullable(bounds);
     }
 
     /**
@@ -139,9 +198,36 @@ public class RepositoryFilter {
                 typeFilter = repositoryFilters.get("default");
             }
             if (typeFilter == null || typeFilter.evaluate(feature)) {
-                return true;
+                Optional<ReferencedEnvelope> bounds = getBoundsFilter(featurePath);
+                return !bounds.isPresent() || intersects(type, featurePath, feature);
             }
         }
         return false;
     }
+
+    private boolean intersects(RevFeatureType type, String featurePath, Feature feature) {
+        final String key = type.getId() + featurePath;
+        ReferencedEnvelope filter = projectedBoundsFilters.get(key);
+        if (filter == null) {
+            filter = project(getBoundsFilter(featurePath).get(), type);
+            projectedBoundsFilters.putIfAbsent(key, filter);
+        }
+        ReferencedEnvelope featureBounds = ReferencedEnvelope.reference(feature.getBounds());
+        return !featureBounds.isEmpty() && filter.intersects((Envelope) featureBounds);
+    }
+
+    /**
+     * @return the bounds filter in the CRS of the given feature type
+     */
+    public static ReferencedEnvelope project(ReferencedEnvelope bounds, RevFeatureType type) {
+        CoordinateReferenceSystem nativeCrs = type.type().getCoordinateReferenceSystem();
+        if (null == nativeCrs || nativeCrs instanceof DefaultEngineeringCRS) {
+            return bounds;
+        }
+        try {
+            return bounds.transform(nativeCrs, true);
+        } catch (TransformException | FactoryException e) {
+            throw Throwables.propagate(e);
+        }
+    }
 }
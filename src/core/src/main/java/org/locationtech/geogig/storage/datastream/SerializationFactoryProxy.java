@@ -50,6 +50,14 @@ public class SerializationFactoryProxy implements ObjectSerializingFactory {
 
     private static final int MAX_FORMAT_CODE = SUPPORTED_FORMATS.length - 1;
 
+    /**
+     * Name of the encoding produced by this class, as reported by the
+     * {@link org.locationtech.geogig.storage.ObjectStore#getRawFormat() raw format} of the object
+     * stores that use it. Includes the highest serialization format this version knows of, since
+     * older versions can't read objects encoded by newer ones.
+     */
+    public static final String FORMAT_NAME = "proxy-" + MAX_FORMAT_CODE;
+
     /**
      * The serialization factory used for writing is the highest supported version one
      */
@@ -37,6 +37,9 @@ public class FloatPackedCoordinateSequence extends Float {
     public FloatPackedCoordinateSequence(final int dimensions, final int initialSize) {
         super(initialSize,dimensions);
     }
+    public FloatPackedCoordinateSequence(final int dimensions, final float[] coords) {
+        super(coords, dimensions);
+    }
     public FloatPackedCoordinateSequence(int[][] serializedForm) {
         super(deserializeCoords(serializedForm),serializedForm.length);
     }
@@ -31,9 +31,11 @@ import org.locationtech.geogig.model.RevTag;
 import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.RawObject;
 import org.locationtech.geogig.storage.datastream.SerializationFactoryProxy;
 
 import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 
 /**
@@ -257,6 +259,63 @@ public abstract class AbstractObjectStore implements ObjectStore {
         }
     }
 
+    /**
+     * @return {@link SerializationFactoryProxy#FORMAT_NAME} if objects are stored with a
+     *         {@link SerializationFactoryProxy}, {@code null} otherwise
+     */
+    @Override
+    public @Nullable String getRawFormat() {
+        return serializer instanceof SerializationFactoryProxy
+                ? SerializationFactoryProxy.FORMAT_NAME : null;
+    }
+
+    @Override
+    public @Nullable byte[] getRaw(ObjectId id) {
+        checkNotNull(id, "argument id is null");
+        checkState(isOpen(), "db is closed");
+        checkRawAccess();
+        InputStream raw = getRawInternal(id, false);
+        if (raw == null) {
+            return null;
+        }
+        try {
+            return ByteStreams.toByteArray(raw);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        } finally {
+            Closeables.closeQuietly(raw);
+        }
+    }
+
+    /**
+     * This default implementation calls {@link #putInternal(ObjectId, byte[])} for each object;
+     * subclasses may override if appropriate.
+     */
+    @Override
+    public void putAllRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        checkNotNull(objects, "objects is null");
+        checkNotNull(listener, "listener is null");
+        checkState(isOpen(), "db is closed");
+        checkRawAccess();
+
+        while (objects.hasNext()) {
+            RawObject object = objects.next();
+            final byte[] rawData = object.data();
+            if (putInternal(object.id(), rawData)) {
+                listener.inserted(object.id(), rawData.length);
+            } else {
+                listener.found(object.id(), null);
+            }
+        }
+    }
+
+    protected void checkRawAccess() {
+        if (getRawFormat() == null) {
+            throw new UnsupportedOperationException(
+                    getClass().getSimpleName() + " does not support raw object access");
+        }
+    }
+
     protected void writeObject(RevObject object, OutputStream target) {
         try {
             serializer().write(object, target);
@@ -0,0 +1,184 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.storage.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevFeatureType;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevTag;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.ObjectStore;
+
+import com.google.common.collect.Iterators;
+
+/**
+ * An {@link ObjectStore} that keeps the objects put to it in memory, visible to its readers, until
+ * they're {@link #flush() flushed} to the wrapped store in a single {@link ObjectStore#putAll
+ * putAll} call.
+ * <p>
+ * Meant for operations that create many small objects that depend on each other, like the trees
+ * and commits of a rebase, so they don't pay the cost of a write to the backend each.
+ * {@link #delete(ObjectId) Deletes} and raw access go straight to the wrapped store.
+ */
+public class BufferedObjectStore extends ForwardingObjectStore {
+
+    private final Map<ObjectId, RevObject> buffer = new LinkedHashMap<>();
+
+    public BufferedObjectStore(ObjectStore store) {
+        super(store, false);
+    }
+
+    /**
+     * @return the number of buffered objects
+     */
+    public int bufferedCount() {
+        return buffer.size();
+    }
+
+    /**
+     * Writes all the buffered objects to the wrapped store
+     */
+    public void flush() {
+        if (!buffer.isEmpty()) {
+            subject.get().putAll(buffer.values().iterator());
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Discards the buffered objects
+     */
+    public void discard() {
+        buffer.clear();
+    }
+
+    @Override
+    public boolean exists(ObjectId id) {
+        return buffer.containsKey(id) || super.exists(id);
+    }
+
+    @Override
+    public RevObject get(ObjectId id) throws IllegalArgumentException {
+        RevObject o = buffer.get(id);
+        return o == null ? super.get(id) : o;
+    }
+
+    @Override
+    public <T extends RevObject> T get(ObjectId id, Class<T> type)
+            throws IllegalArgumentException {
+        RevObject o = buffer.get(id);
+        return o == null ? super.get(id, type) : cast(o, type);
+    }
+
+    @Override
+    public @Nullable RevObject getIfPresent(ObjectId id) {
+        RevObject o = buffer.get(id);
+        return o == null ? super.getIfPresent(id) : o;
+    }
+
+    @Override
+    public @Nullable <T extends RevObject> T getIfPresent(ObjectId id, Class<T> type)
+            throws IllegalArgumentException {
+        RevObject o = buffer.get(id);
+        return o == null ? super.getIfPresent(id, type) : cast(o, type);
+    }
+
+    @Override
+    public RevTree getTree(ObjectId id) {
+        return get(id, RevTree.class);
+    }
+
+    @Override
+    public RevFeature getFeature(ObjectId id) {
+        return get(id, RevFeature.class);
+    }
+
+    @Override
+    public RevFeatureType getFeatureType(ObjectId id) {
+        return get(id, RevFeatureType.class);
+    }
+
+    @Override
+    public RevCommit getCommit(ObjectId id) {
+        return get(id, RevCommit.class);
+    }
+
+    @Override
+    public RevTag getTag(ObjectId id) {
+        return get(id, RevTag.class);
+    }
+
+    @Override
+    public Iterator<RevObject> getAll(Iterable<ObjectId> ids) {
+        return getAll(ids, BulkOpListener.NOOP_LISTENER);
+    }
+
+    @Override
+    public Iterator<RevObject> getAll(Iterable<ObjectId> ids, BulkOpListener listener) {
+        return getAll(ids, listener, RevObject.class);
+    }
+
+    @Override
+    public <T extends RevObject> Iterator<T> getAll(Iterable<ObjectId> ids, BulkOpListener listener,
+            Class<T> type) {
+        if (buffer.isEmpty()) {
+            return super.getAll(ids, listener, type);
+        }
+        List<T> buffered = new ArrayList<>();
+        List<ObjectId> stored = new ArrayList<>();
+        for (ObjectId id : ids) {
+            RevObject o = buffer.get(id);
+            if (o == null) {
+                stored.add(id);
+            } else if (type.isInstance(o)) {
+                listener.found(id, null);
+                buffered.add(type.cast(o));
+            }
+        }
+        return Iterators.concat(buffered.iterator(), super.getAll(stored, listener, type));
+    }
+
+    @Override
+    public boolean put(RevObject object) {
+        return buffer.putIfAbsent(object.getId(), object) == null;
+    }
+
+    @Override
+    public void putAll(Iterator<? extends RevObject> objects) {
+        putAll(objects, BulkOpListener.NOOP_LISTENER);
+    }
+
+    @Override
+    public void putAll(Iterator<? extends RevObject> objects, BulkOpListener listener) {
+        while (objects.hasNext()) {
+            RevObject object = objects.next();
+            if (put(object)) {
+                listener.inserted(object.getId(), null);
+            }
+        }
+    }
+
+    private static <T extends RevObject> T cast(RevObject o, Class<T> type) {
+        checkArgument(type.isInstance(o), "object %s is not of type %s", o.getId(), type);
+        return type.cast(o);
+    }
+}
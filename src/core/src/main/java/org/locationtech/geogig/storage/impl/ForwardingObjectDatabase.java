@@ -11,6 +11,7 @@ package org.locationtech.geogig.storage.impl;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
@@ -27,6 +28,7 @@ import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ConflictsDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectInfo;
+import org.locationtech.geogig.storage.RawObject;
 
 import com.google.inject.Provider;
 
@@ -185,6 +187,26 @@ public class ForwardingObjectDatabase implements ObjectDatabase {
         return subject.get().getBlobStore();
     }
 
+    @Override
+    public String getRawFormat() {
+        return subject.get().getRawFormat();
+    }
+
+    @Override
+    public byte[] getRaw(ObjectId id) {
+        return subject.get().getRaw(id);
+    }
+
+    @Override
+    public Map<ObjectId, byte[]> getAllRaw(Iterable<ObjectId> ids) {
+        return subject.get().getAllRaw(ids);
+    }
+
+    @Override
+    public void putAllRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        subject.get().putAllRaw(objects, listener);
+    }
+
     @Override
     public <T extends RevObject> AutoCloseableIterator<ObjectInfo<T>> getObjects(
             Iterator<NodeRef> refs, BulkOpListener listener, Class<T> type) {
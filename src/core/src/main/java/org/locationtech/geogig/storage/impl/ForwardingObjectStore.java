@@ -11,6 +11,7 @@ package org.locationtech.geogig.storage.impl;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
@@ -24,6 +25,7 @@ import org.locationtech.geogig.storage.AutoCloseableIterator;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ObjectInfo;
 import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.RawObject;
 
 import com.google.common.base.Preconditions;
 import com.google.inject.Provider;
@@ -181,6 +183,27 @@ public class ForwardingObjectStore implements ObjectStore {
         return String.format("%s[%s]", getClass().getSimpleName(), subject);
     }
 
+    @Override
+    public String getRawFormat() {
+        return subject.get().getRawFormat();
+    }
+
+    @Override
+    public byte[] getRaw(ObjectId id) {
+        return subject.get().getRaw(id);
+    }
+
+    @Override
+    public Map<ObjectId, byte[]> getAllRaw(Iterable<ObjectId> ids) {
+        return subject.get().getAllRaw(ids);
+    }
+
+    @Override
+    public void putAllRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        checkWritable();
+        subject.get().putAllRaw(objects, listener);
+    }
+
     @Override
     public <T extends RevObject> AutoCloseableIterator<ObjectInfo<T>> getObjects(
             Iterator<NodeRef> refs, BulkOpListener listener, Class<T> type) {
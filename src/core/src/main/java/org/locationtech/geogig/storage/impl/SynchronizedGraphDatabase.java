@@ -9,7 +9,11 @@
  */
 package org.locationtech.geogig.storage.impl;
 
+import java.util.Iterator;
+import java.util.List;
+
 import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 import org.locationtech.geogig.storage.GraphDatabase;
 
@@ -76,6 +80,12 @@ public class SynchronizedGraphDatabase implements GraphDatabase {
         }
     }
 
+    public List<ObjectId> putAll(Iterator<RevCommit> commits) {
+        synchronized (delegate) {
+            return delegate.putAll(commits);
+        }
+    }
+
     public void map(ObjectId mapped, ObjectId original) {
         synchronized (delegate) {
             delegate.map(mapped, original);
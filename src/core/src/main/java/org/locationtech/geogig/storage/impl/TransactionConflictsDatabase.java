@@ -123,6 +123,13 @@ public class TransactionConflictsDatabase implements ConflictsDatabase {
         return database.getByPrefix(txNamespace, prefixFilter);
     }
 
+    @Override
+    public List<Conflict> getByPrefix(@Nullable String namespace, @Nullable String treePath,
+            @Nullable String startAfter, int limit) {
+
+        return database.getByPrefix(txNamespace, treePath, startAfter, limit);
+    }
+
     @Override
     public long getCountByPrefix(@Nullable String namespace, @Nullable String treePath) {
 
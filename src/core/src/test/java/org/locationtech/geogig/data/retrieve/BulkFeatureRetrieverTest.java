@@ -9,6 +9,7 @@
  */
 package org.locationtech.geogig.data.retrieve;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -37,6 +38,8 @@ import org.opengis.feature.simple.SimpleFeatureType;
 
 import com.google.common.collect.Lists;
 import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.util.Assert;
 
 public class BulkFeatureRetrieverTest {
@@ -97,6 +100,38 @@ public class BulkFeatureRetrieverTest {
         int tt = 0;
     }
 
+    @Test
+    public void testSimplifiesDefaultGeometryOnly() throws Exception {
+        ObjectId meta1 = getOID(1);
+
+        RevFeatureTypeBuilder ftbuilder = new RevFeatureTypeBuilder();
+        SimpleFeatureType fType1 = DataUtilities.createType("location",
+                "the_geom:LineString:srid=4326,other:LineString:srid=4326");
+        RevFeatureType revft1 = ftbuilder.build(meta1, fType1);
+
+        WKTReader2 wkt = new WKTReader2();
+        final String line = "LINESTRING(0 0, 0.1 0.1, 0.2 0.2, 0.3 0.3, 10 10)";
+        RevFeature f1 = RevObjectTestSupport.featureForceId(getOID(2), wkt.read(line),
+                wkt.read(line));
+
+        ObjectDatabase odb = mock(ObjectDatabase.class);
+        Node n1 = Node.create("name1", getOID(2), meta1, TYPE.FEATURE, new Envelope());
+        NodeRef nr1 = new NodeRef(n1, "testcase", meta1);
+        List<ObjectInfo<RevObject>> objs = Lists.newArrayList(ObjectInfo.of(nr1, f1));
+        when(odb.getObjects(anyObject(), anyObject(), anyObject()))
+                .thenReturn(AutoCloseableIterator.fromIterator(objs.iterator()));
+
+        BulkFeatureRetriever getter = new BulkFeatureRetriever(odb).parallelism(1)
+                .simplificationDistance(1d);
+        Iterator<SimpleFeature> results = getter.getGeoToolsFeatures(
+                AutoCloseableIterator.fromIterator(Arrays.asList(nr1).iterator()), revft1, null,
+                new GeometryFactory());
+        SimpleFeature feature = results.next();
+
+        assertEquals(2, ((Geometry) feature.getDefaultGeometry()).getNumPoints());
+        assertEquals(5, ((Geometry) feature.getAttribute("other")).getNumPoints());
+    }
+
     public ObjectId getOID(int b) {
         byte n = (byte) b;
         return new ObjectId(
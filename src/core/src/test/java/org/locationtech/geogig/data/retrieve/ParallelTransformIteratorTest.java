@@ -0,0 +1,127 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.data.retrieve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class ParallelTransformIteratorTest {
+
+    private List<Integer> range(int size) {
+        List<Integer> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    private AutoCloseableIterator<Integer> source(List<Integer> list, AtomicBoolean closed) {
+        return AutoCloseableIterator.fromIterator(list.iterator(), (it) -> closed.set(true));
+    }
+
+    @Test
+    public void testEmpty() {
+        AtomicBoolean closed = new AtomicBoolean();
+        ParallelTransformIterator<Integer, String> it = new ParallelTransformIterator<>(
+                source(ImmutableList.of(), closed), (i) -> String.valueOf(i), 4, 10, true);
+        assertFalse(it.hasNext());
+        assertFalse(it.hasNext());
+        assertTrue(closed.get());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testOffEdgeThrowsError() {
+        AtomicBoolean closed = new AtomicBoolean();
+        ParallelTransformIterator<Integer, String> it = new ParallelTransformIterator<>(
+                source(ImmutableList.of(1), closed), (i) -> String.valueOf(i), 4, 10, true);
+        assertEquals("1", it.next());
+        it.next();
+    }
+
+    @Test
+    public void testPreservesIterationOrder() {
+        final List<Integer> input = range(10_000);
+        // make earlier elements slower to build so later batches finish first
+        Function<Integer, Integer> fn = (i) -> {
+            if (i % 100 == 0) {
+                Thread.yield();
+            }
+            return i * 2;
+        };
+        AtomicBoolean closed = new AtomicBoolean();
+        ParallelTransformIterator<Integer, Integer> it = new ParallelTransformIterator<>(
+                source(input, closed), fn, 4, 7, true);
+
+        List<Integer> result = Lists.newArrayList(it);
+        assertEquals(Lists.transform(input, fn), result);
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testUnordered() {
+        final List<Integer> input = range(10_000);
+        AtomicBoolean closed = new AtomicBoolean();
+        ParallelTransformIterator<Integer, Integer> it = new ParallelTransformIterator<>(
+                source(input, closed), (i) -> i, 4, 33, false);
+
+        List<Integer> result = Lists.newArrayList(it);
+        Collections.sort(result);
+        assertEquals(input, result);
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testErrorPropagated() {
+        final List<Integer> input = range(1000);
+        AtomicBoolean closed = new AtomicBoolean();
+        ParallelTransformIterator<Integer, Integer> it = new ParallelTransformIterator<>(
+                source(input, closed), (i) -> {
+                    if (i == 500) {
+                        throw new IllegalStateException("expected");
+                    }
+                    return i;
+                }, 2, 10, true);
+        try {
+            Lists.newArrayList(it);
+            fail("expected ISE");
+        } catch (IllegalStateException e) {
+            assertEquals("expected", e.getMessage());
+        }
+        assertTrue(closed.get());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testCloseEarly() {
+        final List<Integer> input = range(1000);
+        AtomicBoolean closed = new AtomicBoolean();
+        ParallelTransformIterator<Integer, Integer> it = new ParallelTransformIterator<>(
+                source(input, closed), (i) -> i, 2, 10, true);
+        assertEquals(Integer.valueOf(0), it.next());
+        it.close();
+        assertTrue(closed.get());
+        assertFalse(it.hasNext());
+    }
+}
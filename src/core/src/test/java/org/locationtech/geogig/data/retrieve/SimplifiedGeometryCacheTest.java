@@ -0,0 +1,95 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.data.retrieve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+
+import com.google.common.base.Supplier;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class SimplifiedGeometryCacheTest {
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    private Supplier<Geometry> loader(AtomicInteger calls) {
+        return () -> {
+            calls.incrementAndGet();
+            return factory.createLineString(
+                    new Coordinate[] { new Coordinate(0, 0), new Coordinate(1, 1) });
+        };
+    }
+
+    @Test
+    public void testCachedByFeatureAndBucket() {
+        SimplifiedGeometryCache cache = new SimplifiedGeometryCache(1000);
+        ObjectId id1 = RevObjectTestSupport.hashString("f1");
+        ObjectId id2 = RevObjectTestSupport.hashString("f2");
+        AtomicInteger calls = new AtomicInteger();
+
+        Geometry g = cache.get(id1, 0, loader(calls));
+        assertEquals(1, calls.get());
+        assertEquals(g, cache.get(id1, 0, loader(calls)));
+        assertEquals(1, calls.get());
+
+        cache.get(id1, 1, loader(calls));
+        assertEquals(2, calls.get());
+        cache.get(id2, 0, loader(calls));
+        assertEquals(3, calls.get());
+        assertEquals(3, cache.size());
+
+        cache.invalidateAll();
+        cache.get(id1, 0, loader(calls));
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    public void testReturnsCopies() {
+        SimplifiedGeometryCache cache = new SimplifiedGeometryCache(1000);
+        ObjectId id = RevObjectTestSupport.hashString("f1");
+        AtomicInteger calls = new AtomicInteger();
+
+        Geometry g1 = cache.get(id, 0, loader(calls));
+        g1.getCoordinates()[0].x = 100;
+        g1.geometryChanged();
+
+        Geometry g2 = cache.get(id, 0, loader(calls));
+        assertNotSame(g1, g2);
+        assertEquals(0, g2.getCoordinates()[0].x, 0d);
+    }
+
+    @Test
+    public void testNullGeometryNotCached() {
+        SimplifiedGeometryCache cache = new SimplifiedGeometryCache(1000);
+        ObjectId id = RevObjectTestSupport.hashString("f1");
+        assertNull(cache.get(id, 0, () -> null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testBoundedByNumberOfCoordinates() {
+        SimplifiedGeometryCache cache = new SimplifiedGeometryCache(10);
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            cache.get(RevObjectTestSupport.hashString("f" + i), 0, loader(calls));
+        }
+        assertTrue(cache.size() <= 5);
+    }
+}
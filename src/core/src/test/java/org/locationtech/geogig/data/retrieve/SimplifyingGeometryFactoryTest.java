@@ -0,0 +1,152 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.data.retrieve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.locationtech.geogig.storage.datastream.v2_3.FloatPackedCoordinateSequence;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+
+public class SimplifyingGeometryFactoryTest {
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    /**
+     * @return a closed circle of {@code numPoints + 1} vertices
+     */
+    private Coordinate[] circle(double cx, double cy, double radius, int numPoints) {
+        Coordinate[] coords = new Coordinate[numPoints + 1];
+        for (int i = 0; i < numPoints; i++) {
+            double angle = 2 * Math.PI * i / numPoints;
+            coords[i] = new Coordinate(cx + radius * Math.cos(angle),
+                    cy + radius * Math.sin(angle));
+        }
+        coords[numPoints] = new Coordinate(coords[0]);
+        return coords;
+    }
+
+    @Test
+    public void testToleranceBucket() {
+        assertEquals(0, SimplifyingGeometryFactory.toleranceBucket(1));
+        assertEquals(0, SimplifyingGeometryFactory.toleranceBucket(1.9));
+        assertEquals(1, SimplifyingGeometryFactory.toleranceBucket(2));
+        assertEquals(-4, SimplifyingGeometryFactory.toleranceBucket(0.1));
+        assertEquals(0.0625, SimplifyingGeometryFactory.bucketTolerance(-4), 0d);
+        for (double d : new double[] { 1e-6, 0.3, 1, 7, 1000.5 }) {
+            double tolerance = SimplifyingGeometryFactory
+                    .bucketTolerance(SimplifyingGeometryFactory.toleranceBucket(d));
+            assertTrue(tolerance <= d && tolerance > d / 2);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDistance() {
+        new SimplifyingGeometryFactory(factory, 0);
+    }
+
+    @Test
+    public void testSmallSequencesUntouched() {
+        LineString line = factory.createLineString(
+                new Coordinate[] { new Coordinate(0, 0), new Coordinate(0.1, 0.1) });
+        CoordinateSequence seq = line.getCoordinateSequence();
+        assertSame(seq, SimplifyingGeometryFactory.simplify(seq, 10, 2));
+    }
+
+    @Test
+    public void testSimplifyLineString() {
+        Coordinate[] coords = new Coordinate[1001];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = new Coordinate(i * 0.01, Math.sin(i * 0.01));
+        }
+        SimplifyingGeometryFactory gf = new SimplifyingGeometryFactory(factory, 0.1);
+        LineString simplified = gf.createLineString(coords);
+
+        assertTrue(simplified.getNumPoints() < 150);
+        assertTrue(simplified.getCoordinateSequence() instanceof FloatPackedCoordinateSequence);
+        assertEquals(coords[0].x, simplified.getStartPoint().getX(), 1e-6);
+        assertEquals(coords[1000].x, simplified.getEndPoint().getX(), 1e-6);
+        assertEquals(coords[1000].y, simplified.getEndPoint().getY(), 1e-6);
+        LineString original = factory.createLineString(coords);
+        assertTrue(original.buffer(0.1).contains(simplified));
+    }
+
+    @Test
+    public void testSimplifyPolygon() {
+        Polygon original = factory.createPolygon(circle(10, 10, 5, 2000));
+        Polygon simplified = new SimplifyingGeometryFactory(factory, 0.5)
+                .createPolygon(circle(10, 10, 5, 2000));
+        assertTrue(simplified.isValid());
+        assertTrue(simplified.getNumPoints() < 100);
+        assertEquals(original.getArea(), simplified.getArea(), original.getArea() * 0.05);
+    }
+
+    @Test
+    public void testCollapsedRingIsStillValid() {
+        SimplifyingGeometryFactory gf = new SimplifyingGeometryFactory(factory, 100);
+        Polygon simplified = gf.createPolygon(circle(0, 0, 1, 100));
+        assertEquals(4, simplified.getExteriorRing().getNumPoints());
+        assertTrue(simplified.getExteriorRing().isClosed());
+
+        LineString line = gf.createLineString(new Coordinate[] { new Coordinate(0, 0),
+                new Coordinate(1, 1), new Coordinate(2, 0), new Coordinate(3, 1) });
+        assertEquals(2, line.getNumPoints());
+        assertEquals(new Coordinate(0, 0), line.getCoordinateN(0));
+        assertEquals(new Coordinate(3, 1), line.getCoordinateN(1));
+    }
+
+    @Test
+    public void testFallsBackToDoublePrecision() {
+        // at this magnitude float precision is coarser than the simplification distance
+        final double base = 1_000_000;
+        Coordinate[] coords = new Coordinate[100];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = new Coordinate(base + i * 0.001, base);
+        }
+        LineString simplified = new SimplifyingGeometryFactory(factory, 0.01)
+                .createLineString(coords);
+        assertTrue(simplified.getNumPoints() < 20);
+        assertTrue(simplified.getCoordinateSequence() instanceof PackedCoordinateSequence.Double);
+        assertEquals(coords[99].x, simplified.getEndPoint().getX(), 0d);
+    }
+
+    @Test
+    public void testDecodeWKB() throws Exception {
+        Geometry original = factory.createMultiPolygon(new Polygon[] {
+                factory.createPolygon(circle(0, 0, 10, 1000)),
+                factory.createPolygon(circle(30, 30, 10, 1000)) });
+        byte[] wkb = new WKBWriter().write(original);
+
+        SimplifyingGeometryFactory gf = new SimplifyingGeometryFactory(factory, 1);
+        Geometry decoded = new WKBReader(gf).read(wkb);
+        assertEquals(2, decoded.getNumGeometries());
+        assertTrue(decoded.isValid());
+        assertTrue(decoded.getNumPoints() < original.getNumPoints() / 10);
+        assertEquals(original.getEnvelopeInternal().getWidth(),
+                decoded.getEnvelopeInternal().getWidth(), 1);
+
+        Point point = (Point) new WKBReader(gf).read(new WKBWriter().write(factory
+                .createPoint(new Coordinate(1.23456789, 9.87654321))));
+        assertEquals(1.23456789, point.getX(), 0d);
+        assertEquals(9.87654321, point.getY(), 0d);
+    }
+}
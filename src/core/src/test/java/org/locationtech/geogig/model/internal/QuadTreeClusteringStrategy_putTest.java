@@ -12,6 +12,7 @@ package org.locationtech.geogig.model.internal;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.locationtech.geogig.model.impl.RevObjectTestSupport.findNode;
 import static org.locationtech.geogig.model.internal.Quadrant.NE;
 import static org.locationtech.geogig.model.internal.Quadrant.NW;
@@ -274,6 +275,38 @@ public class QuadTreeClusteringStrategy_putTest {
         assertEquals(originalCollapsedTree.size(), updatedTree.size());
     }
 
+    @Test
+    public void testRemovedNodesAreNotPromotedBack() {
+        QuadTreeClusteringStrategy orig = support.newStrategy();
+
+        // force a DAG split with nodes that fall on the NE ..
+        final int size = 1 + orig.normalizedSizeLimit();
+        for (int i = 1; i <= size; i++) {
+            orig.put(support.createNode("node # " + i, new Envelope(i, i, 1, 1)));
+        }
+        RevTree originalTree = DAGTreeBuilder.build(orig, support.store());
+
+        QuadTreeClusteringStrategy update = support.newStrategy(originalTree);
+
+        // the first removal shrinks the split DAG back to a leaf, the second one is removed from
+        // the leaf only
+        Node node1 = support.createNode("node # 1", new Envelope(1, 1, 1, 1));
+        Node node2 = support.createNode("node # 2", new Envelope(2, 2, 1, 1));
+        assertTrue(update.remove(node1));
+        assertTrue(update.remove(node2));
+
+        // split the leaf again, shall not bring back the removed nodes
+        update.put(support.createNode("new node # 1", new Envelope(1.5, 1.5, 1, 1)));
+        update.put(support.createNode("new node # 2", new Envelope(2.5, 2.5, 1, 1)));
+
+        RevTree updatedTree = DAGTreeBuilder.build(update, support.store());
+
+        assertEquals(0, findNode(node1.getName(), updatedTree, support.store()).size());
+        assertEquals(0, findNode(node2.getName(), updatedTree, support.store()).size());
+        assertEquals(size, updatedTree.size());
+        assertEquals(size, RevObjectTestSupport.getTreeNodes(updatedTree, support.store()).size());
+    }
+
     private void print(ClusteringStrategy st, DAG root) {
         int indent = root.getId().depthLength();
         System.err.print(Strings.padStart("", indent, ' '));
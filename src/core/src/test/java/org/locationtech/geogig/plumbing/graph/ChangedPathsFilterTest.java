@@ -0,0 +1,75 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class ChangedPathsFilterTest {
+
+    @Test
+    public void testContainsChangedPathsAndTheirParents() {
+        ChangedPathsFilter filter = ChangedPathsFilter
+                .of(ImmutableList.of("roads/highways/1", "/buildings/5/"));
+        assertTrue(filter.mightContain("roads/highways/1"));
+        assertTrue(filter.mightContain("roads/highways"));
+        assertTrue(filter.mightContain("roads"));
+        assertTrue(filter.mightContain("/roads/"));
+        assertTrue(filter.mightContain("buildings/5"));
+        assertTrue(filter.mightContain("buildings"));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            paths.add("layer/" + i);
+        }
+        ChangedPathsFilter filter = ChangedPathsFilter.of(paths);
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("other/" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("too many false positives: " + falsePositives, falsePositives < 300);
+    }
+
+    @Test
+    public void testEmpty() {
+        ChangedPathsFilter filter = ChangedPathsFilter.of(ImmutableList.<String> of());
+        assertFalse(filter.mightContain("roads"));
+        assertFalse(filter.mightContain("roads/1"));
+    }
+
+    @Test
+    public void testAll() {
+        ChangedPathsFilter filter = ChangedPathsFilter.all();
+        assertTrue(filter.mightContain("roads"));
+        assertTrue(filter.mightContain("buildings/5"));
+    }
+
+    @Test
+    public void testWrap() {
+        ChangedPathsFilter filter = ChangedPathsFilter.of(ImmutableList.of("roads/1"));
+        ChangedPathsFilter read = ChangedPathsFilter.wrap(filter.toByteArray());
+        assertArrayEquals(filter.toByteArray(), read.toByteArray());
+        assertTrue(read.mightContain("roads/1"));
+        assertFalse(read.mightContain("buildings"));
+    }
+}
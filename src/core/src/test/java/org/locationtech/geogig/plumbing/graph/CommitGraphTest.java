@@ -0,0 +1,227 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.ObjectId;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+
+public class CommitGraphTest {
+
+    private final CommitGraph.Builder builder = new CommitGraph.Builder();
+
+    private long timestamp = 1000;
+
+    private static ObjectId id(String name) {
+        return ObjectId.createNoClone(Hashing.sha1().hashString(name, Charsets.UTF_8).asBytes());
+    }
+
+    private void commit(String name, String... parents) {
+        List<ObjectId> parentIds = new ArrayList<>();
+        for (String p : parents) {
+            parentIds.add(id(p));
+        }
+        builder.add(id(name), id("tree " + name), timestamp++, parentIds);
+    }
+
+    private int index(CommitGraph graph, String name) {
+        int index = graph.indexOf(id(name));
+        assertTrue(name + " not found", index > -1);
+        return index;
+    }
+
+    private String mergeBase(CommitGraph graph, String left, String right) {
+        List<Integer> bases = graph.mergeBases(index(graph, left), index(graph, right));
+        if (bases.isEmpty()) {
+            return null;
+        }
+        ObjectId base = graph.id(bases.get(0));
+        for (String name : new String[] { "a", "b", "c", "d", "e", "f", "g", "h", "i", "x" }) {
+            if (id(name).equals(base)) {
+                return name;
+            }
+        }
+        return base.toString();
+    }
+
+    /**
+     * <pre>
+     * a - b - c - d ------ g
+     *      \           \  /
+     *       e - f ------ h
+     *                   /
+     *                  i
+     * </pre>
+     * plus an unrelated root {@code x}
+     */
+    private CommitGraph history() {
+        commit("a");
+        commit("b", "a");
+        commit("c", "b");
+        commit("d", "c");
+        commit("e", "b");
+        commit("f", "e");
+        commit("i");
+        commit("h", "f", "d", "i");
+        commit("g", "d", "h");
+        commit("x");
+        return builder.build();
+    }
+
+    @Test
+    public void testLookup() {
+        CommitGraph graph = history();
+        assertEquals(10, graph.size());
+        assertEquals(-1, graph.indexOf(id("unknown")));
+        int h = index(graph, "h");
+        assertEquals(id("h"), graph.id(h));
+        assertEquals(id("tree h"), graph.treeId(h));
+        assertEquals(1007, graph.timestamp(h));
+        int[] parents = graph.parents(h);
+        assertEquals(3, parents.length);
+        assertEquals(id("f"), graph.id(parents[0]));
+        assertEquals(id("d"), graph.id(parents[1]));
+        assertEquals(id("i"), graph.id(parents[2]));
+        assertEquals(0, graph.parents(index(graph, "a")).length);
+    }
+
+    @Test
+    public void testGenerations() {
+        CommitGraph graph = history();
+        assertEquals(1, graph.generation(index(graph, "a")));
+        assertEquals(4, graph.generation(index(graph, "d")));
+        assertEquals(4, graph.generation(index(graph, "f")));
+        assertEquals(1, graph.generation(index(graph, "i")));
+        assertEquals(5, graph.generation(index(graph, "h")));
+        assertEquals(6, graph.generation(index(graph, "g")));
+    }
+
+    @Test
+    public void testIsAncestor() {
+        CommitGraph graph = history();
+        assertTrue(graph.isAncestor(index(graph, "a"), index(graph, "g")));
+        assertTrue(graph.isAncestor(index(graph, "i"), index(graph, "g")));
+        assertTrue(graph.isAncestor(index(graph, "e"), index(graph, "h")));
+        assertTrue(graph.isAncestor(index(graph, "c"), index(graph, "c")));
+        assertFalse(graph.isAncestor(index(graph, "e"), index(graph, "d")));
+        assertFalse(graph.isAncestor(index(graph, "g"), index(graph, "a")));
+        assertFalse(graph.isAncestor(index(graph, "x"), index(graph, "g")));
+    }
+
+    @Test
+    public void testMergeBases() {
+        CommitGraph graph = history();
+        assertEquals("b", mergeBase(graph, "d", "f"));
+        assertEquals("d", mergeBase(graph, "g", "d"));
+        assertEquals("d", mergeBase(graph, "h", "d"));
+        assertEquals("f", mergeBase(graph, "g", "f"));
+        assertEquals("i", mergeBase(graph, "h", "i"));
+        assertEquals("c", mergeBase(graph, "c", "c"));
+        assertEquals(null, mergeBase(graph, "x", "g"));
+    }
+
+    @Test
+    public void testBatchMergeBases() {
+        CommitGraph graph = history();
+        String[] others = { "a", "c", "d", "f", "g", "h", "i", "x" };
+        List<Integer> indexes = new ArrayList<>();
+        for (String other : others) {
+            indexes.add(index(graph, other));
+        }
+        List<List<Integer>> bases = graph.mergeBases(index(graph, "d"), indexes);
+        assertEquals(others.length, bases.size());
+        for (int i = 0; i < others.length; i++) {
+            assertEquals(others[i],
+                    graph.mergeBases(index(graph, "d"), index(graph, others[i])), bases.get(i));
+        }
+        assertEquals(ImmutableList.of(index(graph, "b")), bases.get(3));
+        assertTrue(bases.get(7).isEmpty());
+    }
+
+    @Test
+    public void testCrissCrossMergeBases() {
+        // b and c are both merged into d and e
+        commit("a");
+        commit("b", "a");
+        commit("c", "a");
+        commit("d", "b", "c");
+        commit("e", "c", "b");
+        CommitGraph graph = builder.build();
+        List<Integer> bases = graph.mergeBases(index(graph, "d"), index(graph, "e"));
+        assertEquals(2, bases.size());
+        // most recent first
+        assertEquals(id("c"), graph.id(bases.get(0)));
+        assertEquals(id("b"), graph.id(bases.get(1)));
+    }
+
+    @Test
+    public void testSerialization() {
+        CommitGraph graph = history();
+        byte[] bytes = graph.toByteArray();
+        CommitGraph read = CommitGraph.wrap(ByteBuffer.wrap(bytes));
+        assertArrayEquals(bytes, read.toByteArray());
+        assertEquals(graph.size(), read.size());
+        int h = index(read, "h");
+        assertEquals(3, read.parents(h).length);
+        assertEquals("b", mergeBase(read, "d", "f"));
+    }
+
+    @Test
+    public void testChangedPaths() {
+        history();
+        builder.setChangedPaths(id("b"), ChangedPathsFilter.of(ImmutableList.of("roads/1")));
+        builder.setChangedPaths(id("h"), ChangedPathsFilter.all());
+        assertEquals(8, builder.withoutChangedPaths().size());
+        CommitGraph graph = CommitGraph.wrap(ByteBuffer.wrap(builder.build().toByteArray()));
+        assertTrue(graph.hasChangedPaths());
+
+        int b = index(graph, "b");
+        assertTrue(graph.changedPaths(b).isPresent());
+        assertTrue(graph.mightHaveChanged(b, "roads"));
+        assertFalse(graph.mightHaveChanged(b, "buildings"));
+        assertTrue(graph.mightHaveChanged(index(graph, "h"), "buildings"));
+        // unknown
+        assertFalse(graph.changedPaths(index(graph, "c")).isPresent());
+        assertTrue(graph.mightHaveChanged(index(graph, "c"), "buildings"));
+
+        CommitGraph copy = new CommitGraph.Builder().addAll(graph).build();
+        assertFalse(copy.mightHaveChanged(index(copy, "b"), "buildings"));
+    }
+
+    @Test
+    public void testAddAll() {
+        CommitGraph graph = history();
+        CommitGraph.Builder copy = new CommitGraph.Builder().addAll(graph);
+        copy.add(id("new"), id("tree new"), 2000, ImmutableList.of(id("g"), id("x")));
+        CommitGraph extended = copy.build();
+        assertEquals(11, extended.size());
+        assertEquals(7, extended.generation(extended.indexOf(id("new"))));
+        assertEquals(graph.generation(index(graph, "h")),
+                extended.generation(index(extended, "h")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMissingParent() {
+        commit("b", "a");
+        builder.build();
+    }
+}
@@ -0,0 +1,215 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.plumbing.history.FeatureHistory.Version;
+import org.locationtech.geogig.storage.BlobStore;
+import org.locationtech.geogig.storage.fs.FileBlobStore;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+public class FeatureHistoryTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private FileBlobStore store;
+
+    @Before
+    public void before() throws Exception {
+        store = new FileBlobStore(tmp.newFolder(".geogig"));
+        store.open();
+    }
+
+    private static Version version(ObjectId commitId, String feature, long timestamp) {
+        return new Version(commitId, RevObjectTestSupport.hashString(feature),
+                RevObjectTestSupport.hashString("type"), timestamp);
+    }
+
+    @Test
+    public void testNestedLayers() {
+        FeatureHistory roads = new FeatureHistory("roads");
+        ObjectId c1 = RevObjectTestSupport.hashString("c1");
+        roads.addCommit(c1);
+        roads.add("r1", version(c1, "r1", 1));
+        FeatureHistory.put(store, roads);
+
+        FeatureHistory highways = new FeatureHistory("roads/highways");
+        highways.addCommit(c1);
+        highways.add("h1", version(c1, "h1", 1));
+        FeatureHistory.put(store, highways);
+
+        assertEquals(ImmutableList.of("roads", "roads/highways"), FeatureHistory.layers(store));
+        FeatureHistory stored = FeatureHistory.get(store, "roads").get();
+        assertTrue(stored.isIndexed(c1));
+        assertEquals(1, stored.versions("r1").size());
+        assertFalse(stored.contains("h1"));
+        assertTrue(FeatureHistory.get(store, "roads/highways").get().contains("h1"));
+
+        FeatureHistory.remove(store, "roads");
+        assertEquals(ImmutableList.of("roads/highways"), FeatureHistory.layers(store));
+        assertFalse(FeatureHistory.get(store, "roads").isPresent());
+        assertTrue(FeatureHistory.get(store, "roads/highways").isPresent());
+    }
+
+    @Test
+    public void testUpdatesAppendSegments() {
+        final int updates = 100;
+        for (int i = 0; i < updates; i++) {
+            FeatureHistory history = FeatureHistory.get(store, "points")
+                    .or(new FeatureHistory("points"));
+            assertEquals(i, history.commitCount());
+            ObjectId commit = RevObjectTestSupport.hashString("commit" + i);
+            history.addCommit(commit);
+            history.add("p1", version(commit, "p1." + i, i));
+            history.add("f" + i, version(commit, "f" + i, i));
+            FeatureHistory.put(store, history);
+            // merged while the last segment is as big as the previous one
+            assertTrue(history.segmentCount() <= 1 + Integer.toBinaryString(i + 1).length());
+        }
+        FeatureHistory history = FeatureHistory.get(store, "points").get();
+        assertEquals(updates, history.commitCount());
+        List<Version> p1 = history.versions("p1");
+        assertEquals(updates, p1.size());
+        assertEquals(RevObjectTestSupport.hashString("commit" + (updates - 1)),
+                p1.get(0).getCommitId());
+        for (int i = 0; i < updates; i++) {
+            assertEquals(RevObjectTestSupport.hashString("commit" + i),
+                    history.versions("f" + i).get(0).getCommitId());
+        }
+
+        // obsolete segments are removed
+        File[] files = new File(tmp.getRoot(), ".geogig/feature-history").listFiles(
+                (f) -> f.isDirectory())[0].listFiles();
+        Set<String> segments = new HashSet<>();
+        for (File file : files) {
+            if (!file.getName().equals("head")) {
+                segments.add(file.getName().substring(0, file.getName().indexOf('.')));
+            }
+        }
+        assertEquals(history.segmentCount(), segments.size());
+    }
+
+    @Test
+    public void testLookupReadsOnlyTheFeatureShard() {
+        for (int i = 0; i < 3; i++) {
+            FeatureHistory history = FeatureHistory.get(store, "points")
+                    .or(new FeatureHistory("points"));
+            ObjectId commit = RevObjectTestSupport.hashString("commit" + i);
+            history.addCommit(commit);
+            for (int f = 0; f < 100; f++) {
+                history.add("f" + f, version(commit, "f" + f + "." + i, i));
+            }
+            FeatureHistory.put(store, history);
+        }
+
+        // a new store instance has nothing loaded
+        CountingBlobStore counting = new CountingBlobStore(store);
+        FeatureHistory history = FeatureHistory.get(counting, "points").get();
+        assertEquals(1, counting.reads.size());
+
+        counting.reads.clear();
+        assertEquals(3, history.versions("f1").size());
+        assertFalse(counting.reads.isEmpty());
+        assertTrue(counting.reads.size() <= history.segmentCount());
+        final String shard = counting.reads.get(0).substring(counting.reads.get(0).indexOf('.'));
+        for (String key : counting.reads) {
+            assertTrue(key.endsWith(shard));
+        }
+
+        // already loaded segments are not read again
+        counting.reads.clear();
+        history = FeatureHistory.get(counting, "points").get();
+        assertEquals(3, history.versions("f1").size());
+        assertEquals(1, counting.reads.size());
+    }
+
+    @Test
+    public void testAppendDoesNotReadVersions() {
+        FeatureHistory history = new FeatureHistory("points");
+        for (int i = 0; i < 10; i++) {
+            ObjectId commit = RevObjectTestSupport.hashString("commit" + i);
+            history.addCommit(commit);
+            history.add("f" + i, version(commit, "f" + i, i));
+        }
+        FeatureHistory.put(store, history);
+
+        CountingBlobStore counting = new CountingBlobStore(store);
+        history = FeatureHistory.get(counting, "points").get();
+        ObjectId commit = RevObjectTestSupport.hashString("commit10");
+        history.addCommit(commit);
+        history.add("f1", version(commit, "f1.10", 10));
+        FeatureHistory.put(counting, history);
+
+        assertEquals(2, history.segmentCount());
+        for (String key : counting.reads) {
+            assertTrue(key, key.endsWith("/head") || key.endsWith(".commits")
+                    || key.equals(FeatureHistory.LAYERS_BLOB_KEY));
+        }
+        assertEquals(11, history.commitCount());
+        assertEquals(2, FeatureHistory.get(store, "points").get().versions("f1").size());
+    }
+
+    private static class CountingBlobStore implements BlobStore {
+
+        private final BlobStore store;
+
+        final List<String> reads = new ArrayList<>();
+
+        CountingBlobStore(BlobStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public Optional<byte[]> getBlob(String path) {
+            reads.add(path);
+            return store.getBlob(path);
+        }
+
+        @Override
+        public Optional<InputStream> getBlobAsStream(String path) {
+            reads.add(path);
+            return store.getBlobAsStream(path);
+        }
+
+        @Override
+        public void putBlob(String path, byte[] blob) {
+            store.putBlob(path, blob);
+        }
+
+        @Override
+        public void putBlob(String path, InputStream blob) {
+            store.putBlob(path, blob);
+        }
+
+        @Override
+        public void removeBlob(String path) {
+            store.removeBlob(path);
+        }
+    }
+}
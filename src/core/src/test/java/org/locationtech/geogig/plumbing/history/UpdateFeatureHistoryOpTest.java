@@ -0,0 +1,143 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.history;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.plumbing.history.FeatureHistory.Version;
+import org.locationtech.geogig.porcelain.LogOp;
+import org.locationtech.geogig.porcelain.MergeOp;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class UpdateFeatureHistoryOpTest extends RepositoryTestCase {
+
+    @Override
+    protected void setUpInternal() throws Exception {
+    }
+
+    private FeatureHistory history() {
+        return FeatureHistory.get(repo, pointsName).get();
+    }
+
+    @Test
+    public void testNoFeatureHistories() throws Exception {
+        insertAndAdd(points1);
+        commit("points1");
+        assertTrue(geogig.command(UpdateFeatureHistoryOp.class).call().isEmpty());
+        assertTrue(FeatureHistory.layers(repo).isEmpty());
+        assertFalse(FeatureHistory.get(repo, pointsName).isPresent());
+    }
+
+    @Test
+    public void testIndexExistingHistory() throws Exception {
+        insertAndAdd(points1, points2);
+        RevCommit c1 = commit("points1, points2");
+        insertAndAdd(points1_modified);
+        RevCommit c2 = commit("points1 modified");
+        deleteAndAdd(points2);
+        RevCommit c3 = commit("points2 deleted");
+        insertAndAdd(lines1);
+        RevCommit c4 = commit("lines1");
+
+        List<FeatureHistory> histories = geogig.command(UpdateFeatureHistoryOp.class)
+                .setLayer(pointsName).call();
+        assertEquals(1, histories.size());
+        assertEquals(ImmutableList.of(pointsName), FeatureHistory.layers(repo));
+
+        FeatureHistory history = history();
+        assertEquals(4, history.commitCount());
+        assertTrue(history.isIndexed(c4.getId()));
+
+        List<Version> p1 = history.versions(idP1);
+        assertEquals(2, p1.size());
+        assertEquals(c2.getId(), p1.get(0).getCommitId());
+        assertEquals(c1.getId(), p1.get(1).getCommitId());
+        assertFalse(p1.get(0).getObjectId().equals(p1.get(1).getObjectId()));
+
+        List<Version> p2 = history.versions(idP2);
+        assertEquals(2, p2.size());
+        assertTrue(p2.get(0).isDelete());
+        assertEquals(c3.getId(), p2.get(0).getCommitId());
+        assertTrue(history.isChanged(idP2, c3.getId()));
+        assertFalse(history.isChanged(idP2, c4.getId()));
+        // other layers are not indexed
+        assertFalse(history.contains(idL1));
+    }
+
+    @Test
+    public void testUpdatedOnCommit() throws Exception {
+        insertAndAdd(points1);
+        commit("points1");
+        geogig.command(UpdateFeatureHistoryOp.class).setLayer(pointsName).call();
+
+        insertAndAdd(points1_modified);
+        RevCommit c2 = commit("points1 modified");
+        FeatureHistory history = history();
+        assertTrue(history.isIndexed(c2.getId()));
+        assertEquals(c2.getId(), history.versions(idP1).get(0).getCommitId());
+    }
+
+    @Test
+    public void testMergeKeepsOriginalVersions() throws Exception {
+        insertAndAdd(points1);
+        commit("points1");
+        geogig.command(UpdateFeatureHistoryOp.class).setLayer(pointsName).call();
+        branch("branch1");
+        checkout("branch1");
+        insertAndAdd(points2);
+        RevCommit branchCommit = commit("points2");
+        checkout("master");
+        insertAndAdd(points3);
+        commit("points3");
+        RevCommit merge = geogig.command(MergeOp.class).addCommit(branchCommit.getId()).call()
+                .getMergeCommit();
+        assertEquals(2, merge.getParentIds().size());
+
+        FeatureHistory history = history();
+        assertTrue(history.isIndexed(merge.getId()));
+        List<Version> p2 = history.versions(idP2);
+        assertEquals(1, p2.size());
+        assertEquals(branchCommit.getId(), p2.get(0).getCommitId());
+    }
+
+    @Test
+    public void testFeatureLog() throws Exception {
+        insertAndAdd(points1);
+        commit("points1");
+        insertAndAdd(points2);
+        commit("points2");
+        insertAndAdd(points1_modified);
+        commit("points1 modified");
+        String path = NodeRef.appendChild(pointsName, idP1);
+        List<RevCommit> expected = Lists
+                .newArrayList(geogig.command(LogOp.class).addPath(path).call());
+        assertEquals(2, expected.size());
+
+        geogig.command(UpdateFeatureHistoryOp.class).setLayer(pointsName).call();
+        List<RevCommit> log = Lists.newArrayList(geogig.command(LogOp.class).addPath(path).call());
+        assertEquals(expected, log);
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        insertAndAdd(points1);
+        commit("points1");
+        geogig.command(UpdateFeatureHistoryOp.class).setLayer(pointsName).call();
+        FeatureHistory.remove(repo, pointsName);
+        assertTrue(FeatureHistory.layers(repo).isEmpty());
+        assertFalse(FeatureHistory.get(repo, pointsName).isPresent());
+    }
+}
@@ -0,0 +1,140 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.index;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.porcelain.RemoveOp;
+import org.locationtech.geogig.porcelain.index.CreateQuadTree;
+import org.locationtech.geogig.repository.DiffEntry;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.repository.impl.RepositoryFilter;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+public class BoundsFilteredDiffOpTest extends RepositoryTestCase {
+
+    private NodeRef worldPointsLayer;
+
+    private RevCommit commit;
+
+    private RepositoryFilter filter;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        Repository repository = getRepository();
+        worldPointsLayer = IndexTestSupport.createWorldPointsLayer(repository);
+        super.add();
+        commit = super.commit("created world points layer");
+        filter = new RepositoryFilter();
+        filter.addFilter(worldPointsLayer.path(), RepositoryFilter.BBOX_FILTER,
+                "0,0,10,10,EPSG:4326");
+    }
+
+    private List<DiffEntry> diff(ObjectId oldTree, ObjectId newTree) {
+        List<DiffEntry> entries = new ArrayList<>();
+        try (AutoCloseableIterator<DiffEntry> it = geogig.command(BoundsFilteredDiffOp.class)
+                .setOldTree(oldTree).setNewTree(newTree).setFilter(filter).call()) {
+            while (it.hasNext()) {
+                entries.add(it.next());
+            }
+        }
+        return entries;
+    }
+
+    private static TYPE type(DiffEntry e) {
+        return (e.getNewObject() == null ? e.getOldObject() : e.getNewObject()).getType();
+    }
+
+    private Set<String> featurePaths(List<DiffEntry> entries) {
+        Set<String> paths = new HashSet<>();
+        for (DiffEntry e : entries) {
+            if (TYPE.FEATURE.equals(type(e))) {
+                paths.add(e.path());
+            }
+        }
+        return paths;
+    }
+
+    private Set<String> expectedPaths(int minx, int miny, int maxx, int maxy) {
+        Set<String> paths = new HashSet<>();
+        for (int x = minx; x <= maxx; x++) {
+            for (int y = miny; y <= maxy; y++) {
+                paths.add(NodeRef.appendChild(worldPointsLayer.path(),
+                        IndexTestSupport.getPointFid(x, y)));
+            }
+        }
+        return paths;
+    }
+
+    @Test
+    public void testReportsFeaturesWithinBounds() {
+        List<DiffEntry> entries = diff(RevTree.EMPTY_TREE_ID, commit.getTreeId());
+
+        DiffEntry treeEntry = entries.get(0);
+        assertEquals(TYPE.TREE, type(treeEntry));
+        assertEquals(worldPointsLayer.path(), treeEntry.path());
+        assertEquals(worldPointsLayer.getMetadataId(),
+                treeEntry.getNewObject().getMetadataId());
+
+        assertEquals(expectedPaths(0, 0, 10, 10), featurePaths(entries));
+    }
+
+    @Test
+    public void testUsesQuadTreeIndex() {
+        geogig.command(CreateQuadTree.class)//
+                .setTreeRefSpec(worldPointsLayer.path())//
+                .setGeometryAttributeName("geom")//
+                .setIndexHistory(true)//
+                .call();
+
+        List<DiffEntry> entries = diff(RevTree.EMPTY_TREE_ID, commit.getTreeId());
+        assertEquals(expectedPaths(0, 0, 10, 10), featurePaths(entries));
+        for (DiffEntry e : entries) {
+            if (TYPE.FEATURE.equals(type(e))) {
+                // reported as in the canonical tree
+                Map<String, Object> extraData = e.getNewObject().getNode().getExtraData();
+                assertTrue(extraData == null || extraData.isEmpty());
+                assertEquals(worldPointsLayer.getMetadataId(), e.getNewObject().getMetadataId());
+            }
+        }
+    }
+
+    @Test
+    public void testReportsChangesWithinBounds() throws Exception {
+        String inside = IndexTestSupport.getPointFid(5, 5);
+        String outside = IndexTestSupport.getPointFid(50, 50);
+        geogig.command(RemoveOp.class)//
+                .addPathToRemove(NodeRef.appendChild(worldPointsLayer.path(), inside))//
+                .addPathToRemove(NodeRef.appendChild(worldPointsLayer.path(), outside))//
+                .call();
+        super.add();
+        RevCommit removed = super.commit("deleted 5,5 and 50,50");
+
+        List<DiffEntry> entries = diff(commit.getTreeId(), removed.getTreeId());
+        assertEquals(2, entries.size());
+        assertEquals(TYPE.TREE, type(entries.get(0)));
+        DiffEntry delete = entries.get(1);
+        assertTrue(delete.isDelete());
+        assertEquals(NodeRef.appendChild(worldPointsLayer.path(), inside), delete.path());
+
+        assertTrue(diff(removed.getTreeId(), removed.getTreeId()).isEmpty());
+    }
+}
@@ -0,0 +1,210 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.index;
+
+import static org.locationtech.geogig.model.impl.RevObjectTestSupport.getTreeNodes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.impl.CanonicalTreeBuilder;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.porcelain.index.Index;
+import org.locationtech.geogig.repository.IndexInfo;
+import org.locationtech.geogig.repository.IndexInfo.IndexType;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.IndexDatabase;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+import com.google.common.base.Optional;
+import com.vividsolutions.jts.geom.Envelope;
+
+public class BuildLODTreesOpTest extends RepositoryTestCase {
+
+    private static final Envelope MAX_BOUNDS = new Envelope(-180, 180, -90, 90);
+
+    private IndexDatabase indexdb;
+
+    private Node worldPointsLayer;
+
+    private RevTree worldPointsTree;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        Repository repository = getRepository();
+        indexdb = repository.indexDatabase();
+        worldPointsLayer = IndexTestSupport.createWorldPointsLayer(repository).getNode();
+        super.add();
+        super.commit("created world points layer");
+        this.worldPointsTree = repository.getTree(worldPointsLayer.getObjectId());
+    }
+
+    private IndexInfo createIndex(int lodLevels) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(IndexInfo.MD_QUAD_MAX_BOUNDS, MAX_BOUNDS);
+        metadata.put(IndexInfo.MD_QUAD_LOD_LEVELS, Integer.valueOf(lodLevels));
+        return indexdb.createIndexInfo(worldPointsLayer.getName(), "geom", IndexType.QUADTREE,
+                metadata);
+    }
+
+    private RevTree buildIndex(IndexInfo indexInfo) {
+        return getRepository().command(BuildIndexOp.class)//
+                .setIndex(indexInfo)//
+                .setOldCanonicalTree(RevTree.EMPTY)//
+                .setNewCanonicalTree(worldPointsTree)//
+                .setRevFeatureTypeId(worldPointsLayer.getMetadataId().get())//
+                .call();
+    }
+
+    @Test
+    public void testNoLODLevels() {
+        IndexInfo indexInfo = createIndex(0);
+        RevTree indexTree = buildIndex(indexInfo);
+        Index index = new Index(indexInfo, indexTree.getId(), indexdb);
+        assertEquals(0, index.lodLevels());
+        assertFalse(indexdb
+                .resolveIndexedTree(indexInfo, BuildLODTreesOp.lodTreeKey(indexTree.getId(), 0))
+                .isPresent());
+    }
+
+    @Test
+    public void testBuildIndexBuildsLODTrees() {
+        final int levels = 6;
+        IndexInfo indexInfo = createIndex(levels);
+        RevTree indexTree = buildIndex(indexInfo);
+        Index index = new Index(indexInfo, indexTree.getId(), indexdb);
+        assertEquals(levels, index.lodLevels());
+
+        final Set<Node> indexNodes = getTreeNodes(indexTree, indexdb);
+
+        long previousSize = 0;
+        for (int level = 0; level < levels; level++) {
+            Optional<ObjectId> lodTreeId = index.lodTreeId(level);
+            assertTrue("LOD tree not found for level " + level, lodTreeId.isPresent());
+
+            RevTree lodTree = indexdb.getTree(lodTreeId.get());
+            Set<Node> lodNodes = getTreeNodes(lodTree, indexdb);
+            assertEquals(lodTree.size(), lodNodes.size());
+            assertTrue(lodTree.size() <= (1L << (2 * level)));
+            assertTrue(lodTree.size() >= previousSize);
+            assertTrue(indexNodes.containsAll(lodNodes));
+
+            // points are always smaller than a cell, so there must be one node per cell
+            Envelope cell = BuildLODTreesOp.cellBounds(MAX_BOUNDS, level);
+            int numCols = (int) Math.ceil(MAX_BOUNDS.getWidth() / cell.getWidth());
+            int numRows = (int) Math.ceil(MAX_BOUNDS.getHeight() / cell.getHeight());
+            Set<String> cells = new HashSet<>();
+            for (Node n : lodNodes) {
+                Envelope b = n.bounds().get();
+                int col = (int) Math.min(numCols - 1,
+                        Math.floor((b.getMinX() - MAX_BOUNDS.getMinX()) / cell.getWidth()));
+                int row = (int) Math.min(numRows - 1,
+                        Math.floor((b.getMinY() - MAX_BOUNDS.getMinY()) / cell.getHeight()));
+                assertTrue("more than one node for cell " + col + "," + row,
+                        cells.add(col + "," + row));
+            }
+            previousSize = lodTree.size();
+        }
+        // square cells, the max bounds are two cells wide and one cell high at level 1
+        assertEquals(1, indexdb.getTree(index.lodTreeId(0).get()).size());
+        assertEquals(2, indexdb.getTree(index.lodTreeId(1).get()).size());
+        assertEquals(8, indexdb.getTree(index.lodTreeId(2).get()).size());
+    }
+
+    @Test
+    public void testCellsAreSquare() {
+        for (int level = 0; level < BuildLODTreesOp.MAX_LOD_LEVELS; level++) {
+            Envelope cell = BuildLODTreesOp.cellBounds(MAX_BOUNDS, level);
+            double size = MAX_BOUNDS.getWidth() / (1 << level);
+            assertEquals(size, cell.getWidth(), 0d);
+            assertEquals(size, cell.getHeight(), 0d);
+            assertEquals(MAX_BOUNDS.getMinX(), cell.getMinX(), 0d);
+            assertEquals(MAX_BOUNDS.getMinY(), cell.getMinY(), 0d);
+        }
+    }
+
+    @Test
+    public void testUpdateIndexUpdatesLODTrees() {
+        final int levels = 6;
+        IndexInfo indexInfo = createIndex(levels);
+        buildIndex(indexInfo);
+
+        // remove some points and add others, some of them larger than the finer cells
+        ObjectStore store = getRepository().objectDatabase();
+        List<Node> nodes = new ArrayList<>(getTreeNodes(worldPointsTree, store));
+        Collections.sort(nodes, (n1, n2) -> n1.getName().compareTo(n2.getName()));
+        CanonicalTreeBuilder builder = CanonicalTreeBuilder.create(store, worldPointsTree);
+        for (int i = 0; i < nodes.size(); i += 200) {
+            builder.remove(nodes.get(i));
+        }
+        for (int i = 0; i < 10; i++) {
+            double x = -170 + 33 * i;
+            double y = -80 + 16 * i;
+            Envelope bounds = new Envelope(x, x + 2 * i, y, y + i);
+            builder.put(Node.create("added-" + i, RevObjectTestSupport.hashString("added-" + i),
+                    ObjectId.NULL, TYPE.FEATURE, bounds));
+        }
+        RevTree newTree = builder.build();
+
+        RevTree indexTree = getRepository().command(BuildIndexOp.class)//
+                .setIndex(indexInfo)//
+                .setOldCanonicalTree(worldPointsTree)//
+                .setNewCanonicalTree(newTree)//
+                .setRevFeatureTypeId(worldPointsLayer.getMetadataId().get())//
+                .call();
+        Index index = new Index(indexInfo, indexTree.getId(), indexdb);
+        List<ObjectId> updated = new ArrayList<>();
+        for (int level = 0; level < levels; level++) {
+            updated.add(index.lodTreeId(level).get());
+        }
+
+        // same as building them from scratch
+        List<ObjectId> rebuilt = getRepository().command(BuildLODTreesOp.class)
+                .setIndex(indexInfo).setIndexTree(indexTree).call();
+        assertEquals(rebuilt, updated);
+    }
+
+    @Test
+    public void testLODTreesAreDeterministic() {
+        IndexInfo indexInfo = createIndex(4);
+        RevTree indexTree = buildIndex(indexInfo);
+
+        List<ObjectId> lodTrees = getRepository().command(BuildLODTreesOp.class)
+                .setIndex(indexInfo).setIndexTree(indexTree).call();
+        assertEquals(4, lodTrees.size());
+
+        Index index = new Index(indexInfo, indexTree.getId(), indexdb);
+        for (int level = 0; level < 4; level++) {
+            assertEquals(index.lodTreeId(level).get(), lodTrees.get(level));
+        }
+    }
+
+    @Test
+    public void testDropIndexRemovesLODTreeMappings() {
+        IndexInfo indexInfo = createIndex(2);
+        RevTree indexTree = buildIndex(indexInfo);
+        Index index = new Index(indexInfo, indexTree.getId(), indexdb);
+        assertTrue(index.lodTreeId(1).isPresent());
+
+        indexdb.dropIndex(indexInfo);
+        assertFalse(index.lodTreeId(1).isPresent());
+    }
+}
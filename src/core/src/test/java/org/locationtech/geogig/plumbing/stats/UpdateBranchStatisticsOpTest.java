@@ -0,0 +1,138 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.plumbing.stats;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevPerson;
+import org.locationtech.geogig.porcelain.BranchCreateOp;
+import org.locationtech.geogig.porcelain.BranchDeleteOp;
+import org.locationtech.geogig.porcelain.CheckoutOp;
+import org.locationtech.geogig.porcelain.CommitOp;
+import org.locationtech.geogig.porcelain.ResetOp;
+import org.locationtech.geogig.porcelain.ResetOp.ResetMode;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+import com.google.common.base.Suppliers;
+
+public class UpdateBranchStatisticsOpTest extends RepositoryTestCase {
+
+    private static final String MASTER = Ref.HEADS_PREFIX + "master";
+
+    @Override
+    protected void setUpInternal() throws Exception {
+    }
+
+    private RevCommit commit(String author, String message) {
+        return geogig.command(CommitOp.class).setAuthor(author, author + "@example.com")
+                .setMessage(message).call();
+    }
+
+    private BranchStatistics update() {
+        return geogig.command(UpdateBranchStatisticsOp.class).setBranch("master").call();
+    }
+
+    @Test
+    public void testComputeStatistics() throws Exception {
+        insertAndAdd(points1);
+        RevCommit c1 = commit("Author1", "points1");
+        insertAndAdd(points2, lines1);
+        commit("Author2", "points2, lines1");
+        insertAndAdd(points3);
+        RevCommit c3 = commit("Author1", "points3");
+
+        assertFalse(BranchStatistics.get(repo, MASTER).isPresent());
+        BranchStatistics stats = update();
+        assertEquals(MASTER, stats.getBranch());
+        assertEquals(c3.getId(), stats.getTip());
+        assertEquals(3, stats.getCommitCount());
+        assertEquals(c1.getId(), stats.getFirstCommit());
+        List<RevPerson> authors = stats.getAuthors();
+        assertEquals(2, authors.size());
+        assertEquals("Author1", authors.get(0).getName().get());
+        assertEquals("Author2", authors.get(1).getName().get());
+        Map<String, Long> counts = stats.getFeatureCounts();
+        assertEquals(2, counts.size());
+        assertEquals(Long.valueOf(3), counts.get(pointsName));
+        assertEquals(Long.valueOf(1), counts.get(linesName));
+
+        BranchStatistics stored = BranchStatistics.get(repo, MASTER).get();
+        assertEquals(c3.getId(), stored.getTip());
+        assertEquals(3, stored.getCommitCount());
+        assertEquals(counts, stored.getFeatureCounts());
+        assertEquals(2, stored.getAuthors().size());
+    }
+
+    @Test
+    public void testUpdatedOnCommit() throws Exception {
+        insertAndAdd(points1);
+        RevCommit c1 = commit("Author1", "points1");
+        update();
+
+        insertAndAdd(lines1);
+        commit("Author2", "lines1");
+        insertAndAdd(points2);
+        RevCommit c3 = commit("Author3", "points2");
+
+        // kept up to date by the hook
+        BranchStatistics stats = BranchStatistics.get(repo, MASTER).get();
+        assertEquals(c3.getId(), stats.getTip());
+        assertEquals(3, stats.getCommitCount());
+        assertEquals(c1.getId(), stats.getFirstCommit());
+        assertEquals(3, stats.getAuthors().size());
+        assertEquals("Author3", stats.getAuthors().get(0).getName().get());
+        assertEquals(Long.valueOf(2), stats.getFeatureCounts().get(pointsName));
+        assertEquals(Long.valueOf(1), stats.getFeatureCounts().get(linesName));
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        insertAndAdd(points1);
+        RevCommit c1 = commit("Author1", "points1");
+        insertAndAdd(lines1);
+        commit("Author2", "lines1");
+        update();
+
+        geogig.command(ResetOp.class).setCommit(Suppliers.ofInstance(c1.getId()))
+                .setMode(ResetMode.HARD).call();
+
+        BranchStatistics stats = update();
+        assertEquals(c1.getId(), stats.getTip());
+        assertEquals(1, stats.getCommitCount());
+        assertEquals(1, stats.getAuthors().size());
+        assertEquals(1, stats.getFeatureCounts().size());
+        assertNull(stats.getFeatureCounts().get(linesName));
+    }
+
+    @Test
+    public void testNotComputedUntilAsked() throws Exception {
+        insertAndAdd(points1);
+        commit("Author1", "points1");
+        geogig.command(BranchCreateOp.class).setName("branch1").call();
+        assertFalse(BranchStatistics.get(repo, Ref.HEADS_PREFIX + "branch1").isPresent());
+    }
+
+    @Test
+    public void testRemovedWithBranch() throws Exception {
+        insertAndAdd(points1);
+        commit("Author1", "points1");
+        geogig.command(BranchCreateOp.class).setName("branch1").call();
+        geogig.command(UpdateBranchStatisticsOp.class).setBranch("branch1").call();
+        assertTrue(BranchStatistics.get(repo, Ref.HEADS_PREFIX + "branch1").isPresent());
+
+        geogig.command(CheckoutOp.class).setSource("master").call();
+        geogig.command(BranchDeleteOp.class).setName("branch1").call();
+        assertFalse(BranchStatistics.get(repo, Ref.HEADS_PREFIX + "branch1").isPresent());
+    }
+}
@@ -0,0 +1,306 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.Test;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.impl.RevFeatureBuilder;
+import org.locationtech.geogig.remote.BinaryPackedObjects.IngestResults;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
+import org.locationtech.geogig.storage.impl.ForwardingObjectStore;
+import org.locationtech.geogig.storage.impl.ObjectSerializingFactory;
+import org.locationtech.geogig.storage.memory.HeapDeduplicationService;
+import org.locationtech.geogig.storage.memory.HeapObjectStore;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class BinaryPackedObjectsTest extends RepositoryTestCase {
+
+    private RevCommit head;
+
+    private HeapObjectStore target;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        insertAndAdd(points1, points2, lines1);
+        commit("first");
+        insertAndAdd(points3, lines2);
+        head = commit("second");
+        target = new HeapObjectStore();
+        target.open();
+    }
+
+    @Override
+    protected void tearDownInternal() throws Exception {
+        target.close();
+    }
+
+    private byte[] pack(long skip) throws Exception {
+        return pack(skip, DataStreamSerializationFactoryV1.INSTANCE);
+    }
+
+    private byte[] pack(long skip, ObjectSerializingFactory serializer) throws Exception {
+        return pack(ImmutableList.of(head.getId()), ImmutableList.<ObjectId> of(), skip,
+                serializer);
+    }
+
+    private byte[] pack(List<ObjectId> want, List<ObjectId> have, long skip,
+            ObjectSerializingFactory serializer) throws Exception {
+        BinaryPackedObjects packer = new BinaryPackedObjects(repo.objectDatabase());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectFunnel funnel = ObjectFunnels.newFunnel(out, serializer);
+        packer.write(funnel, want, have, true,
+                new HeapDeduplicationService().createDeduplicator(), skip);
+        funnel.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testIngest() throws Exception {
+        final List<ObjectId> ingested = new ArrayList<>();
+        BinaryPackedObjects.Callback callback = new BinaryPackedObjects.Callback() {
+            @Override
+            public void callback(Supplier<RevObject> object) {
+                ingested.add(object.get().getId());
+            }
+        };
+        BinaryPackedObjects unpacker = new BinaryPackedObjects(target);
+        IngestResults results = unpacker.ingest(new ByteArrayInputStream(pack(0)), callback);
+
+        assertTrue(results.getInserted() > 0);
+        assertEquals(0, results.getExisting());
+        assertEquals(results.getInserted(), ingested.size());
+        for (ObjectId id : ingested) {
+            assertTrue(repo.objectDatabase().exists(id));
+        }
+        assertTrue(target.exists(head.getId()));
+
+        results = unpacker.ingest(new ByteArrayInputStream(pack(0)));
+        assertEquals(0, results.getInserted());
+        assertEquals(ingested.size(), results.getExisting());
+    }
+
+    @Test
+    public void testIngestSkipped() throws Exception {
+        BinaryPackedObjects unpacker = new BinaryPackedObjects(target);
+        final long total = unpacker.ingest(new ByteArrayInputStream(pack(0))).total();
+
+        HeapObjectStore resumed = new HeapObjectStore();
+        resumed.open();
+        try {
+            IngestResults results = new BinaryPackedObjects(resumed)
+                    .ingest(new ByteArrayInputStream(pack(3)));
+            assertEquals(total - 3, results.getInserted());
+        } finally {
+            resumed.close();
+        }
+    }
+
+    /**
+     * A store that writes the batches of objects in reverse order, as one writing them
+     * concurrently might, optionally failing to write the first one
+     */
+    private static class ReversedBatchesStore extends HeapObjectStore {
+
+        private final boolean failFirstBatch;
+
+        ReversedBatchesStore(boolean failFirstBatch) {
+            this.failFirstBatch = failFirstBatch;
+        }
+
+        @Override
+        public void putAll(Iterator<? extends RevObject> objects, BulkOpListener listener) {
+            List<List<RevObject>> batches = Lists.partition(Lists.newArrayList(objects), 3);
+            for (List<RevObject> batch : Lists.reverse(batches)) {
+                if (failFirstBatch && batch == batches.get(0)) {
+                    throw new IllegalStateException("batch failed");
+                }
+                super.putAll(batch.iterator(), listener);
+            }
+        }
+    }
+
+    private static final BinaryPackedObjects.Callback IGNORE = (object) -> {
+        // not interested in the ingested objects
+    };
+
+    private static BulkOpListener recordingListener(final List<ObjectId> reported) {
+        return new BulkOpListener() {
+            @Override
+            public void inserted(ObjectId object, @Nullable Integer storageSizeBytes) {
+                reported.add(object);
+            }
+        };
+    }
+
+    @Test
+    public void testStoreListenerInStreamOrder() throws Exception {
+        final byte[] packed = pack(0);
+        final List<ObjectId> streamOrder = new ArrayList<>();
+        new BinaryPackedObjects(target).ingest(new ByteArrayInputStream(packed), IGNORE,
+                recordingListener(streamOrder));
+        assertTrue(streamOrder.size() > 6);
+
+        final List<ObjectId> reported = new ArrayList<>();
+        HeapObjectStore reversed = new ReversedBatchesStore(false);
+        reversed.open();
+        try {
+            new BinaryPackedObjects(reversed).ingest(new ByteArrayInputStream(packed), IGNORE,
+                    recordingListener(reported));
+        } finally {
+            reversed.close();
+        }
+        assertEquals(streamOrder, reported);
+    }
+
+    @Test
+    public void testStoreListenerStopsAtFailedBatch() throws Exception {
+        final List<ObjectId> reported = new ArrayList<>();
+        HeapObjectStore failing = new ReversedBatchesStore(true);
+        failing.open();
+        try {
+            new BinaryPackedObjects(failing).ingest(new ByteArrayInputStream(pack(0)), IGNORE,
+                    recordingListener(reported));
+            fail("expected the batch to fail");
+        } catch (IllegalStateException e) {
+            assertEquals("batch failed", e.getMessage());
+            // the later batches were stored, but nothing past the failed one is reported
+            assertTrue(failing.size() > 0);
+            assertTrue(reported.isEmpty());
+        } finally {
+            failing.close();
+        }
+    }
+
+    @Test
+    public void testIngestRawFormat() throws Exception {
+        final ObjectDatabase source = repo.objectDatabase();
+        assertTrue(BinaryPackedObjects.supportsRawFormat(source));
+        assertTrue(BinaryPackedObjects.supportsRawFormat(target));
+        assertEquals(BinaryPackedObjects.FORMAT_RAW,
+                BinaryPackedObjects.supportedFormats(target).get(0));
+
+        final long total;
+        HeapObjectStore v1Target = new HeapObjectStore();
+        v1Target.open();
+        try {
+            total = new BinaryPackedObjects(v1Target).ingest(new ByteArrayInputStream(pack(0)))
+                    .total();
+        } finally {
+            v1Target.close();
+        }
+
+        byte[] packed = pack(0, BinaryPackedObjects.serializer(BinaryPackedObjects.FORMAT_RAW,
+                source));
+
+        final Map<ObjectId, TYPE> ingested = new HashMap<>();
+        BinaryPackedObjects.Callback callback = new BinaryPackedObjects.Callback() {
+            @Override
+            public void callback(Supplier<RevObject> object) {
+                fail("the type of raw objects is known");
+            }
+
+            @Override
+            public void callback(TYPE type, Supplier<RevObject> object) {
+                ingested.put(object.get().getId(), type);
+            }
+        };
+        BinaryPackedObjects unpacker = new BinaryPackedObjects(target,
+                BinaryPackedObjects.serializer(BinaryPackedObjects.FORMAT_RAW, target));
+        IngestResults results = unpacker.ingest(new ByteArrayInputStream(packed), callback);
+
+        assertEquals(total, results.getInserted());
+        assertEquals(total, ingested.size());
+        for (Map.Entry<ObjectId, TYPE> e : ingested.entrySet()) {
+            RevObject object = target.get(e.getKey());
+            assertEquals(e.getValue(), object.getType());
+            assertEquals(source.get(e.getKey()), object);
+            assertArrayEquals(source.getRaw(e.getKey()), target.getRaw(e.getKey()));
+        }
+        assertEquals(head, target.getCommit(head.getId()));
+    }
+
+    @Test
+    public void testWriteRawFormatReadsInBulk() throws Exception {
+        final AtomicInteger singleReads = new AtomicInteger();
+        final AtomicInteger bulkReads = new AtomicInteger();
+        ObjectStore source = new ForwardingObjectStore(repo.objectDatabase()) {
+            @Override
+            public byte[] getRaw(ObjectId id) {
+                singleReads.incrementAndGet();
+                return super.getRaw(id);
+            }
+
+            @Override
+            public Map<ObjectId, byte[]> getAllRaw(Iterable<ObjectId> ids) {
+                bulkReads.incrementAndGet();
+                return super.getAllRaw(ids);
+            }
+        };
+        byte[] packed = pack(0, new RawObjectSerializer(source));
+        assertEquals(0, singleReads.get());
+        assertEquals(1, bulkReads.get());
+
+        assertArrayEquals(pack(0, BinaryPackedObjects.serializer(BinaryPackedObjects.FORMAT_RAW,
+                repo.objectDatabase())), packed);
+    }
+
+    @Test
+    public void testIngestRawFormatDecodes() throws Exception {
+        byte[] packed = pack(0, BinaryPackedObjects.serializer(BinaryPackedObjects.FORMAT_RAW,
+                repo.objectDatabase()));
+        // a reader that doesn't know the raw format of the store decodes the objects
+        BinaryPackedObjects unpacker = new BinaryPackedObjects(target,
+                new RawObjectSerializer(null));
+        IngestResults results = unpacker.ingest(new ByteArrayInputStream(packed));
+        assertTrue(results.getInserted() > 0);
+        assertEquals(head, target.getCommit(head.getId()));
+    }
+
+    @Test
+    public void testIngestFeatureDeltas() throws Exception {
+        new BinaryPackedObjects(target).ingest(new ByteArrayInputStream(pack(0)));
+
+        insertAndAdd(points1_modified);
+        RevCommit third = commit("third");
+
+        final String format = BinaryPackedObjects.FORMAT_V2_3 + BinaryPackedObjects.DELTA_SUFFIX;
+        byte[] packed = pack(ImmutableList.of(third.getId()), ImmutableList.of(head.getId()), 0,
+                BinaryPackedObjects.serializer(format, repo.objectDatabase()));
+
+        BinaryPackedObjects unpacker = new BinaryPackedObjects(target,
+                BinaryPackedObjects.serializer(format, target));
+        IngestResults results = unpacker.ingest(new ByteArrayInputStream(packed));
+        assertTrue(results.getInserted() > 0);
+        assertEquals(third, target.getCommit(third.getId()));
+
+        ObjectId modifiedId = RevFeatureBuilder.build(points1_modified).getId();
+        assertEquals(repo.objectDatabase().getFeature(modifiedId), target.getFeature(modifiedId));
+    }
+}
@@ -0,0 +1,157 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.impl.RevFeatureBuilder;
+import org.locationtech.geogig.storage.datastream.v2_3.DataStreamSerializationFactoryV2_3;
+import org.locationtech.geogig.storage.memory.HeapObjectStore;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+
+public class FeatureDeltaSerializerTest {
+
+    private HeapObjectStore source;
+
+    private HeapObjectStore target;
+
+    private RevFeature base;
+
+    private RevFeature modified;
+
+    @Before
+    public void before() {
+        source = new HeapObjectStore();
+        source.open();
+        target = new HeapObjectStore();
+        target.open();
+        String text = Strings.repeat("a long attribute value ", 100);
+        base = RevFeatureBuilder.builder().addValue(text).addValue(Integer.valueOf(1)).build();
+        modified = RevFeatureBuilder.builder().addValue(text.replaceFirst("long", "LONG"))
+                .addValue(Integer.valueOf(1)).build();
+        source.put(base);
+        source.put(modified);
+    }
+
+    @After
+    public void after() {
+        source.close();
+        target.close();
+    }
+
+    private byte[] write(FeatureDeltaSerializer serializer, RevObject object) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.write(object, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testDeltaAndPatch() throws IOException {
+        byte[] base = "prefix-base-suffix".getBytes();
+        byte[][] targets = { "prefix-target-suffix".getBytes(), "prefix-suffix".getBytes(),
+                "prefix-base-suffix".getBytes(), "".getBytes(), "other".getBytes(),
+                "prefix-base-suffix-and-more".getBytes() };
+        for (byte[] target : targets) {
+            byte[] delta = FeatureDeltaSerializer.delta(base, target);
+            byte[] patched = FeatureDeltaSerializer.patch(base,
+                    new DataInputStream(new ByteArrayInputStream(delta)));
+            assertArrayEquals(target, patched);
+        }
+    }
+
+    @Test
+    public void testWriteDelta() throws IOException {
+        FeatureDeltaSerializer writer = new FeatureDeltaSerializer(
+                DataStreamSerializationFactoryV2_3.INSTANCE, source);
+        final int fullSize = write(writer, modified).length;
+
+        writer.setBases(ImmutableMap.of(modified.getId(), base.getId()));
+        byte[] delta = write(writer, modified);
+        assertTrue(delta.length < fullSize / 10);
+
+        target.put(base);
+        FeatureDeltaSerializer reader = new FeatureDeltaSerializer(
+                DataStreamSerializationFactoryV2_3.INSTANCE, target);
+        RevObject read = reader.read(modified.getId(), new ByteArrayInputStream(delta));
+        assertEquals(modified, read);
+
+        // objects without a base are written in full
+        assertEquals(base, reader.read(base.getId(), new ByteArrayInputStream(write(writer, base))));
+    }
+
+    @Test
+    public void testMissingBase() throws IOException {
+        FeatureDeltaSerializer writer = new FeatureDeltaSerializer(
+                DataStreamSerializationFactoryV2_3.INSTANCE, source);
+        writer.setBases(ImmutableMap.of(modified.getId(), base.getId()));
+        byte[] delta = write(writer, modified);
+
+        FeatureDeltaSerializer reader = new FeatureDeltaSerializer(
+                DataStreamSerializationFactoryV2_3.INSTANCE, target);
+        try {
+            reader.read(modified.getId(), new ByteArrayInputStream(delta));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("not found"));
+        }
+    }
+
+    @Test
+    public void testWrongBase() throws IOException {
+        FeatureDeltaSerializer writer = new FeatureDeltaSerializer(
+                DataStreamSerializationFactoryV2_3.INSTANCE, source);
+        writer.setBases(ImmutableMap.of(modified.getId(), base.getId()));
+        byte[] delta = write(writer, modified);
+
+        // a different feature stored under the base id at the receiving end
+        RevFeature other = RevFeatureBuilder.builder()
+                .addValue(Strings.repeat("another attribute value ", 100))
+                .addValue(Integer.valueOf(1)).build(base.getId());
+        target.put(other);
+        FeatureDeltaSerializer reader = new FeatureDeltaSerializer(
+                DataStreamSerializationFactoryV2_3.INSTANCE, target);
+        try {
+            reader.read(modified.getId(), new ByteArrayInputStream(delta));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("doesn't match"));
+        }
+    }
+
+    @Test
+    public void testContentTypes() {
+        for (String format : new String[] { BinaryPackedObjects.FORMAT_V1,
+                BinaryPackedObjects.FORMAT_V2_3, BinaryPackedObjects.FORMAT_RAW,
+                BinaryPackedObjects.FORMAT_RAW + BinaryPackedObjects.DELTA_SUFFIX,
+                BinaryPackedObjects.FORMAT_V2_3 + BinaryPackedObjects.DELTA_SUFFIX }) {
+            String contentType = BinaryPackedObjects.contentType(format);
+            assertEquals(format, BinaryPackedObjects.formatOf(contentType));
+            assertEquals(format, BinaryPackedObjects.formatOf(contentType + "; charset=UTF-8"));
+        }
+        assertEquals(BinaryPackedObjects.FORMAT_V1, BinaryPackedObjects.formatOf(null));
+        assertEquals(BinaryPackedObjects.FORMAT_V1,
+                BinaryPackedObjects.formatOf("application/octet-stream"));
+    }
+}
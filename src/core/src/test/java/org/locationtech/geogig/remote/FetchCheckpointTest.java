@@ -0,0 +1,129 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.storage.BlobStore;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+public class FetchCheckpointTest extends RepositoryTestCase {
+
+    private static final String REMOTE = "http://localhost:8182/repos/repo1";
+
+    private BlobStore blobStore;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        blobStore = repo.blobStore();
+    }
+
+    private List<ObjectId> ids(String prefix, int count) {
+        List<ObjectId> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(RevObjectTestSupport.hashString(prefix + i));
+        }
+        return ids;
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        final ObjectId target = RevObjectTestSupport.hashString("target");
+        List<ObjectId> want = ids("want", 10);
+        Set<ObjectId> have = new LinkedHashSet<>(ids("have", 3));
+        FetchCheckpoint checkpoint = new FetchCheckpoint(target, 0, want, have);
+        checkpoint.startRequest();
+        assertNull(checkpoint.resumeToken());
+
+        want.remove(0);
+        have.add(RevObjectTestSupport.hashString("want0"));
+        checkpoint.lastCommit = RevObjectTestSupport.hashString("want0");
+        checkpoint.requestOffset = 1000;
+        checkpoint.save(blobStore, REMOTE);
+
+        Optional<FetchCheckpoint> loaded = FetchCheckpoint.load(blobStore, REMOTE, target, 0);
+        assertTrue(loaded.isPresent());
+        FetchCheckpoint copy = loaded.get();
+        assertEquals(target, copy.target);
+        assertEquals(want, copy.want);
+        assertEquals(ImmutableList.copyOf(have), ImmutableList.copyOf(copy.have));
+        assertEquals(ids("want", 10), copy.requestWant);
+        assertEquals(ids("have", 3), copy.requestHave);
+        assertEquals(1000L, copy.requestOffset);
+        assertEquals(checkpoint.lastCommit, copy.lastCommit);
+        assertEquals(checkpoint.resumeToken(), copy.resumeToken());
+    }
+
+    @Test
+    public void testLoadOtherTarget() {
+        final ObjectId t1 = RevObjectTestSupport.hashString("t1");
+        final ObjectId t2 = RevObjectTestSupport.hashString("t2");
+        FetchCheckpoint checkpoint = new FetchCheckpoint(t1, 0, ids("want", 2),
+                new LinkedHashSet<ObjectId>());
+        checkpoint.save(blobStore, REMOTE);
+
+        assertFalse(FetchCheckpoint.load(blobStore, REMOTE, t2, 0).isPresent());
+        assertFalse(FetchCheckpoint.load(blobStore, REMOTE, t1, 1).isPresent());
+        assertFalse(FetchCheckpoint.load(blobStore, REMOTE + "/other", t1, 0).isPresent());
+        assertTrue(FetchCheckpoint.load(blobStore, REMOTE, t1, 0).isPresent());
+
+        FetchCheckpoint.clear(blobStore, REMOTE, t1, 0);
+        assertFalse(FetchCheckpoint.load(blobStore, REMOTE, t1, 0).isPresent());
+    }
+
+    @Test
+    public void testConcurrentFetchesFromSameRemote() {
+        final ObjectId t1 = RevObjectTestSupport.hashString("t1");
+        final ObjectId t2 = RevObjectTestSupport.hashString("t2");
+        FetchCheckpoint first = new FetchCheckpoint(t1, 0, ids("want", 2),
+                new LinkedHashSet<ObjectId>());
+        first.startRequest();
+        first.requestOffset = 10;
+        first.save(blobStore, REMOTE);
+        FetchCheckpoint second = new FetchCheckpoint(t2, 0, ids("other", 3),
+                new LinkedHashSet<ObjectId>());
+        second.startRequest();
+        second.requestOffset = 20;
+        second.save(blobStore, REMOTE);
+
+        // neither overwrites the other
+        assertEquals(first.resumeToken(),
+                FetchCheckpoint.load(blobStore, REMOTE, t1, 0).get().resumeToken());
+        assertEquals(second.resumeToken(),
+                FetchCheckpoint.load(blobStore, REMOTE, t2, 0).get().resumeToken());
+
+        // nor is cleared by the other ending
+        FetchCheckpoint.clear(blobStore, REMOTE, t2, 0);
+        assertTrue(FetchCheckpoint.load(blobStore, REMOTE, t1, 0).isPresent());
+    }
+
+    @Test
+    public void testResumeOffset() {
+        List<ObjectId> want = ids("want", 5);
+        List<ObjectId> have = ids("have", 5);
+        String token = BinaryPackedObjects.resumeToken(want, have, 42);
+
+        assertEquals(42L, BinaryPackedObjects.resumeOffset(token, want, have));
+        assertEquals(0L, BinaryPackedObjects.resumeOffset(null, want, have));
+        assertEquals(0L, BinaryPackedObjects.resumeOffset(token, have, want));
+        assertEquals(0L, BinaryPackedObjects.resumeOffset(token, want.subList(1, 5), have));
+        assertEquals(0L, BinaryPackedObjects.resumeOffset("garbage", want, have));
+        assertEquals(0L, BinaryPackedObjects.resumeOffset(token.replace(":42", ":x"), want, have));
+    }
+}
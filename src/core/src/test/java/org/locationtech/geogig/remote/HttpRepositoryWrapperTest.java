@@ -0,0 +1,129 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.porcelain.CommitOp;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+public class HttpRepositoryWrapperTest extends RepositoryTestCase {
+
+    private List<RevCommit> history;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        history = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            history.add(repo.command(CommitOp.class).setAllowEmpty(true)
+                    .setMessage("commit " + i).call());
+        }
+    }
+
+    /**
+     * Answers negotiation requests from a fixed set of ids instead of going over the network, and
+     * fails on any single object request
+     */
+    private static class TestWrapper extends HttpRepositoryWrapper {
+
+        private final Set<ObjectId> remoteObjects;
+
+        private final List<List<ObjectId>> requests = new ArrayList<>();
+
+        TestWrapper(Set<ObjectId> remoteObjects) throws Exception {
+            super(new URL("http://localhost:0/geogig"));
+            this.remoteObjects = remoteObjects;
+        }
+
+        @Override
+        Set<ObjectId> objectsExist(List<ObjectId> objectIds) {
+            requests.add(objectIds);
+            Set<ObjectId> existing = new HashSet<>(objectIds);
+            existing.retainAll(remoteObjects);
+            return existing;
+        }
+    }
+
+    private Set<ObjectId> ids(List<RevCommit> commits) {
+        Set<ObjectId> ids = new HashSet<>();
+        for (RevCommit c : commits) {
+            ids.add(c.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testNegotiateRemoteIsBehind() throws Exception {
+        TestWrapper remote = new TestWrapper(ids(history.subList(0, 490)));
+        LocalRepositoryWrapper local = new LocalRepositoryWrapper(repo);
+        final ObjectId tip = history.get(499).getId();
+
+        assertEquals(1, remote.negotiate(local, tip));
+        assertEquals(HttpRepositoryWrapper.INITIAL_NEGOTIATION_BATCH, remote.requests.get(0).size());
+
+        for (int i = 480; i < 500; i++) {
+            assertEquals(i < 490, remote.objectExists(history.get(i).getId()));
+        }
+    }
+
+    @Test
+    public void testNegotiateRemoteIsEmpty() throws Exception {
+        TestWrapper remote = new TestWrapper(new HashSet<ObjectId>());
+        LocalRepositoryWrapper local = new LocalRepositoryWrapper(repo);
+
+        // 64 + 128 + 256 + 52
+        assertEquals(4, remote.negotiate(local, history.get(499).getId()));
+
+        Set<ObjectId> queried = new HashSet<>();
+        for (List<ObjectId> request : remote.requests) {
+            queried.addAll(request);
+        }
+        assertEquals(ids(history), queried);
+        for (RevCommit c : history) {
+            assertFalse(remote.objectExists(c.getId()));
+        }
+        assertTrue(remote.objectExists(ObjectId.NULL));
+    }
+
+    @Test
+    public void testNegotiateDoesNotWalkPastCommonCommits() throws Exception {
+        TestWrapper remote = new TestWrapper(ids(history.subList(0, 400)));
+        LocalRepositoryWrapper local = new LocalRepositoryWrapper(repo);
+
+        // 499..436, then 435..308, where the last 92 are common
+        assertEquals(2, remote.negotiate(local, history.get(499).getId()));
+
+        Set<ObjectId> queried = new HashSet<>();
+        for (List<ObjectId> request : remote.requests) {
+            queried.addAll(request);
+        }
+        assertEquals(ids(history.subList(308, 500)), queried);
+    }
+
+    @Test
+    public void testNegotiateFallback() throws Exception {
+        HttpRepositoryWrapper remote = new HttpRepositoryWrapper(
+                new URL("http://localhost:0/geogig")) {
+            @Override
+            Set<ObjectId> objectsExist(List<ObjectId> objectIds) {
+                throw new IllegalStateException("negotiate not supported");
+            }
+        };
+        assertEquals(0,
+                remote.negotiate(new LocalRepositoryWrapper(repo), history.get(499).getId()));
+    }
+}
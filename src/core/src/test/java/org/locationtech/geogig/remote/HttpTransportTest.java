@@ -0,0 +1,224 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.remote.HttpUtils.ReportingInputStream;
+import org.locationtech.geogig.remote.HttpUtils.ReportingOutputStream;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs {@link HttpTransport} against a local stand-in server that records what it receives.
+ */
+public class HttpTransportTest {
+
+    private static final byte[] CONTENT = Strings.repeat("some repetitive content ", 10_000)
+            .getBytes();
+
+    private HttpServer server;
+
+    private HttpTransport transport;
+
+    private String baseURL;
+
+    /**
+     * Remote addresses of the connections requests were received from
+     */
+    private Set<InetSocketAddress> connections;
+
+    private List<String> requestEncodings;
+
+    private List<String> transferEncodings;
+
+    private List<byte[]> uploads;
+
+    private AtomicLong uploadedBytes;
+
+    @Before
+    public void before() throws IOException {
+        connections = new ConcurrentHashMap<InetSocketAddress, Boolean>().keySet(true);
+        requestEncodings = new CopyOnWriteArrayList<>();
+        transferEncodings = new CopyOnWriteArrayList<>();
+        uploads = new CopyOnWriteArrayList<>();
+        uploadedBytes = new AtomicLong();
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/content", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                connections.add(exchange.getRemoteAddress());
+                ByteStreams.copy(exchange.getRequestBody(), ByteStreams.nullOutputStream());
+                String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                HttpCompression compression = HttpCompression.NONE;
+                if (accept != null && accept.contains(HttpCompression.LZ4.contentEncoding())) {
+                    compression = HttpCompression.LZ4;
+                } else if (accept != null
+                        && accept.contains(HttpCompression.GZIP.contentEncoding())) {
+                    compression = HttpCompression.GZIP;
+                }
+                respond(exchange, 200, CONTENT, compression);
+            }
+        });
+        server.createContext("/upload", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                connections.add(exchange.getRemoteAddress());
+                String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+                requestEncodings.add(String.valueOf(encoding));
+                transferEncodings.add(String
+                        .valueOf(exchange.getRequestHeaders().getFirst("Transfer-Encoding")));
+                byte[] raw = ByteStreams.toByteArray(exchange.getRequestBody());
+                uploadedBytes.addAndGet(raw.length);
+                uploads.add(ByteStreams.toByteArray(HttpCompression.ofContentEncoding(encoding)
+                        .decode(new ByteArrayInputStream(raw))));
+                respond(exchange, 200, "ok".getBytes(), HttpCompression.NONE);
+            }
+        });
+        server.createContext("/error", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                ByteStreams.copy(exchange.getRequestBody(), ByteStreams.nullOutputStream());
+                respond(exchange, 500, "failed".getBytes(), HttpCompression.NONE);
+            }
+        });
+        server.start();
+        baseURL = "http://localhost:" + server.getAddress().getPort();
+        transport = new HttpTransport();
+    }
+
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] content,
+            HttpCompression compression) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        OutputStream out = compression.encode(body);
+        out.write(content);
+        out.close();
+        if (compression != HttpCompression.NONE) {
+            exchange.getResponseHeaders().set("Content-Encoding", compression.contentEncoding());
+        }
+        exchange.sendResponseHeaders(status, body.size());
+        exchange.getResponseBody().write(body.toByteArray());
+        exchange.close();
+    }
+
+    private byte[] get(HttpCompression accept) throws IOException {
+        HttpURLConnection connection = transport.get(baseURL + "/content", accept);
+        try (ReportingInputStream in = transport.responseStream(connection)) {
+            assertEquals(accept, in.compression());
+            return ByteStreams.toByteArray(in);
+        } finally {
+            transport.release(connection);
+        }
+    }
+
+    private void upload(String path, byte[] content, HttpCompression encoding)
+            throws IOException {
+        HttpURLConnection connection = transport.post(new URL(baseURL + path),
+                "application/octet-stream", HttpCompression.NONE);
+        try (ReportingOutputStream out = transport.requestStream(connection, encoding)) {
+            out.write(content);
+        }
+    }
+
+    @Test
+    public void testCompressedResponses() throws IOException {
+        for (HttpCompression compression : HttpCompression.values()) {
+            assertArrayEquals(CONTENT, get(compression));
+        }
+        assertEquals(3, transport.requests());
+        assertTrue(transport.bytesReceived() < 3 * CONTENT.length);
+    }
+
+    @Test
+    public void testConnectionReuse() throws IOException {
+        final int requests = 10;
+        for (int i = 0; i < requests; i++) {
+            get(HttpCompression.GZIP);
+        }
+        upload("/upload", CONTENT, HttpCompression.GZIP);
+        get(HttpCompression.LZ4);
+        assertEquals(requests + 2, transport.requests());
+        assertEquals(1, connections.size());
+    }
+
+    @Test
+    public void testChunkedCompressedUploads() throws IOException {
+        for (HttpCompression compression : HttpCompression.values()) {
+            upload("/upload", CONTENT, compression);
+        }
+        assertEquals(3, uploads.size());
+        for (byte[] upload : uploads) {
+            assertArrayEquals(CONTENT, upload);
+        }
+        assertEquals("[null, gzip, x-lz4]", requestEncodings.toString());
+        for (String transferEncoding : transferEncodings) {
+            assertEquals("chunked", transferEncoding);
+        }
+        assertEquals(uploadedBytes.get(), transport.bytesSent());
+        assertTrue(transport.bytesSent() < 3 * CONTENT.length);
+    }
+
+    @Test
+    public void testFailedUpload() throws IOException {
+        try {
+            upload("/error", CONTENT, HttpCompression.GZIP);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("500"));
+        }
+        // the connection is still usable after the error
+        assertArrayEquals(CONTENT, get(HttpCompression.GZIP));
+    }
+
+    @Test
+    public void testContentEncodings() {
+        assertEquals(HttpCompression.NONE, HttpCompression.ofContentEncoding(null));
+        assertEquals(HttpCompression.NONE, HttpCompression.ofContentEncoding("identity"));
+        assertEquals(HttpCompression.GZIP, HttpCompression.ofContentEncoding("x-gzip"));
+        assertEquals(HttpCompression.LZ4, HttpCompression.ofContentEncoding(" X-LZ4 "));
+        try {
+            HttpCompression.ofContentEncoding("br");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("br"));
+        }
+        assertEquals("x-lz4, gzip;q=0.5", HttpTransport.acceptEncoding(HttpCompression.LZ4));
+    }
+}
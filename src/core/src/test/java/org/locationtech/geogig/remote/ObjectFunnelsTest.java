@@ -0,0 +1,208 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.storage.impl.ObjectSerializingFactory;
+
+import com.google.common.base.Supplier;
+
+public class ObjectFunnelsTest {
+
+    private static final int OBJECT_SIZE = 100;
+
+    private ExecutorService executor;
+
+    @Before
+    public void before() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Writes {@link #OBJECT_SIZE} bytes per object
+     */
+    private static class FixedSizeSerializer implements ObjectSerializingFactory {
+
+        @Override
+        public void write(RevObject o, OutputStream out) throws IOException {
+            byte[] body = new byte[OBJECT_SIZE];
+            System.arraycopy(o.getId().getRawValue(), 0, body, 0, ObjectId.NUM_BYTES);
+            out.write(body);
+        }
+
+        @Override
+        public RevObject read(ObjectId id, InputStream in) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public RevObject read(ObjectId id, byte[] data, int offset, int length)
+                throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "test";
+        }
+    }
+
+    private List<RevObject> objects(int count) {
+        List<RevObject> objects = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            RevObject o = mock(RevObject.class);
+            when(o.getId()).thenReturn(RevObjectTestSupport.hashString("o" + i));
+            objects.add(o);
+        }
+        return objects;
+    }
+
+    @Test
+    public void testPipelinedFunnelWritesAllChunks() throws Exception {
+        final List<ByteArrayOutputStream> chunks = Collections.synchronizedList(new ArrayList<>());
+        Supplier<OutputStream> outputFactory = () -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            chunks.add(out);
+            return out;
+        };
+        final int objectSize = ObjectId.NUM_BYTES + OBJECT_SIZE;
+        final int chunkLimit = 10 * objectSize;
+        ObjectFunnel funnel = ObjectFunnels.newPipelinedFunnel(outputFactory,
+                new FixedSizeSerializer(), chunkLimit, executor, 3 * chunkLimit);
+
+        List<RevObject> objects = objects(95);
+        for (RevObject o : objects) {
+            funnel.funnel(o);
+        }
+        funnel.close();
+
+        assertEquals(10, chunks.size());
+        Set<ObjectId> expected = new HashSet<>();
+        for (RevObject o : objects) {
+            expected.add(o.getId());
+        }
+        Set<ObjectId> written = new HashSet<>();
+        int partialChunks = 0;
+        for (ByteArrayOutputStream chunk : chunks) {
+            byte[] bytes = chunk.toByteArray();
+            assertEquals(0, bytes.length % objectSize);
+            if (bytes.length < chunkLimit) {
+                partialChunks++;
+            }
+            for (int offset = 0; offset < bytes.length; offset += objectSize) {
+                byte[] id = Arrays.copyOfRange(bytes, offset, offset + ObjectId.NUM_BYTES);
+                // the serialized body starts with the id too
+                byte[] body = Arrays.copyOfRange(bytes, offset + ObjectId.NUM_BYTES,
+                        offset + 2 * ObjectId.NUM_BYTES);
+                assertArrayEquals(id, body);
+                written.add(ObjectId.createNoClone(id));
+            }
+        }
+        assertEquals(1, partialChunks);
+        assertEquals(expected, written);
+    }
+
+    @Test
+    public void testPipelinedFunnelBoundsInFlightChunks() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger opened = new AtomicInteger();
+        Supplier<OutputStream> outputFactory = () -> {
+            opened.incrementAndGet();
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+            };
+        };
+        final int chunkLimit = ObjectId.NUM_BYTES + OBJECT_SIZE;
+        final ObjectFunnel funnel = ObjectFunnels.newPipelinedFunnel(outputFactory,
+                new FixedSizeSerializer(), chunkLimit, executor, 2 * chunkLimit);
+
+        final List<RevObject> objects = objects(10);
+        Thread producer = new Thread(() -> {
+            try {
+                for (RevObject o : objects) {
+                    funnel.funnel(o);
+                }
+                funnel.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.start();
+        producer.join(500);
+        assertTrue("producer should be blocked", producer.isAlive());
+        assertEquals(2, opened.get());
+
+        release.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        assertEquals(10, opened.get());
+    }
+
+    @Test
+    public void testPipelinedFunnelReportsWriteErrors() throws Exception {
+        Supplier<OutputStream> outputFactory = () -> new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("connection reset");
+            }
+        };
+        final int chunkLimit = ObjectId.NUM_BYTES + OBJECT_SIZE;
+        ObjectFunnel funnel = ObjectFunnels.newPipelinedFunnel(outputFactory,
+                new FixedSizeSerializer(), chunkLimit, executor, 4 * chunkLimit);
+        try {
+            for (RevObject o : objects(10)) {
+                funnel.funnel(o);
+            }
+            funnel.close();
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertEquals("connection reset", e.getMessage());
+        }
+    }
+}
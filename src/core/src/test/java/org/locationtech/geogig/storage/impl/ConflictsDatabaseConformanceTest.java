@@ -15,9 +15,11 @@ import static org.junit.Assert.assertTrue;
 import static org.locationtech.geogig.model.ObjectId.NULL;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
 
@@ -36,6 +38,7 @@ import org.locationtech.geogig.storage.ConflictsDatabase;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -276,6 +279,72 @@ public abstract class ConflictsDatabaseConformanceTest<T extends ConflictsDataba
         assertEquals(expectedMap.keySet(), actual.keySet());
     }
 
+    @Test
+    public void testGetByPrefixPaged() {
+        List<Conflict> rivers = createConflicts("rivers", 2500);
+        rivers.add(createTestConflict("rivers"));
+        List<Conflict> riversOther = createConflicts("rivers-other", 10);
+        List<Conflict> roads = createConflicts("roads", 100);
+        conflicts.addConflicts(null, rivers);
+        conflicts.addConflicts(null, riversOther);
+        conflicts.addConflicts(null, roads);
+
+        testGetByPrefixPaged(null, "rivers", rivers, 1000);
+        testGetByPrefixPaged(null, "rivers", rivers, 7);
+        testGetByPrefixPaged(null, "roads", roads, 100);
+        testGetByPrefixPaged(null, "rivers-other", riversOther, 3);
+
+        List<Conflict> all = new ArrayList<>(rivers);
+        all.addAll(riversOther);
+        all.addAll(roads);
+        testGetByPrefixPaged(null, null, all, 999);
+        testGetByPrefixPaged(UUID.randomUUID().toString(), null, ImmutableList.of(), 10);
+    }
+
+    @Test
+    public void testGetByPrefixPagedWhileRemoving() {
+        List<Conflict> rivers = createConflicts("rivers", 1000);
+        conflicts.addConflicts(null, rivers);
+
+        Set<String> visited = new HashSet<>();
+        String startAfter = null;
+        List<Conflict> page;
+        do {
+            page = conflicts.getByPrefix(null, "rivers", startAfter, 100);
+            for (Conflict c : page) {
+                assertTrue(visited.add(c.getPath()));
+            }
+            // removing the visited conflicts must not make the next page skip any
+            conflicts.removeConflicts(null, Lists.transform(page, (c) -> c.getPath()));
+            if (!page.isEmpty()) {
+                startAfter = page.get(page.size() - 1).getPath();
+            }
+        } while (page.size() == 100);
+        assertEquals(1000, visited.size());
+        assertFalse(conflicts.hasConflicts(null));
+    }
+
+    private void testGetByPrefixPaged(String namespace, String treePath, List<Conflict> expected,
+            int pageSize) {
+        Map<String, Conflict> actual = new TreeMap<>();
+        String startAfter = null;
+        List<Conflict> page;
+        do {
+            page = conflicts.getByPrefix(namespace, treePath, startAfter, pageSize);
+            assertTrue(page.size() <= pageSize);
+            for (Conflict c : page) {
+                assertTrue("duplicate " + c.getPath(), actual.put(c.getPath(), c) == null);
+            }
+            if (!page.isEmpty()) {
+                startAfter = page.get(page.size() - 1).getPath();
+            }
+        } while (page.size() == pageSize);
+
+        Map<String, Conflict> expectedMap = new TreeMap<>(
+                Maps.uniqueIndex(expected, (c) -> c.getPath()));
+        assertEquals(expectedMap, actual);
+    }
+
     @Test
     public void testRemoveConflict() {
         final String ns = UUID.randomUUID().toString();
@@ -25,6 +25,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.impl.CommitBuilder;
 import org.locationtech.geogig.model.impl.RevObjectTestSupport;
 import org.locationtech.geogig.repository.Platform;
 import org.locationtech.geogig.storage.GraphDatabase;
@@ -356,4 +359,44 @@ public abstract class GraphDatabaseTest {
         node = database.getNode(nodeId);
         assertFalse(node.isSparse());
     }
+
+    private RevCommit commit(String message, ObjectId... parents) {
+        return new CommitBuilder().setTreeId(RevTree.EMPTY_TREE_ID).setMessage(message)
+                .setParentIds(ImmutableList.copyOf(parents)).build();
+    }
+
+    @Test
+    public void testPutAll() throws IOException {
+        // root - c1 - c2 - c4
+        //          \      /
+        //           - c3 -
+        RevCommit root = commit("root");
+        RevCommit c1 = commit("c1", root.getId());
+        RevCommit c2 = commit("c2", c1.getId());
+        RevCommit c3 = commit("c3", c1.getId());
+        RevCommit c4 = commit("c4", c2.getId(), c3.getId());
+
+        // children before parents, as a log returns them
+        List<ObjectId> updated = database
+                .putAll(ImmutableList.of(c4, c3, c2, c1, root).iterator());
+        assertEquals(5, updated.size());
+
+        assertEquals(ImmutableList.of(c2.getId(), c3.getId()), database.getParents(c4.getId()));
+        assertEquals(ImmutableList.of(c1.getId()), database.getParents(c3.getId()));
+        assertEquals(ImmutableList.of(root.getId()), database.getParents(c1.getId()));
+        assertTrue(database.getParents(root.getId()).isEmpty());
+        assertEquals(2, database.getChildren(c1.getId()).size());
+        assertTrue(database.getChildren(c1.getId()).contains(c2.getId()));
+        assertTrue(database.getChildren(c1.getId()).contains(c3.getId()));
+        assertEquals(ImmutableList.of(c1.getId()), database.getChildren(root.getId()));
+        assertEquals(3, database.getDepth(c4.getId()));
+
+        // already there
+        assertTrue(database.putAll(ImmutableList.of(c1, c2, c3, c4).iterator()).isEmpty());
+
+        RevCommit c5 = commit("c5", c4.getId());
+        assertEquals(ImmutableList.of(c5.getId()),
+                database.putAll(ImmutableList.of(c4, c5).iterator()));
+        assertEquals(ImmutableList.of(c5.getId()), database.getChildren(c4.getId()));
+    }
 }
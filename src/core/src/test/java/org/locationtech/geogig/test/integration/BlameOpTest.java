@@ -17,11 +17,13 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.plumbing.history.UpdateFeatureHistoryOp;
 import org.locationtech.geogig.porcelain.BlameException;
 import org.locationtech.geogig.porcelain.BlameException.StatusCode;
 import org.locationtech.geogig.porcelain.BlameOp;
 import org.locationtech.geogig.porcelain.BlameReport;
 import org.locationtech.geogig.porcelain.CommitOp;
+import org.locationtech.geogig.porcelain.MergeOp;
 import org.locationtech.geogig.porcelain.ValueAndCommit;
 import org.opengis.feature.Feature;
 
@@ -127,6 +129,97 @@ public class BlameOpTest extends RepositoryTestCase {
         }
     }
 
+    @Test
+    public void testBlameWithFeatureHistory() throws Exception {
+        insertAndAdd(points1);
+        RevCommit firstCommit = geogig.command(CommitOp.class).call();
+        geogig.command(UpdateFeatureHistoryOp.class).setLayer(pointsName).call();
+        Feature pointsModified = feature(pointsType, idP1, "StringProp1_3", new Integer(1000),
+                "POINT(1 1)");
+        insertAndAdd(pointsModified);
+        RevCommit secondCommit = geogig.command(CommitOp.class).call();
+        insertAndAdd(points2);
+        geogig.command(CommitOp.class).call();
+        String path = NodeRef.appendChild(pointsName, idP1);
+        BlameReport report = geogig.command(BlameOp.class).setPath(path).call();
+        Map<String, ValueAndCommit> changes = report.getChanges();
+        assertEquals(3, changes.size());
+        assertEquals(secondCommit, changes.get("sp").commit);
+        assertEquals(firstCommit, changes.get("ip").commit);
+        assertEquals(firstCommit, changes.get("pp").commit);
+        assertEquals(pointsModified.getProperty("sp").getValue(), changes.get("sp").value.get());
+
+        report = geogig.command(BlameOp.class).setPath(path).setCommit(firstCommit.getId()).call();
+        for (ValueAndCommit valueAndCommit : report.getChanges().values()) {
+            assertEquals(firstCommit, valueAndCommit.commit);
+        }
+    }
+
+    @Test
+    public void testBlameRemovedAndAddedWithFeatureHistory() throws Exception {
+        geogig.command(UpdateFeatureHistoryOp.class).setLayer(pointsName).call();
+        insertAndAdd(points1);
+        geogig.command(CommitOp.class).call();
+        deleteAndAdd(points1);
+        geogig.command(CommitOp.class).call();
+        insertAndAdd(points1);
+        RevCommit thirdCommit = geogig.command(CommitOp.class).call();
+        String path = NodeRef.appendChild(pointsName, idP1);
+        BlameReport report = geogig.command(BlameOp.class).setPath(path).call();
+        Map<String, ValueAndCommit> changes = report.getChanges();
+        assertEquals(3, changes.size());
+        for (ValueAndCommit valueAndCommit : changes.values()) {
+            assertEquals(thirdCommit, valueAndCommit.commit);
+        }
+    }
+
+    @Test
+    public void testBlameThroughMergeWithFeatureHistory() throws Exception {
+        insertAndAdd(points1);
+        RevCommit firstCommit = geogig.command(CommitOp.class).call();
+        geogig.command(UpdateFeatureHistoryOp.class).setLayer(pointsName).call();
+        branch("branch1");
+        checkout("branch1");
+        Feature pointsModified = feature(pointsType, idP1, "StringProp1_3", new Integer(1000),
+                "POINT(1 1)");
+        insertAndAdd(pointsModified);
+        RevCommit branchCommit = geogig.command(CommitOp.class).call();
+        checkout("master");
+        insertAndAdd(points2);
+        geogig.command(CommitOp.class).call();
+        RevCommit merge = geogig.command(MergeOp.class).addCommit(branchCommit.getId()).call()
+                .getMergeCommit();
+        assertEquals(2, merge.getParentIds().size());
+
+        String path = NodeRef.appendChild(pointsName, idP1);
+        BlameReport report = geogig.command(BlameOp.class).setPath(path).call();
+        Map<String, ValueAndCommit> changes = report.getChanges();
+        assertEquals(3, changes.size());
+        assertEquals(branchCommit, changes.get("sp").commit);
+        assertEquals(firstCommit, changes.get("ip").commit);
+        assertEquals(firstCommit, changes.get("pp").commit);
+    }
+
+    @Test
+    public void testBlameCommitTimesOutOfOrderWithFeatureHistory() throws Exception {
+        geogig.command(UpdateFeatureHistoryOp.class).setLayer(pointsName).call();
+        insertAndAdd(points1);
+        geogig.command(CommitOp.class).setCommitterTimestamp(2000L).call();
+        deleteAndAdd(points1);
+        geogig.command(CommitOp.class).setCommitterTimestamp(3000L).call();
+        // as a cherry-picked commit keeping an older time would
+        insertAndAdd(points1_modified);
+        RevCommit thirdCommit = geogig.command(CommitOp.class).setCommitterTimestamp(1000L)
+                .call();
+        String path = NodeRef.appendChild(pointsName, idP1);
+        BlameReport report = geogig.command(BlameOp.class).setPath(path).call();
+        Map<String, ValueAndCommit> changes = report.getChanges();
+        assertEquals(3, changes.size());
+        for (ValueAndCommit valueAndCommit : changes.values()) {
+            assertEquals(thirdCommit, valueAndCommit.commit);
+        }
+    }
+
     @Test
     public void testBlameWithWrongFeaturePath() throws Exception {
         insertAndAdd(points1);
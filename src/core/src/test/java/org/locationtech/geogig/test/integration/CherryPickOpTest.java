@@ -9,6 +9,7 @@
  */
 package org.locationtech.geogig.test.integration;
 
+import java.io.File;
 import java.util.Iterator;
 
 import org.junit.Ignore;
@@ -22,7 +23,9 @@ import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevObject;
 import org.locationtech.geogig.model.impl.RevFeatureBuilder;
 import org.locationtech.geogig.plumbing.RefParse;
+import org.locationtech.geogig.plumbing.ResolveGeogigDir;
 import org.locationtech.geogig.plumbing.RevObjectParse;
+import org.locationtech.geogig.plumbing.UpdateRef;
 import org.locationtech.geogig.porcelain.AddOp;
 import org.locationtech.geogig.porcelain.BranchCreateOp;
 import org.locationtech.geogig.porcelain.CheckoutOp;
@@ -35,8 +38,10 @@ import org.locationtech.geogig.porcelain.LogOp;
 import org.locationtech.geogig.porcelain.NothingToCommitException;
 import org.opengis.feature.Feature;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Optional;
 import com.google.common.base.Suppliers;
+import com.google.common.io.Files;
 
 public class CherryPickOpTest extends RepositoryTestCase {
     @Rule
@@ -159,6 +164,36 @@ public class CherryPickOpTest extends RepositoryTestCase {
 
     }
 
+    @Test
+    public void testCherryPickRunsCommitHooks() throws Exception {
+        insertAndAdd(points1);
+        final RevCommit c1 = geogig.command(CommitOp.class).setMessage("commit for " + idP1).call();
+        geogig.command(BranchCreateOp.class).setAutoCheckout(true).setName("branch1").call();
+        insertAndAdd(points2);
+        final RevCommit c2 = geogig.command(CommitOp.class).setMessage("COMMIT FOR " + idP2)
+                .call();
+        geogig.command(CheckoutOp.class).setSource("master").call();
+
+        // a hook that converts the commit message to lower case
+        File hooksFolder = new File(new ResolveGeogigDir(geogig.getPlatform()).getFile().get(),
+                "hooks");
+        Files.write("params.put(\"message\", params.get(\"message\").toLowerCase());",
+                new File(hooksFolder, "pre_commit.js"), Charsets.UTF_8);
+        // left over by an earlier operation, cleaned up by the commit
+        geogig.command(UpdateRef.class).setName(Ref.ORIG_HEAD).setNewValue(c1.getId()).call();
+
+        RevCommit picked = geogig.command(CherryPickOp.class)
+                .setCommit(Suppliers.ofInstance(c2.getId())).call();
+
+        assertEquals(c2.getMessage().toLowerCase(), picked.getMessage());
+        assertEquals(c1.getId(), picked.getParentIds().get(0));
+        Optional<Ref> master = geogig.command(RefParse.class).setName("master").call();
+        assertEquals(picked.getId(), master.get().getObjectId());
+        assertFalse(geogig.command(RefParse.class).setName(Ref.ORIG_HEAD).call().isPresent());
+        assertFalse(geogig.command(RefParse.class).setName(Ref.CHERRY_PICK_HEAD).call()
+                .isPresent());
+    }
+
     @Test
     public void testCherryPickWithConflicts() throws Exception {
         insertAndAdd(points1);
@@ -0,0 +1,104 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.test.integration;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.impl.RevFeatureBuilder;
+import org.locationtech.geogig.plumbing.RefParse;
+import org.locationtech.geogig.plumbing.RevObjectParse;
+import org.locationtech.geogig.plumbing.merge.ConflictsResolveOp;
+import org.locationtech.geogig.plumbing.merge.ConflictsResolveOp.Strategy;
+import org.locationtech.geogig.porcelain.BranchCreateOp;
+import org.locationtech.geogig.porcelain.CheckoutOp;
+import org.locationtech.geogig.porcelain.CommitOp;
+import org.locationtech.geogig.porcelain.ConfigOp;
+import org.locationtech.geogig.porcelain.ConfigOp.ConfigAction;
+import org.locationtech.geogig.porcelain.MergeConflictsException;
+import org.locationtech.geogig.porcelain.MergeOp;
+import org.locationtech.geogig.storage.ConflictsDatabase;
+import org.opengis.feature.Feature;
+
+import com.google.common.base.Optional;
+
+public class ConflictsResolveOpTest extends RepositoryTestCase {
+
+    private Feature points1Ours, points1Theirs, lines1Ours;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        repo.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET).setName("user.name")
+                .setValue("groldan").call();
+        repo.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET).setName("user.email")
+                .setValue("groldan@boundlessgeo.com").call();
+
+        // Points.1 and Lines.1 modified on both branches
+        insertAndAdd(points1, lines1);
+        geogig.command(CommitOp.class).call();
+        geogig.command(BranchCreateOp.class).setName("TestBranch").call();
+        points1Ours = feature(pointsType, idP1, "StringProp1_2", new Integer(1000), "POINT(1 1)");
+        lines1Ours = feature(linesType, idL1, "StringProp2_2", new Integer(1000),
+                "LINESTRING (1 1, 2 2)");
+        insertAndAdd(points1Ours, lines1Ours);
+        geogig.command(CommitOp.class).call();
+        geogig.command(CheckoutOp.class).setSource("TestBranch").call();
+        points1Theirs = feature(pointsType, idP1, "StringProp1_3", new Integer(2000),
+                "POINT(1 1)");
+        Feature lines1Theirs = feature(linesType, idL1, "StringProp2_3", new Integer(2000),
+                "LINESTRING (1 1, 3 3)");
+        insertAndAdd(points1Theirs, lines1Theirs);
+        geogig.command(CommitOp.class).call();
+
+        geogig.command(CheckoutOp.class).setSource("master").call();
+        Ref branch = geogig.command(RefParse.class).setName("TestBranch").call().get();
+        try {
+            geogig.command(MergeOp.class).addCommit(branch.getObjectId()).call();
+            fail("expected MergeConflictsException");
+        } catch (MergeConflictsException e) {
+            assertEquals(2, repo.conflictsDatabase().getCountByPrefix(null, null));
+        }
+    }
+
+    @Test
+    public void testResolveTheirs() throws Exception {
+        long resolved = geogig.command(ConflictsResolveOp.class).setPathPrefix(pointsName)
+                .setStrategy(Strategy.THEIRS).call();
+        assertEquals(1L, resolved);
+
+        ConflictsDatabase conflicts = repo.conflictsDatabase();
+        assertEquals(0, conflicts.getCountByPrefix(null, pointsName));
+        assertEquals(1, conflicts.getCountByPrefix(null, linesName));
+
+        assertEquals(RevFeatureBuilder.build(points1Theirs), staged(pointsName, idP1));
+        assertEquals(RevFeatureBuilder.build(lines1Ours), staged(linesName, idL1));
+        assertEquals(repo.workingTree().getTree(), repo.index().getTree());
+    }
+
+    @Test
+    public void testResolveOurs() throws Exception {
+        long resolved = geogig.command(ConflictsResolveOp.class).setStrategy(Strategy.OURS)
+                .call();
+        assertEquals(2L, resolved);
+        assertFalse(repo.conflictsDatabase().hasConflicts(null));
+
+        assertEquals(RevFeatureBuilder.build(points1Ours), staged(pointsName, idP1));
+        assertEquals(RevFeatureBuilder.build(lines1Ours), staged(linesName, idL1));
+    }
+
+    private RevFeature staged(String treePath, String fid) {
+        String path = NodeRef.appendChild(treePath, fid);
+        Optional<RevFeature> feature = geogig.command(RevObjectParse.class)
+                .setRefSpec(Ref.STAGE_HEAD + ":" + path).call(RevFeature.class);
+        assertTrue(feature.isPresent());
+        return feature.get();
+    }
+}
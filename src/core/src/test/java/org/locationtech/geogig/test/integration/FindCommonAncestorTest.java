@@ -9,12 +9,19 @@
  */
 package org.locationtech.geogig.test.integration;
 
+import java.util.Map;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.plumbing.FindCommonAncestor;
+import org.locationtech.geogig.plumbing.FindMergeBases;
+import org.locationtech.geogig.plumbing.RebuildGraphOp;
+import org.locationtech.geogig.plumbing.TransactionBegin;
+import org.locationtech.geogig.plumbing.graph.MergeBaseCache;
+import org.locationtech.geogig.plumbing.graph.WriteCommitGraph;
 import org.locationtech.geogig.porcelain.BranchCreateOp;
 import org.locationtech.geogig.porcelain.CheckoutOp;
 import org.locationtech.geogig.porcelain.CommitOp;
@@ -22,8 +29,10 @@ import org.locationtech.geogig.porcelain.ConfigOp;
 import org.locationtech.geogig.porcelain.ConfigOp.ConfigAction;
 import org.locationtech.geogig.porcelain.MergeOp;
 import org.locationtech.geogig.porcelain.MergeOp.MergeReport;
+import org.locationtech.geogig.repository.impl.GeogigTransaction;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
 
 public class FindCommonAncestorTest extends RepositoryTestCase {
     @Rule
@@ -237,6 +246,10 @@ public class FindCommonAncestorTest extends RepositoryTestCase {
         assertTrue(commonAncestor.isPresent());
         assertEquals(commonAncestor.get(), ancestor.getId());
 
+        // same result walking the commit graph, bypassing the cached result
+        assertTrue(geogig.command(WriteCommitGraph.class).call().isPresent());
+        assertEquals(commonAncestor, geogig.command(FindCommonAncestor.class)
+                .findLowestCommonAncestor(mergeReport.getMergeCommit().getId(), branch2.getId()));
     }
 
     @Test
@@ -327,5 +340,145 @@ public class FindCommonAncestorTest extends RepositoryTestCase {
 
         assertTrue(commonAncestor.isPresent());
         assertEquals(commonAncestor.get(), commit4);
+
+        // same result walking the commit graph, bypassing the cached result
+        assertTrue(geogig.command(WriteCommitGraph.class).call().isPresent());
+        assertEquals(commonAncestor, geogig.command(FindCommonAncestor.class)
+                .findLowestCommonAncestor(report.getMergeCommit().getId(), commit10.getId()));
+    }
+
+    @Test
+    public void testCachedAncestor() throws Exception {
+        insertAndAdd(points1);
+        final RevCommit c1 = geogig.command(CommitOp.class).setMessage("commit for " + idP1).call();
+        geogig.command(BranchCreateOp.class).setAutoCheckout(true).setName("branch1").call();
+        insertAndAdd(points2);
+        final RevCommit left = geogig.command(CommitOp.class).setMessage("commit for " + idP2)
+                .call();
+        geogig.command(CheckoutOp.class).setSource("master").call();
+        insertAndAdd(points3);
+        final RevCommit right = geogig.command(CommitOp.class).setMessage("commit for " + idP3)
+                .call();
+
+        assertFalse(MergeBaseCache.get(repo, left.getId(), right.getId()).isPresent());
+        Optional<ObjectId> commonAncestor = geogig.command(FindCommonAncestor.class).setLeft(left)
+                .setRight(right).call();
+        assertEquals(Optional.of(c1.getId()), commonAncestor);
+        assertEquals(commonAncestor, MergeBaseCache.get(repo, left.getId(), right.getId()));
+
+        // the cache is keyed by ordered pairs
+        assertFalse(MergeBaseCache.get(repo, right.getId(), left.getId()).isPresent());
+    }
+
+    @Test
+    public void testCachedAncestorOutlivesTransaction() throws Exception {
+        insertAndAdd(points1);
+        final RevCommit c1 = geogig.command(CommitOp.class).setMessage("commit for " + idP1).call();
+        geogig.command(BranchCreateOp.class).setAutoCheckout(true).setName("branch1").call();
+        insertAndAdd(points2);
+        final RevCommit left = geogig.command(CommitOp.class).setMessage("commit for " + idP2)
+                .call();
+        geogig.command(CheckoutOp.class).setSource("master").call();
+        insertAndAdd(points3);
+        final RevCommit right = geogig.command(CommitOp.class).setMessage("commit for " + idP3)
+                .call();
+
+        GeogigTransaction tx = geogig.command(TransactionBegin.class).call();
+        assertEquals(Optional.of(c1.getId()), tx.command(FindCommonAncestor.class).setLeft(left)
+                .setRight(right).call());
+        tx.abort();
+
+        assertEquals(Optional.of(c1.getId()), MergeBaseCache.get(repo, left.getId(),
+                right.getId()));
+    }
+
+    @Test
+    public void testCachedAncestorsClearedOnGraphRebuild() throws Exception {
+        insertAndAdd(points1);
+        geogig.command(CommitOp.class).setMessage("commit for " + idP1).call();
+        geogig.command(BranchCreateOp.class).setAutoCheckout(true).setName("branch1").call();
+        insertAndAdd(points2);
+        final RevCommit left = geogig.command(CommitOp.class).setMessage("commit for " + idP2)
+                .call();
+        geogig.command(CheckoutOp.class).setSource("master").call();
+        insertAndAdd(points3);
+        final RevCommit right = geogig.command(CommitOp.class).setMessage("commit for " + idP3)
+                .call();
+
+        assertTrue(geogig.command(FindCommonAncestor.class).setLeft(left).setRight(right).call()
+                .isPresent());
+        assertTrue(MergeBaseCache.get(repo, left.getId(), right.getId()).isPresent());
+
+        geogig.command(RebuildGraphOp.class).call();
+        assertFalse(MergeBaseCache.get(repo, left.getId(), right.getId()).isPresent());
+    }
+
+    @Test
+    public void testCachedAncestorsBounded() throws Exception {
+        // all these pairs share the first byte of the left commit and the second byte of the
+        // right one, and hence the blob they're stored in
+        final ObjectId right = ObjectId.valueOf(String.format("%040x", 0));
+        final ObjectId ancestor = ObjectId.valueOf(String.format("%040x", 1));
+        for (int i = 0; i < 100; i++) {
+            MergeBaseCache.put(repo, ObjectId.valueOf(String.format("00%038x", i)), right,
+                    ancestor);
+        }
+        Optional<byte[]> shard = repo.blobStore().getBlob("merge-base/00");
+        assertTrue(shard.isPresent());
+        assertEquals(64 * 3 * ObjectId.NUM_BYTES, shard.get().length);
+
+        MergeBaseCache.clear(repo);
+        assertFalse(repo.blobStore().getBlob("merge-base/00").isPresent());
+        assertFalse(MergeBaseCache.get(repo, ObjectId.valueOf(String.format("00%038x", 99)),
+                right).isPresent());
+    }
+
+    @Test
+    public void testFindMergeBases() throws Exception {
+        // o - Points 1 added
+        // |\
+        // | o - branch1 - Points 2 added
+        // |\
+        // | o - branch2 - Points 3 added
+        // |
+        // o - master - Lines 1 added
+        // |
+        // o - Lines 2 added, committed after the commit graph was written
+        insertAndAdd(points1);
+        final RevCommit c1 = geogig.command(CommitOp.class).setMessage("commit for " + idP1).call();
+        geogig.command(BranchCreateOp.class).setAutoCheckout(true).setName("branch1").call();
+        insertAndAdd(points2);
+        final RevCommit branch1 = geogig.command(CommitOp.class).setMessage("commit for " + idP2)
+                .call();
+        geogig.command(CheckoutOp.class).setSource("master").call();
+        geogig.command(BranchCreateOp.class).setAutoCheckout(true).setName("branch2").call();
+        insertAndAdd(points3);
+        final RevCommit branch2 = geogig.command(CommitOp.class).setMessage("commit for " + idP3)
+                .call();
+        geogig.command(CheckoutOp.class).setSource("master").call();
+        insertAndAdd(lines1);
+        final RevCommit master = geogig.command(CommitOp.class).setMessage("commit for " + idL1)
+                .call();
+        assertTrue(geogig.command(WriteCommitGraph.class).call().isPresent());
+        insertAndAdd(lines2);
+        final RevCommit tip = geogig.command(CommitOp.class).setMessage("commit for " + idL2)
+                .call();
+
+        Map<ObjectId, Optional<ObjectId>> bases = geogig.command(FindMergeBases.class)
+                .setCommit(master.getId()).addCommit(branch1.getId()).addCommit(branch2.getId())
+                .addCommit(master.getId()).addCommit(tip.getId()).call();
+
+        assertEquals(ImmutableList.of(branch1.getId(), branch2.getId(), master.getId(),
+                tip.getId()), ImmutableList.copyOf(bases.keySet()));
+        assertEquals(Optional.of(c1.getId()), bases.get(branch1.getId()));
+        assertEquals(Optional.of(c1.getId()), bases.get(branch2.getId()));
+        assertEquals(Optional.of(master.getId()), bases.get(master.getId()));
+        assertEquals(Optional.of(master.getId()), bases.get(tip.getId()));
+
+        for (ObjectId other : ImmutableList.of(branch1.getId(), branch2.getId(), tip.getId())) {
+            assertEquals(bases.get(other), MergeBaseCache.get(repo, master.getId(), other));
+            assertEquals(bases.get(other), geogig.command(FindCommonAncestor.class)
+                    .findLowestCommonAncestor(master.getId(), other));
+        }
     }
 }
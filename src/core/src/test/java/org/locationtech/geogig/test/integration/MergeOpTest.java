@@ -630,6 +630,42 @@ public class MergeOpTest extends RepositoryTestCase {
         geogig.command(MergeOp.class).addCommit(branch1.getObjectId()).call();
     }
 
+    @Test
+    public void testMergeTakesTreesChangedOnOneSide() throws Exception {
+        insertAndAdd(points1, lines1);
+        geogig.command(CommitOp.class).setMessage("points1, lines1").call();
+
+        geogig.command(BranchCreateOp.class).setAutoCheckout(true).setName("branch1").call();
+        insertAndAdd(lines2, lines3);
+        deleteAndAdd(lines1);
+        geogig.command(CommitOp.class).setMessage("lines").call();
+        insertAndAdd(poly1);
+        geogig.command(CommitOp.class).setMessage("poly1").call();
+
+        geogig.command(CheckoutOp.class).setSource("master").call();
+        insertAndAdd(points2);
+        RevCommit masterCommit = geogig.command(CommitOp.class).setMessage("points2").call();
+
+        Ref branch1 = geogig.command(RefParse.class).setName("branch1").call().get();
+        RevCommit mergeCommit = geogig.command(MergeOp.class).addCommit(branch1.getObjectId())
+                .call().getMergeCommit();
+
+        RevTree merged = repo.getTree(mergeCommit.getTreeId());
+        RevTree ours = repo.getTree(masterCommit.getTreeId());
+        RevTree theirs = repo.getTree(repo.getCommit(branch1.getObjectId()).getTreeId());
+        assertEquals(childId(ours, pointsName), childId(merged, pointsName));
+        assertEquals(childId(theirs, linesName), childId(merged, linesName));
+        assertEquals(childId(theirs, polyName), childId(merged, polyName));
+        assertFalse(childId(ours, linesName).equals(childId(merged, linesName)));
+    }
+
+    private ObjectId childId(RevTree root, String path) {
+        Optional<NodeRef> ref = geogig.command(FindTreeChild.class).setParent(root)
+                .setChildPath(path).call();
+        assertTrue(ref.isPresent());
+        return ref.get().getObjectId();
+    }
+
     @Test
     public void testMergeFastForward() throws Exception {
         // Create the following revision graph
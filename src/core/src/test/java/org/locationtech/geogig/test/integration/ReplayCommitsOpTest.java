@@ -0,0 +1,128 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.test.integration;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.FindTreeChild;
+import org.locationtech.geogig.plumbing.RefParse;
+import org.locationtech.geogig.plumbing.ReplayCommitsOp;
+import org.locationtech.geogig.porcelain.BranchCreateOp;
+import org.locationtech.geogig.porcelain.CheckoutOp;
+import org.locationtech.geogig.porcelain.CommitOp;
+import org.locationtech.geogig.porcelain.ConfigOp;
+import org.locationtech.geogig.porcelain.ConfigOp.ConfigAction;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+public class ReplayCommitsOpTest extends RepositoryTestCase {
+
+    private RevCommit c2, c3, c4;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        repo.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET).setName("user.name")
+                .setValue("groldan").call();
+        repo.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET).setName("user.email")
+                .setValue("groldan@boundlessgeo.com").call();
+
+        // o - master - Points 1 added
+        // .\
+        // . o - Lines 1 added
+        // . |
+        // . o - Lines 2 added
+        // . |
+        // . o - branch1 - Points 2 added
+        insertAndAdd(points1);
+        geogig.command(CommitOp.class).setMessage("commit for " + idP1).call();
+        geogig.command(BranchCreateOp.class).setAutoCheckout(true).setName("branch1").call();
+        insertAndAdd(lines1);
+        c2 = geogig.command(CommitOp.class).setMessage("commit for " + idL1).call();
+        insertAndAdd(lines2);
+        c3 = geogig.command(CommitOp.class).setMessage("commit for " + idL2).call();
+        insertAndAdd(points2);
+        c4 = geogig.command(CommitOp.class).setMessage("commit for " + idP2).call();
+        geogig.command(CheckoutOp.class).setSource("master").call();
+    }
+
+    @Test
+    public void testReplayChangesToUntouchedTrees() throws Exception {
+        insertAndAdd(poly1);
+        final RevCommit c5 = geogig.command(CommitOp.class).setMessage("commit for " + idPG1)
+                .call();
+
+        List<RevCommit> replayed = geogig.command(ReplayCommitsOp.class).setOnto(c5.getId())
+                .setCommits(ImmutableList.of(c2, c3, c4).iterator()).call();
+
+        assertEquals(3, replayed.size());
+        assertEquals(ImmutableList.of(c5.getId()), replayed.get(0).getParentIds());
+        assertEquals(ImmutableList.of(replayed.get(0).getId()), replayed.get(1).getParentIds());
+        assertEquals(ImmutableList.of(replayed.get(1).getId()), replayed.get(2).getParentIds());
+        assertEquals(c4.getMessage(), replayed.get(2).getMessage());
+        assertEquals(c4.getAuthor(), replayed.get(2).getAuthor());
+        for (RevCommit commit : replayed) {
+            assertTrue(repo.commitExists(commit.getId()));
+        }
+
+        RevTree tree = repo.getTree(replayed.get(2).getTreeId());
+        RevTree c4Tree = repo.getTree(c4.getTreeId());
+        RevTree c5Tree = repo.getTree(c5.getTreeId());
+        assertEquals(childId(c4Tree, pointsName), childId(tree, pointsName));
+        assertEquals(childId(c4Tree, linesName), childId(tree, linesName));
+        assertEquals(childId(c5Tree, polyName), childId(tree, polyName));
+
+        // refs are left untouched
+        Optional<Ref> master = geogig.command(RefParse.class).setName("master").call();
+        assertEquals(c5.getId(), master.get().getObjectId());
+    }
+
+    @Test
+    public void testStopsAtChangesToModifiedTrees() throws Exception {
+        insertAndAdd(points3);
+        final RevCommit c5 = geogig.command(CommitOp.class).setMessage("commit for " + idP3)
+                .call();
+
+        List<RevCommit> replayed = geogig.command(ReplayCommitsOp.class).setOnto(c5.getId())
+                .setCommits(ImmutableList.of(c2, c3, c4).iterator()).call();
+
+        // c4 changes the points tree, which was also changed by c5
+        assertEquals(2, replayed.size());
+        assertEquals(c3.getMessage(), replayed.get(1).getMessage());
+        RevTree tree = repo.getTree(replayed.get(1).getTreeId());
+        assertEquals(childId(repo.getTree(c5.getTreeId()), pointsName),
+                childId(tree, pointsName));
+        assertEquals(childId(repo.getTree(c3.getTreeId()), linesName), childId(tree, linesName));
+    }
+
+    @Test
+    public void testStopsAtAlreadyAppliedChanges() throws Exception {
+        insertAndAdd(lines1);
+        final RevCommit c5 = geogig.command(CommitOp.class).setMessage("commit for " + idL1)
+                .call();
+
+        List<RevCommit> replayed = geogig.command(ReplayCommitsOp.class).setOnto(c5.getId())
+                .setCommits(ImmutableList.of(c2, c3).iterator()).call();
+        assertTrue(replayed.isEmpty());
+    }
+
+    private ObjectId childId(RevTree root, String path) {
+        Optional<NodeRef> ref = geogig.command(FindTreeChild.class).setParent(root)
+                .setChildPath(path).call();
+        assertTrue(ref.isPresent());
+        return ref.get().getObjectId();
+    }
+}
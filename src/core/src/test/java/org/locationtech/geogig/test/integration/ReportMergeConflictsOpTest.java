@@ -14,6 +14,7 @@ import java.util.List;
 
 import org.geotools.data.DataUtilities;
 import org.junit.Test;
+import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.impl.RevFeatureBuilder;
 import org.locationtech.geogig.plumbing.merge.CheckMergeScenarioOp;
@@ -249,6 +250,29 @@ public class ReportMergeConflictsOpTest extends RepositoryTestCase {
         assertFalse(hasConflicts.booleanValue());
     }
 
+    @Test
+    public void testChangesInDifferentLayers() throws Exception {
+        insertAndAdd(points1, lines1);
+        geogig.command(CommitOp.class).call();
+        geogig.command(BranchCreateOp.class).setName("TestBranch").call();
+        insertAndAdd(points2);
+        RevCommit masterCommit = geogig.command(CommitOp.class).call();
+        geogig.command(CheckoutOp.class).setSource("TestBranch").call();
+        insertAndAdd(lines2);
+        RevCommit branchCommit = geogig.command(CommitOp.class).call();
+        TestMergeScenarioConsumer consumer = new TestMergeScenarioConsumer();
+        MergeScenarioReport conflicts = geogig.command(ReportMergeScenarioOp.class)
+                .setMergeIntoCommit(masterCommit).setToMergeCommit(branchCommit)
+                .setConsumer(consumer).call();
+        assertEquals(0, conflicts.getConflicts());
+        // the lines tree and the added feature
+        assertEquals(2, conflicts.getUnconflicted());
+        for (DiffEntry diff : consumer.unconflicted) {
+            assertTrue(diff.path().startsWith(linesName));
+        }
+        assertEquals(NodeRef.appendChild(linesName, idL2), consumer.unconflicted.get(1).path());
+    }
+
     @Test
     public void testAddedSameFeatureType() throws Exception {
         insertAndAdd(lines1);
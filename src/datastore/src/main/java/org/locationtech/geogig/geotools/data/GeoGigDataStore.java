@@ -10,9 +10,7 @@
 package org.locationtech.geogig.geotools.data;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.logging.Level;
@@ -102,20 +100,32 @@ public class GeoGigDataStore extends ContentDataStore implements DataStore {
      **/
     private boolean autoIndexing;
 
+    private final VersionedMetadataCache metadataCache;
+
     public GeoGigDataStore(Repository repository) {
         super();
         Preconditions.checkNotNull(repository);
 
         this.repository = repository;
         this._liveContext = repository.context();
+        this.metadataCache = new VersionedMetadataCache(repository);
     }
 
     @Override
     public void dispose() {
         super.dispose();
+        metadataCache.invalidateAll();
         repository.close();
     }
 
+    /**
+     * @return the cache of resolved type trees, feature types, and index lookups shared by all the
+     *         queries against this data store
+     */
+    VersionedMetadataCache metadataCache() {
+        return metadataCache;
+    }
+
     /**
      * Instructs the datastore to operate against the specified refspec, or against the checked out
      * branch, whatever it is, if the argument is {@code null}.
@@ -238,12 +248,8 @@ public class GeoGigDataStore extends ContentDataStore implements DataStore {
         Preconditions.checkNotNull(typeName);
 
         final String localName = typeName.getLocalPart();
-        List<NodeRef> typeRefs = findTypeRefs(tx, false);
+        List<NodeRef> typeRefs = findTypeRefs(tx);
         NodeRef typeRef = findTypeRef(typeRefs, localName);
-        if (typeRef == null) {
-            typeRefs = findTypeRefs(tx, true);
-            typeRef = findTypeRef(typeRefs, localName);
-        }
         if (typeRef == null) {
             throw new NoSuchElementException(
                     String.format("No tree ref matched the name: %s", localName));
@@ -265,32 +271,24 @@ public class GeoGigDataStore extends ContentDataStore implements DataStore {
 
     @Override
     protected ImmutableList<Name> createTypeNames() throws IOException {
-        List<NodeRef> typeTrees = findTypeRefs(Transaction.AUTO_COMMIT, true);
+        List<NodeRef> typeTrees = findTypeRefs(Transaction.AUTO_COMMIT);
         return ImmutableList
                 .copyOf(Collections2.transform(typeTrees, (ref) -> getDescriptorName(ref)));
     }
 
     /**
-     * Cache type refs by repository head ref
+     * Finds the type refs in the root tree the transaction's root ref resolves to, cached by the
+     * resolved commit or tree id so that they're reloaded whenever the ref is updated
      */
-    private Map<String, List<NodeRef>> typeRefsByHead = new HashMap<>();
-
-    private List<NodeRef> findTypeRefs(@Nullable Transaction tx, boolean forceReload) {
-        List<NodeRef> typeTrees = null;
-
+    private List<NodeRef> findTypeRefs(@Nullable Transaction tx) {
         final String rootRef = getRootRef(tx);
-        if (!forceReload) {
-            typeTrees = typeRefsByHead.get(rootRef);
-        }
-        if (typeTrees == null) {
-            Context commandLocator = resolveContext(tx);
-            typeTrees = commandLocator.command(FindFeatureTypeTrees.class).setRootTreeRef(rootRef)
+        final Context commandLocator = resolveContext(tx);
+        final Optional<ObjectId> headId = metadataCache.resolveHead(commandLocator, rootRef);
+        if (!headId.isPresent()) {
+            return commandLocator.command(FindFeatureTypeTrees.class).setRootTreeRef(rootRef)
                     .call();
-            synchronized (typeRefsByHead) {
-                typeRefsByHead.put(rootRef, typeTrees);
-            }
         }
-        return typeTrees;
+        return metadataCache.typeRefs(commandLocator, headId.get());
     }
 
     String getRootRef(@Nullable Transaction tx) {
@@ -487,6 +485,7 @@ public class GeoGigDataStore extends ContentDataStore implements DataStore {
                     .setTreeRefSpec(indexInfo.getTreeName())
                     // index the histroy as well
                     .setIndexHistory(true).call();
+            metadataCache.invalidateIndexes();
             return Optional.of(index.info().getId());
         }
         // no index found for the layer/path, create one
@@ -498,6 +497,7 @@ public class GeoGigDataStore extends ContentDataStore implements DataStore {
         CreateQuadTree command = context.command(CreateQuadTree.class);
         Index index = command.setTreeRefSpec(layerName).setExtraAttributes(indexAttributes)
                 .setIndexHistory(true).call();
+        metadataCache.invalidateIndexes();
         return Optional.of(index.info().getId());
     }
 
@@ -38,7 +38,6 @@ import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevFeatureType;
 import org.locationtech.geogig.model.RevTree;
-import org.locationtech.geogig.plumbing.RevObjectParse;
 import org.locationtech.geogig.repository.Context;
 import org.locationtech.geogig.repository.WorkingTree;
 import org.opengis.feature.Feature;
@@ -76,7 +75,9 @@ class GeogigFeatureSource extends ContentFeatureSource {
 
     /**
      * Adds the {@link Hints#FEATURE_DETACHED} hint to the supported hints so the renderer doesn't
-     * clone the geometries
+     * clone the geometries, and the {@link Hints#GEOMETRY_SIMPLIFICATION} and
+     * {@link Hints#GEOMETRY_DISTANCE} hints so it lets us return geometries simplified to the
+     * rendering resolution
      */
     @Override
     protected void addHints(Set<Hints.Key> hints) {
@@ -87,6 +88,8 @@ class GeogigFeatureSource extends ContentFeatureSource {
         if (!ignorescreenmap)
             hints.add(Hints.SCREENMAP);
         hints.add(Hints.JTS_GEOMETRY_FACTORY);
+        hints.add(Hints.GEOMETRY_SIMPLIFICATION);
+        hints.add(Hints.GEOMETRY_DISTANCE);
     }
 
     @Override
@@ -198,8 +201,11 @@ class GeogigFeatureSource extends ContentFeatureSource {
             return ReferencedEnvelope.create(crs);
         }
 
+        // with no properties requested, the reader serves features straight from the tree nodes
+        // unless part of the filter can only be evaluated against the actual features
         query = new Query(query);
         query.setPropertyNames(Query.NO_NAMES);
+        query.setSortBy(null);
 
         ReferencedEnvelope bounds = new ReferencedEnvelope(crs);
         try (FeatureReader<SimpleFeatureType, SimpleFeature> features = getNativeReader(query,
@@ -311,14 +317,15 @@ class GeogigFeatureSource extends ContentFeatureSource {
         final @Nullable Integer limit = query.isMaxFeaturesUnlimited() ? null
                 : query.getMaxFeatures();
         final @Nullable ScreenMap screenMap = (ScreenMap) hints.get(Hints.SCREENMAP);
+        final @Nullable Double simplificationDistance = resolveSimplificationDistance(hints);
         final @Nullable String[] propertyNames = query.getPropertyNames();
         final @Nullable SortBy[] sortBy = query.getSortBy();
         final Name assignedName = getEntry().getName();
 
         final Filter filter = query.getFilter();
 
-        final RevFeatureType nativeType = getNativeType();
         final NodeRef typeRef = this.getTypeRef();
+        final RevFeatureType nativeType = getNativeType(typeRef);
 
         FeatureReaderBuilder builder = FeatureReaderBuilder.builder(context, nativeType, typeRef);
 
@@ -333,14 +340,24 @@ class GeogigFeatureSource extends ContentFeatureSource {
                 .limit(limit)//
                 .propertyNames(propertyNames)//
                 .screenMap(screenMap)//
+                .simplificationDistance(simplificationDistance)//
                 .sortBy(sortBy)//
                 .retypeIfNeeded(retypeIfNeeded)//
+                .metadataCache(getDataStore().metadataCache())//
                 .build();
 
         return featureReader;
 
     }
 
+    private @Nullable Double resolveSimplificationDistance(Hints hints) {
+        Number distance = (Number) hints.get(Hints.GEOMETRY_SIMPLIFICATION);
+        if (distance == null) {
+            distance = (Number) hints.get(Hints.GEOMETRY_DISTANCE);
+        }
+        return distance == null ? null : Double.valueOf(distance.doubleValue());
+    }
+
     public void setChangeType(GeoGigDataStore.ChangeType changeType) {
         this.changeType = changeType;
     }
@@ -386,10 +403,22 @@ class GeogigFeatureSource extends ContentFeatureSource {
         RevFeatureType nativeType = state.getNativeType();
         if (nativeType == null) {
             final NodeRef typeRef = getTypeRef();
-            final ObjectId metadataId = typeRef.getMetadataId();
+            nativeType = getNativeType(typeRef);
+        }
+        return nativeType;
+    }
 
+    /**
+     * @return the feature type the given type tree ref points to, which may differ from the one
+     *         cached in the content state if the type tree changed since it was first resolved
+     */
+    private RevFeatureType getNativeType(NodeRef typeRef) {
+        GeogigContentState state = (GeogigContentState) getEntry().getState(getTransaction());
+        RevFeatureType nativeType = state.getNativeType();
+        final ObjectId metadataId = typeRef.getMetadataId();
+        if (nativeType == null || !metadataId.equals(nativeType.getId())) {
             Context context = getCommandLocator();
-            nativeType = context.objectDatabase().getFeatureType(metadataId);
+            nativeType = getDataStore().metadataCache().featureType(context, metadataId);
             state.setNativeType(nativeType);
         }
         return nativeType;
@@ -415,12 +444,19 @@ class GeogigFeatureSource extends ContentFeatureSource {
      * @return
      */
     RevTree getTypeTree() {
-        String refSpec = getRootRef() + ":" + getTypeTreePath();
-        Context commandLocator = getCommandLocator();
-        Optional<RevTree> ref = commandLocator.command(RevObjectParse.class).setRefSpec(refSpec)
-                .call(RevTree.class);
-        Preconditions.checkState(ref.isPresent(), "Ref %s not found on working tree", refSpec);
-        return ref.get();
+        final String rootRef = getRootRef();
+        final String treePath = getTypeTreePath();
+        final Context commandLocator = getCommandLocator();
+        final VersionedMetadataCache cache = getDataStore().metadataCache();
+
+        Optional<ObjectId> headId = cache.resolveHead(commandLocator, rootRef);
+        Optional<NodeRef> ref = Optional.absent();
+        if (headId.isPresent()) {
+            ref = cache.typeTree(commandLocator, headId.get(), treePath);
+        }
+        Preconditions.checkState(ref.isPresent(), "Ref %s not found on working tree",
+                rootRef + ":" + treePath);
+        return commandLocator.objectDatabase().getTree(ref.get().getObjectId());
     }
 
     private String getRootRef() {
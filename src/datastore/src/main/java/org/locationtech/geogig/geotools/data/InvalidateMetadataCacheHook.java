@@ -0,0 +1,73 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.geotools.data;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.hooks.CannotRunGeogigOperationException;
+import org.locationtech.geogig.hooks.CommandHook;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.plumbing.UpdateRef;
+import org.locationtech.geogig.porcelain.index.CreateIndexOp;
+import org.locationtech.geogig.porcelain.index.CreateQuadTree;
+import org.locationtech.geogig.porcelain.index.DropIndexOp;
+import org.locationtech.geogig.porcelain.index.UpdateIndexOp;
+import org.locationtech.geogig.porcelain.index.UpdateIndexesOp;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.Repository;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Hooks into {@link UpdateRef} and the index commands to discard the index lookups cached by the
+ * {@link VersionedMetadataCache}s of the repository whenever a branch or an index changes.
+ * <p>
+ * The index commands are hooked as well since indexes are updated by another hook after a branch
+ * is updated, which may run after this one.
+ */
+public class InvalidateMetadataCacheHook implements CommandHook {
+
+    private static final ImmutableSet<Class<?>> INDEX_COMMANDS = ImmutableSet.of(
+            CreateIndexOp.class, CreateQuadTree.class, UpdateIndexOp.class,
+            UpdateIndexesOp.class, DropIndexOp.class);
+
+    @Override
+    public boolean appliesTo(Class<? extends AbstractGeoGigOp<?>> clazz) {
+        return UpdateRef.class.equals(clazz) || INDEX_COMMANDS.contains(clazz);
+    }
+
+    @Override
+    public <C extends AbstractGeoGigOp<?>> C pre(C command)
+            throws CannotRunGeogigOperationException {
+        return command;
+    }
+
+    @Override
+    public <T> T post(AbstractGeoGigOp<T> command, @Nullable Object retVal,
+            @Nullable RuntimeException exception) throws Exception {
+
+        final Repository repository = command.context().repository();
+        if (exception == null && repository != null && invalidates(command, retVal)) {
+            VersionedMetadataCache.invalidateIndexes(repository);
+        }
+        return (T) retVal;
+    }
+
+    private boolean invalidates(AbstractGeoGigOp<?> command, @Nullable Object retVal) {
+        if (!(command instanceof UpdateRef)) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        final Optional<Ref> updatedRef = (Optional<Ref>) retVal;
+        // only branch updates trigger index updates
+        return updatedRef != null && updatedRef.isPresent()
+                && updatedRef.get().getName().startsWith(Ref.REFS_PREFIX);
+    }
+}
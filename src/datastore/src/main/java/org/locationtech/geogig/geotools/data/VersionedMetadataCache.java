@@ -0,0 +1,239 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.geotools.data;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.locationtech.geogig.data.FindFeatureTypeTrees;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevFeatureType;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.FindTreeChild;
+import org.locationtech.geogig.plumbing.ResolveTreeish;
+import org.locationtech.geogig.plumbing.RevParse;
+import org.locationtech.geogig.repository.Context;
+import org.locationtech.geogig.repository.IndexInfo;
+import org.locationtech.geogig.repository.Repository;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A cache of the repository metadata needed to resolve every query against a
+ * {@link GeoGigDataStore}, so that it's not looked up through several commands for each request:
+ * the feature type trees and their {@link RevFeatureType}s, the {@link IndexInfo index info} for
+ * a type tree and attribute, and the indexed tree id for a given canonical tree.
+ * <p>
+ * Type trees are keyed by the object id the queried ref (e.g. a branch or {@code WORK_HEAD})
+ * {@link #resolveHead(Context, String) resolves to} instead of by the ref name. Hence, whenever a
+ * ref is updated the next query resolves it to a different id and the stale entries are simply no
+ * longer used, and eventually evicted. Feature types are keyed by their own id, so they never get
+ * stale either.
+ * <p>
+ * Index lookups on the other hand can change without the queried ref being updated (e.g. when an
+ * index is created, or updated after a branch moves), so they're
+ * {@link #invalidateIndexes(Repository) invalidated} by the
+ * {@link InvalidateMetadataCacheHook} whenever a ref or an index of the repository changes.
+ */
+public class VersionedMetadataCache {
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    /**
+     * The caches of each repository, by their repository
+     */
+    private static final Map<VersionedMetadataCache, Repository> CACHES = new WeakHashMap<>();
+
+    private final Cache<ObjectId, List<NodeRef>> typeRefs;
+
+    private final Cache<TreeKey, Optional<NodeRef>> typeTrees;
+
+    private final Cache<ObjectId, RevFeatureType> featureTypes;
+
+    private final Cache<IndexKey, Optional<IndexInfo>> indexInfos;
+
+    private final Cache<TreeKey, Optional<ObjectId>> indexedTrees;
+
+    /**
+     * @param repository the repository the metadata is cached for, whose index lookups are
+     *        invalidated whenever its refs or indexes change
+     */
+    public VersionedMetadataCache(Repository repository) {
+        typeRefs = CacheBuilder.newBuilder().maximumSize(100).build();
+        typeTrees = CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES).build();
+        featureTypes = CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES).build();
+        indexInfos = CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES).build();
+        indexedTrees = CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES).build();
+        synchronized (CACHES) {
+            CACHES.put(this, checkNotNull(repository));
+        }
+    }
+
+    /**
+     * Discards the cached index lookups of all the caches of the given repository, or of a
+     * repository at the same location
+     */
+    static void invalidateIndexes(Repository repository) {
+        final URI location = repository.getLocation();
+        List<VersionedMetadataCache> invalidated = new ArrayList<>();
+        synchronized (CACHES) {
+            for (Map.Entry<VersionedMetadataCache, Repository> e : CACHES.entrySet()) {
+                Repository cached = e.getValue();
+                if (cached == repository
+                        || (location != null && location.equals(cached.getLocation()))) {
+                    invalidated.add(e.getKey());
+                }
+            }
+        }
+        for (VersionedMetadataCache cache : invalidated) {
+            cache.invalidateIndexes();
+        }
+    }
+
+    /**
+     * Resolves the object id (either a commit or a root tree id) the given ref spec points to. This
+     * is never cached, being the lookup that determines which version of the cached metadata
+     * applies.
+     */
+    public Optional<ObjectId> resolveHead(Context context, String refSpec) {
+        return context.command(RevParse.class).setRefSpec(refSpec).call();
+    }
+
+    /**
+     * @return all the feature type tree refs in the root tree resolved from {@code headId}
+     */
+    public List<NodeRef> typeRefs(Context context, ObjectId headId) {
+        return get(typeRefs, headId, () -> context.command(FindFeatureTypeTrees.class)
+                .setRootTreeRef(headId.toString()).call());
+    }
+
+    /**
+     * @return the ref to the tree at {@code treePath} in the root tree resolved from
+     *         {@code headId}, if exists
+     */
+    public Optional<NodeRef> typeTree(Context context, ObjectId headId, String treePath) {
+        return get(typeTrees, new TreeKey(headId, treePath), () -> {
+            Optional<ObjectId> rootTree = context.command(ResolveTreeish.class)
+                    .setTreeish(headId).call();
+            if (!rootTree.isPresent()) {
+                return Optional.absent();
+            }
+            RevTree tree = context.objectDatabase().getTree(rootTree.get());
+            return context.command(FindTreeChild.class).setParent(tree).setChildPath(treePath)
+                    .call();
+        });
+    }
+
+    public RevFeatureType featureType(Context context, ObjectId metadataId) {
+        return get(featureTypes, metadataId,
+                () -> context.objectDatabase().getFeatureType(metadataId));
+    }
+
+    public Optional<IndexInfo> indexInfo(Context context, String treeName, String attributeName) {
+        return get(indexInfos, new IndexKey(treeName, attributeName),
+                () -> context.indexDatabase().getIndexInfo(treeName, attributeName));
+    }
+
+    public Optional<ObjectId> indexedTree(Context context, IndexInfo indexInfo,
+            ObjectId canonicalTreeId) {
+        return get(indexedTrees, new TreeKey(indexInfo.getId(), canonicalTreeId.toString()),
+                () -> context.indexDatabase().resolveIndexedTree(indexInfo, canonicalTreeId));
+    }
+
+    /**
+     * Discards the cached index lookups, to be called whenever an index is created, updated, or
+     * dropped
+     */
+    public void invalidateIndexes() {
+        indexInfos.invalidateAll();
+        indexedTrees.invalidateAll();
+    }
+
+    public void invalidateAll() {
+        typeRefs.invalidateAll();
+        typeTrees.invalidateAll();
+        featureTypes.invalidateAll();
+        invalidateIndexes();
+    }
+
+    private static <K, V> V get(Cache<K, V> cache, K key, Callable<V> loader) {
+        checkNotNull(key);
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private static final class TreeKey {
+
+        private final ObjectId id;
+
+        private final String path;
+
+        TreeKey(ObjectId id, String path) {
+            this.id = id;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TreeKey)) {
+                return false;
+            }
+            TreeKey k = (TreeKey) o;
+            return id.equals(k.id) && path.equals(k.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(id, path);
+        }
+    }
+
+    private static final class IndexKey {
+
+        private final String treeName;
+
+        private final String attributeName;
+
+        IndexKey(String treeName, String attributeName) {
+            this.treeName = treeName;
+            this.attributeName = attributeName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof IndexKey)) {
+                return false;
+            }
+            IndexKey k = (IndexKey) o;
+            return treeName.equals(k.treeName) && attributeName.equals(k.attributeName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(treeName, attributeName);
+        }
+    }
+}
@@ -38,16 +38,20 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.crs.DefaultEngineeringCRS;
 import org.geotools.renderer.ScreenMap;
 import org.locationtech.geogig.data.retrieve.BulkFeatureRetriever;
+import org.locationtech.geogig.data.retrieve.SimplifiedGeometryCache;
 import org.locationtech.geogig.geotools.data.GeoGigDataStore.ChangeType;
+import org.locationtech.geogig.geotools.data.VersionedMetadataCache;
 import org.locationtech.geogig.model.Bounded;
 import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevFeature;
 import org.locationtech.geogig.model.RevFeatureType;
 import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.plumbing.DiffTree;
 import org.locationtech.geogig.plumbing.FindTreeChild;
 import org.locationtech.geogig.plumbing.ResolveTreeish;
+import org.locationtech.geogig.plumbing.index.BuildLODTreesOp;
 import org.locationtech.geogig.porcelain.index.Index;
 import org.locationtech.geogig.repository.Context;
 import org.locationtech.geogig.repository.DiffEntry;
@@ -83,6 +87,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
 
 /**
@@ -100,6 +105,16 @@ public class FeatureReaderBuilder {
     // CommonFactoryFinder.getFilterFactory2
     private static final FilterFactory2 filterFactory = CommonFactoryFinder.getFilterFactory2();
 
+    /**
+     * Shared cache of simplified geometries, its size in number of coordinates can be set through
+     * the {@code geogig.simplification.cachesize} System property, where {@code 0} disables it
+     */
+    private static final @Nullable SimplifiedGeometryCache SIMPLIFIED_GEOMETRY_CACHE;
+    static {
+        long size = Long.getLong("geogig.simplification.cachesize", 1_000_000L);
+        SIMPLIFIED_GEOMETRY_CACHE = size > 0 ? new SimplifiedGeometryCache(size) : null;
+    }
+
     private final Context repo;
 
     /**
@@ -136,6 +151,8 @@ public class FeatureReaderBuilder {
 
     private @Nullable ScreenMap screenMap;
 
+    private @Nullable Double simplificationDistance;
+
     private @Nullable SortBy[] sortBy;
 
     private @Nullable Integer limit;
@@ -152,6 +169,8 @@ public class FeatureReaderBuilder {
 
     private boolean retypeIfNeeded = true;
 
+    private @Nullable VersionedMetadataCache metadataCache;
+
     public FeatureReaderBuilder(Context repo, RevFeatureType nativeType, NodeRef typeRef) {
         this.repo = repo;
         this.nativeType = nativeType;
@@ -177,6 +196,15 @@ public class FeatureReaderBuilder {
         return this;
     }
 
+    /**
+     * @param metadataCache if provided, used to resolve the feature type trees and index lookups
+     *        instead of querying the repository for every call to {@link #build()}
+     */
+    public FeatureReaderBuilder metadataCache(@Nullable VersionedMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+        return this;
+    }
+
     public static FeatureReaderBuilder builder(Context repo, RevFeatureType nativeType,
             NodeRef typeRef) {
         return new FeatureReaderBuilder(repo, nativeType, typeRef);
@@ -219,6 +247,16 @@ public class FeatureReaderBuilder {
         return this;
     }
 
+    /**
+     * @param distance the distance, in the native CRS units, the default geometry can be simplified
+     *        with (e.g. as given by the {@link org.geotools.factory.Hints#GEOMETRY_SIMPLIFICATION}
+     *        query hint), or {@code null} for full resolution geometries
+     */
+    public FeatureReaderBuilder simplificationDistance(@Nullable Double distance) {
+        this.simplificationDistance = distance;
+        return this;
+    }
+
     public FeatureReaderBuilder geometryFactory(@Nullable GeometryFactory geometryFactory) {
         this.geometryFactory = geometryFactory == null ? DEFAULT_GEOMETRY_FACTORY : geometryFactory;
         return this;
@@ -249,7 +287,7 @@ public class FeatureReaderBuilder {
 
         // properties needed by the output schema and the in-process filter, null means all
         // properties, empty list means no-properties needed
-        final @Nullable Set<String> requiredProperties = resolveRequiredProperties(nativeFilter);
+        final @Nullable Set<String> requiredProperties;
         // properties present in the RevTree nodes' extra data
         final Set<String> materializedIndexProperties;
 
@@ -269,6 +307,8 @@ public class FeatureReaderBuilder {
         final ObjectId newFeatureTypeTree;
         // where to get RevTree instances from (either the object or the index database)
         final ObjectStore treeSource;
+        // the extent of the layer, bounding the precision of the float32 node bounds
+        final Envelope layerBounds = new Envelope();
         {
             final String nativeTypeName = nativeSchema.getTypeName();
 
@@ -283,6 +323,12 @@ public class FeatureReaderBuilder {
                     nativeTypeName);
             final Optional<NodeRef> newCanonicalTree = resolveCanonicalTree(headRef,
                     nativeTypeName);
+            if (oldCanonicalTree.isPresent()) {
+                oldCanonicalTree.get().expand(layerBounds);
+            }
+            if (newCanonicalTree.isPresent()) {
+                newCanonicalTree.get().expand(layerBounds);
+            }
             final ObjectId oldCanonicalTreeId = oldCanonicalTree.isPresent()
                     ? oldCanonicalTree.get().getObjectId() : RevTree.EMPTY_TREE_ID;
             final ObjectId newCanonicalTreeId = newCanonicalTree.isPresent()
@@ -309,14 +355,6 @@ public class FeatureReaderBuilder {
             checkState(!(oldHeadIndex.isPresent() || headIndex.isPresent()) || //
                     headIndex.get().info().equals(oldHeadIndex.get().info()));
 
-            if (oldHeadIndex.isPresent()) {
-                oldFeatureTypeTree = oldHeadIndex.get().indexTreeId();
-                newFeatureTypeTree = headIndex.get().indexTreeId();
-            } else {
-                oldFeatureTypeTree = oldCanonicalTreeId;
-                newFeatureTypeTree = newCanonicalTreeId;
-            }
-
             materializedIndexProperties = resolveMaterializedProperties(headIndex);
 
             PrePostFilterSplitter filterSplitter;
@@ -325,11 +363,27 @@ public class FeatureReaderBuilder {
             preFilter = filterSplitter.getPreFilter();
             postFilter = filterSplitter.getPostFilter();
 
+            // only the post filter needs to be evaluated in-process
+            requiredProperties = resolveRequiredProperties(postFilter);
+
             indexContainsAllRequiredProperties = materializedIndexProperties
                     .containsAll(requiredProperties);
 
             filterIsFullySupportedByIndex = Filter.INCLUDE.equals(postFilter);
 
+            if (oldHeadIndex.isPresent()) {
+                oldFeatureTypeTree = oldHeadIndex.get().indexTreeId();
+                Optional<ObjectId> lodTree = absent();
+                if (RevTree.EMPTY_TREE_ID.equals(oldFeatureTypeTree)
+                        && isLODSupported(preFilter, filterIsFullySupportedByIndex)) {
+                    lodTree = resolveLODTree(headIndex.get());
+                }
+                newFeatureTypeTree = lodTree.or(headIndex.get().indexTreeId());
+            } else {
+                oldFeatureTypeTree = oldCanonicalTreeId;
+                newFeatureTypeTree = newCanonicalTreeId;
+            }
+
             treeSource = headIndex.isPresent() ? repo.indexDatabase() : repo.objectDatabase();
         }
 
@@ -374,8 +428,17 @@ public class FeatureReaderBuilder {
             CoordinateReferenceSystem nativeCrs = fullSchema.getCoordinateReferenceSystem();
             features = MaterializedIndexFeatureIterator.create(resultSchema, featureRefs,
                     geometryFactory, nativeCrs);
+        } else if (isPointsFromBoundsSupported(requiredProperties, materializedIndexProperties,
+                filterIsFullySupportedByIndex, layerBounds)) {
+            resultSchema = resolveMinimalNativeSchema(requiredProperties);
+            CoordinateReferenceSystem nativeCrs = fullSchema.getCoordinateReferenceSystem();
+            features = MaterializedIndexFeatureIterator.createPointsFromBounds(resultSchema,
+                    featureRefs, geometryFactory, nativeCrs);
         } else {
-            BulkFeatureRetriever retriever = new BulkFeatureRetriever(revFeatureSource);
+            BulkFeatureRetriever retriever = new BulkFeatureRetriever(revFeatureSource)
+                    .preserveIterationOrder(shallPreserveIterationOrder())
+                    .simplificationDistance(resolveSimplificationDistance(postFilter))
+                    .simplifiedGeometryCache(SIMPLIFIED_GEOMETRY_CACHE);
             Name typeNameOverride;
             if (simpleNames(nativeSchema).equals(simpleNames(fullSchema))) {
                 resultSchema = fullSchema;
@@ -475,6 +538,69 @@ public class FeatureReaderBuilder {
         return features;
     }
 
+    /**
+     * Whether features can be served out of the {@link NodeRef}s alone, building the default
+     * geometry as a point at the center of the node bounds, with no need to fetch the
+     * {@link RevFeature}s.
+     * <p>
+     * That is the case when the layer is a point layer, the default geometry is the only property
+     * required that's not materialized in the index (if any), and the query is at a rendering
+     * resolution (i.e. a {@link #screenMap} or {@link #simplificationDistance} is provided) for
+     * which the nodes {@code float32} bounds are as good as the actual point, that is, a
+     * {@code float} ulp at the largest ordinate of the layer bounds is no bigger than the
+     * simplification distance nor than a screen map pixel.
+     */
+    private boolean isPointsFromBoundsSupported(Set<String> requiredProperties,
+            Set<String> materializedIndexProperties, boolean filterIsFullySupportedByIndex,
+            Envelope layerBounds) {
+        final GeometryDescriptor geometryDescriptor = nativeSchema.getGeometryDescriptor();
+        if (!filterIsFullySupportedByIndex || geometryDescriptor == null
+                || (screenMap == null && simplificationDistance == null)
+                || Boolean.getBoolean("geogig.ignorenodebounds")) {
+            return false;
+        }
+        final Class<?> binding = geometryDescriptor.getType().getBinding();
+        if (!Point.class.equals(binding)) {
+            return false;
+        }
+        final String geometryName = geometryDescriptor.getLocalName();
+        Set<String> missing = Sets.difference(requiredProperties, materializedIndexProperties);
+        if (missing.size() != 1 || !missing.contains(geometryName)) {
+            return false;
+        }
+        if (layerBounds.isNull()) {
+            return true;
+        }
+        final double maxOrdinate = Math.max(
+                Math.max(Math.abs(layerBounds.getMinX()), Math.abs(layerBounds.getMaxX())),
+                Math.max(Math.abs(layerBounds.getMinY()), Math.abs(layerBounds.getMaxY())));
+        final double ulp = Math.ulp((float) maxOrdinate);
+        if (simplificationDistance != null && ulp > simplificationDistance.doubleValue()) {
+            return false;
+        }
+        return screenMap == null || screenMap.canSimplify(new Envelope(0, ulp, 0, ulp));
+    }
+
+    /**
+     * @return the {@link #simplificationDistance} if geometries can be simplified, which is the
+     *         case unless the in-process filter needs to evaluate the full resolution geometry
+     */
+    private @Nullable Double resolveSimplificationDistance(Filter postFilter) {
+        final Double distance = this.simplificationDistance;
+        final GeometryDescriptor geometryDescriptor = nativeSchema.getGeometryDescriptor();
+        if (distance == null || distance.doubleValue() <= 0 || geometryDescriptor == null
+                || Boolean.getBoolean("geogig.ignoresimplification")) {
+            return null;
+        }
+        Set<String> filterAttributes = requiredAttributes(postFilter);
+        // an empty property name refers to the default geometry
+        if (filterAttributes.contains(geometryDescriptor.getLocalName())
+                || filterAttributes.contains("")) {
+            return null;
+        }
+        return distance;
+    }
+
     private SimpleFeatureType resolveMinimalNativeSchema(Set<String> requiredProperties) {
         SimpleFeatureType resultSchema;
 
@@ -527,7 +653,12 @@ public class FeatureReaderBuilder {
 
         Optional<Index>[] indexes = NO_INDEX;
         final IndexDatabase indexDatabase = repo.indexDatabase();
-        Optional<IndexInfo> indexInfo = indexDatabase.getIndexInfo(treeName, attributeName);
+        Optional<IndexInfo> indexInfo;
+        if (metadataCache == null) {
+            indexInfo = indexDatabase.getIndexInfo(treeName, attributeName);
+        } else {
+            indexInfo = metadataCache.indexInfo(repo, treeName, attributeName);
+        }
         if (indexInfo.isPresent()) {
             IndexInfo info = indexInfo.get();
             Optional<Index> oldIndex = resolveIndex(oldCanonical, info, indexDatabase);
@@ -545,7 +676,12 @@ public class FeatureReaderBuilder {
 
     private Optional<NodeRef> resolveCanonicalTree(@Nullable String head, String treeName) {
         Optional<NodeRef> treeRef = Optional.absent();
-        if (head != null) {
+        if (head != null && metadataCache != null) {
+            Optional<ObjectId> headId = metadataCache.resolveHead(repo, head);
+            if (headId.isPresent()) {
+                treeRef = metadataCache.typeTree(repo, headId.get(), treeName);
+            }
+        } else if (head != null) {
             Optional<ObjectId> rootTree = repo.command(ResolveTreeish.class).setTreeish(head)
                     .call();
             if (rootTree.isPresent()) {
@@ -562,8 +698,12 @@ public class FeatureReaderBuilder {
 
         Index index = new Index(indexInfo, RevTree.EMPTY_TREE_ID, indexDatabase);
         if (!RevTree.EMPTY_TREE_ID.equals(canonicalTreeId)) {
-            Optional<ObjectId> indexedTree = indexDatabase.resolveIndexedTree(indexInfo,
-                    canonicalTreeId);
+            Optional<ObjectId> indexedTree;
+            if (metadataCache == null) {
+                indexedTree = indexDatabase.resolveIndexedTree(indexInfo, canonicalTreeId);
+            } else {
+                indexedTree = metadataCache.indexedTree(repo, indexInfo, canonicalTreeId);
+            }
             if (indexedTree.isPresent()) {
                 index = new Index(indexInfo, indexedTree.get(), indexDatabase);
             }
@@ -571,6 +711,45 @@ public class FeatureReaderBuilder {
         return Optional.fromNullable(index);
     }
 
+    /**
+     * Whether the query can be served by an index level-of-detail tree instead of the full index
+     * tree. That is the case when rendering (i.e. a {@link ScreenMap} is provided) all the features
+     * in a single version of the feature tree, and no feature shall be filtered out other than by
+     * its bounds, since the LOD tree only contains a representative feature for each set of
+     * features fitting in a pixel.
+     */
+    private boolean isLODSupported(Filter preFilter, boolean filterIsFullySupportedByIndex) {
+        if (screenMap == null || Boolean.getBoolean("geogig.ignorescreenmap")
+                || Boolean.getBoolean("geogig.ignorelod")) {
+            return false;
+        }
+        return ChangeType.ADDED.equals(changeType) && limit == null && offset == null
+                && filterIsFullySupportedByIndex
+                && (Filter.INCLUDE.equals(preFilter) || preFilter instanceof BBOX);
+    }
+
+    /**
+     * Resolves the coarsest level-of-detail tree whose cells fit in a {@link #screenMap} pixel, if
+     * any. The cells are square and laid out on the power-of-two grid of the index max bounds, so
+     * they line up with the pixels of tile grids anchored at the max bounds, see
+     * {@link BuildLODTreesOp}.
+     */
+    private Optional<ObjectId> resolveLODTree(Index index) {
+        final int lodLevels = index.lodLevels();
+        if (lodLevels == 0) {
+            return absent();
+        }
+        final Envelope maxBounds = (Envelope) index.info().getMetadata()
+                .get(IndexInfo.MD_QUAD_MAX_BOUNDS);
+        for (int level = 0; level < lodLevels; level++) {
+            Envelope cell = BuildLODTreesOp.cellBounds(maxBounds, level);
+            if (screenMap.canSimplify(cell)) {
+                return index.lodTreeId(level);
+            }
+        }
+        return absent();
+    }
+
     private Set<String> resolveMaterializedProperties(Optional<Index> index) {
         Set<String> availableAtts = ImmutableSet.of();
         if (index.isPresent()) {
@@ -583,14 +762,15 @@ public class FeatureReaderBuilder {
     /**
      * Resolves the properties needed for the output schema, which are mandated both by the
      * properties requested by {@link #propertyNames} and any other property needed to evaluate the
-     * {@link #filter} in-process.
+     * post filter in-process. Properties only referenced by the part of the {@link #filter} that's
+     * evaluated against the tree nodes are not required.
      */
-    Set<String> resolveRequiredProperties(Filter nativeFilter) {
+    Set<String> resolveRequiredProperties(Filter postFilter) {
         if (outputSchemaPropertyNames == Query.ALL_NAMES) {
             return nativeSchemaAttributeNames;
         }
 
-        final Set<String> filterAttributes = requiredAttributes(nativeFilter);
+        final Set<String> filterAttributes = requiredAttributes(postFilter);
 
         if (outputSchemaPropertyNames.length == 0
                 /* Query.NO_NAMES */ && filterAttributes.isEmpty()) {
@@ -600,7 +780,7 @@ public class FeatureReaderBuilder {
         Set<String> requiredProps = Sets.newHashSet(outputSchemaPropertyNames);
         // if the filter is a simple BBOX filter against the default geometry attribute, don't force
         // it, we can optimize bbox filter out of Node.bounds()
-        if (!(nativeFilter instanceof BBOX)) {
+        if (!(postFilter instanceof BBOX)) {
             requiredProps.addAll(filterAttributes);
         }
         // props required to evaluate the filter in-process
@@ -633,7 +813,7 @@ public class FeatureReaderBuilder {
     private Filter resolveNativeFilter() {
         Filter nativeFilter = this.filter;
         nativeFilter = SimplifyingFilterVisitor.simplify(nativeFilter, nativeSchema);
-        nativeFilter = reprojectFilter(this.filter);
+        nativeFilter = reprojectFilter(nativeFilter);
         return nativeFilter;
     }
 
@@ -16,6 +16,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureImpl;
 import org.geotools.filter.identity.FeatureIdImpl;
@@ -29,11 +30,13 @@ import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.FeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.filter.identity.FeatureId;
 import org.opengis.geometry.BoundingBox;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 
@@ -45,6 +48,11 @@ import com.vividsolutions.jts.geom.GeometryFactory;
  * attribute values on their extra data map, this iterator is used to avoid querying the repository
  * for the actual {@link RevFeature} objects and instead built {@link SimpleFeature}s directly from
  * the data stored with the nodes.
+ * <p>
+ * Additionally, if created through {@link #createPointsFromBounds}, the output schema's geometry
+ * attributes that are not materialized in the nodes extra data are built as points at the center
+ * of the {@link Node#bounds() node bounds}, which for a point layer is the feature geometry at
+ * the nodes bounds {@code float32} precision.
  */
 class MaterializedIndexFeatureIterator implements AutoCloseableIterator<SimpleFeature> {
 
@@ -56,13 +64,16 @@ class MaterializedIndexFeatureIterator implements AutoCloseableIterator<SimpleFe
 
     private final CoordinateReferenceSystem crs;
 
+    private final boolean pointsFromBounds;
+
     private MaterializedIndexFeatureIterator(final SimpleFeatureBuilder builder,
             AutoCloseableIterator<NodeRef> nodes, GeometryFactory geometryFactory,
-            CoordinateReferenceSystem crs) {
+            CoordinateReferenceSystem crs, boolean pointsFromBounds) {
         this.featureBuilder = builder;
         this.nodes = nodes;
         this.geometryFactory = geometryFactory;
         this.crs = crs;
+        this.pointsFromBounds = pointsFromBounds;
     }
 
     public static MaterializedIndexFeatureIterator create(SimpleFeatureType outputSchema,
@@ -70,7 +81,19 @@ class MaterializedIndexFeatureIterator implements AutoCloseableIterator<SimpleFe
             CoordinateReferenceSystem crs) {
 
         SimpleFeatureBuilder builder = new SimpleFeatureBuilder(outputSchema);
-        return new MaterializedIndexFeatureIterator(builder, nodes, geometryFactory, crs);
+        return new MaterializedIndexFeatureIterator(builder, nodes, geometryFactory, crs, false);
+    }
+
+    /**
+     * Creates an iterator whose output schema geometry attributes, if not materialized, are built
+     * out of the node bounds center
+     */
+    public static MaterializedIndexFeatureIterator createPointsFromBounds(
+            SimpleFeatureType outputSchema, AutoCloseableIterator<NodeRef> nodes,
+            GeometryFactory geometryFactory, CoordinateReferenceSystem crs) {
+
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(outputSchema);
+        return new MaterializedIndexFeatureIterator(builder, nodes, geometryFactory, crs, true);
     }
 
     @Override
@@ -112,15 +135,24 @@ class MaterializedIndexFeatureIterator implements AutoCloseableIterator<SimpleFe
         } else {
             final Map<String, Object> materializedAttributes;
             materializedAttributes = IndexInfo.getMaterializedAttributes(node.getNode());
-            checkNotNull(materializedAttributes);
+            if (!pointsFromBounds) {
+                checkNotNull(materializedAttributes);
+            }
 
             featureBuilder.reset();
             for (int i = 0; i < attributeDescriptors.size(); i++) {
                 AttributeDescriptor descriptor = attributeDescriptors.get(i);
                 String localName = descriptor.getLocalName();
-                Object value = materializedAttributes.get(localName);
-                if (value instanceof Geometry) {
-                    value = geometryFactory.createGeometry((Geometry) value);
+                Object value;
+                if (pointsFromBounds && descriptor instanceof GeometryDescriptor
+                        && (materializedAttributes == null
+                                || !materializedAttributes.containsKey(localName))) {
+                    value = pointFromBounds(node.getNode());
+                } else {
+                    value = materializedAttributes.get(localName);
+                    if (value instanceof Geometry) {
+                        value = geometryFactory.createGeometry((Geometry) value);
+                    }
                 }
                 featureBuilder.set(localName, value);
             }
@@ -130,6 +162,15 @@ class MaterializedIndexFeatureIterator implements AutoCloseableIterator<SimpleFe
         return feature;
     }
 
+    private @Nullable Geometry pointFromBounds(Node node) {
+        Envelope bounds = new Envelope();
+        node.expand(bounds);
+        if (bounds.isNull()) {
+            return null;
+        }
+        return geometryFactory.createPoint(bounds.centre());
+    }
+
     /**
      * Provides SimpleFeature implementations that can still return their bounding box even if they
      * don't have a geometry attribute set, getting it from the underlying feature
@@ -0,0 +1,131 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.geotools.data;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevFeatureType;
+import org.locationtech.geogig.porcelain.index.CreateQuadTree;
+import org.locationtech.geogig.porcelain.index.DropIndexOp;
+import org.locationtech.geogig.porcelain.index.Index;
+import org.locationtech.geogig.repository.Context;
+import org.locationtech.geogig.repository.IndexInfo;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+import com.google.common.base.Optional;
+
+public class VersionedMetadataCacheTest extends RepositoryTestCase {
+
+    private VersionedMetadataCache cache;
+
+    private Context context;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        cache = new VersionedMetadataCache(repo);
+        context = repo.context();
+        insertAndAdd(points1);
+        commit("first");
+    }
+
+    private ObjectId head() {
+        Optional<ObjectId> headId = cache.resolveHead(context, Ref.HEAD);
+        assertTrue(headId.isPresent());
+        return headId.get();
+    }
+
+    @Test
+    public void testTypeTreeFollowsRefUpdates() throws Exception {
+        final ObjectId head1 = head();
+        Optional<NodeRef> tree1 = cache.typeTree(context, head1, pointsName);
+        assertTrue(tree1.isPresent());
+        assertSame(tree1, cache.typeTree(context, head1, pointsName));
+        assertFalse(cache.typeTree(context, head1, linesName).isPresent());
+
+        insertAndAdd(points2, lines1);
+        commit("second");
+
+        final ObjectId head2 = head();
+        assertFalse(head1.equals(head2));
+        Optional<NodeRef> tree2 = cache.typeTree(context, head2, pointsName);
+        assertTrue(tree2.isPresent());
+        assertFalse(tree1.get().getObjectId().equals(tree2.get().getObjectId()));
+        assertTrue(cache.typeTree(context, head2, linesName).isPresent());
+
+        // the old version is still resolvable
+        assertEquals(tree1, cache.typeTree(context, head1, pointsName));
+    }
+
+    @Test
+    public void testTypeRefs() throws Exception {
+        List<NodeRef> typeRefs = cache.typeRefs(context, head());
+        assertEquals(1, typeRefs.size());
+        assertEquals(pointsName, typeRefs.get(0).path());
+
+        insertAndAdd(lines1);
+        commit("second");
+        assertEquals(2, cache.typeRefs(context, head()).size());
+    }
+
+    @Test
+    public void testFeatureType() {
+        NodeRef typeRef = cache.typeTree(context, head(), pointsName).get();
+        RevFeatureType type = cache.featureType(context, typeRef.getMetadataId());
+        assertEquals(typeRef.getMetadataId(), type.getId());
+        assertSame(type, cache.featureType(context, typeRef.getMetadataId()));
+    }
+
+    @Test
+    public void testIndexLookupsInvalidation() {
+        assertFalse(cache.indexInfo(context, pointsName, "pp").isPresent());
+
+        // invalidated by the hook on the index commands
+        Index index = repo.command(CreateQuadTree.class).setGeometryAttributeName("pp")
+                .setTreeRefSpec(pointsName).call();
+        Optional<IndexInfo> indexInfo = cache.indexInfo(context, pointsName, "pp");
+        assertTrue(indexInfo.isPresent());
+        assertEquals(index.info(), indexInfo.get());
+
+        NodeRef typeRef = cache.typeTree(context, head(), pointsName).get();
+        Optional<ObjectId> indexedTree = cache.indexedTree(context, indexInfo.get(),
+                typeRef.getObjectId());
+        assertEquals(Optional.of(index.indexTreeId()), indexedTree);
+
+        repo.command(DropIndexOp.class).setTreeRefSpec(pointsName).setAttributeName("pp").call();
+        assertFalse(cache.indexInfo(context, pointsName, "pp").isPresent());
+    }
+
+    @Test
+    public void testIndexLookupsInvalidatedOnBranchUpdates() throws Exception {
+        repo.command(CreateQuadTree.class).setGeometryAttributeName("pp")
+                .setTreeRefSpec(pointsName).call();
+        IndexInfo indexInfo = cache.indexInfo(context, pointsName, "pp").get();
+
+        insertAndAdd(points2);
+        ObjectId stageHead = cache.resolveHead(context, Ref.STAGE_HEAD).get();
+        ObjectId stagedTree = cache.typeTree(context, stageHead, pointsName).get().getObjectId();
+        // cached negative lookup, the staged tree is not indexed yet
+        assertFalse(cache.indexedTree(context, indexInfo, stagedTree).isPresent());
+
+        commit("second");
+        // the index was updated after the branch, and the lookup is no longer cached
+        assertTrue(cache.indexedTree(context, indexInfo, stagedTree).isPresent());
+
+        // a lookup cached by another cache of the same repository is invalidated too
+        VersionedMetadataCache other = new VersionedMetadataCache(repo);
+        assertTrue(other.indexInfo(context, pointsName, "pp").isPresent());
+        repo.command(DropIndexOp.class).setTreeRefSpec(pointsName).setAttributeName("pp").call();
+        assertFalse(other.indexInfo(context, pointsName, "pp").isPresent());
+    }
+}
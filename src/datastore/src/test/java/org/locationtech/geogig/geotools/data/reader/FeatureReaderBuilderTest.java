@@ -294,6 +294,78 @@ public class FeatureReaderBuilderTest extends RepositoryTestCase {
         assertTrue(resultatts.contains("sp"));
     }
 
+    /**
+     * If the filter is fully evaluated against the tree nodes and no properties are requested,
+     * features are served from the nodes without fetching the RevFeatures
+     */
+    @Test
+    public void testNoPropertiesFilterFullySupportedServedFromNodes() {
+        FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+        Filter filter = ff.and(ff.bbox("pp", -1, -1, 20, 20, "EPSG:4326"),
+                ff.bbox("pp", 0, 0, 30, 30, "EPSG:4326"));
+        Query query = new Query();
+        query.setPropertyNames(Query.NO_NAMES);
+        query.setFilter(filter);
+
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = getReader(query);
+        assertEquals(0, reader.getFeatureType().getAttributeCount());
+        assertTrue(isServedFromNodes(reader));
+    }
+
+    @Test
+    public void testPointsFromNodeBoundsAtRenderingResolution() throws Exception {
+        Query query = new Query();
+        query.setPropertyNames(Lists.newArrayList("pp"));
+
+        builder.simplificationDistance(0.1);
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = getReader(query);
+        assertTrue(isServedFromNodes(reader));
+
+        Map<String, Geometry> expected = new HashMap<>();
+        for (Feature f : new Feature[] { points1, points2, points3 }) {
+            expected.put(f.getIdentifier().getID(),
+                    (Geometry) ((SimpleFeature) f).getDefaultGeometry());
+        }
+        int count = 0;
+        while (reader.hasNext()) {
+            SimpleFeature f = reader.next();
+            Geometry geom = (Geometry) f.getDefaultGeometry();
+            assertTrue(geom.equalsExact(expected.get(f.getID()), 1e-5));
+            count++;
+        }
+        reader.close();
+        assertEquals(3, count);
+    }
+
+    @Test
+    public void testPointsFromNodeBoundsNotUsedAtFullResolution() throws Exception {
+        Query query = new Query();
+        query.setPropertyNames(Lists.newArrayList("pp"));
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = getReader(query);
+        assertFalse(isServedFromNodes(reader));
+        reader.close();
+    }
+
+    @Test
+    public void testPointsFromNodeBoundsNotUsedBelowFloatPrecision() throws Exception {
+        Query query = new Query();
+        query.setPropertyNames(Lists.newArrayList("pp"));
+
+        // finer than a float ulp at the points ordinates
+        builder.simplificationDistance(1e-9);
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = getReader(query);
+        assertFalse(isServedFromNodes(reader));
+        reader.close();
+    }
+
+    private boolean isServedFromNodes(FeatureReader<SimpleFeatureType, SimpleFeature> reader) {
+        if (!(reader instanceof FeatureReaderAdapter)) {
+            return false;
+        }
+        Object iterator = ((FeatureReaderAdapter<?, ?>) reader).iterator;
+        return iterator instanceof MaterializedIndexFeatureIterator;
+    }
+
     @Test
     public void testIgnoreIndex() {
         createIndex();
@@ -282,10 +282,24 @@ class PGConflictsDatabase implements ConflictsDatabase {
         return new ConflictsIterator(this, namespace, treePath);
     }
 
-    List<Conflict> getBatch(@Nullable String namespace, @Nullable String treePath, int offset,
-            int limit) throws SQLException {
+    @Override
+    public List<Conflict> getByPrefix(@Nullable String namespace, @Nullable String treePath,
+            @Nullable String startAfter, int limit) {
+        try {
+            return getBatch(namespace, treePath, startAfter, limit);
+        } catch (SQLException e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * Returns the conflicts after {@code startAfter} in path order, which uses the primary key
+     * index to seek to the start of the page instead of scanning and discarding all the previous
+     * rows as an {@code OFFSET} would.
+     */
+    List<Conflict> getBatch(@Nullable String namespace, @Nullable String treePath,
+            @Nullable String startAfter, int limit) throws SQLException {
 
-        checkArgument(offset >= 0);
         checkArgument(limit > 0);
 
         final String sql;
@@ -295,21 +309,27 @@ class PGConflictsDatabase implements ConflictsDatabase {
             if (treePath != null) {
                 sb.append(" AND (path = ? OR path LIKE ?)");
             }
-            sb.append(" ORDER BY repository, namespace, path OFFSET ").append(offset)
-                    .append(" LIMIT ").append(limit);
+            if (startAfter != null) {
+                sb.append(" AND path > ?");
+            }
+            sb.append(" ORDER BY repository, namespace, path LIMIT ").append(limit);
             sql = sb.toString();
         }
 
         List<Conflict> batch = new ArrayList<>();
         try (Connection cx = PGStorage.newConnection(dataSource)) {
             try (PreparedStatement ps = cx.prepareStatement(sql)) {
-                ps.setInt(1, repositoryId);
-                ps.setString(2, namespace(namespace));
+                int param = 1;
+                ps.setInt(param++, repositoryId);
+                ps.setString(param++, namespace(namespace));
                 if (treePath != null) {
-                    ps.setString(3, treePath);
-                    ps.setString(4, treePath + "/%");
+                    ps.setString(param++, treePath);
+                    ps.setString(param++, treePath + "/%");
                 }
-                log(sql, LOG, repositoryId, namespace);
+                if (startAfter != null) {
+                    ps.setString(param++, startAfter);
+                }
+                log(sql, LOG, repositoryId, namespace, treePath, startAfter);
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
                         String path = rs.getString(1);
@@ -337,7 +357,7 @@ class PGConflictsDatabase implements ConflictsDatabase {
 
         private final int pageSize = 1000;
 
-        private int offset = 0;
+        private String lastPath;
 
         private int currentPageSize;
 
@@ -354,7 +374,9 @@ class PGConflictsDatabase implements ConflictsDatabase {
         @Override
         protected Conflict computeNext() {
             if (page.hasNext()) {
-                return page.next();
+                Conflict next = page.next();
+                lastPath = next.getPath();
+                return next;
             }
             if (currentPageSize < pageSize) {
                 return endOfData();
@@ -366,11 +388,10 @@ class PGConflictsDatabase implements ConflictsDatabase {
         private Iterator<Conflict> nextPage() {
             List<Conflict> batch;
             try {
-                batch = db.getBatch(namespace, treePath, offset, pageSize);
+                batch = db.getBatch(namespace, treePath, lastPath, pageSize);
             } catch (SQLException e) {
                 throw Throwables.propagate(e);
             }
-            this.offset += pageSize;
             this.currentPageSize = batch.size();
             return batch.iterator();
         }
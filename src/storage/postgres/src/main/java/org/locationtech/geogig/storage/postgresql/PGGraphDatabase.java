@@ -24,14 +24,17 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.repository.Hints;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 import org.locationtech.geogig.storage.ConfigDatabase;
@@ -43,7 +46,9 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 
 /**
@@ -53,6 +58,8 @@ import com.google.inject.Inject;
 public class PGGraphDatabase implements GraphDatabase {
     static Logger LOG = LoggerFactory.getLogger(PGGraphDatabase.class);
 
+    private static final int PUT_BATCH_SIZE = 10_000;
+
     private final String EDGES;
 
     private final String PROPS;
@@ -178,6 +185,91 @@ public class PGGraphDatabase implements GraphDatabase {
         return updated;
     }
 
+    /**
+     * Adds the commits in batches of {@link #PUT_BATCH_SIZE}, inserting the missing edges of each
+     * batch with a single batched statement and transaction, instead of a statement and
+     * transaction per edge.
+     * <p>
+     * If a batch fails, most likely because another process inserted one of its edges at the same
+     * time, its commits are added one by one with {@link #put}.
+     */
+    @Override
+    public List<ObjectId> putAll(Iterator<RevCommit> commits) {
+        final List<ObjectId> updated = new ArrayList<>();
+        final Iterator<List<RevCommit>> batches = Iterators.partition(commits, PUT_BATCH_SIZE);
+        try (Connection cx = PGStorage.newConnection(dataSource)) {
+            while (batches.hasNext()) {
+                List<RevCommit> batch = batches.next();
+                try {
+                    updated.addAll(putBatch(batch, cx));
+                } catch (SQLException e) {
+                    LOG.debug("Batch insert of {} commits failed, inserting them one by one",
+                            batch.size(), e);
+                    for (RevCommit commit : batch) {
+                        if (put(commit.getId(), commit.getParentIds())) {
+                            updated.add(commit.getId());
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw propagate(e);
+        }
+        return updated;
+    }
+
+    private List<ObjectId> putBatch(List<RevCommit> commits, Connection cx) throws SQLException {
+        final String insert = format("INSERT INTO %s (src, dst)"
+                + " SELECT CAST(ROW(?,?,?) AS OBJECTID), CAST(ROW(?,?,?) AS OBJECTID)"
+                + " WHERE NOT EXISTS (SELECT 1 FROM %s WHERE src = CAST(ROW(?,?,?) AS OBJECTID)"
+                + " AND dst = CAST(ROW(?,?,?) AS OBJECTID))", EDGES, EDGES);
+
+        final Set<ObjectId> updated = new LinkedHashSet<>();
+        cx.setAutoCommit(false);
+        try {
+            final List<ObjectId> statementCommits = new ArrayList<>();
+            try (PreparedStatement ps = cx.prepareStatement(insert)) {
+                for (RevCommit commit : commits) {
+                    final PGId node = PGId.valueOf(commit.getId());
+                    if (commit.getParentIds().isEmpty()) {
+                        // as in put(), a root commit is only new if nothing points to it yet
+                        if (!exists(node, cx)) {
+                            updated.add(commit.getId());
+                        }
+                        continue;
+                    }
+                    for (ObjectId parent : commit.getParentIds()) {
+                        final PGId dst = PGId.valueOf(parent);
+                        node.setArgs(ps, 1);
+                        dst.setArgs(ps, 4);
+                        node.setArgs(ps, 7);
+                        dst.setArgs(ps, 10);
+                        ps.addBatch();
+                        statementCommits.add(commit.getId());
+                    }
+                }
+                if (!statementCommits.isEmpty()) {
+                    int[] inserted = ps.executeBatch();
+                    for (int i = 0; i < inserted.length; i++) {
+                        // Statement.SUCCESS_NO_INFO means the driver can't tell whether the row
+                        // was inserted; as in PGObjectStore.notifyInserted, only actual row
+                        // counts are taken as new edges
+                        if (inserted[i] > 0) {
+                            updated.add(statementCommits.get(i));
+                        }
+                    }
+                }
+            }
+            cx.commit();
+        } catch (SQLException e) {
+            cx.rollback();
+            throw e;
+        } finally {
+            cx.setAutoCommit(true);
+        }
+        return new ArrayList<>(updated);
+    }
+
     /**
      * Relates two nodes in the graph.
      * 
@@ -279,6 +371,11 @@ public class PGGraphDatabase implements GraphDatabase {
         Queue<PGId> q = Lists.newLinkedList();
         try (Connection cx = PGStorage.newConnection(dataSource)) {
             Iterables.addAll(q, outgoing(PGId.valueOf(commitId), cx));
+            // merge commits lead to the same ancestors through different paths, visit them once
+            Set<ObjectId> visited = Sets.newHashSet();
+            for (PGId parent : q) {
+                visited.add(parent.toObjectId());
+            }
 
             List<PGId> next = Lists.newArrayList();
             while (!q.isEmpty()) {
@@ -289,8 +386,11 @@ public class PGGraphDatabase implements GraphDatabase {
                     if (parents.size() == 0) {
                         return depth;
                     }
-
-                    Iterables.addAll(next, parents);
+                    for (PGId parent : parents) {
+                        if (visited.add(parent.toObjectId())) {
+                            next.add(parent);
+                        }
+                    }
                 }
 
                 q.addAll(next);
@@ -73,6 +73,7 @@ import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ObjectInfo;
 import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.RawObject;
 import org.locationtech.geogig.storage.datastream.SerializationFactoryProxy;
 import org.locationtech.geogig.storage.postgresql.Environment.ConnectionConfig;
 import org.slf4j.Logger;
@@ -776,6 +777,21 @@ public class PGObjectStore implements ObjectStore {
             return cached;
         }
 
+        byte[] bytes = getRawIfPresent(id, type);
+        if (bytes == null) {
+            return null;
+        }
+
+        RevObject obj = encoder.read(id, bytes, 0, bytes.length);
+        sharedCache.put(obj);
+        return obj;
+    }
+
+    /**
+     * @return the encoded object as stored in the database, or {@code null} if it doesn't exist
+     */
+    @Nullable
+    private byte[] getRawIfPresent(final ObjectId id, final @Nullable RevObject.TYPE type) {
         final PGId pgid = PGId.valueOf(id);
         final String tableName = tableNameForType(type, pgid);
 
@@ -805,14 +821,58 @@ public class PGObjectStore implements ObjectStore {
         } catch (SQLException e) {
             throw propagate(e);
         }
+        return bytes;
+    }
 
-        if (bytes == null) {
-            return null;
-        }
+    @Override
+    public String getRawFormat() {
+        return SerializationFactoryProxy.FORMAT_NAME;
+    }
 
-        RevObject obj = encoder.read(id, bytes, 0, bytes.length);
-        sharedCache.put(obj);
-        return obj;
+    @Override
+    public byte[] getRaw(ObjectId id) {
+        checkNotNull(id, "argument id is null");
+        checkState(isOpen(), "db is closed");
+        config.checkRepositoryExists();
+        return getRawIfPresent(id, null);
+    }
+
+    /**
+     * Queries the objects table once per {@code postgres.getAllBatchSize} ids
+     */
+    @Override
+    public Map<ObjectId, byte[]> getAllRaw(Iterable<ObjectId> ids) {
+        checkNotNull(ids, "argument ids is null");
+        checkState(isOpen(), "db is closed");
+        config.checkRepositoryExists();
+
+        final String sql = format(
+                "SELECT ((id).h1), ((id).h2),((id).h3), encode(object,'base64') FROM %s WHERE ((id).h1) = ANY(?)",
+                objectsTable());
+
+        Map<ObjectId, byte[]> found = new HashMap<>();
+        try (Connection cx = PGStorage.newConnection(dataSource)) {
+            Base64.Decoder base64Decoder = Base64.getMimeDecoder();
+            for (List<ObjectId> partition : Iterables.partition(ids, getAllBatchSize)) {
+                final Set<ObjectId> queryIds = Sets.newHashSet(partition);
+                try (PreparedStatement ps = cx.prepareStatement(log(sql, LOG, queryIds))) {
+                    ps.setFetchSize(queryIds.size());
+                    ps.setArray(1, GetAllOp.toJDBCArray(cx, queryIds));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ObjectId id = PGId.valueOf(rs, 1).toObjectId();
+                            // the resultset may contain more due to hash1 clashes
+                            if (queryIds.contains(id)) {
+                                found.put(id, base64Decoder.decode(rs.getBytes(4)));
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw propagate(e);
+        }
+        return found;
     }
 
     private <T extends RevObject> Future<List<T>> getAll(final Collection<ObjectId> ids,
@@ -947,7 +1007,7 @@ public class PGObjectStore implements ObjectStore {
             return found;
         }
 
-        private Array toJDBCArray(Connection cx, final Collection<ObjectId> queryIds)
+        private static Array toJDBCArray(Connection cx, final Collection<ObjectId> queryIds)
                 throws SQLException {
             Array array;
             Object[] arr = new Object[queryIds.size()];
@@ -1220,7 +1280,27 @@ public class PGObjectStore implements ObjectStore {
             encoded = StreamSupport.stream(spliterator, parallel).map((obj) -> encode(obj))
                     .iterator();
         }
+        putAllEncoded(encoded, listener);
+    }
+
+    /**
+     * Inserts the already encoded objects with the same batching as
+     * {@link #putAll(Iterator, BulkOpListener)}
+     */
+    @Override
+    public void putAllRaw(final Iterator<RawObject> objects, final BulkOpListener listener) {
+        checkNotNull(objects, "objects is null");
+        checkNotNull(listener, "listener is null");
+        checkWritable();
+        config.checkRepositoryExists();
+
+        Iterator<EncodedObject> encoded = Iterators.transform(objects,
+                (raw) -> new EncodedObject(raw.id(), raw.type(), raw.data()));
+        putAllEncoded(encoded, listener);
+    }
 
+    private void putAllEncoded(final Iterator<EncodedObject> encoded,
+            final BulkOpListener listener) {
         final int maxTasks = Math.min(Runtime.getRuntime().availableProcessors(), threadPoolSize);
 
         // Insert in batches of putAllBatchSize.
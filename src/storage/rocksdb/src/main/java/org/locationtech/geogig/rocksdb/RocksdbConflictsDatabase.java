@@ -45,6 +45,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.io.ByteArrayDataOutput;
@@ -58,6 +59,8 @@ class RocksdbConflictsDatabase implements ConflictsDatabase {
 
     private static final String NULL_TX_ID = ".default";
 
+    private static final int BATCH_SIZE = 10_000;
+
     private ConcurrentMap<String/* TxID */, DBHandle> dbsByTransaction = new ConcurrentHashMap<>();
 
     RocksdbConflictsDatabase(File baseDirectory) {
@@ -210,6 +213,51 @@ class RocksdbConflictsDatabase implements ConflictsDatabase {
         return new BatchIterator(this, txId, prefixFilter);
     }
 
+    @Override
+    public List<Conflict> getByPrefix(@Nullable String txId, @Nullable String treePath,
+            @Nullable String startAfter, int limit) {
+        checkArgument(limit > 0, "limit must be > 0");
+        Optional<RocksDBReference> dbRefOpt = getDb(txId);
+        if (!dbRefOpt.isPresent()) {
+            return Collections.emptyList();
+        }
+        // keys are sorted bytewise, the tree conflict comes right before any of its children,
+        // though keys like "<treePath>-x" may be in between
+        final @Nullable byte[] treeKey = treePath == null ? null : key(treePath);
+        final @Nullable byte[] childPrefix = treePath == null ? null : key(treePath + "/");
+        final @Nullable byte[] lastKey = startAfter == null ? null : key(startAfter);
+
+        List<Conflict> page = new ArrayList<>(Math.min(limit, BATCH_SIZE));
+        ConflictSerializer serializer = new ConflictSerializer();
+        try (RocksDBReference dbRef = dbRefOpt.get();
+                RocksIterator it = dbRef.db().newIterator()) {
+            if (lastKey != null) {
+                it.seek(lastKey);
+                if (it.isValid() && Arrays.equals(lastKey, it.key())) {
+                    it.next();
+                }
+            } else if (treeKey != null) {
+                it.seek(treeKey);
+            } else {
+                it.seekToFirst();
+            }
+            while (it.isValid() && page.size() < limit) {
+                byte[] key = it.key();
+                if (!isPrefix(treeKey, key)) {
+                    break;
+                }
+                if (treeKey == null || Arrays.equals(treeKey, key)
+                        || isPrefix(childPrefix, key)) {
+                    page.add(serializer.read(it.value()));
+                }
+                it.next();
+            }
+        } catch (IOException e) {
+            throw propagate(e);
+        }
+        return page;
+    }
+
     @Override
     public long getCountByPrefix(@Nullable String txId, @Nullable String treePath) {
         Optional<RocksDBReference> dbRefOpt = getDb(txId);
@@ -300,11 +348,14 @@ class RocksdbConflictsDatabase implements ConflictsDatabase {
         }
         try (RocksDBReference dbRef = dbRefOpt.get();
                 WriteOptions writeOptions = new WriteOptions()) {
-            writeOptions.setSync(false);
-            for (String path : paths) {
-                dbRef.db().remove(writeOptions, key(path));
+            for (List<String> partition : Iterables.partition(paths, BATCH_SIZE)) {
+                try (WriteBatch batch = new WriteBatch()) {
+                    for (String path : partition) {
+                        batch.remove(key(path));
+                    }
+                    dbRef.db().write(writeOptions, batch);
+                }
             }
-            writeOptions.sync();
         } catch (RocksDBException e) {
             propagate(e);
         }
@@ -338,29 +389,39 @@ class RocksdbConflictsDatabase implements ConflictsDatabase {
             return;
         }
 
+        // rocksdb 4.x has no range deletes, so matching keys are removed in bounded batches
+        // instead of accumulating them all in memory
         final @Nullable byte[] prefix = pathPrefix == null ? null : key(pathPrefix + "/");
-        try (RocksDBReference dbRef = dbRefOpt.get(); WriteBatch batch = new WriteBatch()) {
-            if (pathPrefix != null) {
-                batch.remove(key(pathPrefix));
-            }
-            try (RocksIterator it = dbRef.db().newIterator()) {
-                if (prefix == null) {
-                    it.seekToFirst();
-                } else {
-                    it.seek(prefix);
+        try (RocksDBReference dbRef = dbRefOpt.get(); WriteOptions opts = new WriteOptions()) {
+            WriteBatch batch = new WriteBatch();
+            try {
+                if (pathPrefix != null) {
+                    batch.remove(key(pathPrefix));
                 }
-                while (it.isValid()) {
-                    byte[] key = it.key();
-                    if (isPrefix(prefix, key)) {
-                        batch.remove(key);
+                try (RocksIterator it = dbRef.db().newIterator()) {
+                    if (prefix == null) {
+                        it.seekToFirst();
                     } else {
-                        break;
+                        it.seek(prefix);
+                    }
+                    while (it.isValid()) {
+                        byte[] key = it.key();
+                        if (isPrefix(prefix, key)) {
+                            batch.remove(key);
+                        } else {
+                            break;
+                        }
+                        if (batch.count() == BATCH_SIZE) {
+                            dbRef.db().write(opts, batch);
+                            batch.close();
+                            batch = new WriteBatch();
+                        }
+                        it.next();
                     }
-                    it.next();
                 }
-            }
-            try (WriteOptions opts = new WriteOptions()) {
                 dbRef.db().write(opts, batch);
+            } finally {
+                batch.close();
             }
         } catch (RocksDBException e) {
             propagate(e);
@@ -20,14 +20,17 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.plumbing.ResolveGeogigURI;
 import org.locationtech.geogig.repository.Hints;
 import org.locationtech.geogig.repository.Platform;
@@ -51,6 +54,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.io.ByteArrayDataOutput;
 import com.google.common.io.ByteStreams;
 import com.google.inject.Inject;
@@ -59,6 +63,8 @@ public class RocksdbGraphDatabase implements GraphDatabase {
 
     private static final GraphNodeBinding BINDING = new GraphNodeBinding();
 
+    private static final int PUT_BATCH_SIZE = 10_000;
+
     private final ConfigDatabase configdb;
 
     private final File dbdir;
@@ -193,6 +199,94 @@ public class RocksdbGraphDatabase implements GraphDatabase {
         return updated;
     }
 
+    /**
+     * Adds the commits in batches of {@link #PUT_BATCH_SIZE}. The nodes of the commits of a batch
+     * and of their parents are read at once, updated in memory, and the changed ones written in a
+     * single {@link WriteBatch}, so a node shared by many commits of the batch, like the parent of
+     * several branches, is read and written only once.
+     */
+    @Override
+    public List<ObjectId> putAll(Iterator<RevCommit> commits) {
+        List<ObjectId> updated = new ArrayList<>();
+        Iterator<List<RevCommit>> batches = Iterators.partition(commits, PUT_BATCH_SIZE);
+        while (batches.hasNext()) {
+            putBatch(batches.next(), updated);
+        }
+        return updated;
+    }
+
+    private void putBatch(List<RevCommit> commits, List<ObjectId> updated) {
+        final Map<ObjectId, byte[]> keys = new HashMap<>();
+        for (RevCommit commit : commits) {
+            keys.put(commit.getId(), commit.getId().getRawValue());
+            for (ObjectId parent : commit.getParentIds()) {
+                keys.put(parent, parent.getRawValue());
+            }
+        }
+        final Map<ObjectId, NodeData> nodes = new HashMap<>();
+        try (RocksDBReference dbRef = dbhandle.getReference()) {
+            // the returned map is keyed by the same key instances
+            Map<byte[], byte[]> found = dbRef.db().multiGet(new ArrayList<>(keys.values()));
+            for (Map.Entry<ObjectId, byte[]> e : keys.entrySet()) {
+                byte[] data = found.get(e.getValue());
+                if (data != null) {
+                    nodes.put(e.getKey(), BINDING.entryToObject(data));
+                }
+            }
+        } catch (RocksDBException e) {
+            throw propagate(e);
+        }
+
+        final Set<ObjectId> changed = new HashSet<>();
+        for (RevCommit commit : commits) {
+            final ObjectId commitId = commit.getId();
+            boolean commitUpdated = false;
+            NodeData node = nodes.get(commitId);
+            if (node == null) {
+                node = new NodeData(commitId, commit.getParentIds());
+                nodes.put(commitId, node);
+                changed.add(commitId);
+                commitUpdated = true;
+            }
+            for (ObjectId parent : commit.getParentIds()) {
+                if (!node.outgoing.contains(parent)) {
+                    node.outgoing.add(parent);
+                    changed.add(commitId);
+                    commitUpdated = true;
+                }
+                NodeData parentNode = nodes.get(parent);
+                if (parentNode == null) {
+                    parentNode = new NodeData(parent);
+                    nodes.put(parent, parentNode);
+                    changed.add(parent);
+                    commitUpdated = true;
+                }
+                if (!parentNode.incoming.contains(commitId)) {
+                    parentNode.incoming.add(commitId);
+                    changed.add(parent);
+                    commitUpdated = true;
+                }
+            }
+            if (commitUpdated) {
+                updated.add(commitId);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        try (WriteBatch batch = new WriteBatch()) {
+            for (ObjectId id : changed) {
+                batch.put(id.getRawValue(), BINDING.objectToEntry(nodes.get(id)));
+            }
+            try (RocksDBReference dbRef = dbhandle.getReference();
+                    WriteOptions wo = new WriteOptions()) {
+                dbRef.db().write(wo, batch);
+            }
+        } catch (RocksDBException e) {
+            throw propagate(e);
+        }
+    }
+
     @Override
     public void map(ObjectId mapped, ObjectId original) {
         NodeData node = getNodeInternal(mapped, false);
@@ -221,6 +315,8 @@ public class RocksdbGraphDatabase implements GraphDatabase {
         Queue<ObjectId> q = Lists.newLinkedList();
         NodeData node = getNodeInternal(commitId, true);
         Iterables.addAll(q, node.outgoing);
+        // merge commits lead to the same ancestors through different paths, visit them once
+        Set<ObjectId> visited = Sets.newHashSet(node.outgoing);
 
         List<ObjectId> next = Lists.newArrayList();
         while (!q.isEmpty()) {
@@ -228,12 +324,15 @@ public class RocksdbGraphDatabase implements GraphDatabase {
             while (!q.isEmpty()) {
                 ObjectId n = q.poll();
                 NodeData parentNode = getNodeInternal(n, true);
-                List<ObjectId> parents = Lists.newArrayList(parentNode.outgoing);
+                List<ObjectId> parents = parentNode.outgoing;
                 if (parents.size() == 0) {
                     return depth;
                 }
-
-                Iterables.addAll(next, parents);
+                for (ObjectId parent : parents) {
+                    if (visited.add(parent)) {
+                        next.add(parent);
+                    }
+                }
             }
 
             q.addAll(next);
@@ -38,6 +38,7 @@ import org.locationtech.geogig.rocksdb.DBHandle.RocksDBReference;
 import org.locationtech.geogig.storage.AutoCloseableIterator;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ObjectInfo;
+import org.locationtech.geogig.storage.RawObject;
 import org.locationtech.geogig.storage.ObjectStore;
 import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV2;
 import org.locationtech.geogig.storage.datastream.LZFSerializationFactory;
@@ -396,6 +397,56 @@ public class RocksdbObjectStore extends AbstractObjectStore implements ObjectSto
         }
     }
 
+    @Override
+    public void putAllRaw(Iterator<RawObject> objects, final BulkOpListener listener) {
+        checkNotNull(objects, "objects is null");
+        checkNotNull(listener, "listener is null");
+        checkWritable();
+        checkRawAccess();
+
+        final boolean checkExists = !BulkOpListener.NOOP_LISTENER.equals(listener);
+
+        byte[] keybuff = new byte[ObjectId.NUM_BYTES];
+
+        Map<ObjectId, Integer> insertedIds = new HashMap<ObjectId, Integer>();
+        try (RocksDBReference dbRef = dbhandle.getReference();
+                WriteOptions wo = new WriteOptions()) {
+            wo.setDisableWAL(true);
+            wo.setSync(false);
+            try (ReadOptions ro = new ReadOptions()) {
+                ro.setFillCache(false);
+                ro.setVerifyChecksums(false);
+                while (objects.hasNext()) {
+                    Iterator<RawObject> partition = Iterators.limit(objects, 10_000);
+
+                    try (WriteBatch batch = new WriteBatch()) {
+                        while (partition.hasNext()) {
+                            RawObject object = partition.next();
+                            object.id().getRawValue(keybuff);
+                            final byte[] value = object.data();
+
+                            boolean exists = checkExists ? exists(ro, keybuff) : false;
+                            if (exists) {
+                                listener.found(object.id(), null);
+                            } else {
+                                batch.put(keybuff, value);
+                                insertedIds.put(object.id(), Integer.valueOf(value.length));
+                            }
+                        }
+                        dbRef.db().write(wo, batch);
+                        for (Entry<ObjectId, Integer> entry : insertedIds.entrySet()) {
+                            listener.inserted(entry.getKey(), entry.getValue());
+                        }
+                        insertedIds.clear();
+                    }
+                }
+            }
+            wo.sync();
+        } catch (RocksDBException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
     @Override
     public <T extends RevObject> AutoCloseableIterator<ObjectInfo<T>> getObjects(
             Iterator<NodeRef> refs, BulkOpListener listener, Class<T> type) {
@@ -11,23 +11,30 @@ package org.locationtech.geogig.rest.repository;
 
 import static org.locationtech.geogig.web.api.RESTUtils.getGeogig;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.plumbing.CreateDeduplicator;
 import org.locationtech.geogig.remote.BinaryPackedObjects;
+import org.locationtech.geogig.remote.HttpCompression;
 import org.locationtech.geogig.remote.ObjectFunnel;
 import org.locationtech.geogig.remote.ObjectFunnels;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.repository.impl.DeduplicationService;
 import org.locationtech.geogig.repository.impl.Deduplicator;
-import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.impl.ObjectSerializingFactory;
 import org.restlet.Context;
 import org.restlet.Finder;
 import org.restlet.data.MediaType;
@@ -39,6 +46,7 @@ import org.restlet.resource.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.io.CountingOutputStream;
 import com.google.gson.JsonArray;
@@ -86,6 +94,8 @@ public class BatchedObjectResource extends Finder {
             LOGGER.info("Serving request to send objects based on message {}", messageJson);
             final List<ObjectId> want = new ArrayList<ObjectId>();
             final List<ObjectId> have = new ArrayList<ObjectId>();
+            String resumeToken = null;
+            final List<String> formats = new ArrayList<String>();
 
             if (messageJson.isJsonObject()) {
                 final JsonObject message = messageJson.getAsJsonObject();
@@ -111,21 +121,120 @@ public class BatchedObjectResource extends Finder {
                         have.add(ObjectId.valueOf(e.getAsJsonPrimitive().getAsString()));
                     }
                 }
+                if (message.has("resume") && message.get("resume").isJsonPrimitive()) {
+                    resumeToken = message.get("resume").getAsString();
+                }
+                if (message.has("formats") && message.get("formats").isJsonArray()) {
+                    for (final JsonElement e : message.get("formats").getAsJsonArray()) {
+                        if (e.isJsonPrimitive()) {
+                            formats.add(e.getAsJsonPrimitive().getAsString());
+                        }
+                    }
+                }
+            }
+            // a token that doesn't match this request is ignored and the whole response is sent
+            final long skip = BinaryPackedObjects.resumeOffset(resumeToken, want, have);
+            if (skip > 0) {
+                LOGGER.info("Resuming transfer after {} objects", skip);
             }
 
             Request request = getRequest();
             final Repository repository = getGeogig(request).get();
+            final ObjectDatabase database = repository.objectDatabase();
+            // send the objects in the first format the client asked for that this end supports
+            final List<String> supported = BinaryPackedObjects.supportedFormats(database);
+            String format = BinaryPackedObjects.FORMAT_V1;
+            for (String requested : formats) {
+                if (supported.contains(requested)) {
+                    format = requested;
+                    break;
+                }
+            }
+            final ObjectSerializingFactory serializer = BinaryPackedObjects.serializer(format,
+                    database);
+            final MediaType mediaType = MediaType
+                    .valueOf(BinaryPackedObjects.contentType(format));
+            final boolean lz4 = FixedEncoder.acceptsLZ4(getRequest().getClientInfo());
+
+            // resumed responses are partial, and hence neither served from nor added to the cache
+            final Optional<PackCache> cache = skip > 0 ? Optional.<PackCache> absent()
+                    : PackCache.get();
+            PackCache.Key cacheKey = null;
+            if (cache.isPresent()) {
+                String location = String.valueOf(repository.getLocation());
+                cache.get().validate(location,
+                        PackCache.refsState(repository.refDatabase().getAll()));
+                cacheKey = PackCache.key(location, want, have, format, lz4);
+                Optional<PackCache.CachedPack> cached = cache.get().open(cacheKey);
+                if (cached.isPresent()) {
+                    LOGGER.info("Serving cached pack {}", cacheKey);
+                    getResponse().setEntity(new CachedPackRepresentation(cached.get(),
+                            mediaType, lz4));
+                    return;
+                }
+            }
+
             final DeduplicationService deduplicatorService = repository
                     .command(CreateDeduplicator.class).call();
             final Deduplicator deduplicator = deduplicatorService.createDeduplicator();
-            BinaryPackedObjects packer = new BinaryPackedObjects(repository.objectDatabase());
+            BinaryPackedObjects packer = new BinaryPackedObjects(database);
             Representation rep = new RevObjectBinaryRepresentation(packer, want, have,
-                    deduplicator);
+                    deduplicator, skip, serializer, mediaType, lz4, cache, cacheKey);
             Response response = getResponse();
             response.setEntity(rep);
         }
     }
 
+    /**
+     * A pack from the {@link PackCache}, transferred straight from the file to the response
+     * channel when possible, and closed once written or released
+     */
+    private static class CachedPackRepresentation extends OutputRepresentation {
+
+        private final PackCache.CachedPack pack;
+
+        public CachedPackRepresentation(PackCache.CachedPack pack, MediaType mediaType,
+                boolean lz4) {
+            super(mediaType);
+            this.pack = pack;
+            setSize(pack.size());
+            if (lz4) {
+                // the cached pack is already encoded
+                getEncodings().add(FixedEncoder.LZ4);
+            }
+        }
+
+        @Override
+        public void write(OutputStream out) throws IOException {
+            write(Channels.newChannel(out));
+        }
+
+        @Override
+        public void write(WritableByteChannel writableChannel) throws IOException {
+            try {
+                final FileChannel channel = pack.channel();
+                final long size = pack.size();
+                long position = 0;
+                while (position < size) {
+                    position += channel.transferTo(position, size - position, writableChannel);
+                }
+            } finally {
+                release();
+            }
+        }
+
+        /**
+         * Closes the pack, whether it was written or not
+         */
+        public void release() {
+            try {
+                pack.close();
+            } catch (IOException e) {
+                LOGGER.debug("Error closing cached pack", e);
+            }
+        }
+    }
+
     private static class RevObjectBinaryRepresentation extends OutputRepresentation {
         private final BinaryPackedObjects packer;
 
@@ -135,29 +244,81 @@ public class BatchedObjectResource extends Finder {
 
         private Deduplicator deduplicator;
 
+        private final long skip;
+
+        private final ObjectSerializingFactory serializer;
+
+        private final boolean lz4;
+
+        private final Optional<PackCache> cache;
+
+        private final PackCache.Key cacheKey;
+
         public RevObjectBinaryRepresentation( //
                 BinaryPackedObjects packer, //
                 List<ObjectId> want, //
                 List<ObjectId> have, //
-                Deduplicator deduplicator) //
+                Deduplicator deduplicator, //
+                long skip, //
+                ObjectSerializingFactory serializer, //
+                MediaType mediaType, //
+                boolean lz4, //
+                Optional<PackCache> cache, //
+                @Nullable PackCache.Key cacheKey) //
         {
-            super(MediaType.APPLICATION_OCTET_STREAM);
+            super(mediaType);
+            this.lz4 = lz4;
+            this.cache = cache;
+            this.cacheKey = cacheKey;
+            if (lz4) {
+                // encoded here rather than by the application's encoder
+                getEncodings().add(FixedEncoder.LZ4);
+            }
             this.packer = packer;
             this.want = want;
             this.have = have;
             this.deduplicator = deduplicator;
+            this.skip = skip;
+            this.serializer = serializer;
         }
 
         @Override
         public void write(final OutputStream out) throws IOException {
-            CountingOutputStream counting = new CountingOutputStream(out);
+            // copy the response to the cache as it's written, it's only added once complete
+            PackCache.TeeOutputStream tee = null;
+            if (cache.isPresent()) {
+                try {
+                    tee = new PackCache.TeeOutputStream(out, cache.get().newPack(cacheKey));
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to cache pack {}", cacheKey, e);
+                }
+            }
+            CountingOutputStream counting = new CountingOutputStream(tee == null ? out : tee);
             OutputStream output = counting;
+            if (lz4) {
+                // the response stream is closed by restlet, closing the funnel only finishes the
+                // compressed stream
+                output = HttpCompression.LZ4.encode(new FilterOutputStream(counting) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                });
+            }
             try {
                 ObjectFunnel funnel;
-                funnel = ObjectFunnels.newFunnel(output, DataStreamSerializationFactoryV1.INSTANCE);
-                packer.write(funnel, want, have, false, deduplicator);
+                funnel = ObjectFunnels.newFunnel(output, serializer);
+                packer.write(funnel, want, have, false, deduplicator, skip);
                 counting.flush();
                 funnel.close();
+                if (tee != null) {
+                    tee.commit();
+                }
             } catch (IOException e) {
                 e.printStackTrace();
                 throw e;
@@ -166,6 +327,9 @@ public class BatchedObjectResource extends Finder {
                 throw e;
             } finally {
                 deduplicator.release();
+                if (tee != null) {
+                    tee.discard();
+                }
             }
         }
     }
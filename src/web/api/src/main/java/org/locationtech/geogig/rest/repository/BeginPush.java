@@ -9,10 +9,15 @@
  */
 package org.locationtech.geogig.rest.repository;
 
+import static org.locationtech.geogig.web.api.RESTUtils.getGeogig;
+
 import java.io.IOException;
 import java.io.Writer;
 import java.util.List;
 
+import org.locationtech.geogig.remote.BinaryPackedObjects;
+import org.locationtech.geogig.remote.HttpCompression;
+import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.rest.WriterRepresentation;
 import org.restlet.Context;
 import org.restlet.data.ClientInfo;
@@ -23,6 +28,8 @@ import org.restlet.data.Response;
 import org.restlet.resource.Resource;
 import org.restlet.resource.Variant;
 
+import com.google.common.base.Joiner;
+
 /**
  *
  */
@@ -52,8 +59,18 @@ public class BeginPush extends Resource {
             // e.g.: ext.ern.al.IP.int.ern.al.IP
             String ipAddress = info.getAddress() + "." + options.getFirstValue("internalIp", "");
             PushManager pushManager = PushManager.get();
-            pushManager.connectionBegin(ipAddress);
-            w.write("Push began for address: " + ipAddress);
+            final String pushId = pushManager.connectionBegin(ipAddress);
+            w.write("Push began for address: " + ipAddress + "\n");
+            // objects sent under the push id are staged until the push ends
+            w.write(BinaryPackedObjects.PUSH_ID_PREFIX + pushId + "\n");
+            // advertise the formats objects can be sent in, older clients just ignore it
+            Repository repository = getGeogig(getRequest()).get();
+            w.write(BinaryPackedObjects.SENDOBJECT_FORMATS_PREFIX + Joiner.on(',')
+                    .join(BinaryPackedObjects.supportedFormats(repository.objectDatabase()))
+                    + "\n");
+            w.write(BinaryPackedObjects.SENDOBJECT_ENCODINGS_PREFIX
+                    + HttpCompression.LZ4.contentEncoding() + ","
+                    + HttpCompression.GZIP.contentEncoding());
             w.flush();
         }
     }
@@ -77,18 +77,21 @@ public class EndPush extends Resource {
                         .valueOf(options.getFirstValue("objectId", ObjectId.NULL.toString()));
                 final ObjectId originalRefValue = ObjectId.valueOf(
                         options.getFirstValue("originalRefValue", ObjectId.NULL.toString()));
+                // absent if the objects were sent without staging them
+                final String pushId = options.getFirstValue("pushId", null);
 
                 Optional<Ref> currentRef = geogig.command(RefParse.class).setName(refspec).call();
                 ObjectId currentRefId = currentRef.isPresent() ? currentRef.get().getObjectId()
                         : ObjectId.NULL;
                 if (!currentRefId.isNull() && !currentRefId.equals(originalRefValue)) {
                     // Abort push
+                    PushManager.get().connectionAborted(ipAddress, pushId);
                     w.write("Push aborted for address: " + ipAddress
                             + ". The ref was changed during push.");
                     w.flush();
                 } else {
                     PushManager pushManager = PushManager.get();
-                    pushManager.connectionSucceeded(geogig, ipAddress, refspec, oid);
+                    pushManager.connectionSucceeded(geogig, ipAddress, refspec, oid, pushId);
                     w.write("Push succeeded for address: " + ipAddress);
                     w.flush();
                 }
@@ -21,8 +21,10 @@ import java.util.Set;
 
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.porcelain.DiffOp;
 import org.locationtech.geogig.remote.BinaryPackedChanges;
+import org.locationtech.geogig.remote.BinaryPackedSparseCommits;
 import org.locationtech.geogig.remote.FilteredDiffIterator;
 import org.locationtech.geogig.repository.DiffEntry;
 import org.locationtech.geogig.repository.Repository;
@@ -57,6 +59,45 @@ public class FilteredChangesResource extends Finder {
         return new ChangesResource(getContext(), request, response);
     }
 
+    /**
+     * Parses the {@link RepositoryFilter} of a sparse clone from the {@code filter} array of a
+     * request message, as sent by the {@code HttpMappedRemoteRepo}.
+     * 
+     * @param message the request message
+     * @return the filter, with no filters added if the message has none
+     */
+    static RepositoryFilter parseFilter(JsonObject message) {
+        RepositoryFilter filter = new RepositoryFilter();
+        if (message.has("filter") && message.get("filter").isJsonArray()) {
+            JsonArray filterArray = message.get("filter").getAsJsonArray();
+            for (final JsonElement e : filterArray) {
+                if (e.isJsonObject()) {
+                    JsonObject filterObject = e.getAsJsonObject();
+                    String featureType = null;
+                    String filterType = null;
+                    String filterText = null;
+                    if (filterObject.has("featurepath")
+                            && filterObject.get("featurepath").isJsonPrimitive()) {
+                        featureType = filterObject.get("featurepath").getAsJsonPrimitive()
+                                .getAsString();
+                    }
+                    if (filterObject.has("type") && filterObject.get("type").isJsonPrimitive()) {
+                        filterType = filterObject.get("type").getAsJsonPrimitive().getAsString();
+                    }
+                    if (filterObject.has("filter")
+                            && filterObject.get("filter").isJsonPrimitive()) {
+                        filterText = filterObject.get("filter").getAsJsonPrimitive()
+                                .getAsString();
+                    }
+                    if (featureType != null && filterType != null && filterText != null) {
+                        filter.addFilter(featureType, filterType, filterText);
+                    }
+                }
+            }
+        }
+        return filter;
+    }
+
     private static class ChangesResource extends Resource {
         public ChangesResource(//
                 Context context, //
@@ -111,37 +152,7 @@ public class FilteredChangesResource extends Finder {
                         }
                     }
 
-                    if (message.has("filter") && message.get("filter").isJsonArray()) {
-                        JsonArray filterArray = message.get("filter").getAsJsonArray();
-                        for (final JsonElement e : filterArray) {
-                            if (e.isJsonObject()) {
-                                JsonObject filterObject = e.getAsJsonObject();
-                                String featureType = null;
-                                String filterType = null;
-                                String filterText = null;
-                                if (filterObject.has("featurepath")
-                                        && filterObject.get("featurepath").isJsonPrimitive()) {
-                                    featureType = filterObject.get("featurepath")
-                                            .getAsJsonPrimitive().getAsString();
-                                }
-                                if (filterObject.has("type")
-                                        && filterObject.get("type").isJsonPrimitive()) {
-                                    filterType = filterObject.get("type").getAsJsonPrimitive()
-                                            .getAsString();
-                                }
-                                if (filterObject.has("filter")
-                                        && filterObject.get("filter").isJsonPrimitive()) {
-                                    filterText = filterObject.get("filter").getAsJsonPrimitive()
-                                            .getAsString();
-                                }
-                                if (featureType != null && filterType != null
-                                        && filterText != null) {
-                                    filter.addFilter(featureType, filterType, filterText);
-                                }
-                            }
-                        }
-
-                    }
+                    filter = parseFilter(message);
                 }
 
                 final Repository repository = getGeogig(getRequest()).get();
@@ -153,16 +164,23 @@ public class FilteredChangesResource extends Finder {
                     parent = commit.getParentIds().get(0);
                 }
 
-                AutoCloseableIterator<DiffEntry> changes = repository.command(DiffOp.class)
-                        .setNewVersion(commit.getId()).setOldVersion(parent).setReportTrees(true)
-                        .call();
-                FilteredDiffIterator filteredChanges = new FilteredDiffIterator(changes, repository,
-                        filter) {
-                    @Override
-                    protected boolean trackingObject(ObjectId objectId) {
-                        return tracked.contains(objectId);
-                    }
-                };
+                final FilteredDiffIterator filteredChanges;
+                if (filter.hasBoundsFilters()) {
+                    ObjectId parentTree = parent.isNull() ? RevTree.EMPTY_TREE_ID
+                            : repository.getCommit(parent).getTreeId();
+                    filteredChanges = BinaryPackedSparseCommits.filteredChanges(repository,
+                            parentTree, commit.getTreeId(), filter, tracked);
+                } else {
+                    AutoCloseableIterator<DiffEntry> changes = repository.command(DiffOp.class)
+                            .setNewVersion(commit.getId()).setOldVersion(parent)
+                            .setReportTrees(true).call();
+                    filteredChanges = new FilteredDiffIterator(changes, repository, filter) {
+                        @Override
+                        protected boolean trackingObject(ObjectId objectId) {
+                            return tracked.contains(objectId);
+                        }
+                    };
+                }
 
                 getResponse().setEntity(new FilteredDiffIteratorRepresentation(
                         new BinaryPackedChanges(repository), filteredChanges));
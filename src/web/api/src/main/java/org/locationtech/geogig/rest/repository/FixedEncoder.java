@@ -14,9 +14,11 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.channels.WritableByteChannel;
 
+import org.locationtech.geogig.remote.HttpCompression;
 import org.restlet.Context;
 import org.restlet.data.ClientInfo;
 import org.restlet.data.Encoding;
+import org.restlet.data.Preference;
 import org.restlet.resource.Representation;
 import org.restlet.util.ByteUtils;
 
@@ -38,13 +40,35 @@ import com.noelios.restlet.application.Encoder;
  */
 public class FixedEncoder extends Encoder {
 
+    /**
+     * The {@link HttpCompression#LZ4 LZ4} encoding, not supported by restlet, and hence applied by
+     * the resources that support it themselves
+     */
+    public static final Encoding LZ4 = Encoding.valueOf(HttpCompression.LZ4.contentEncoding());
+
     public FixedEncoder(Context context) {
         super(context);
     }
 
+    /**
+     * @return whether the client accepts the {@link #LZ4} encoding
+     */
+    public static boolean acceptsLZ4(ClientInfo client) {
+        for (Preference<Encoding> accepted : client.getAcceptedEncodings()) {
+            if (LZ4.equals(accepted.getMetadata()) && accepted.getQuality() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public Representation encode(ClientInfo client, Representation representation) {
         Representation result = representation;
+        if (isEncoded(representation)) {
+            // already encoded by the resource
+            return result;
+        }
         Encoding bestEncoding = getBestEncoding(client);
 
         if (bestEncoding != null && !Encoding.IDENTITY.equals(bestEncoding)) {
@@ -54,6 +78,15 @@ public class FixedEncoder extends Encoder {
         return result;
     }
 
+    private static boolean isEncoded(Representation representation) {
+        for (Encoding encoding : representation.getEncodings()) {
+            if (!Encoding.IDENTITY.equals(encoding)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static final class FixedEncoderRepresentation extends EncodeRepresentation {
 
         public FixedEncoderRepresentation(Encoding encoding, Representation wrappedRepresentation) {
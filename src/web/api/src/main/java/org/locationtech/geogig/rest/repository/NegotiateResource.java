@@ -0,0 +1,110 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.rest.repository;
+
+import static org.locationtech.geogig.web.api.RESTUtils.getGeogig;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.rest.RestletException;
+import org.locationtech.geogig.rest.WriterRepresentation;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.restlet.data.MediaType;
+import org.restlet.data.Request;
+import org.restlet.data.Status;
+import org.restlet.resource.Representation;
+import org.restlet.resource.Resource;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+
+/**
+ * Batched counterpart of {@link ObjectExistsResource}, used by clients to find out the commits
+ * both ends have in common in a few round trips instead of querying one commit at a time.
+ * <p>
+ * The request body is a list of candidate object ids, one per line, and the response contains the
+ * ones that exist in this repository, one per line.
+ */
+public class NegotiateResource extends Resource {
+
+    static final int MAX_CANDIDATES = 10_000;
+
+    @Override
+    public boolean allowPost() {
+        return true;
+    }
+
+    @Override
+    public void post(Representation entity) {
+        final Request request = getRequest();
+        final Optional<Repository> geogig = getGeogig(request);
+        if (!geogig.isPresent() || !geogig.get().isOpen()) {
+            throw new RestletException("Repository not found.", Status.CLIENT_ERROR_NOT_FOUND);
+        }
+
+        final List<ObjectId> candidates = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(entity.getStream(), Charsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (candidates.size() == MAX_CANDIDATES) {
+                    throw new RestletException(
+                            "Too many candidates, at most " + MAX_CANDIDATES + " are allowed.",
+                            Status.CLIENT_ERROR_BAD_REQUEST);
+                }
+                candidates.add(ObjectId.valueOf(line));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new RestletException("Invalid object id: " + e.getMessage(),
+                    Status.CLIENT_ERROR_BAD_REQUEST);
+        } catch (IOException e) {
+            throw new RestletException(e.getMessage(), Status.SERVER_ERROR_INTERNAL, e);
+        }
+
+        final ObjectDatabase objects = geogig.get().objectDatabase();
+        final List<ObjectId> common = new ArrayList<>();
+        for (ObjectId id : candidates) {
+            if (objects.exists(id)) {
+                common.add(id);
+            }
+        }
+        getResponse().setEntity(new CommonObjectsRepresentation(common));
+    }
+
+    private static class CommonObjectsRepresentation extends WriterRepresentation {
+
+        private final List<ObjectId> common;
+
+        public CommonObjectsRepresentation(List<ObjectId> common) {
+            super(MediaType.TEXT_PLAIN);
+            this.common = common;
+        }
+
+        @Override
+        public void write(Writer w) throws IOException {
+            for (ObjectId id : common) {
+                w.write(id.toString());
+                w.write('\n');
+            }
+            w.flush();
+        }
+    }
+}
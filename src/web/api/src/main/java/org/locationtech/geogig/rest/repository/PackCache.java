@@ -0,0 +1,535 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.rest.repository;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * A disk cache of the packs generated by the {@link BatchedObjectResource}, so that identical
+ * clone and fetch requests, like the ones of many clients cloning the same branch, are served by
+ * transferring a file instead of walking the history and serializing the objects again.
+ * <p>
+ * Packs are keyed by the repository, the want and have sets, the serialization format, and
+ * whether the pack is compressed. The cache is bounded by the total size of the packs, evicting
+ * the least recently used ones. Although the contents of a pack never change for a given key, all
+ * the packs of a repository are dropped when any of its refs moves, as they're unlikely to be
+ * requested again, and the objects they hold may no longer be reachable in the repository.
+ * Packs are {@link #open(Key) opened} while holding the cache lock, and the files of the ones
+ * evicted while being served are only deleted once {@link CachedPack#close() closed}, or an hour
+ * after being evicted if a reader is never closed (e.g. when the response is never written).
+ * <p>
+ * The {@link #get() shared cache} is configured through the
+ * {@code org.locationtech.geogig.web.packcache.dir} and
+ * {@code org.locationtech.geogig.web.packcache.maxsize} system properties, the latter in bytes,
+ * where a size of zero disables the cache. Packs left over by a previous run are deleted.
+ */
+class PackCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PackCache.class);
+
+    static final String DIR_PROPERTY = "org.locationtech.geogig.web.packcache.dir";
+
+    static final String MAXSIZE_PROPERTY = "org.locationtech.geogig.web.packcache.maxsize";
+
+    private static final long DEFAULT_MAXSIZE = 1024L * 1024 * 1024;
+
+    private static final String SUFFIX = ".pack";
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final long DEFAULT_READER_TIMEOUT_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static PackCache INSTANCE;
+
+    private final File directory;
+
+    private final long maxSize;
+
+    /**
+     * The cached packs in least recently used order
+     */
+    private final LinkedHashMap<HashCode, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The state of the refs of each repository at the time its packs were cached
+     */
+    private final Map<String, HashCode> refsStates = new TreeMap<>();
+
+    /**
+     * The evicted packs whose files are still open
+     */
+    private final List<Entry> evicted = new ArrayList<>();
+
+    private final long readerTimeoutMillis;
+
+    private long size;
+
+    private static class Entry {
+
+        final String repository;
+
+        final File file;
+
+        final long length;
+
+        /**
+         * The number of {@link CachedPack open} readers of the file
+         */
+        int readers;
+
+        /**
+         * When the pack was evicted, or zero if it's still cached
+         */
+        long evictedAt;
+
+        Entry(String repository, File file, long length) {
+            this.repository = repository;
+            this.file = file;
+            this.length = length;
+        }
+    }
+
+    /**
+     * An open cached pack, whose file isn't deleted until it's closed
+     */
+    class CachedPack implements Closeable {
+
+        private final Entry entry;
+
+        private final FileChannel channel;
+
+        private boolean closed;
+
+        CachedPack(Entry entry, FileChannel channel) {
+            this.entry = entry;
+            this.channel = channel;
+        }
+
+        public FileChannel channel() {
+            return channel;
+        }
+
+        /**
+         * @return the size of the pack, in bytes
+         */
+        public long size() {
+            return entry.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (PackCache.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                entry.readers--;
+                if (entry.evictedAt > 0 && entry.readers == 0) {
+                    evicted.remove(entry);
+                    entry.file.delete();
+                }
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * Identifies a pack of a repository
+     */
+    static class Key {
+
+        final String repository;
+
+        final HashCode hash;
+
+        Key(String repository, HashCode hash) {
+            this.repository = repository;
+            this.hash = hash;
+        }
+
+        @Override
+        public String toString() {
+            return hash.toString();
+        }
+    }
+
+    /**
+     * @param directory the directory to store the packs in, created if it doesn't exist
+     * @param maxSize the maximum total size of the cached packs, in bytes
+     */
+    PackCache(File directory, long maxSize) {
+        this(directory, maxSize, DEFAULT_READER_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param readerTimeoutMillis how long to keep the file of an evicted pack that's still open
+     */
+    PackCache(File directory, long maxSize, long readerTimeoutMillis) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.readerTimeoutMillis = readerTimeoutMillis;
+        directory.mkdirs();
+        File[] leftovers = directory.listFiles();
+        if (leftovers != null) {
+            for (File f : leftovers) {
+                if (f.getName().endsWith(SUFFIX) || f.getName().endsWith(TMP_SUFFIX)) {
+                    f.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the cache shared by all the repositories served, or {@code absent} if it's disabled
+     */
+    static synchronized Optional<PackCache> get() {
+        if (INSTANCE == null) {
+            long maxSize = DEFAULT_MAXSIZE;
+            String configuredSize = System.getProperty(MAXSIZE_PROPERTY);
+            if (configuredSize != null) {
+                try {
+                    maxSize = Long.parseLong(configuredSize.trim());
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("Invalid {}: {}, using {}", MAXSIZE_PROPERTY, configuredSize,
+                            DEFAULT_MAXSIZE);
+                }
+            }
+            if (maxSize <= 0) {
+                return Optional.absent();
+            }
+            String dir = System.getProperty(DIR_PROPERTY);
+            File directory = dir == null
+                    ? new File(System.getProperty("java.io.tmpdir"), "geogig-pack-cache")
+                    : new File(dir);
+            INSTANCE = new PackCache(directory, maxSize);
+        }
+        return Optional.of(INSTANCE);
+    }
+
+    /**
+     * @return the key of the pack of the objects reachable from {@code want} and not from
+     *         {@code have}, in the given format
+     */
+    static Key key(String repository, List<ObjectId> want, List<ObjectId> have, String format,
+            boolean compressed) {
+        Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putString(repository, StandardCharsets.UTF_8);
+        hasher.putString(format, StandardCharsets.UTF_8);
+        hasher.putBoolean(compressed);
+        putSorted(hasher.putInt(want.size()), want);
+        putSorted(hasher.putInt(have.size()), have);
+        return new Key(repository, hasher.hash());
+    }
+
+    private static void putSorted(Hasher hasher, List<ObjectId> ids) {
+        List<ObjectId> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        for (ObjectId id : sorted) {
+            hasher.putBytes(id.getRawValue());
+        }
+    }
+
+    /**
+     * @param refs the names and values of all the refs of a repository
+     * @return a hash that changes whenever any ref changes
+     */
+    static HashCode refsState(Map<String, String> refs) {
+        Hasher hasher = Hashing.sha1().newHasher();
+        for (Map.Entry<String, String> ref : new TreeMap<>(refs).entrySet()) {
+            hasher.putString(ref.getKey(), StandardCharsets.UTF_8).putByte((byte) 0);
+            hasher.putString(String.valueOf(ref.getValue()), StandardCharsets.UTF_8)
+                    .putByte((byte) 0);
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * Drops the packs of the repository if its refs changed since they were cached.
+     *
+     * @param repository the repository
+     * @param refsState the current {@link #refsState state} of its refs
+     */
+    synchronized void validate(String repository, HashCode refsState) {
+        deleteAbandoned();
+        HashCode cachedState = refsStates.put(repository, refsState);
+        if (cachedState != null && !cachedState.equals(refsState)) {
+            Iterator<Entry> it = entries.values().iterator();
+            int dropped = 0;
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.repository.equals(repository)) {
+                    it.remove();
+                    delete(entry);
+                    dropped++;
+                }
+            }
+            LOGGER.debug("Refs of {} changed, dropped {} cached packs", repository, dropped);
+        }
+    }
+
+    /**
+     * Opens a cached pack, which must be {@link CachedPack#close() closed} once read.
+     *
+     * @return the open pack, or {@code absent} if it's not cached
+     */
+    synchronized Optional<CachedPack> open(Key key) {
+        Entry entry = entries.get(key.hash);
+        if (entry == null) {
+            return Optional.absent();
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(entry.file.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            LOGGER.warn("Error opening cached pack {}, dropping it", entry.file, e);
+            entries.remove(key.hash);
+            delete(entry);
+            return Optional.absent();
+        }
+        entry.readers++;
+        return Optional.of(new CachedPack(entry, channel));
+    }
+
+    /**
+     * @return the number of bytes used by the cached packs
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Returns a stream to write a pack to, that's added to the cache once {@link PackWriter#commit()
+     * committed}. Packs bigger than the cache size are not cached.
+     */
+    PackWriter newPack(Key key) throws IOException {
+        File tmp = File.createTempFile(key.toString(), TMP_SUFFIX, directory);
+        return new PackWriter(key, tmp);
+    }
+
+    private synchronized void add(Key key, File tmp) throws IOException {
+        final long length = tmp.length();
+        if (length > maxSize) {
+            tmp.delete();
+            return;
+        }
+        if (entries.get(key.hash) != null) {
+            // cached concurrently, with the same contents
+            tmp.delete();
+            return;
+        }
+        // named after the temporary file, as the file of an evicted pack with the same key may
+        // still be being served
+        String name = tmp.getName();
+        File file = new File(directory,
+                name.substring(0, name.length() - TMP_SUFFIX.length()) + SUFFIX);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        entries.put(key.hash, new Entry(key.repository, file, length));
+        size += length;
+
+        Iterator<Entry> lru = entries.values().iterator();
+        while (size > maxSize && lru.hasNext()) {
+            Entry eldest = lru.next();
+            lru.remove();
+            delete(eldest);
+        }
+        deleteAbandoned();
+    }
+
+    private void delete(Entry entry) {
+        size -= entry.length;
+        entry.evictedAt = System.currentTimeMillis();
+        if (entry.readers == 0) {
+            entry.file.delete();
+        } else {
+            evicted.add(entry);
+        }
+    }
+
+    /**
+     * Deletes the files of the evicted packs whose readers were never closed
+     */
+    private void deleteAbandoned() {
+        final long expired = System.currentTimeMillis() - readerTimeoutMillis;
+        for (Iterator<Entry> it = evicted.iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (entry.evictedAt <= expired) {
+                LOGGER.debug("Deleting cached pack {}, evicted while being served", entry.file);
+                it.remove();
+                entry.file.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes a pack to a temporary file, to be either {@link #commit() added} to the cache or
+     * {@link #discard() discarded}
+     */
+    class PackWriter extends FilterOutputStream {
+
+        private final Key key;
+
+        private final File tmp;
+
+        private boolean closed;
+
+        private long written;
+
+        PackWriter(Key key, File tmp) throws IOException {
+            super(new FileOutputStream(tmp));
+            this.key = key;
+            this.tmp = tmp;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            written += len;
+            if (written > maxSize) {
+                throw new IOException("Pack exceeds the cache size");
+            }
+            out.write(b, off, len);
+        }
+
+        /**
+         * Adds the written pack to the cache
+         */
+        public void commit() throws IOException {
+            closeFile();
+            add(key, tmp);
+        }
+
+        /**
+         * Deletes the written pack, if it wasn't committed
+         */
+        public void discard() {
+            try {
+                closeFile();
+            } catch (IOException e) {
+                LOGGER.debug("Error closing {}", tmp, e);
+            }
+            tmp.delete();
+        }
+
+        private void closeFile() throws IOException {
+            if (!closed) {
+                closed = true;
+                out.close();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeFile();
+        }
+    }
+
+    /**
+     * An output stream that copies what's written to it to a {@link PackWriter}, which stops being
+     * written to, and is discarded, if it fails
+     */
+    static class TeeOutputStream extends FilterOutputStream {
+
+        private @Nullable PackWriter copy;
+
+        TeeOutputStream(OutputStream out, PackWriter copy) {
+            super(out);
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                try {
+                    copy.write(b);
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                try {
+                    copy.write(b, off, len);
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+        }
+
+        private void failed(IOException e) {
+            LOGGER.warn("Error caching pack, it won't be cached", e);
+            copy.discard();
+            copy = null;
+        }
+
+        /**
+         * Adds the copy to the cache, once the whole pack was written
+         */
+        public void commit() throws IOException {
+            if (copy != null) {
+                PackWriter committed = copy;
+                copy = null;
+                committed.commit();
+            }
+        }
+
+        /**
+         * Discards the copy, if it wasn't committed
+         */
+        public void discard() {
+            if (copy != null) {
+                copy.discard();
+                copy = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the wrapped stream is owned by the caller
+            flush();
+        }
+    }
+}
@@ -11,9 +11,18 @@ package org.locationtech.geogig.rest.repository;
 
 import static com.google.common.base.Preconditions.checkState;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.Nullable;
 
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.Ref;
@@ -35,17 +44,38 @@ import com.google.common.base.Throwables;
  * that have pushed contents to this repository. If every object is successfully transfered, a
  * message will be sent to the PushManager to update the local references as indicated by the
  * remote.
+ * <p>
+ * Each push is given an id, under which the objects it sends are {@link StagedPush staged} until
+ * it ends, when they're stored in the repository right before updating its references. Staged
+ * pushes are only tracked by their id, as clients behind the same address may push concurrently.
+ * The objects of pushes that are aborted, or abandoned for longer than an hour, are discarded. The
+ * staged objects are kept in the directory given by the
+ * {@code org.locationtech.geogig.web.pushstaging.dir} system property, or in the temporary
+ * directory if it's not set.
  */
 public class PushManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PushManager.class);
 
+    static final String STAGING_DIR_PROPERTY = "org.locationtech.geogig.web.pushstaging.dir";
+
+    private static final long STAGING_TIMEOUT_MILLIS = TimeUnit.HOURS.toMillis(1);
+
     private Set<String> incomingIPs;
 
+    private final Map<String, StagedPush> stagedPushes;
+
+    private final File stagingDirectory;
+
     private static PushManager instance = new PushManager();
 
     private PushManager() {
         incomingIPs = Collections.synchronizedSet(new HashSet<String>());
+        stagedPushes = new ConcurrentHashMap<>();
+        String dir = System.getProperty(STAGING_DIR_PROPERTY);
+        stagingDirectory = dir == null
+                ? new File(System.getProperty("java.io.tmpdir"), "geogig-push-staging")
+                : new File(dir);
     }
 
     /**
@@ -59,8 +89,9 @@ public class PushManager {
      * Begins tracking incoming objects from the specified ip address.
      * 
      * @param ipAddress the remote machine that is pushing objects
+     * @return the id of the push, under which the objects it sends are staged
      */
-    public void connectionBegin(String ipAddress) {
+    public String connectionBegin(String ipAddress) {
         if (incomingIPs.contains(ipAddress)) {
             incomingIPs.remove(ipAddress);
         }
@@ -68,6 +99,45 @@ public class PushManager {
             // Fail?
         }
         incomingIPs.add(ipAddress);
+
+        final long expired = System.currentTimeMillis() - STAGING_TIMEOUT_MILLIS;
+        for (Iterator<StagedPush> it = stagedPushes.values().iterator(); it.hasNext();) {
+            StagedPush push = it.next();
+            if (push.idleSince(expired)) {
+                LOGGER.info("Discarding objects of abandoned push {}", push);
+                it.remove();
+                push.discard();
+            }
+        }
+        final String pushId = UUID.randomUUID().toString();
+        stagedPushes.put(pushId,
+                new StagedPush(pushId, ipAddress, new File(stagingDirectory, pushId)));
+        return pushId;
+    }
+
+    /**
+     * @param pushId the id of a push that {@link #connectionBegin began} and didn't end yet
+     * @return the push the objects sent under {@code pushId} are staged to, or {@code absent} if
+     *         there's no such push
+     */
+    Optional<StagedPush> stagedPush(String pushId) {
+        return Optional.fromNullable(stagedPushes.get(pushId));
+    }
+
+    /**
+     * Ends a push without updating any ref, discarding the objects it sent.
+     * 
+     * @param ipAddress the remote machine that is pushing objects
+     * @param pushId the id of the push, or {@code null} if the remote doesn't stage its objects
+     */
+    public void connectionAborted(final String ipAddress, @Nullable final String pushId) {
+        incomingIPs.remove(ipAddress);
+        if (pushId != null) {
+            StagedPush push = stagedPushes.remove(pushId);
+            if (push != null) {
+                push.discard();
+            }
+        }
     }
 
     /**
@@ -81,9 +151,38 @@ public class PushManager {
      */
     public void connectionSucceeded(final Repository geogig, final String ipAddress,
             final String refspec, final ObjectId newCommit) {
+        connectionSucceeded(geogig, ipAddress, refspec, newCommit, null);
+    }
+
+    /**
+     * Same as {@link #connectionSucceeded(Repository, String, String, ObjectId)}, but first stores
+     * the objects staged under {@code pushId} in the repository. If storing them fails, they're
+     * discarded and no ref is updated.
+     * 
+     * @param pushId the id of the push, or {@code null} if the remote sent its objects without
+     *        staging them
+     */
+    public void connectionSucceeded(final Repository geogig, final String ipAddress,
+            final String refspec, final ObjectId newCommit, @Nullable final String pushId) {
 
-        if (!incomingIPs.remove(ipAddress)) {// remove and check for existence in one shot
-            throw new RuntimeException("Tried to end a connection that didn't exist.");
+        final boolean began = incomingIPs.remove(ipAddress);
+        if (pushId == null) {
+            if (!began) {
+                throw new RuntimeException("Tried to end a connection that didn't exist.");
+            }
+        } else {
+            // the address may be shared by other clients pushing, the id identifies this push
+            StagedPush push = stagedPushes.remove(pushId);
+            if (push == null) {
+                throw new IllegalStateException(
+                        "Push " + pushId + " doesn't exist or expired, its objects were discarded");
+            }
+            try {
+                push.merge(geogig.objectDatabase());
+            } catch (IOException | RuntimeException e) {
+                push.discard();
+                throw Throwables.propagate(e);
+            }
         }
 
         // Do not use the geogig instance after this, but the tx one!
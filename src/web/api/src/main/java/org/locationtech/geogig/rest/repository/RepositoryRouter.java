@@ -21,12 +21,14 @@ public class RepositoryRouter extends Router {
         attach("/batchobjects", new BatchedObjectResource());
         attach("/sendobject", SendObjectResource.class);
         attach("/exists", ObjectExistsResource.class);
+        attach("/negotiate", NegotiateResource.class);
         attach("/beginpush", BeginPush.class);
         attach("/endpush", EndPush.class);
         attach("/getdepth", DepthResource.class);
         attach("/getparents", ParentResource.class);
         attach("/affectedfeatures", AffectedFeaturesResource.class);
         attach("/filteredchanges", new FilteredChangesResource());
+        attach("/sparsepack", new SparsePackResource());
         attach("/applychanges", new ApplyChangesResource());
         attach("/mergefeature", MergeFeatureResource.class);
 
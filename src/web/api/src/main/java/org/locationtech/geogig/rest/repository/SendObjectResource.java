@@ -16,8 +16,11 @@ import java.io.InputStream;
 
 import org.locationtech.geogig.remote.BinaryPackedObjects;
 import org.locationtech.geogig.remote.BinaryPackedObjects.IngestResults;
+import org.locationtech.geogig.remote.HttpCompression;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.rest.RestletException;
+import org.locationtech.geogig.storage.impl.ObjectSerializingFactory;
+import org.restlet.data.Form;
 import org.restlet.data.Request;
 import org.restlet.data.Status;
 import org.restlet.resource.Representation;
@@ -25,6 +28,7 @@ import org.restlet.resource.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Stopwatch;
 import com.google.common.io.Closeables;
 import com.google.common.io.CountingInputStream;
@@ -50,11 +54,44 @@ public class SendObjectResource extends Resource {
             LOGGER.info("Receiving objects from {}", request.getClientInfo().getAddress());
             Representation representation = request.getEntity();
             input = representation.getStream();
+            if (representation.getEncodings().contains(FixedEncoder.LZ4)) {
+                // not decoded by restlet
+                input = HttpCompression.LZ4.decode(input);
+            }
             final Repository repo = getGeogig(request).get();
-            final BinaryPackedObjects unpacker = new BinaryPackedObjects(repo.objectDatabase());
-
+            final Form options = request.getResourceRef().getQueryAsForm();
+            final String format = options.getFirstValue("format", BinaryPackedObjects.FORMAT_V1);
+            final ObjectSerializingFactory serializer;
+            try {
+                serializer = BinaryPackedObjects.serializer(format, repo.objectDatabase());
+            } catch (IllegalArgumentException e) {
+                throw new RestletException(e.getMessage(), Status.CLIENT_ERROR_BAD_REQUEST);
+            }
             CountingInputStream countingStream = new CountingInputStream(input);
 
+            final String pushId = options.getFirstValue("pushId", null);
+            if (pushId != null) {
+                // stored in the repository once the push ends
+                Optional<StagedPush> push = PushManager.get().stagedPush(pushId);
+                if (!push.isPresent()) {
+                    throw new RestletException("Push " + pushId + " doesn't exist or expired",
+                            Status.CLIENT_ERROR_BAD_REQUEST);
+                }
+                Stopwatch sw = Stopwatch.createStarted();
+                try {
+                    push.get().stage(format, countingStream);
+                } catch (IllegalStateException e) {
+                    throw new RestletException(e.getMessage(), Status.CLIENT_ERROR_BAD_REQUEST);
+                }
+                LOGGER.info(String.format("SendObjectResource: Staged %,d bytes of push %s in %s.",
+                        countingStream.getCount(), pushId, sw.stop()));
+                return;
+            }
+            // each request ingests independently, so concurrent uploads of the same push are
+            // stored concurrently
+            final BinaryPackedObjects unpacker = new BinaryPackedObjects(repo.objectDatabase(),
+                    serializer);
+
             Stopwatch sw = Stopwatch.createStarted();
             IngestResults ingestResults = unpacker.ingest(countingStream);
             sw.stop();
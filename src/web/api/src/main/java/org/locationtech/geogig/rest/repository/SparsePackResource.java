@@ -0,0 +1,133 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.rest.repository;
+
+import static org.locationtech.geogig.web.api.RESTUtils.getGeogig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.remote.BinaryPackedSparseCommits;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.repository.impl.RepositoryFilter;
+import org.restlet.Context;
+import org.restlet.Finder;
+import org.restlet.data.MediaType;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.OutputRepresentation;
+import org.restlet.resource.Representation;
+import org.restlet.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Throwables;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Gets the history of a commit for a sparse clone in a single {@link BinaryPackedSparseCommits
+ * pack}: the commits, up to an optional depth, each followed by its changes that match a provided
+ * filter.
+ * <p>
+ * The request message has the commit as {@code want}, the optional {@code depth}, and the
+ * {@code filter} as sent to the {@link FilteredChangesResource}.
+ */
+public class SparsePackResource extends Finder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SparsePackResource.class);
+
+    @Override
+    public Resource findTarget(Request request, Response response) {
+        return new PackResource(getContext(), request, response);
+    }
+
+    private static class PackResource extends Resource {
+        public PackResource(//
+                Context context, //
+                Request request, //
+                Response response) //
+        {
+            super(context, request, response);
+        }
+
+        @Override
+        public boolean allowPost() {
+            return true;
+        }
+
+        @Override
+        public void post(Representation entity) {
+            final JsonElement messageJson;
+            try (InputStream inStream = entity.getStream()) {
+                final Reader body = new InputStreamReader(inStream);
+                messageJson = new JsonParser().parse(body);
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+            if (!messageJson.isJsonObject()) {
+                getResponse().setStatus(Status.CLIENT_ERROR_BAD_REQUEST, "Expected a JSON object");
+                return;
+            }
+            final JsonObject message = messageJson.getAsJsonObject();
+            if (!message.has("want") || !message.get("want").isJsonPrimitive()) {
+                getResponse().setStatus(Status.CLIENT_ERROR_BAD_REQUEST, "want not specified");
+                return;
+            }
+            final ObjectId want = ObjectId
+                    .valueOf(message.get("want").getAsJsonPrimitive().getAsString());
+            Integer depth = null;
+            if (message.has("depth") && message.get("depth").isJsonPrimitive()) {
+                depth = Integer.valueOf(message.get("depth").getAsJsonPrimitive().getAsInt());
+            }
+            final RepositoryFilter filter = FilteredChangesResource.parseFilter(message);
+            final Repository repository = getGeogig(getRequest()).get();
+            if (!repository.commitExists(want)) {
+                getResponse().setStatus(Status.CLIENT_ERROR_BAD_REQUEST,
+                        "Commit not found: " + want);
+                return;
+            }
+            getResponse()
+                    .setEntity(new SparsePackRepresentation(repository, want, depth, filter));
+        }
+
+        private static class SparsePackRepresentation extends OutputRepresentation {
+
+            private final Repository repository;
+
+            private final ObjectId want;
+
+            private final Integer depth;
+
+            private final RepositoryFilter filter;
+
+            public SparsePackRepresentation(Repository repository, ObjectId want, Integer depth,
+                    RepositoryFilter filter) {
+                super(MediaType.APPLICATION_OCTET_STREAM);
+                this.repository = repository;
+                this.want = want;
+                this.depth = depth;
+                this.filter = filter;
+            }
+
+            @Override
+            public void write(OutputStream out) throws IOException {
+                LOGGER.debug("Writing sparse pack of {} to remote...", want);
+                new BinaryPackedSparseCommits(repository).write(out, want, depth, filter);
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.rest.repository;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.locationtech.geogig.remote.BinaryPackedObjects;
+import org.locationtech.geogig.remote.BinaryPackedObjects.IngestResults;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Holds the objects sent by a push until it ends, so that they're stored all at once if it
+ * succeeds, and not at all if it's aborted or abandoned.
+ * <p>
+ * The packed objects of each {@code sendobject} request are appended, as received, to a file of
+ * their own, so concurrent requests of the same push don't contend with each other nor with the
+ * repository's object store. As packs are just sequences of objects, the files of the same
+ * serialization format are {@link #merge merged} into the object store as a single pack, in one
+ * batched {@link ObjectStore#putAll putAll}.
+ */
+class StagedPush {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StagedPush.class);
+
+    private final String id;
+
+    private final String ipAddress;
+
+    private final File directory;
+
+    /**
+     * The files holding the objects received, by serialization format
+     */
+    private final Map<String, List<File>> segments = new LinkedHashMap<>();
+
+    private int inFlight;
+
+    private long lastAccess;
+
+    private boolean closed;
+
+    /**
+     * @param id the id of the push
+     * @param ipAddress the address of the client pushing
+     * @param directory where to store the objects received, created on demand
+     */
+    StagedPush(String id, String ipAddress, File directory) {
+        this.id = id;
+        this.ipAddress = ipAddress;
+        this.directory = directory;
+        this.lastAccess = System.currentTimeMillis();
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String ipAddress() {
+        return ipAddress;
+    }
+
+    /**
+     * @return whether no request is being staged and the last one ended before the given time
+     */
+    synchronized boolean idleSince(long timestamp) {
+        return inFlight == 0 && lastAccess < timestamp;
+    }
+
+    /**
+     * Appends the objects read from {@code in}, packed in the given format, to the push.
+     *
+     * @return the number of bytes staged
+     */
+    public long stage(String format, InputStream in) throws IOException {
+        final File segment;
+        synchronized (this) {
+            checkState(!closed, "Push %s already ended", id);
+            directory.mkdirs();
+            segment = File.createTempFile("objects", ".pack", directory);
+            inFlight++;
+        }
+        boolean staged = false;
+        try {
+            final long size;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(segment),
+                    64 * 1024)) {
+                size = ByteStreams.copy(in, out);
+            }
+            synchronized (this) {
+                checkState(!closed, "Push %s ended while receiving objects", id);
+                List<File> files = segments.get(format);
+                if (files == null) {
+                    files = new ArrayList<>();
+                    segments.put(format, files);
+                }
+                files.add(segment);
+                staged = true;
+            }
+            return size;
+        } finally {
+            synchronized (this) {
+                inFlight--;
+                lastAccess = System.currentTimeMillis();
+            }
+            if (!staged) {
+                segment.delete();
+            }
+        }
+    }
+
+    /**
+     * Stores all the objects staged into {@code target} and {@link #discard() discards} them.
+     *
+     * @return the number of objects stored, plus the ones that already existed
+     */
+    public long merge(ObjectStore target) throws IOException {
+        final Map<String, List<File>> toMerge;
+        synchronized (this) {
+            checkState(!closed, "Push %s already ended", id);
+            checkState(inFlight == 0, "Push %s is still receiving objects", id);
+            closed = true;
+            toMerge = new LinkedHashMap<>(segments);
+        }
+        try {
+            long total = 0;
+            for (Map.Entry<String, List<File>> formatSegments : toMerge.entrySet()) {
+                String format = formatSegments.getKey();
+                List<File> files = formatSegments.getValue();
+                BinaryPackedObjects unpacker = new BinaryPackedObjects(target,
+                        BinaryPackedObjects.serializer(format, target));
+                Stopwatch sw = Stopwatch.createStarted();
+                IngestResults results;
+                try (InputStream in = concat(files)) {
+                    results = unpacker.ingest(in);
+                }
+                LOGGER.info(String.format(
+                        "Merged push %s: %,d objects in %,d files, format %s. Inserted: %,d. Existing: %,d. Time: %s.",
+                        id, results.total(), files.size(), format, results.getInserted(),
+                        results.getExisting(), sw.stop()));
+                total += results.total();
+            }
+            return total;
+        } finally {
+            deleteFiles(toMerge);
+        }
+    }
+
+    private static InputStream concat(final List<File> files) {
+        final Iterator<File> it = files.iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return it.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                if (!it.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return new BufferedInputStream(new FileInputStream(it.next()), 64 * 1024);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops all the objects staged, and any received from now on
+     */
+    public void discard() {
+        final Map<String, List<File>> toDelete;
+        synchronized (this) {
+            closed = true;
+            toDelete = new LinkedHashMap<>(segments);
+            segments.clear();
+        }
+        deleteFiles(toDelete);
+    }
+
+    private void deleteFiles(Map<String, List<File>> files) {
+        for (List<File> formatFiles : files.values()) {
+            for (File f : formatFiles) {
+                f.delete();
+            }
+        }
+        // only succeeds once all requests in flight have deleted their files
+        directory.delete();
+    }
+
+    /**
+     * @return the number of files staged, for testing purposes
+     */
+    synchronized int segmentCount() {
+        int count = 0;
+        for (List<File> files : segments.values()) {
+            count += files.size();
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StagedPush[%s, %s, %s]", id, ipAddress,
+                Collections.unmodifiableMap(segments).keySet());
+    }
+}
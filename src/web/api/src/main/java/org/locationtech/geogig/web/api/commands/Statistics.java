@@ -17,10 +17,15 @@ import org.geotools.util.Range;
 import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.Ref;
 import org.locationtech.geogig.model.RevPerson;
+import org.locationtech.geogig.model.SymRef;
 import org.locationtech.geogig.plumbing.LsTreeOp;
 import org.locationtech.geogig.plumbing.ParseTimestamp;
+import org.locationtech.geogig.plumbing.RefParse;
 import org.locationtech.geogig.plumbing.RevParse;
+import org.locationtech.geogig.plumbing.stats.BranchStatistics;
+import org.locationtech.geogig.plumbing.stats.UpdateBranchStatisticsOp;
 import org.locationtech.geogig.porcelain.DiffOp;
 import org.locationtech.geogig.porcelain.LogOp;
 import org.locationtech.geogig.repository.Context;
@@ -34,10 +39,15 @@ import org.locationtech.geogig.web.api.ResponseWriter;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 
 /**
  * List certain statistics of repository.
+ * <p>
+ * Statistics of a whole branch, with no path or time filter, are served from its stored
+ * {@link BranchStatistics}, which are kept up to date as the branch changes, instead of walking
+ * its history.
  */
 
 public class Statistics extends AbstractWebAPICommand {
@@ -80,6 +90,13 @@ public class Statistics extends AbstractWebAPICommand {
     @Override
     protected void runInternal(CommandContext context) {
         final Context geogig = this.getRepositoryContext(context);
+        if (Strings.isNullOrEmpty(since) && Strings.isNullOrEmpty(path)) {
+            Optional<Ref> branch = branch(geogig);
+            if (branch.isPresent()) {
+                writeBranchStatistics(context, geogig, branch.get().getName());
+                return;
+            }
+        }
         final List<FeatureTypeStats> stats = Lists.newArrayList();
         LogOp logOp = geogig.command(LogOp.class).setFirstParentOnly(true);
         LsTreeOp lsTreeOp = geogig.command(LsTreeOp.class)
@@ -164,12 +181,48 @@ public class Statistics extends AbstractWebAPICommand {
             }
         }
 
-        final RevCommit first = firstCommit;
-        final RevCommit last = lastCommit;
-        final int total = totalCommits;
-        final int added = addedFeatures;
-        final int modified = modifiedFeatures;
-        final int removed = removedFeatures;
+        writeResponse(context, stats, firstCommit, lastCommit, totalCommits, authors,
+                addedFeatures, modifiedFeatures, removedFeatures);
+    }
+
+    /**
+     * @return the branch the statistics are asked for, if they're asked for the tip of a branch
+     */
+    private Optional<Ref> branch(Context geogig) {
+        Optional<Ref> ref = geogig.command(RefParse.class)
+                .setName(until == null ? Ref.HEAD : until).call();
+        if (ref.isPresent() && ref.get() instanceof SymRef) {
+            ref = geogig.command(RefParse.class).setName(((SymRef) ref.get()).getTarget())
+                    .call();
+        }
+        if (ref.isPresent() && ref.get().getName().startsWith(Ref.HEADS_PREFIX)
+                && !ref.get().getObjectId().isNull()) {
+            return ref;
+        }
+        return Optional.absent();
+    }
+
+    private void writeBranchStatistics(CommandContext context, Context geogig, String branch) {
+        final BranchStatistics branchStats = geogig.command(UpdateBranchStatisticsOp.class)
+                .setBranch(branch).call();
+        final List<FeatureTypeStats> stats = Lists.newArrayList();
+        branchStats.getFeatureCounts()
+                .forEach((name, count) -> stats.add(new FeatureTypeStats(name, count)));
+
+        final int totalCommits = (int) branchStats.getCommitCount();
+        final RevCommit lastCommit = geogig.objectDatabase().getCommit(branchStats.getTip());
+        // as when walking the log, the first commit is only reported if it's not the last one
+        final RevCommit firstCommit = totalCommits > 1
+                ? geogig.objectDatabase().getCommit(branchStats.getFirstCommit()) : null;
+
+        writeResponse(context, stats, firstCommit, lastCommit, totalCommits,
+                branchStats.getAuthors(), 0, 0, 0);
+    }
+
+    private void writeResponse(CommandContext context, final List<FeatureTypeStats> stats,
+            final RevCommit first, final RevCommit last, final int total,
+            final List<RevPerson> authors, final int added, final int modified,
+            final int removed) {
         context.setResponseContent(new CommandResponse() {
             @Override
             public void write(ResponseWriter out) throws Exception {
@@ -0,0 +1,235 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.rest.repository;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.model.ObjectId;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+
+public class PackCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File directory;
+
+    private PackCache cache;
+
+    private static final List<ObjectId> NONE = ImmutableList.of();
+
+    @Before
+    public void before() throws IOException {
+        directory = tmp.newFolder("packs");
+        cache = new PackCache(directory, 1000);
+    }
+
+    private static ObjectId id(String s) {
+        return ObjectId.createNoClone(Hashing.sha1().hashString(s, Charsets.UTF_8).asBytes());
+    }
+
+    private PackCache.Key key(String repo, String want) {
+        return PackCache.key(repo, ImmutableList.of(id(want)), NONE, "v1", false);
+    }
+
+    private void put(PackCache.Key key, byte[] content) throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        PackCache.TeeOutputStream tee = new PackCache.TeeOutputStream(response,
+                cache.newPack(key));
+        tee.write(content);
+        tee.close();
+        tee.commit();
+        assertArrayEquals(content, response.toByteArray());
+    }
+
+    private byte[] get(PackCache.Key key) throws IOException {
+        try (PackCache.CachedPack pack = cache.open(key).get()) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) pack.size());
+            while (buffer.hasRemaining() && pack.channel().read(buffer) >= 0) {
+                //
+            }
+            return buffer.array();
+        }
+    }
+
+    private boolean cached(PackCache.Key key) throws IOException {
+        Optional<PackCache.CachedPack> pack = cache.open(key);
+        if (pack.isPresent()) {
+            pack.get().close();
+        }
+        return pack.isPresent();
+    }
+
+    @Test
+    public void testKey() {
+        ObjectId a = id("a"), b = id("b"), c = id("c");
+        PackCache.Key key = PackCache.key("repo", ImmutableList.of(a, b), ImmutableList.of(c),
+                "v1", false);
+        assertEquals(key.hash, PackCache.key("repo", ImmutableList.of(b, a),
+                ImmutableList.of(c), "v1", false).hash);
+        assertNotEquals(key.hash, PackCache.key("repo", ImmutableList.of(a, b),
+                ImmutableList.of(c), "v1", true).hash);
+        assertNotEquals(key.hash, PackCache.key("repo", ImmutableList.of(a, b),
+                ImmutableList.of(c), "v2", false).hash);
+        assertNotEquals(key.hash, PackCache.key("repo", ImmutableList.of(a),
+                ImmutableList.of(b, c), "v1", false).hash);
+        assertNotEquals(key.hash, PackCache.key("other", ImmutableList.of(a, b),
+                ImmutableList.of(c), "v1", false).hash);
+    }
+
+    @Test
+    public void testCommitAndDiscard() throws IOException {
+        PackCache.Key key = key("repo", "a");
+        assertFalse(cached(key));
+
+        PackCache.TeeOutputStream tee = new PackCache.TeeOutputStream(
+                new ByteArrayOutputStream(), cache.newPack(key));
+        tee.write(new byte[10]);
+        tee.discard();
+        assertFalse(cached(key));
+
+        byte[] content = "some pack".getBytes();
+        put(key, content);
+        assertArrayEquals(content, get(key));
+        assertEquals(content.length, cache.size());
+        assertEquals(1, directory.list().length);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws IOException {
+        PackCache.Key k1 = key("repo", "1"), k2 = key("repo", "2"), k3 = key("repo", "3");
+        put(k1, new byte[400]);
+        put(k2, new byte[400]);
+        // k1 becomes the most recently used
+        assertTrue(cached(k1));
+        put(k3, new byte[400]);
+
+        assertTrue(cached(k1));
+        assertFalse(cached(k2));
+        assertTrue(cached(k3));
+        assertEquals(800, cache.size());
+        assertEquals(2, directory.list().length);
+    }
+
+    @Test
+    public void testEvictedWhileServed() throws IOException {
+        PackCache.Key k1 = key("repo", "1"), k2 = key("repo", "2"), k3 = key("repo", "3");
+        byte[] content = new byte[400];
+        content[399] = 1;
+        put(k1, content);
+        PackCache.CachedPack served = cache.open(k1).get();
+        put(k2, new byte[400]);
+        put(k3, new byte[400]);
+        assertFalse(cached(k1));
+        assertEquals(800, cache.size());
+
+        // the file of the evicted pack is kept until closed
+        assertEquals(3, directory.list().length);
+        ByteBuffer buffer = ByteBuffer.allocate(content.length);
+        while (buffer.hasRemaining() && served.channel().read(buffer) >= 0) {
+            //
+        }
+        assertArrayEquals(content, buffer.array());
+        served.close();
+        assertEquals(2, directory.list().length);
+
+        // cached again under a new file while the previous one is open
+        served = cache.open(k2).get();
+        cache.validate("repo", PackCache.refsState(ImmutableMap.of("refs/heads/master", "1")));
+        cache.validate("repo", PackCache.refsState(ImmutableMap.of("refs/heads/master", "2")));
+        assertFalse(cached(k2));
+        put(k2, content);
+        served.close();
+        assertArrayEquals(content, get(k2));
+        assertEquals(1, directory.list().length);
+    }
+
+    @Test
+    public void testAbandonedReadersTimeOut() throws IOException {
+        cache = new PackCache(directory, 1000, 0);
+        PackCache.Key k1 = key("repo", "1"), k2 = key("repo", "2"), k3 = key("repo", "3");
+        put(k1, new byte[400]);
+        // never closed
+        PackCache.CachedPack abandoned = cache.open(k1).get();
+        put(k2, new byte[400]);
+        put(k3, new byte[400]);
+        assertFalse(cached(k1));
+        assertEquals(2, directory.list().length);
+        abandoned.close();
+        assertEquals(2, directory.list().length);
+    }
+
+    @Test
+    public void testPacksBiggerThanCacheNotCached() throws IOException {
+        PackCache.Key key = key("repo", "a");
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        PackCache.TeeOutputStream tee = new PackCache.TeeOutputStream(response,
+                cache.newPack(key));
+        for (int i = 0; i < 3; i++) {
+            tee.write(new byte[400]);
+        }
+        tee.commit();
+        // the response is unaffected
+        assertEquals(1200, response.size());
+        assertFalse(cached(key));
+        assertEquals(0, cache.size());
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void testRefsChangeInvalidatesRepository() throws IOException {
+        Map<String, String> refs = ImmutableMap.of("refs/heads/master", id("1").toString());
+        Map<String, String> moved = ImmutableMap.of("refs/heads/master", id("2").toString());
+        cache.validate("repo", PackCache.refsState(refs));
+        cache.validate("other", PackCache.refsState(refs));
+
+        PackCache.Key repoKey = key("repo", "1");
+        PackCache.Key otherKey = key("other", "1");
+        put(repoKey, new byte[10]);
+        put(otherKey, new byte[10]);
+
+        cache.validate("repo", PackCache.refsState(ImmutableMap.copyOf(refs)));
+        assertTrue(cached(repoKey));
+
+        cache.validate("repo", PackCache.refsState(moved));
+        assertFalse(cached(repoKey));
+        assertTrue(cached(otherKey));
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void testDeletesLeftovers() throws IOException {
+        put(key("repo", "a"), new byte[10]);
+        new File(directory, "unrelated.txt").createNewFile();
+        cache = new PackCache(directory, 1000);
+        assertFalse(cached(key("repo", "a")));
+        assertEquals(ImmutableList.of("unrelated.txt"), ImmutableList.copyOf(directory.list()));
+    }
+}
@@ -0,0 +1,130 @@
+/* Copyright (c) 2017 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * agent - initial implementation
+ */
+package org.locationtech.geogig.rest.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.remote.BinaryPackedObjects;
+import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
+import org.locationtech.geogig.storage.memory.HeapObjectStore;
+
+public class StagedPushTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HeapObjectStore source;
+
+    private HeapObjectStore target;
+
+    private File directory;
+
+    private StagedPush push;
+
+    @Before
+    public void before() throws IOException {
+        source = new HeapObjectStore();
+        source.open();
+        target = new HeapObjectStore();
+        target.open();
+        directory = new File(tmp.getRoot(), "push");
+        push = new StagedPush("push", "127.0.0.1.", directory);
+    }
+
+    @After
+    public void after() {
+        source.close();
+        target.close();
+    }
+
+    private static ByteArrayInputStream pack(RevObject... objects) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (RevObject o : objects) {
+            out.write(o.getId().getRawValue());
+            DataStreamSerializationFactoryV1.INSTANCE.write(o, out);
+        }
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    @Test
+    public void testMergesAllSegments() throws IOException {
+        RevTree t1 = RevObjectTestSupport.createFeaturesTree(source, "a", 10);
+        RevTree t2 = RevObjectTestSupport.createFeaturesTree(source, "b", 10);
+        RevTree t3 = RevObjectTestSupport.createFeaturesTree(source, "c", 10);
+
+        push.stage(BinaryPackedObjects.FORMAT_V1, pack(t1, t2));
+        push.stage(BinaryPackedObjects.FORMAT_V1, pack(t3));
+        assertEquals(2, push.segmentCount());
+        // nothing is stored until the push ends
+        assertFalse(target.exists(t1.getId()));
+
+        assertEquals(3, push.merge(target));
+        assertTrue(target.exists(t1.getId()));
+        assertTrue(target.exists(t2.getId()));
+        assertTrue(target.exists(t3.getId()));
+        assertFalse(directory.exists());
+    }
+
+    @Test
+    public void testDiscard() throws IOException {
+        RevTree tree = RevObjectTestSupport.createFeaturesTree(source, "a", 10);
+        push.stage(BinaryPackedObjects.FORMAT_V1, pack(tree));
+        assertTrue(directory.exists());
+
+        push.discard();
+        assertFalse(directory.exists());
+        assertFalse(target.exists(tree.getId()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoStagingAfterMerge() throws IOException {
+        push.merge(target);
+        push.stage(BinaryPackedObjects.FORMAT_V1, pack());
+    }
+
+    @Test
+    public void testPushesFromTheSameAddress() throws IOException {
+        PushManager manager = PushManager.get();
+        String first = manager.connectionBegin("127.0.0.1.host");
+        String second = manager.connectionBegin("127.0.0.1.host");
+        assertFalse(first.equals(second));
+        // clients behind the same address don't abort each other's pushes
+        assertTrue(manager.stagedPush(first).isPresent());
+        assertTrue(manager.stagedPush(second).isPresent());
+
+        manager.connectionAborted("127.0.0.1.host", second);
+        assertTrue(manager.stagedPush(first).isPresent());
+        assertFalse(manager.stagedPush(second).isPresent());
+        manager.connectionAborted("127.0.0.1.host", first);
+        assertFalse(manager.stagedPush(first).isPresent());
+    }
+
+    @Test
+    public void testIdle() throws IOException {
+        long now = System.currentTimeMillis();
+        assertFalse(push.idleSince(now - 60_000));
+        assertTrue(push.idleSince(now + 60_000));
+    }
+}